@@ -0,0 +1,68 @@
+package sml;
+
+/**
+ * Observer of the execution of a {@link Machine}, for tools such as tracers, coverage collectors and debuggers.
+ * <p>
+ * Every method has an empty default implementation, so a listener only overrides the events it needs. The events of
+ * one instruction arrive in this order: {@link #beforeInstruction}, then {@link #registerWritten} and
+ * {@link #output} as the instruction performs them, then {@link #branch} for a jnz, and finally
+ * {@link #afterInstruction}. Listeners are called on the thread running the machine.
+ *
+ * @author alessioerosferri
+ * @see Machine#addListener(ExecutionListener)
+ */
+public interface ExecutionListener {
+
+    /**
+     * Called before an instruction is executed.
+     *
+     * @param machine     the machine
+     * @param address     the address of the instruction
+     * @param instruction the instruction
+     */
+    default void beforeInstruction(Machine machine, int address, Instruction instruction) {
+    }
+
+    /**
+     * Called after an instruction has been executed successfully, before the program counter moves.
+     *
+     * @param machine     the machine
+     * @param address     the address of the instruction
+     * @param instruction the instruction
+     */
+    default void afterInstruction(Machine machine, int address, Instruction instruction) {
+    }
+
+    /**
+     * Called when a jnz has been executed.
+     *
+     * @param machine the machine
+     * @param address the address of the jnz
+     * @param taken   true if the jump was taken
+     * @param next    the address of the next instruction executed
+     */
+    default void branch(Machine machine, int address, boolean taken, int next) {
+    }
+
+    /**
+     * Called when an instruction writes a register, even if the value does not change.
+     *
+     * @param machine  the machine
+     * @param address  the address of the instruction
+     * @param register the register written
+     * @param oldValue the value before the write
+     * @param newValue the value after the write
+     */
+    default void registerWritten(Machine machine, int address, RegisterName register, int oldValue, int newValue) {
+    }
+
+    /**
+     * Called when an instruction writes a value to the output of the machine.
+     *
+     * @param machine the machine
+     * @param address the address of the instruction
+     * @param value   the value written
+     */
+    default void output(Machine machine, int address, int value) {
+    }
+}
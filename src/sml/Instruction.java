@@ -45,6 +45,15 @@ public abstract class Instruction {
      */
     public abstract int execute(Machine machine);
 
+    /**
+     * Returns a copy of this instruction carrying a different label, used when a program is rewritten and labels have
+     * to move from one instruction to another.
+     *
+     * @param label the label of the copy (can be null)
+     * @return a new instruction with the same opcode and operands
+     */
+    public abstract Instruction withLabel(String label);
+
     /**
      * @return the label string for this instruction (empty string if label is null)
      */
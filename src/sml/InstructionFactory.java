@@ -4,10 +4,9 @@ import org.springframework.beans.factory.BeanFactory;
 import org.springframework.context.support.ClassPathXmlApplicationContext;
 
 import java.lang.reflect.Constructor;
-import java.util.Arrays;
-import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
-import java.util.stream.Collectors;
 
 /**
  * The InstructionFactory class is responsible for creating Instruction objects based on the opcode given.
@@ -18,6 +17,7 @@ import java.util.stream.Collectors;
 public class InstructionFactory {
     private static final InstructionFactory instance = new InstructionFactory();
     private BeanFactory beanFactory;
+    private final Map<String, Class<?>[]> parameterTypes = new ConcurrentHashMap<>();
 
     private InstructionFactory() {
         beanFactory = new ClassPathXmlApplicationContext("/beans.xml");
@@ -45,39 +45,45 @@ public class InstructionFactory {
      */
     public Instruction createInstruction(String label, String opcode, Supplier<String> scan) {
         try {
+            Class<?>[] paramTypesDeclared = parameterTypes(opcode);
+
+            // going through parameters in constructor signature and constructing the params to send upon instantiating the Instruction.
+            Object[] params = new Object[paramTypesDeclared.length];
+            params[0] = label;
+            for (int i = 1; i < params.length; i++) {
+                switch (paramTypesDeclared[i].getName()) {
+                    case "sml.RegisterName" -> params[i] = Registers.Register.valueOf(scan.get());
+                    case "java.lang.Integer" -> params[i] = Integer.parseInt(scan.get());
+                    // unknown how to handle, defaulting to String
+                    default -> params[i] = scan.get();
+                }
+            }
+            return (Instruction) beanFactory.getBean(opcode, params);
+        } catch (NoSuchMethodException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the parameter types of the constructor of the Instruction class of an opcode. Reflection copies the
+     * constructors and their parameter types on every call, so they are looked up once per opcode.
+     *
+     * @param opcode the opcode
+     * @return the parameter types, the label first
+     * @throws NoSuchMethodException if the class has no public constructor
+     */
+    private Class<?>[] parameterTypes(String opcode) throws NoSuchMethodException {
+        Class<?>[] types = parameterTypes.get(opcode);
+        if (types == null) {
             Class<?> klass = beanFactory.getType(opcode);
             Constructor<?>[] constructors = klass.getConstructors();
             if (constructors.length == 0) {
                 throw new NoSuchMethodException("Class: " + klass.getName() + " cannot be instantiated.");
             }
-
-            Constructor<?> constructor = constructors[0];
-            Class<?>[] paramTypesDeclared = constructor.getParameterTypes();
-
-            // going through parameters in constructor signature and constructing through a stream the params to send upon instantiating the Instruction.
-            List<Object> params = Arrays.stream(paramTypesDeclared)
-                    .skip(1)
-                    .map((e) -> {
-                        switch (e.getName()) {
-                            case "sml.RegisterName" -> {
-                                return Registers.Register.valueOf(scan.get());
-                            }
-                            case "java.lang.Integer" -> {
-                                return Integer.parseInt(scan.get());
-                            }
-                            default -> {
-                                // unknown how to handle, defaulting to String
-                                return scan.get();
-                            }
-                        }
-                    })
-                    .collect(Collectors.toList());
-
-            params.add(0, label);
-            return (Instruction) beanFactory.getBean(opcode, params.toArray());
-        } catch (NoSuchMethodException e) {
-            e.printStackTrace();
+            types = constructors[0].getParameterTypes();
+            parameterTypes.put(opcode, types);
         }
-        return null;
+        return types;
     }
 }
@@ -1,22 +1,41 @@
 package sml;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.StringJoiner;
+import java.util.function.ObjIntConsumer;
 
 /**
  * The Labels class contains the labels used by the program. It allows the machine to reference instruction addresses by label (if a label is used).
  * It ensures uniqueness of labels in the SML program.
+ * <p>
+ * Generated programs declare millions of labels, so the table is built for scale: each label is a symbol with a dense
+ * int id (in order of definition), the names and addresses are plain arrays indexed by id, and names are found through
+ * an open-addressed table with linear probing whose slots pack the hash and the id of a label, so that probing only
+ * reads a name when the hashes match. No object is allocated per label and looking up an address does not box it.
+ * Once a program is loaded, {@link #freeze()} trims the arrays to the labels actually defined.
  *
  * @author alessioerosferri
  */
 public final class Labels {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int NONE = -1;
+    private static final long FREE = -1L;
 
     /**
-     * The map containing the labels and their associated addresses.
+     * The name and the address of each label, indexed by id.
      */
-    private final Map<String, Integer> labels = new HashMap<>();
+    private String[] names = new String[INITIAL_CAPACITY];
+    private int[] addresses = new int[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * The open-addressed table: the hash of a label in the high half of each slot and its id in the low half, FREE if
+     * none. At most half full.
+     */
+    private long[] slots = newSlots(2 * INITIAL_CAPACITY);
+
+    private boolean frozen;
 
     /**
      * Adds a label with the associated address to the map.
@@ -24,14 +43,27 @@ public final class Labels {
      * @param label   the label
      * @param address the address the label refers to
      * @throws IllegalArgumentException if label already exists.
+     * @throws IllegalStateException    if the labels have been frozen
      */
     public void addLabel(String label, int address) {
         Objects.requireNonNull(label);
-        if (labels.containsKey(label)) {
+        checkNotFrozen();
+        int hash = mix(label.hashCode());
+        int slot = slotOf(label, hash);
+        if (slots[slot] != FREE) {
             throw new IllegalArgumentException("Label '" + label + "' is already defined in the program");
         }
 
-        labels.put(label, address);
+        if (size == names.length) {
+            names = Arrays.copyOf(names, 2 * size);
+            addresses = Arrays.copyOf(addresses, 2 * size);
+        }
+        names[size] = label;
+        addresses[size] = address;
+        slots[slot] = entry(hash, size++);
+        if (2 * size > slots.length) {
+            rehash(2 * slots.length);
+        }
     }
 
     /**
@@ -42,24 +74,140 @@ public final class Labels {
      * @throws NullPointerException if label does not have an associated address.
      */
     public int getAddress(String label) {
-        if (!labels.containsKey(label)) {
+        int id = getId(label);
+        if (id == NONE) {
             throw new NullPointerException("Label '" + label + "' does not have an associated address");
         }
 
-        return labels.get(label);
+        return addresses[id];
+    }
+
+    /**
+     * @param label the label
+     * @return the id of the label, from 0 to {@link #size()} - 1 in order of definition; -1 if it is not defined
+     */
+    public int getId(String label) {
+        if (label == null) return NONE;
+        long entry = slots[slotOf(label, mix(label.hashCode()))];
+        return entry == FREE ? NONE : (int) entry;
+    }
+
+    /**
+     * @param id the id of a label
+     * @return the name of the label
+     * @throws IndexOutOfBoundsException if no label has the id
+     */
+    public String getName(int id) {
+        return names[Objects.checkIndex(id, size)];
+    }
+
+    /**
+     * @param id the id of a label
+     * @return the address the label refers to
+     * @throws IndexOutOfBoundsException if no label has the id
+     */
+    public int getAddress(int id) {
+        return addresses[Objects.checkIndex(id, size)];
+    }
+
+    /**
+     * Performs the given action for each label and its address, in order of definition.
+     *
+     * @param action the action receiving the label and the address it refers to
+     */
+    public void forEach(ObjIntConsumer<String> action) {
+        for (int id = 0; id < size; id++)
+            action.accept(names[id], addresses[id]);
+    }
+
+    /**
+     * @return the number of labels defined
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Freezes the labels once the program is loaded: the arrays are trimmed to the labels defined and the table to
+     * the smallest size keeping it at most half full. Frozen labels cannot change any more.
+     */
+    public void freeze() {
+        if (frozen) return;
+        names = Arrays.copyOf(names, size);
+        addresses = Arrays.copyOf(addresses, size);
+        rehash(Math.max(2, Integer.highestOneBit(Math.max(1, 2 * size - 1)) << 1));
+        frozen = true;
+    }
+
+    /**
+     * @return true if the labels have been frozen
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("Labels are frozen");
+        }
+    }
+
+    // the slot holding the label, or the free slot where it would go
+    private int slotOf(String label, int hash) {
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        long entry;
+        while ((entry = slots[slot]) != FREE) {
+            if ((int) (entry >>> 32) == hash && names[(int) entry].equals(label)) break;
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash(int capacity) {
+        long[] old = slots;
+        slots = newSlots(capacity);
+        int mask = capacity - 1;
+        for (long entry : old) {
+            if (entry == FREE) continue;
+            int slot = (int) (entry >>> 32) & mask;
+            while (slots[slot] != FREE)
+                slot = (slot + 1) & mask;
+            slots[slot] = entry;
+        }
+    }
+
+    private static long entry(int hash, int id) {
+        return (long) hash << 32 | id;
+    }
+
+    private static long[] newSlots(int capacity) {
+        long[] slots = new long[capacity];
+        Arrays.fill(slots, FREE);
+        return slots;
+    }
+
+    // spreads the bits of String hash codes, whose low bits are poor for similar generated names
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
     }
 
     /**
-     * Returns a string representation of this instance in the form "[label -> address, label -> address, ..., label -> address]".
+     * Returns a string representation of this instance in the form "[label -> address, label -> address, ..., label -> address]",
+     * sorted by label.
      *
      * @return the string representation of the labels map
      */
     @Override
     public String toString() {
-        return labels.entrySet()
-                .stream()
-                .map(entry -> entry.getKey() + " -> " + entry.getValue())
-                .collect(Collectors.joining(", ", "[", "]"));
+        Integer[] ids = new Integer[size];
+        Arrays.setAll(ids, id -> id);
+        Arrays.sort(ids, (a, b) -> names[a].compareTo(names[b]));
+        StringJoiner joiner = new StringJoiner(", ", "[", "]");
+        for (int id : ids)
+            joiner.add(names[id] + " -> " + addresses[id]);
+        return joiner.toString();
     }
 
     /**
@@ -72,7 +220,12 @@ public final class Labels {
     public boolean equals(Object o) {
         if (this == o) return true;
         if (!(o instanceof Labels that)) return false;
-        return labels.equals(that.labels);
+        if (size != that.size) return false;
+        for (int id = 0; id < size; id++) {
+            int other = that.getId(names[id]);
+            if (other == NONE || that.addresses[other] != addresses[id]) return false;
+        }
+        return true;
     }
 
     /**
@@ -82,13 +235,22 @@ public final class Labels {
      */
     @Override
     public int hashCode() {
-        return Objects.hash(labels);
+        int hash = 0;
+        for (int id = 0; id < size; id++)
+            hash += names[id].hashCode() ^ addresses[id];
+        return hash;
     }
 
     /**
      * Removes the labels
+     *
+     * @throws IllegalStateException if the labels have been frozen
      */
     public void reset() {
-        labels.clear();
+        checkNotFrozen();
+        names = new String[INITIAL_CAPACITY];
+        addresses = new int[INITIAL_CAPACITY];
+        slots = newSlots(2 * INITIAL_CAPACITY);
+        size = 0;
     }
 }
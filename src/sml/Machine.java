@@ -1,9 +1,17 @@
 package sml;
 
+import sml.engine.CompiledProgram;
+import sml.engine.ExecutionState;
+import sml.instruction.*;
+import sml.metrics.EngineMetrics;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.function.IntConsumer;
 
 import static sml.Instruction.NORMAL_PROGRAM_COUNTER_UPDATE;
 
@@ -23,6 +31,24 @@ import static sml.Instruction.NORMAL_PROGRAM_COUNTER_UPDATE;
  * <p>
  * The machine is designed to execute a program that is represented by a list of {@link Instruction} objects. Each
  * instruction contains an opcode, and operands (how many depend on the instruction used). Refer to README for the SML syntax.
+ * <p>
+ * Every run starts in the interpreter, which executes the instruction objects one at a time. The interpreter counts the
+ * taken backward jumps per target address; when a loop header has been jumped to more times than the tiering
+ * threshold, the program is compiled ({@link CompiledProgram}) and the rest of the run continues in the compiled form
+ * from that loop header, carrying over the current registers. Short programs never pay the cost of compiling.
+ * <p>
+ * Tools observe a run through {@link ExecutionListener}s. The loop is chosen once per run: with listeners the machine
+ * interprets with every hook in place, without listeners it runs the loops above, which contain no hooks at all.
+ * <p>
+ * Other threads observe a run through {@link #snapshot()}. The running thread publishes its state under a sequence
+ * lock at least every {@link #getPublishInterval()} instructions, between slices of the loops above, and when it stops;
+ * the loops themselves are unchanged and take no lock, and readers never block the run. The length of the slices
+ * varies pseudo-randomly between half the interval and the interval, so that the published program counter does not
+ * alias with loops whose length divides the interval (see {@link sml.profiler.SamplingProfiler}).
+ * <p>
+ * Every machine reports to the {@link EngineMetrics} of the process: it counts jumps and outputs in plain fields of its
+ * own, as the jnz and out instructions or the compiled tier report them, and adds them, with the instructions
+ * executed, at every publication of its state, so that a long run shows up in the metrics while it runs.
  */
 public final class Machine {
 
@@ -36,8 +62,77 @@ public final class Machine {
     // of the next instruction to be executed.
     private int programCounter = 0;
 
+    public static final int DEFAULT_TIERING_THRESHOLD = 1_000;
+
+    // Taken backward jumps needed before a loop is promoted to the compiled tier, 0 disables tiering.
+    private int tieringThreshold = DEFAULT_TIERING_THRESHOLD;
+
+    // Taken backward jumps of the current run, indexed by target address (allocated on the first one).
+    private int[] backEdges;
+
+    // The compiled form of the program once the current run has been promoted, null while interpreting.
+    private CompiledProgram compiled;
+    // The state the compiled tier runs on, kept between slices and runs.
+    private ExecutionState compiledState;
+    private boolean compilationFailed = false;
+
+    // The verified form of the program (see verify), runs start in it directly, null if not verified.
+    private CompiledProgram verified;
+
+    // Destination of the values written by out instructions; resolved on every call so that
+    // a replaced System.out is honoured.
+    private IntConsumer output = value -> System.out.println(value);
+
+    // Observers of the execution, copied on write; while there are none, runs use the uninstrumented loops.
+    private volatile ExecutionListener[] listeners = new ExecutionListener[0];
+
+    // The listeners of the instrumented loop while it runs, notified of the values written; null otherwise.
+    private ExecutionListener[] observing;
+
+    public static final int DEFAULT_PUBLISH_INTERVAL = 4_096;
+
+    // Maximum number of instructions executed between two publications of the state.
+    private int publishInterval = DEFAULT_PUBLISH_INTERVAL;
+
+    // State of the xorshift generator varying the length of the slices, never 0.
+    private int sliceJitter = 0x9E3779B9;
+
+    // Instructions executed by the current run.
+    private long runSteps = 0;
+
+    // Instructions completed in the slice an exception is escaping from, added up by the loops it leaves.
+    private long failedSliceSteps = 0;
+
+    // Time spent executing the current run, and whether its completion has been reported to the metrics.
+    private long runNanos = 0;
+    private boolean runReported = false;
+
+    // Jumps and outputs not yet reported to the metrics.
+    private long jumps = 0;
+    private long jumpsTaken = 0;
+    private long outputs = 0;
+
+    // The state last published by the running thread, guarded by the sequence number: odd while being written.
+    private final int[] publishedRegisters = new int[Registers.Register.values().length];
+    private int publishedProgramCounter;
+    private long publishedSteps;
+    private boolean publishedHalted;
+    @SuppressWarnings("unused")
+    private volatile long sequence;
+
+    private static final VarHandle SEQUENCE;
+
+    static {
+        try {
+            SEQUENCE = MethodHandles.lookup().findVarHandle(Machine.class, "sequence", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     public Machine(Registers registers) {
         this.registers = registers;
+        publish();
     }
 
     /**
@@ -45,15 +140,434 @@ public final class Machine {
      * Precondition: the program and its labels have been stored properly.
      */
     public void execute() {
+        reset();
+        resume(Long.MAX_VALUE);
+    }
+
+    /**
+     * Prepares the machine for a new run: the program counter is moved back to instruction 0
+     * and all the registers are cleared.
+     */
+    public void reset() {
         programCounter = 0;
         registers.clear();
-        while (programCounter < program.size()) {
-            Instruction ins = program.get(programCounter);
-            int programCounterUpdate = ins.execute(this);
-            programCounter = (programCounterUpdate == NORMAL_PROGRAM_COUNTER_UPDATE)
-                    ? programCounter + 1
-                    : programCounterUpdate;
+        compiled = null;
+        compilationFailed = false;
+        if (backEdges != null) {
+            Arrays.fill(backEdges, 0);
         }
+        runSteps = 0;
+        runNanos = 0;
+        runReported = false;
+        publish();
+    }
+
+    /**
+     * Continues the current run from the instruction the program counter points to, executing at most
+     * maxSteps instructions. The run can be suspended and resumed any number of times until the machine halts. If an
+     * instruction fails, its exception propagates and the instructions completed before it are counted in the
+     * {@link #snapshot()} of the run.
+     *
+     * @param maxSteps the maximum number of instructions to execute before returning
+     * @return the number of instructions actually executed
+     */
+    public long resume(long maxSteps) {
+        EngineMetrics metrics = EngineMetrics.global();
+        metrics.machineStarted();
+        long started = System.nanoTime();
+        long steps = 0;
+        long reported = 0;
+        try {
+            while (steps < maxSteps) {
+                long slice = Math.min(maxSteps - steps, nextSlice());
+                long executed = run(slice);
+                steps += executed;
+                runSteps += executed;
+                if (executed < slice) break;
+                publish();
+                flush(metrics, steps - reported);
+                reported = steps;
+            }
+        } catch (Throwable e) {
+            // the instructions that completed before the failure count as executed
+            steps += failedSliceSteps;
+            runSteps += failedSliceSteps;
+            failedSliceSteps = 0;
+            throw e;
+        } finally {
+            publish();
+            report(metrics, steps - reported, System.nanoTime() - started);
+        }
+        return steps;
+    }
+
+    // a slice length in (publishInterval / 2, publishInterval], varying from slice to slice
+    private int nextSlice() {
+        int x = sliceJitter;
+        x ^= x << 13;
+        x ^= x >>> 17;
+        x ^= x << 5;
+        sliceJitter = x;
+        return publishInterval - (x >>> 1) % ((publishInterval + 1) / 2);
+    }
+
+    // adds the work done since the last flush to the metrics, at every slice so that long runs show up live
+    private void flush(EngineMetrics metrics, long steps) {
+        metrics.executed(steps, jumps, jumpsTaken, outputs);
+        jumps = 0;
+        jumpsTaken = 0;
+        outputs = 0;
+    }
+
+    // adds the rest of the work of a call to resume to the metrics, and the run once it has halted
+    private void report(EngineMetrics metrics, long steps, long nanos) {
+        runNanos += nanos;
+        flush(metrics, steps);
+        if (isHalted() && !runReported) {
+            runReported = true;
+            metrics.runCompleted(runNanos);
+        }
+        metrics.machineStopped();
+    }
+
+    /**
+     * Executes at most maxSteps instructions in the loop chosen for the run; executes fewer only if the machine halts.
+     */
+    private long run(long maxSteps) {
+        if (listeners.length > 0) {
+            return resumeInstrumented(maxSteps);
+        }
+        if (compiled == null && verified != null) {
+            compiled = verified;
+        }
+        if (compiled != null) {
+            return runCompiled(maxSteps);
+        }
+
+        long steps = 0;
+        try {
+            while (steps < maxSteps && programCounter < program.size()) {
+                Instruction ins = program.get(programCounter);
+                int programCounterUpdate = ins.execute(this);
+                steps++;
+                if (programCounterUpdate == NORMAL_PROGRAM_COUNTER_UPDATE) {
+                    programCounter++;
+                } else {
+                    boolean backEdge = programCounterUpdate >= 0 && programCounterUpdate <= programCounter;
+                    programCounter = programCounterUpdate;
+                    if (backEdge && promote(programCounterUpdate)) {
+                        return steps + runCompiled(maxSteps - steps);
+                    }
+                }
+            }
+        } catch (Throwable e) {
+            failedSliceSteps += steps;
+            throw e;
+        }
+        return steps;
+    }
+
+    /**
+     * The interpreter loop used while listeners are registered: it notifies every event of every instruction, and
+     * never promotes the run to the compiled tier, which has no hooks.
+     */
+    private long resumeInstrumented(long maxSteps) {
+        ExecutionListener[] observers = listeners;
+        observing = observers;
+
+        long steps = 0;
+        try {
+            while (steps < maxSteps && programCounter < program.size()) {
+                int address = programCounter;
+                Instruction ins = program.get(address);
+                for (ExecutionListener observer : observers) observer.beforeInstruction(this, address, ins);
+
+                RegisterName written = writtenRegister(ins);
+                int oldValue = written == null ? 0 : registers.get(written);
+                int[] before = written == null && !writesNoRegister(ins) ? registers.toArray() : null;
+                int programCounterUpdate = ins.execute(this);
+                steps++;
+                if (written != null) {
+                    int newValue = registers.get(written);
+                    for (ExecutionListener observer : observers)
+                        observer.registerWritten(this, address, written, oldValue, newValue);
+                } else if (before != null) {
+                    notifyChanges(observers, address, before, registers.toArray());
+                }
+
+                boolean taken = programCounterUpdate != NORMAL_PROGRAM_COUNTER_UPDATE;
+                programCounter = taken ? programCounterUpdate : address + 1;
+                if (ins instanceof JnzInstruction) {
+                    for (ExecutionListener observer : observers) observer.branch(this, address, taken, programCounter);
+                }
+                for (ExecutionListener observer : observers) observer.afterInstruction(this, address, ins);
+            }
+        } catch (Throwable e) {
+            failedSliceSteps += steps;
+            throw e;
+        } finally {
+            observing = null;
+        }
+        return steps;
+    }
+
+    // the register written by a standard instruction, null for the others
+    private static RegisterName writtenRegister(Instruction ins) {
+        if (ins instanceof AddInstruction add) return add.getResult();
+        if (ins instanceof SubInstruction sub) return sub.getResult();
+        if (ins instanceof MulInstruction mul) return mul.getResult();
+        if (ins instanceof DivInstruction div) return div.getResult();
+        if (ins instanceof MovInstruction mov) return mov.getResult();
+        return null;
+    }
+
+    // out and jnz, standard instructions writing no register
+    private static boolean writesNoRegister(Instruction ins) {
+        return ins instanceof OutInstruction || ins instanceof JnzInstruction;
+    }
+
+    // for instructions whose writes are not known, the registers whose value changed
+    private void notifyChanges(ExecutionListener[] observers, int address, int[] before, int[] after) {
+        for (Registers.Register register : Registers.Register.values()) {
+            int index = register.ordinal();
+            if (before[index] != after[index]) {
+                for (ExecutionListener observer : observers)
+                    observer.registerWritten(this, address, register, before[index], after[index]);
+            }
+        }
+    }
+
+    /**
+     * Registers a listener; from the next call to {@link #execute()} or {@link #resume(long)} the machine runs in an
+     * instrumented interpreter loop that notifies it. Without listeners the machine runs uninstrumented.
+     *
+     * @param listener the listener
+     */
+    public synchronized void addListener(ExecutionListener listener) {
+        Objects.requireNonNull(listener);
+        ExecutionListener[] added = Arrays.copyOf(listeners, listeners.length + 1);
+        added[listeners.length] = listener;
+        listeners = added;
+    }
+
+    /**
+     * Removes a listener, the change applies from the next call to {@link #execute()} or {@link #resume(long)}.
+     *
+     * @param listener the listener
+     */
+    public synchronized void removeListener(ExecutionListener listener) {
+        List<ExecutionListener> remaining = new ArrayList<>(Arrays.asList(listeners));
+        if (remaining.remove(listener)) {
+            listeners = remaining.toArray(new ExecutionListener[0]);
+        }
+    }
+
+    // Writer side of the sequence lock, only the running thread publishes.
+    private void publish() {
+        long current = (long) SEQUENCE.getOpaque(this);
+        SEQUENCE.setOpaque(this, current + 1);
+        VarHandle.storeStoreFence();
+        registers.copyTo(publishedRegisters);
+        publishedProgramCounter = programCounter;
+        publishedSteps = runSteps;
+        publishedHalted = isHalted();
+        SEQUENCE.setRelease(this, current + 2);
+    }
+
+    /**
+     * Returns a consistent copy of the state of the machine, as last published by the thread running it. Can be called
+     * from any thread at any time and never blocks the run: the copy is at most {@link #getPublishInterval()}
+     * instructions behind while the machine is running, and exact once it has stopped.
+     *
+     * @return the program counter, the registers and the instructions executed by the current run
+     */
+    public MachineSnapshot snapshot() {
+        int[] values = new int[publishedRegisters.length];
+        while (true) {
+            long before = (long) SEQUENCE.getAcquire(this);
+            if ((before & 1) == 0) {
+                System.arraycopy(publishedRegisters, 0, values, 0, values.length);
+                int pc = publishedProgramCounter;
+                long steps = publishedSteps;
+                boolean halted = publishedHalted;
+                VarHandle.loadLoadFence();
+                if ((long) SEQUENCE.getOpaque(this) == before) {
+                    return new MachineSnapshot(pc, values, steps, halted);
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * @return the maximum number of instructions executed between two publications of the state of a run
+     */
+    public int getPublishInterval() {
+        return publishInterval;
+    }
+
+    /**
+     * Sets how often a run publishes its state for {@link #snapshot()}.
+     *
+     * @param publishInterval the maximum number of instructions between two publications
+     */
+    public void setPublishInterval(int publishInterval) {
+        if (publishInterval < 1) {
+            throw new IllegalArgumentException("Publish interval must be positive");
+        }
+        this.publishInterval = publishInterval;
+    }
+
+    /**
+     * Counts a taken backward jump to the loop header and compiles the program once the header is hot.
+     *
+     * @return true if the run has to continue in the compiled tier
+     */
+    private boolean promote(int loopHeader) {
+        if (tieringThreshold <= 0 || compilationFailed) {
+            return false;
+        }
+        if (backEdges == null || backEdges.length < program.size()) {
+            backEdges = new int[program.size()];
+        }
+        if (++backEdges[loopHeader] < tieringThreshold) {
+            return false;
+        }
+        try {
+            compiled = CompiledProgram.compile(program, labels);
+            return true;
+        } catch (IllegalArgumentException e) {
+            // the program uses instructions only the interpreter knows, keep interpreting
+            compilationFailed = true;
+            return false;
+        }
+    }
+
+    private long runCompiled(long maxSteps) {
+        // the state is reused by every slice, so that the compiled tier does not allocate while running; it writes
+        // through output(int), which resolves the current output and counts the values
+        if (compiledState == null) {
+            compiledState = new ExecutionState(new int[Registers.Register.values().length], 0, this::output);
+        }
+        ExecutionState state = compiledState;
+        registers.copyTo(state.getRegisters());
+        state.setProgramCounter(programCounter);
+        long before = state.getSteps();
+        long jumpsBefore = state.getJumps();
+        long takenBefore = state.getJumpsTaken();
+        try {
+            compiled.run(state, maxSteps);
+        } catch (Throwable e) {
+            failedSliceSteps += state.getSteps() - before;
+            throw e;
+        } finally {
+            registers.load(state.getRegisters());
+            programCounter = state.getProgramCounter();
+            jumps += state.getJumps() - jumpsBefore;
+            jumpsTaken += state.getJumpsTaken() - takenBefore;
+        }
+        return state.getSteps() - before;
+    }
+
+    /**
+     * @return true if the program counter has moved past the last instruction of the program
+     */
+    public boolean isHalted() {
+        return programCounter >= program.size();
+    }
+
+    /**
+     * Verifies the program (see {@link sml.analysis.Verifier}). From then on every run executes the verified program
+     * in the unchecked compiled loop from its first instruction, with no interpretation and no warm-up. Verification
+     * covers the program as it is now: call this method again after changing the program or its labels.
+     *
+     * @throws IllegalArgumentException if the program does not pass verification, the machine is left unverified
+     */
+    public void verify() {
+        verified = null;
+        verified = CompiledProgram.verify(program, labels);
+        compiled = null;
+    }
+
+    /**
+     * @return true if the program has been verified and runs unchecked
+     */
+    public boolean isVerified() {
+        return verified != null;
+    }
+
+    /**
+     * @return true if the current run has been promoted to the compiled tier
+     */
+    public boolean isPromoted() {
+        return compiled != null;
+    }
+
+    /**
+     * @return the number of taken backward jumps to a loop header before the loop is compiled, 0 if tiering is disabled
+     */
+    public int getTieringThreshold() {
+        return tieringThreshold;
+    }
+
+    /**
+     * Sets how many times a backward jump to the same loop header has to be taken before the program is compiled.
+     *
+     * @param tieringThreshold the threshold, 0 to always interpret
+     */
+    public void setTieringThreshold(int tieringThreshold) {
+        if (tieringThreshold < 0) {
+            throw new IllegalArgumentException("Tiering threshold cannot be negative");
+        }
+        this.tieringThreshold = tieringThreshold;
+    }
+
+    /**
+     * Moves the program counter past the last instruction, so that the current run is considered finished.
+     */
+    public void halt() {
+        programCounter = program.size();
+    }
+
+    /**
+     * Counts a conditional jump executed by the program (see jnz instruction) for the {@link EngineMetrics}. The jump
+     * counts itself, so that the interpreter loops do not have to check the type of every instruction they execute.
+     *
+     * @param taken true if the jump is taken
+     */
+    public void jumped(boolean taken) {
+        jumps++;
+        if (taken) jumpsTaken++;
+    }
+
+    /**
+     * Writes a value produced by the program (see out instruction) to the output of the machine.
+     *
+     * @param value the value to write
+     */
+    public void output(int value) {
+        outputs++;
+        ExecutionListener[] observers = observing;
+        if (observers != null) {
+            for (ExecutionListener observer : observers) observer.output(this, programCounter, value);
+        }
+        output.accept(value);
+    }
+
+    /**
+     * @return the consumer receiving the values written by the program
+     */
+    public IntConsumer getOutput() {
+        return output;
+    }
+
+    /**
+     * Replaces the destination of the values written by the program, by default they are printed on System.out.
+     *
+     * @param output the consumer receiving the values written by the program
+     */
+    public void setOutput(IntConsumer output) {
+        this.output = Objects.requireNonNull(output);
     }
 
     /**
@@ -81,13 +595,27 @@ public final class Machine {
     /**
      * String representation of the program under execution.
      *
+     * Instructions without a label (as shared by {@link sml.compact.ProgramCompactor}) are shown with the label the
+     * label table assigns to their address, if any.
+     *
      * @return pretty formatted version of the code.
      */
     @Override
     public String toString() {
-        return program.stream()
-                .map(Instruction::toString)
-                .collect(Collectors.joining("\n"));
+        String[] labelAt = new String[program.size()];
+        labels.forEach((label, address) -> {
+            if (address >= 0 && address < labelAt.length) labelAt[address] = label;
+        });
+        StringBuilder text = new StringBuilder();
+        for (int address = 0; address < program.size(); address++) {
+            Instruction instruction = program.get(address);
+            if (address > 0) text.append('\n');
+            if (instruction != null && instruction.getLabel() == null && labelAt[address] != null) {
+                text.append(labelAt[address]).append(": ");
+            }
+            text.append(instruction);
+        }
+        return text.toString();
     }
 
     @Override
@@ -0,0 +1,39 @@
+package sml;
+
+import java.util.Arrays;
+
+/**
+ * A consistent copy of the state of a running machine: the program counter, the registers and the number of
+ * instructions executed by the current run, all taken at the same point of the run.
+ *
+ * @param programCounter the address of the next instruction to execute
+ * @param registers      the register values, indexed by the ordinal of the register
+ * @param steps          the instructions executed since the run started
+ * @param halted         true if the program counter has moved past the last instruction
+ * @author alessioerosferri
+ * @see Machine#snapshot()
+ */
+public record MachineSnapshot(int programCounter, int[] registers, long steps, boolean halted) {
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof MachineSnapshot that)) return false;
+        return programCounter == that.programCounter && steps == that.steps && halted == that.halted
+                && Arrays.equals(registers, that.registers);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * programCounter + Arrays.hashCode(registers)) + Long.hashCode(steps);
+    }
+
+    /**
+     * @return a string of the form "[pc = n, registers = [...], steps = n, halted = b]"
+     */
+    @Override
+    public String toString() {
+        return "[pc = " + programCounter + ", registers = " + Arrays.toString(registers)
+                + ", steps = " + steps + ", halted = " + halted + "]";
+    }
+}
@@ -1,23 +1,72 @@
 package sml;
 
+import sml.batch.BatchReport;
+import sml.batch.BatchRunner;
+import sml.daemon.JobResult;
+import sml.daemon.SmlClient;
+import sml.daemon.SmlDaemon;
+import sml.metrics.EngineMetrics;
+import sml.recorder.FlightRecorder;
+
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 public class Main {
     /**
      * Initialises the system and executes the program.
+     * <p>
+     * With "--batch" as first argument, runs every program found in the following files, directories and glob
+     * patterns instead (see {@link #batch(String...)}). With "--train" as first argument, performs a training run
+     * (see {@link #train(String...)}). "--daemon" and "--client" start a resident daemon and send it a program (see
+     * {@link #daemon(String...)} and {@link #client(String...)}). "--record trace-file" before the name of the file
+     * records the run with a {@link FlightRecorder}.
      *
      * @param args name of the file containing the program text.
      */
     public static void main(String... args) {
+        if (args.length > 0 && args[0].equals("--batch")) {
+            batch(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--train")) {
+            train(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--daemon")) {
+            daemon(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--client")) {
+            client(args);
+            return;
+        }
+
+        Path trace = null;
+        if (args.length == 3 && args[0].equals("--record")) {
+            trace = Path.of(args[1]);
+            args = new String[]{args[2]};
+        }
         if (args.length != 1) {
-            System.err.println("Incorrect number of arguments - Machine <file> - required");
+            System.err.println("Incorrect number of arguments - Machine [--record <trace-file>] <file> - required");
             System.exit(-1);
         }
 
-        try {
+        try (FlightRecorder recorder = trace == null ? null : new FlightRecorder(trace, FlightRecorder.DEFAULT_SIZE)) {
             Translator t = new Translator(args[0]);
             Machine m = new Machine(new Registers());
+            if (recorder != null) m.addListener(recorder);
             t.readAndTranslate(m.getLabels(), m.getProgram());
+            try {
+                m.verify();
+            } catch (IllegalArgumentException e) {
+                // the interpreter only fails if the faulty instructions are reached
+                System.err.println(e.getMessage());
+            }
 
             System.out.println("Here is the program; it has " + m.getProgram().size() + " instructions.");
             System.out.println(m);
@@ -31,4 +80,185 @@ public class Main {
             System.out.println("Error reading the program from " + args[0]);
         }
     }
+
+    /**
+     * Batch mode: --batch [--output results-file] [--threads n] [--max-steps n] (file|directory|glob)...
+     * <p>
+     * The programs run in parallel, the results of each program are written to the results file (results.txt by
+     * default) and an aggregate report is printed at the end.
+     *
+     * @param args the command line arguments, starting with --batch
+     */
+    private static void batch(String... args) {
+        Path output = Path.of("results.txt");
+        int threads = Runtime.getRuntime().availableProcessors();
+        long maxSteps = Long.MAX_VALUE;
+        List<String> inputs = new ArrayList<>();
+
+        try {
+            for (int i = 1; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--output" -> output = Path.of(args[++i]);
+                    case "--threads" -> threads = Integer.parseInt(args[++i]);
+                    case "--max-steps" -> maxSteps = Long.parseLong(args[++i]);
+                    default -> inputs.add(args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            inputs.clear();
+        }
+        if (inputs.isEmpty()) {
+            System.err.println("Incorrect arguments - Machine --batch [--output <file>] [--threads <n>] [--max-steps <n>] <file|directory|glob>... - required");
+            System.exit(-1);
+        }
+
+        try {
+            List<Path> files = BatchRunner.expand(inputs);
+            System.out.println("Running " + files.size() + " programs on " + threads + " threads.");
+            BatchReport report = new BatchRunner(threads, maxSteps).run(files, output);
+            System.out.println("Results written to " + output + ".");
+            System.out.println(report);
+        } catch (IOException e) {
+            System.out.println("Error running the batch: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Daemon mode: --daemon socket [--threads n] [--max-steps n]
+     * <p>
+     * Serves jobs on the Unix domain socket until the process is stopped, each job executing at most the given number
+     * of instructions (10,000,000 by default). The metrics of the engine are published over JMX (see
+     * {@link EngineMetrics}).
+     *
+     * @param args the command line arguments, starting with --daemon
+     */
+    private static void daemon(String... args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        long maxSteps = 10_000_000;
+        List<String> sockets = new ArrayList<>();
+        try {
+            for (int i = 1; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--threads" -> threads = Integer.parseInt(args[++i]);
+                    case "--max-steps" -> maxSteps = Long.parseLong(args[++i]);
+                    default -> sockets.add(args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            sockets.clear();
+        }
+        if (sockets.size() != 1) {
+            System.err.println("Incorrect arguments - Machine --daemon <socket> [--threads <n>] [--max-steps <n>] - required");
+            System.exit(-1);
+        }
+
+        Path socket = Path.of(sockets.get(0));
+        SmlDaemon daemon = new SmlDaemon(socket, threads, maxSteps);
+        try {
+            daemon.start();
+            EngineMetrics.register();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    daemon.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing the daemon: " + e.getMessage());
+                }
+            }));
+            System.out.println("Daemon listening on " + socket + ".");
+            Thread.currentThread().join();
+        } catch (IOException e) {
+            System.out.println("Error starting the daemon: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Client mode: --client socket file [register values...]
+     * <p>
+     * Sends the program to the daemon listening on the socket, with the initial registers if given (one value per
+     * register), and prints the outputs and the final registers.
+     *
+     * @param args the command line arguments, starting with --client
+     */
+    private static void client(String... args) {
+        int registerCount = Registers.Register.values().length;
+        if (args.length != 3 && args.length != 3 + registerCount) {
+            System.err.println("Incorrect arguments - Machine --client <socket> <file> [<" + registerCount + " register values>] - required");
+            System.exit(-1);
+        }
+
+        try (SmlClient client = new SmlClient(Path.of(args[1]))) {
+            int[] initial = new int[args.length - 3];
+            for (int i = 0; i < initial.length; i++)
+                initial[i] = Integer.parseInt(args[3 + i]);
+            JobResult result = client.run(Files.readString(Path.of(args[2])), 0, initial);
+            for (int value : result.outputs())
+                System.out.println(value);
+            Registers registers = new Registers();
+            registers.load(result.registers());
+            System.out.println("Values of registers at program termination:" + registers + ".");
+        } catch (NumberFormatException e) {
+            System.err.println("Register values must be integers");
+            System.exit(-1);
+        } catch (IllegalStateException e) {
+            System.out.println("Error running the program: " + e.getMessage());
+        } catch (IOException e) {
+            System.out.println("Error sending the program to the daemon: " + e.getMessage());
+        }
+    }
+
+    // Uses every opcode and loops long enough for the run to reach the compiled loop.
+    private static final String TRAINING_PROGRAM = """
+            mov EAX 2000
+            mov EBX 0
+            mov ECX 1
+            mov EDX 3
+            loop: add EBX EAX
+            mul EBX ECX
+            div EBX EDX
+            sub EAX ECX
+            jnz EAX loop
+            out EBX
+            """;
+
+    private static final int TRAINING_RUNS = 3;
+
+    /**
+     * Training mode: --train [file]
+     * <p>
+     * Runs a representative program (the given file, or a built-in program using every instruction) through the same
+     * steps as a normal launch, with the output discarded. Launched with -XX:ArchiveClassesAtExit=archive, the JVM
+     * then writes an AppCDS archive of every class loaded along the way (Spring context, bean definitions parsing,
+     * translator, instructions, engines), which later launches map with -XX:SharedArchiveFile=archive instead of
+     * loading and verifying those classes again. The bin/sml launcher does both automatically.
+     *
+     * @param args the command line arguments, starting with --train
+     */
+    private static void train(String... args) {
+        if (args.length > 2) {
+            System.err.println("Incorrect arguments - Machine --train [<file>] - required");
+            System.exit(-1);
+        }
+
+        PrintStream console = System.out;
+        Path program = null;
+        try {
+            program = args.length == 2 ? Path.of(args[1]) : Files.writeString(
+                    Files.createTempFile("sml-training", ".sml"), TRAINING_PROGRAM);
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            for (int i = 0; i < TRAINING_RUNS; i++) {
+                main(program.toString());
+            }
+        } catch (IOException e) {
+            console.println("Error writing the training program: " + e.getMessage());
+            return;
+        } finally {
+            System.setOut(console);
+            if (args.length < 2 && program != null) {
+                program.toFile().delete();
+            }
+        }
+        System.out.println("Training completed.");
+    }
 }
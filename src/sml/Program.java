@@ -0,0 +1,143 @@
+package sml;
+
+import sml.engine.ProgramFingerprint;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * An immutable snapshot of a translated SML program: its instructions and its labels.
+ * <p>
+ * A program can be shared between threads and loaded into any number of machines; each machine receives its own copy
+ * of the instruction list and of the labels, so later changes to a machine never affect the program or other machines.
+ *
+ * @author alessioerosferri
+ */
+public final class Program {
+    private final List<Instruction> instructions;
+    private final Labels labels = new Labels();
+
+    // computed on first use; racing threads compute the same value
+    private volatile String fingerprint;
+
+    /**
+     * Constructor: a snapshot of the given instructions and labels (both are copied, the labels into a
+     * {@link Labels#freeze() frozen} table).
+     *
+     * @param instructions the instructions of the program
+     * @param labels       the labels of the program
+     */
+    public Program(List<Instruction> instructions, Labels labels) {
+        this.instructions = Collections.unmodifiableList(new ArrayList<>(instructions));
+        labels.forEach(this.labels::addLabel);
+        this.labels.freeze();
+    }
+
+    /**
+     * @return the instructions of the program (unmodifiable)
+     */
+    public List<Instruction> getInstructions() {
+        return instructions;
+    }
+
+    /**
+     * @return the number of instructions of the program
+     */
+    public int size() {
+        return instructions.size();
+    }
+
+    /**
+     * @param label the label
+     * @return the address the label refers to
+     * @throws NullPointerException if label does not have an associated address.
+     */
+    public int getAddress(String label) {
+        return labels.getAddress(label);
+    }
+
+    /**
+     * The program is immutable, so its fingerprint is computed once and kept: pass it to
+     * {@link sml.engine.ResultCache#execute(String, Machine, int[])} rather than hashing the program at every run.
+     *
+     * @return the {@link ProgramFingerprint} of the program
+     */
+    public String getFingerprint() {
+        String result = fingerprint;
+        if (result == null) {
+            result = ProgramFingerprint.of(instructions, labels);
+            fingerprint = result;
+        }
+        return result;
+    }
+
+    /**
+     * @return a copy of the labels of the program
+     */
+    public Labels getLabels() {
+        Labels copy = new Labels();
+        labels.forEach(copy::addLabel);
+        return copy;
+    }
+
+    /**
+     * Replaces the program and labels of the machine with a copy of this program.
+     *
+     * @param machine the machine to load the program into
+     */
+    public void loadInto(Machine machine) {
+        machine.getProgram().clear();
+        machine.getProgram().addAll(instructions);
+        machine.getLabels().reset();
+        labels.forEach(machine.getLabels()::addLabel);
+    }
+
+    /**
+     * @return a new machine, with cleared registers, holding a copy of this program
+     */
+    public Machine newMachine() {
+        Machine machine = new Machine(new Registers());
+        loadInto(machine);
+        return machine;
+    }
+
+    /**
+     * The source code of the program, one instruction per line, which translates back to the same program.
+     *
+     * Labels are taken from the label table: an instruction is shown with its own label if the table assigns it to
+     * its address, otherwise with the label the table assigns to its address, if any.
+     *
+     * @return the source code of the program
+     */
+    @Override
+    public String toString() {
+        String[] labelAt = new String[instructions.size()];
+        labels.forEach((label, address) -> {
+            if (address >= 0 && address < labelAt.length && labelAt[address] == null) labelAt[address] = label;
+        });
+        StringBuilder text = new StringBuilder();
+        for (int address = 0; address < instructions.size(); address++) {
+            Instruction instruction = instructions.get(address);
+            String own = instruction.getLabel();
+            String label = own != null && labels.getId(own) >= 0 && labels.getAddress(own) == address
+                    ? own : labelAt[address];
+            if (address > 0) text.append('\n');
+            text.append(Objects.equals(label, own) ? instruction : instruction.withLabel(label));
+        }
+        return text.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Program that)) return false;
+        return instructions.equals(that.instructions) && labels.equals(that.labels);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(instructions, labels);
+    }
+}
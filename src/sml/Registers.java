@@ -1,18 +1,22 @@
 package sml;
 
-import java.util.*;
+import java.util.Arrays;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * The Registers class represents a set of named registers.
  * Each register has a name and a value, which is an integer.
  * The class provides methods for setting and getting register values,
  * as well as for clearing all register values.
+ * <p>
+ * The values are kept in a primitive array indexed by the ordinal of the register, so reading and writing a register
+ * involves no boxing.
  *
  * @author alessioerosferri
  */
 public final class Registers {
-    private final Map<Register, Integer> registers = new HashMap<>();
+    private final int[] registers = new int[Register.values().length];
 
     /**
      * Enumeration of register names.
@@ -32,8 +36,7 @@ public final class Registers {
      * Clears all register values, setting them to 0.
      */
     public void clear() {
-        for (Register register : Register.values())
-            registers.put(register, 0);
+        Arrays.fill(registers, 0);
     }
 
     /**
@@ -43,7 +46,7 @@ public final class Registers {
      * @param value    new value
      */
     public void set(RegisterName register, int value) {
-        registers.put((Register) register, value);
+        registers[((Register) register).ordinal()] = value;
     }
 
     /**
@@ -53,7 +56,38 @@ public final class Registers {
      * @return value
      */
     public int get(RegisterName register) {
-        return registers.get((Register) register);
+        return registers[((Register) register).ordinal()];
+    }
+
+    /**
+     * Returns the values of all the registers, indexed by the ordinal of the register.
+     *
+     * @return a new array holding the value of each register
+     */
+    public int[] toArray() {
+        return registers.clone();
+    }
+
+    /**
+     * Copies the values of all the registers, indexed by the ordinal of the register, into the given array.
+     *
+     * @param values the array receiving the values, at least as long as the number of registers
+     */
+    public void copyTo(int[] values) {
+        System.arraycopy(registers, 0, values, 0, registers.length);
+    }
+
+    /**
+     * Sets all the registers at once, the value of each register is taken from the index matching its ordinal.
+     *
+     * @param values the new values of the registers
+     * @throws IllegalArgumentException if the number of values does not match the number of registers
+     */
+    public void load(int[] values) {
+        if (values.length != registers.length) {
+            throw new IllegalArgumentException("Expected " + registers.length + " register values but got " + values.length);
+        }
+        System.arraycopy(values, 0, registers, 0, registers.length);
     }
 
     /**
@@ -64,9 +98,8 @@ public final class Registers {
      */
     @Override
     public String toString() {
-        return registers.entrySet().stream()
-                .sorted(Map.Entry.comparingByKey())
-                .map(e -> e.getKey() + " = " + e.getValue())
+        return Stream.of(Register.values())
+                .map(register -> register + " = " + registers[register.ordinal()])
                 .collect(Collectors.joining(", ", "[", "]"));
     }
 
@@ -79,7 +112,7 @@ public final class Registers {
     @Override
     public boolean equals(Object o) {
         if (o instanceof Registers that) {
-            return registers.equals(that.registers);
+            return Arrays.equals(registers, that.registers);
         }
         return false;
     }
@@ -91,6 +124,6 @@ public final class Registers {
      */
     @Override
     public int hashCode() {
-        return registers.hashCode();
+        return Arrays.hashCode(registers);
     }
 }
@@ -1,10 +1,14 @@
 package sml;
 
-import java.io.File;
+import sml.metrics.EngineMetrics;
+
 import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.CharBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -23,11 +27,14 @@ import static sml.Registers.Register;
  * @author alessioerosferri
  */
 public final class Translator {
+    private static final int CHUNK_SIZE = 8192;
 
     private final String fileName; // source file of SML code
 
-    // line contains the characters in the current line that's not been processed yet
+    // line contains the current line, the characters from position to end have not been processed yet
     private String line = "";
+    private int position;
+    private int end;
     private final InstructionFactory instructionFactory;
 
     public Translator(String fileName) {
@@ -35,24 +42,85 @@ public final class Translator {
         instructionFactory = InstructionFactory.getInstance();
     }
 
+    /**
+     * Constructor: a translator for programs held in memory, see {@link #readAndTranslate(Readable, Labels, List)}.
+     */
+    public Translator() {
+        this(null);
+    }
+
     public void readAndTranslate(Labels labels, List<Instruction> program) throws IOException {
-        try (var sc = new Scanner(new File(fileName), StandardCharsets.UTF_8)) {
-            labels.reset();
-            program.clear();
-
-            // Each iteration processes line and reads the next input line into "line"
-            while (sc.hasNextLine()) {
-                line = sc.nextLine();
-                String label = getLabel();
-
-                Instruction instruction = getInstruction(label);
-                if (instruction != null) {
-                    if (label != null)
-                        labels.addLabel(label, program.size());
-                    program.add(instruction);
+        try (var reader = Files.newBufferedReader(Path.of(fileName), StandardCharsets.UTF_8)) {
+            readAndTranslate((Readable) reader, labels, program);
+        }
+    }
+
+    /**
+     * Translates the SML program read from the given source, one instruction per line. Lines end with the same
+     * separators as {@link Scanner#nextLine()}: "\r\n", '\n', '\r', '\u2028', '\u2029' or '\u0085'.
+     *
+     * @param source  the source of the program: a Reader, a CharBuffer or any other Readable (not closed)
+     * @param labels  the labels of the program, replaced by the labels found
+     * @param program the instructions of the program, replaced by the instructions found
+     * @throws IOException if the source cannot be read
+     */
+    public void readAndTranslate(Readable source, Labels labels, List<Instruction> program) throws IOException {
+        labels.reset();
+        program.clear();
+
+        // the source is read in chunks and split into lines here, the lines are the only strings allocated
+        CharBuffer chunk = CharBuffer.allocate(CHUNK_SIZE);
+        StringBuilder current = new StringBuilder();
+        boolean afterCarriageReturn = false;
+        while (source.read(chunk) >= 0) {
+            chunk.flip();
+            while (chunk.hasRemaining()) {
+                char c = chunk.get();
+                if (c == '\n' && afterCarriageReturn) {
+                    afterCarriageReturn = false;
+                    continue;
+                }
+                afterCarriageReturn = c == '\r';
+                if (c == '\n' || c == '\r' || c == '\u2028' || c == '\u2029' || c == '\u0085') {
+                    add(current.toString(), labels, program);
+                    current.setLength(0);
+                } else {
+                    current.append(c);
                 }
             }
+            chunk.clear();
+        }
+        if (current.length() > 0) {
+            add(current.toString(), labels, program);
         }
+        EngineMetrics.global().programTranslated();
+    }
+
+    private void add(String sourceLine, Labels labels, List<Instruction> program) {
+        Instruction instruction = translate(sourceLine);
+        if (instruction != null) {
+            if (instruction.getLabel() != null)
+                labels.addLabel(instruction.getLabel(), program.size());
+            program.add(instruction);
+        }
+    }
+
+    /**
+     * Translates a single line of SML source into an instruction, the label of the line (if any) is the label of the
+     * instruction. Used to decode edited lines without translating the whole file again.
+     *
+     * @param sourceLine the line to translate
+     * @return the instruction, or null if the line does not contain one
+     */
+    public Instruction translate(String sourceLine) {
+        line = sourceLine;
+        position = 0;
+        end = sourceLine.length();
+        // as String.trim() would do, the last word never includes the control characters ending the line
+        while (end > 0 && line.charAt(end - 1) <= ' ')
+            end--;
+        String label = getLabel();
+        return getInstruction(label);
     }
 
     /**
@@ -65,7 +133,7 @@ public final class Translator {
      * with its label already removed.
      */
     private Instruction getInstruction(String label) {
-        if (line.isEmpty())
+        if (isBlank())
             return null;
 
         String opcode = scan();
@@ -74,29 +142,34 @@ public final class Translator {
 
 
     private String getLabel() {
+        int start = position;
         String word = scan();
         if (word.endsWith(":"))
             return word.substring(0, word.length() - 1);
 
         // undo scanning the word
-        line = word + " " + line;
+        position = start;
         return null;
     }
 
+    private boolean isBlank() {
+        for (int i = position; i < line.length(); i++)
+            if (!Character.isWhitespace(line.charAt(i)))
+                return false;
+        return true;
+    }
+
     /*
-     * Return the first word of line and remove it from line.
+     * Return the first word of the rest of line and move past it.
      * If there is no word, return "".
      */
     private String scan() {
-        line = line.trim();
-
-        for (int i = 0; i < line.length(); i++)
-            if (Character.isWhitespace(line.charAt(i))) {
-                String word = line.substring(0, i);
-                line = line.substring(i);
-                return word;
-            }
+        while (position < end && line.charAt(position) <= ' ')
+            position++;
 
-        return line;
+        int start = position;
+        while (position < end && !Character.isWhitespace(line.charAt(position)))
+            position++;
+        return line.substring(start, position);
     }
-}
\ No newline at end of file
+}
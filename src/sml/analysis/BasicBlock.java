@@ -0,0 +1,102 @@
+package sml.analysis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A basic block of an SML program: a maximal run of consecutive instructions that is only entered at its first
+ * instruction and only left after its last one. Only the last instruction of a block can be a jnz.
+ *
+ * @author alessioerosferri
+ */
+public final class BasicBlock {
+    private final int index;
+    private final int start;
+    private final int end;
+    private final List<BasicBlock> successors = new ArrayList<>();
+    private final List<BasicBlock> predecessors = new ArrayList<>();
+    private boolean exit = false;
+
+    BasicBlock(int index, int start, int end) {
+        this.index = index;
+        this.start = start;
+        this.end = end;
+    }
+
+    void addSuccessor(BasicBlock successor) {
+        if (!successors.contains(successor)) {
+            successors.add(successor);
+            successor.predecessors.add(this);
+        }
+    }
+
+    void markExit() {
+        exit = true;
+    }
+
+    /**
+     * @return the position of the block in the control flow graph
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return the address of the first instruction of the block
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * @return the address following the last instruction of the block
+     */
+    public int getEnd() {
+        return end;
+    }
+
+    /**
+     * @return the number of instructions in the block
+     */
+    public int size() {
+        return end - start;
+    }
+
+    /**
+     * @return the blocks control can flow to after this one (the jump target first, then the fall-through)
+     */
+    public List<BasicBlock> getSuccessors() {
+        return Collections.unmodifiableList(successors);
+    }
+
+    /**
+     * @return the blocks control can come from
+     */
+    public List<BasicBlock> getPredecessors() {
+        return Collections.unmodifiableList(predecessors);
+    }
+
+    /**
+     * @return true if the program can terminate after this block, by falling or jumping past the last instruction
+     */
+    public boolean isExit() {
+        return exit;
+    }
+
+    /**
+     * @return a string representation in the form "B1 [3, 6) -> B1, B2"
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("B" + index + " [" + start + ", " + end + ")");
+        List<String> targets = new ArrayList<>();
+        for (BasicBlock successor : successors)
+            targets.add("B" + successor.index);
+        if (exit)
+            targets.add("exit");
+        if (!targets.isEmpty())
+            sb.append(" -> ").append(String.join(", ", targets));
+        return sb.toString();
+    }
+}
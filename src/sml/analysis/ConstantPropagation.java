@@ -0,0 +1,205 @@
+package sml.analysis;
+
+import sml.Instruction;
+import sml.RegisterName;
+import sml.Registers;
+import sml.instruction.*;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Conditional constant propagation over the {@link ControlFlowGraph} of a program.
+ * <p>
+ * SML has no unconditional jump: programs write a non zero constant in a register and jnz on it. Knowing which
+ * registers hold constants therefore tells which jnz always (or never) jump, and which blocks can actually be reached.
+ * The analysis only follows the edges that can be taken and, for each block, computes the registers that hold the same
+ * constant every time the block is entered.
+ * <p>
+ * The initial registers are not assumed to be 0, so the results also hold for runs started from preset registers.
+ * The program must be {@link Effects#isAnalysable(List) analysable}.
+ *
+ * @author alessioerosferri
+ */
+public final class ConstantPropagation {
+    private static final int REGISTERS = Registers.Register.values().length;
+
+    // lattice of a register: not reached yet, a known constant, or any value
+    private static final byte UNDEFINED = 0;
+    private static final byte CONSTANT = 1;
+    private static final byte VARYING = 2;
+
+    private final BitSet executable;
+    private final byte[][] kinds;
+    private final int[][] values;
+
+    private ConstantPropagation(int blocks) {
+        executable = new BitSet(blocks);
+        kinds = new byte[blocks][REGISTERS];
+        values = new int[blocks][REGISTERS];
+    }
+
+    /**
+     * Runs the analysis.
+     *
+     * @param program the instructions of the program
+     * @param graph   the control flow graph of the program
+     * @return the constants and executable blocks of the program
+     */
+    public static ConstantPropagation analyse(List<Instruction> program, ControlFlowGraph graph) {
+        List<BasicBlock> blocks = graph.getBlocks();
+        ConstantPropagation result = new ConstantPropagation(blocks.size());
+        if (blocks.isEmpty()) return result;
+
+        Arrays.fill(result.kinds[0], VARYING);
+        result.executable.set(0);
+        Deque<BasicBlock> worklist = new ArrayDeque<>();
+        BitSet queued = new BitSet(blocks.size());
+        worklist.add(graph.getEntry());
+        queued.set(0);
+
+        byte[] kind = new byte[REGISTERS];
+        int[] value = new int[REGISTERS];
+        while (!worklist.isEmpty()) {
+            BasicBlock block = worklist.poll();
+            queued.clear(block.getIndex());
+            System.arraycopy(result.kinds[block.getIndex()], 0, kind, 0, REGISTERS);
+            System.arraycopy(result.values[block.getIndex()], 0, value, 0, REGISTERS);
+
+            int last = block.getEnd() - 1;
+            for (int address = block.getStart(); address < last; address++)
+                transfer(program.get(address), kind, value);
+
+            Instruction terminator = program.get(last);
+            boolean jumps = true;
+            boolean fallsThrough = true;
+            if (terminator instanceof JnzInstruction jnz) {
+                int register = ordinal(jnz.getSource());
+                if (kind[register] == CONSTANT) {
+                    jumps = value[register] != 0;
+                    fallsThrough = !jumps;
+                }
+            } else {
+                transfer(terminator, kind, value);
+                jumps = false;
+            }
+
+            int target = graph.jumpTarget(last);
+            for (BasicBlock successor : block.getSuccessors()) {
+                boolean isJumpEdge = target >= 0 && successor.getStart() == target;
+                boolean isFallThrough = successor.getStart() == block.getEnd();
+                if ((isJumpEdge && jumps) || (isFallThrough && fallsThrough)) {
+                    if (result.merge(successor.getIndex(), kind, value) && !queued.get(successor.getIndex())) {
+                        queued.set(successor.getIndex());
+                        worklist.add(successor);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void transfer(Instruction instruction, byte[] kind, int[] value) {
+        if (instruction instanceof MovInstruction mov) {
+            int result = ordinal(mov.getResult());
+            kind[result] = CONSTANT;
+            value[result] = mov.getSource();
+        } else if (instruction instanceof AddInstruction add) {
+            fold(kind, value, add.getResult(), add.getSource(), Integer::sum);
+        } else if (instruction instanceof SubInstruction sub) {
+            fold(kind, value, sub.getResult(), sub.getSource(), (a, b) -> a - b);
+        } else if (instruction instanceof MulInstruction mul) {
+            fold(kind, value, mul.getResult(), mul.getSource(), (a, b) -> a * b);
+        } else if (instruction instanceof DivInstruction div) {
+            // a division by zero stops the program, the result is never observed
+            int source = ordinal(div.getSource());
+            if (kind[source] == CONSTANT && value[source] == 0) kind[ordinal(div.getResult())] = VARYING;
+            else fold(kind, value, div.getResult(), div.getSource(), (a, b) -> a / b);
+        }
+    }
+
+    private static void fold(byte[] kind, int[] value, RegisterName resultRegister, RegisterName sourceRegister,
+                             IntBinaryOperator operation) {
+        int result = ordinal(resultRegister);
+        int source = ordinal(sourceRegister);
+        if (kind[result] == CONSTANT && kind[source] == CONSTANT) {
+            value[result] = operation.applyAsInt(value[result], value[source]);
+        } else {
+            kind[result] = VARYING;
+        }
+    }
+
+    private static int ordinal(RegisterName register) {
+        return ((Registers.Register) register).ordinal();
+    }
+
+    // joins the state flowing along an edge into the entry state of a block, true if the entry state changed
+    private boolean merge(int block, byte[] kind, int[] value) {
+        boolean changed = !executable.get(block);
+        executable.set(block);
+        byte[] entryKind = kinds[block];
+        int[] entryValue = values[block];
+        for (int register = 0; register < REGISTERS; register++) {
+            byte merged;
+            if (entryKind[register] == UNDEFINED) merged = kind[register];
+            else if (kind[register] == UNDEFINED || entryKind[register] == VARYING) merged = entryKind[register];
+            else if (kind[register] == VARYING || entryValue[register] != value[register]) merged = VARYING;
+            else merged = CONSTANT;
+
+            if (merged != entryKind[register]) {
+                entryKind[register] = merged;
+                entryValue[register] = value[register];
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return the indexes of the blocks that can be executed
+     */
+    public BitSet executableBlocks() {
+        return (BitSet) executable.clone();
+    }
+
+    /**
+     * @param block a block of the control flow graph
+     * @return true if some run can execute the block
+     */
+    public boolean isExecutable(BasicBlock block) {
+        return executable.get(block.getIndex());
+    }
+
+    /**
+     * @param block    a block of the control flow graph
+     * @param register a register
+     * @return the value of the register every time the block is entered, empty if it is not a constant
+     */
+    public OptionalInt constantOnEntry(BasicBlock block, Registers.Register register) {
+        int index = block.getIndex();
+        return kinds[index][register.ordinal()] == CONSTANT
+                ? OptionalInt.of(values[index][register.ordinal()])
+                : OptionalInt.empty();
+    }
+
+    /**
+     * @param program  the instructions of the program the analysis ran on
+     * @param block    a block of the control flow graph
+     * @param register a register
+     * @return the value of the register every time the block is left, empty if it is not a constant
+     */
+    public OptionalInt constantOnExit(List<Instruction> program, BasicBlock block, Registers.Register register) {
+        byte[] kind = kinds[block.getIndex()].clone();
+        int[] value = values[block.getIndex()].clone();
+        for (int address = block.getStart(); address < block.getEnd(); address++)
+            transfer(program.get(address), kind, value);
+        return kind[register.ordinal()] == CONSTANT
+                ? OptionalInt.of(value[register.ordinal()])
+                : OptionalInt.empty();
+    }
+}
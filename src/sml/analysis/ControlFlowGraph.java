@@ -0,0 +1,159 @@
+package sml.analysis;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.instruction.JnzInstruction;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The control flow graph of a translated SML program.
+ * <p>
+ * The program is split into {@link BasicBlock}s at the first instruction, at every jnz target and after every jnz.
+ * A block ending with a jnz has the block of the jump target and the following block as successors, any other block
+ * only falls through. Jumping or falling past the last instruction terminates the program, such blocks are exits.
+ * <p>
+ * A jnz to a label that does not exist has no jump edge: taking it stops the program with an error, so its block is
+ * an exit as well.
+ *
+ * @author alessioerosferri
+ */
+public final class ControlFlowGraph {
+    private final List<BasicBlock> blocks;
+    // index of the block containing each address
+    private final int[] blockOf;
+    // resolved jump target of each jnz, -1 for other instructions and unresolved labels
+    private final int[] jumpTargets;
+
+    private ControlFlowGraph(List<BasicBlock> blocks, int[] blockOf, int[] jumpTargets) {
+        this.blocks = blocks;
+        this.blockOf = blockOf;
+        this.jumpTargets = jumpTargets;
+    }
+
+    /**
+     * Builds the control flow graph of a program.
+     *
+     * @param program the instructions of the program
+     * @param labels  the labels of the program
+     * @return the control flow graph
+     */
+    public static ControlFlowGraph build(List<Instruction> program, Labels labels) {
+        int size = program.size();
+        int[] jumpTargets = new int[size];
+        BitSet leaders = new BitSet(size + 1);
+        leaders.set(0);
+
+        for (int address = 0; address < size; address++) {
+            jumpTargets[address] = -1;
+            if (program.get(address) instanceof JnzInstruction jnz) {
+                leaders.set(address + 1);
+                int target = resolve(labels, jnz.getNextInstructionLabel());
+                if (target >= 0) {
+                    jumpTargets[address] = target;
+                    leaders.set(target);
+                }
+            }
+        }
+
+        List<BasicBlock> blocks = new ArrayList<>();
+        int[] blockOf = new int[size];
+        for (int start = 0; start < size; ) {
+            int end = leaders.nextSetBit(start + 1);
+            if (end < 0 || end > size) end = size;
+            BasicBlock block = new BasicBlock(blocks.size(), start, end);
+            for (int address = start; address < end; address++)
+                blockOf[address] = block.getIndex();
+            blocks.add(block);
+            start = end;
+        }
+
+        for (BasicBlock block : blocks) {
+            int last = block.getEnd() - 1;
+            if (program.get(last) instanceof JnzInstruction) {
+                int target = jumpTargets[last];
+                if (target >= 0 && target < size) block.addSuccessor(blocks.get(blockOf[target]));
+                else block.markExit();
+            }
+            if (block.getEnd() >= size) block.markExit();
+            else block.addSuccessor(blocks.get(blockOf[block.getEnd()]));
+        }
+
+        return new ControlFlowGraph(Collections.unmodifiableList(blocks), blockOf, jumpTargets);
+    }
+
+    private static int resolve(Labels labels, String label) {
+        try {
+            return labels.getAddress(label);
+        } catch (NullPointerException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return the blocks of the program, ordered by address
+     */
+    public List<BasicBlock> getBlocks() {
+        return blocks;
+    }
+
+    /**
+     * @return the block containing the first instruction, null for an empty program
+     */
+    public BasicBlock getEntry() {
+        return blocks.isEmpty() ? null : blocks.get(0);
+    }
+
+    /**
+     * @param address the address of an instruction
+     * @return the block containing the instruction
+     */
+    public BasicBlock blockAt(int address) {
+        return blocks.get(blockOf[address]);
+    }
+
+    /**
+     * @param address the address of an instruction
+     * @return the resolved jump target if the instruction is a jnz to an existing label, -1 otherwise
+     */
+    public int jumpTarget(int address) {
+        return jumpTargets[address];
+    }
+
+    /**
+     * @return the indexes of the blocks reachable from the entry block
+     */
+    public BitSet reachable() {
+        BitSet reached = new BitSet(blocks.size());
+        if (blocks.isEmpty()) return reached;
+
+        Deque<BasicBlock> worklist = new ArrayDeque<>();
+        worklist.push(getEntry());
+        reached.set(0);
+        while (!worklist.isEmpty()) {
+            for (BasicBlock successor : worklist.pop().getSuccessors()) {
+                if (!reached.get(successor.getIndex())) {
+                    reached.set(successor.getIndex());
+                    worklist.push(successor);
+                }
+            }
+        }
+        return reached;
+    }
+
+    /**
+     * @return one line per block, see {@link BasicBlock#toString()}
+     */
+    @Override
+    public String toString() {
+        return blocks.stream()
+                .map(BasicBlock::toString)
+                .collect(Collectors.joining("\n"));
+    }
+}
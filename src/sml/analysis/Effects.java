@@ -0,0 +1,111 @@
+package sml.analysis;
+
+import sml.Instruction;
+import sml.RegisterName;
+import sml.Registers;
+import sml.instruction.*;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The registers read and written by each SML instruction, as bit masks indexed by the ordinal of the register
+ * (bit 0 is EAX, bit 7 is EDI).
+ * <p>
+ * The analyses only know the standard instruction set; an instruction they do not know (or a register that is not a
+ * {@link Registers.Register}) is reported by {@link #isAnalysable(List)} so that callers can leave such programs alone.
+ *
+ * @author alessioerosferri
+ */
+public final class Effects {
+    public static final int NONE = 0;
+    public static final int ALL = (1 << Registers.Register.values().length) - 1;
+
+    private Effects() {
+    }
+
+    /**
+     * @param register a register
+     * @return the bit mask with only the bit of the register set
+     */
+    public static int mask(RegisterName register) {
+        return 1 << ((Registers.Register) register).ordinal();
+    }
+
+    /**
+     * @param instruction an instruction of the standard instruction set
+     * @return the registers read by the instruction
+     */
+    public static int uses(Instruction instruction) {
+        if (instruction instanceof AddInstruction add) return mask(add.getResult()) | mask(add.getSource());
+        if (instruction instanceof SubInstruction sub) return mask(sub.getResult()) | mask(sub.getSource());
+        if (instruction instanceof MulInstruction mul) return mask(mul.getResult()) | mask(mul.getSource());
+        if (instruction instanceof DivInstruction div) return mask(div.getResult()) | mask(div.getSource());
+        if (instruction instanceof OutInstruction out) return mask(out.getSource());
+        if (instruction instanceof JnzInstruction jnz) return mask(jnz.getSource());
+        return NONE;
+    }
+
+    /**
+     * @param instruction an instruction of the standard instruction set
+     * @return the registers written by the instruction
+     */
+    public static int defs(Instruction instruction) {
+        if (instruction instanceof AddInstruction add) return mask(add.getResult());
+        if (instruction instanceof SubInstruction sub) return mask(sub.getResult());
+        if (instruction instanceof MulInstruction mul) return mask(mul.getResult());
+        if (instruction instanceof DivInstruction div) return mask(div.getResult());
+        if (instruction instanceof MovInstruction mov) return mask(mov.getResult());
+        return NONE;
+    }
+
+    /**
+     * @param instruction an instruction of the standard instruction set
+     * @return true if executing the instruction can be observed other than through the register it writes:
+     * out writes a value, jnz moves the program counter and div can fail with a division by zero
+     */
+    public static boolean hasSideEffects(Instruction instruction) {
+        return instruction instanceof OutInstruction
+                || instruction instanceof JnzInstruction
+                || instruction instanceof DivInstruction;
+    }
+
+    /**
+     * @param program the instructions of a program
+     * @return true if every instruction is a non null instruction of the standard instruction set, with valid registers
+     */
+    public static boolean isAnalysable(List<Instruction> program) {
+        for (Instruction instruction : program) {
+            if (!isAnalysable(instruction)) return false;
+        }
+        return true;
+    }
+
+    private static boolean isAnalysable(Instruction instruction) {
+        if (instruction instanceof AddInstruction add) return isRegister(add.getResult()) && isRegister(add.getSource());
+        if (instruction instanceof SubInstruction sub) return isRegister(sub.getResult()) && isRegister(sub.getSource());
+        if (instruction instanceof MulInstruction mul) return isRegister(mul.getResult()) && isRegister(mul.getSource());
+        if (instruction instanceof DivInstruction div) return isRegister(div.getResult()) && isRegister(div.getSource());
+        if (instruction instanceof MovInstruction mov) return isRegister(mov.getResult()) && mov.getSource() != null;
+        if (instruction instanceof OutInstruction out) return isRegister(out.getSource());
+        if (instruction instanceof JnzInstruction jnz) return isRegister(jnz.getSource()) && jnz.getNextInstructionLabel() != null;
+        return false;
+    }
+
+    private static boolean isRegister(RegisterName register) {
+        return register instanceof Registers.Register;
+    }
+
+    /**
+     * @param mask a bit mask of registers
+     * @return the registers whose bit is set
+     */
+    public static Set<Registers.Register> registers(int mask) {
+        Set<Registers.Register> set = EnumSet.noneOf(Registers.Register.class);
+        for (Registers.Register register : Registers.Register.values()) {
+            if ((mask & (1 << register.ordinal())) != 0) set.add(register);
+        }
+        return set;
+    }
+}
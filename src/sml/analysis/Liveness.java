@@ -0,0 +1,99 @@
+package sml.analysis;
+
+import sml.Instruction;
+
+import java.util.List;
+
+/**
+ * Register liveness of a program: a register is live at a point if its current value may still be read, by an
+ * instruction executed later or after the program terminates.
+ * <p>
+ * Every register is live when the program terminates, since their final values are printed (see {@link sml.Main}).
+ * Out and jnz read their register, the arithmetic instructions read both operands. The analysis runs backwards over the
+ * {@link ControlFlowGraph} until the live sets stop changing; register sets are bit masks, see {@link Effects}.
+ * The program must be {@link Effects#isAnalysable(List) analysable}.
+ *
+ * @author alessioerosferri
+ */
+public final class Liveness {
+    private final ControlFlowGraph graph;
+    private final int[] liveIn;
+    private final int[] liveOut;
+    // live registers right after each instruction
+    private final int[] liveAfter;
+
+    private Liveness(ControlFlowGraph graph, int blocks, int size) {
+        this.graph = graph;
+        this.liveIn = new int[blocks];
+        this.liveOut = new int[blocks];
+        this.liveAfter = new int[size];
+    }
+
+    /**
+     * Computes the liveness of a program.
+     *
+     * @param program the instructions of the program
+     * @param graph   the control flow graph of the program
+     * @return the liveness of each block and instruction
+     */
+    public static Liveness analyse(List<Instruction> program, ControlFlowGraph graph) {
+        List<BasicBlock> blocks = graph.getBlocks();
+        Liveness liveness = new Liveness(graph, blocks.size(), program.size());
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = blocks.size() - 1; i >= 0; i--) {
+                BasicBlock block = blocks.get(i);
+                int out = block.isExit() ? Effects.ALL : Effects.NONE;
+                for (BasicBlock successor : block.getSuccessors())
+                    out |= liveness.liveIn[successor.getIndex()];
+
+                int live = out;
+                for (int address = block.getEnd() - 1; address >= block.getStart(); address--) {
+                    liveness.liveAfter[address] = live;
+                    Instruction instruction = program.get(address);
+                    live = (live & ~Effects.defs(instruction)) | Effects.uses(instruction);
+                }
+
+                if (out != liveness.liveOut[i] || live != liveness.liveIn[i]) {
+                    liveness.liveOut[i] = out;
+                    liveness.liveIn[i] = live;
+                    changed = true;
+                }
+            }
+        }
+        return liveness;
+    }
+
+    /**
+     * @param block a block of the control flow graph
+     * @return the registers live when the block is entered
+     */
+    public int liveIn(BasicBlock block) {
+        return liveIn[block.getIndex()];
+    }
+
+    /**
+     * @param block a block of the control flow graph
+     * @return the registers live when the block is left
+     */
+    public int liveOut(BasicBlock block) {
+        return liveOut[block.getIndex()];
+    }
+
+    /**
+     * @param address the address of an instruction
+     * @return the registers live right after the instruction executed
+     */
+    public int liveAfter(int address) {
+        return liveAfter[address];
+    }
+
+    /**
+     * @return the control flow graph the liveness was computed on
+     */
+    public ControlFlowGraph getControlFlowGraph() {
+        return graph;
+    }
+}
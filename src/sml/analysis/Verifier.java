@@ -0,0 +1,96 @@
+package sml.analysis;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.RegisterName;
+import sml.Registers;
+import sml.instruction.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Load-time verification of an SML program, in the spirit of the JVM bytecode verifier.
+ * <p>
+ * A program passes verification when every instruction is present and belongs to the standard instruction set, every
+ * register operand is a {@link Registers.Register}, every mov has a value and every jnz targets a label that exists
+ * and refers to an address in [0, size] (jumping to size ends the program). A verified program cannot fail at run time
+ * except through a division by zero, so an engine can execute it without any of the checks the interpreter performs
+ * on every instruction (see {@link sml.engine.CompiledProgram#verify}).
+ *
+ * @author alessioerosferri
+ */
+public final class Verifier {
+
+    private Verifier() {
+    }
+
+    /**
+     * Verifies a program.
+     *
+     * @param program the instructions of the program
+     * @param labels  the labels of the program
+     * @throws IllegalArgumentException listing all the problems found, if the program does not pass verification
+     */
+    public static void verify(List<Instruction> program, Labels labels) {
+        List<String> problems = check(program, labels);
+        if (!problems.isEmpty()) {
+            throw new IllegalArgumentException("Program failed verification: " + String.join("; ", problems));
+        }
+    }
+
+    /**
+     * Checks a program and reports every problem found, in address order.
+     *
+     * @param program the instructions of the program
+     * @param labels  the labels of the program
+     * @return the problems, each of the form "address n: description"; empty if the program passes verification
+     */
+    public static List<String> check(List<Instruction> program, Labels labels) {
+        List<String> problems = new ArrayList<>();
+        for (int address = 0; address < program.size(); address++) {
+            String problem = check(program.get(address), labels, program.size());
+            if (problem != null) {
+                problems.add("address " + address + ": " + problem);
+            }
+        }
+        return problems;
+    }
+
+    private static String check(Instruction instruction, Labels labels, int size) {
+        if (instruction == null) return "missing instruction";
+        if (instruction instanceof AddInstruction add) return registers(add, add.getResult(), add.getSource());
+        if (instruction instanceof SubInstruction sub) return registers(sub, sub.getResult(), sub.getSource());
+        if (instruction instanceof MulInstruction mul) return registers(mul, mul.getResult(), mul.getSource());
+        if (instruction instanceof DivInstruction div) return registers(div, div.getResult(), div.getSource());
+        if (instruction instanceof MovInstruction mov) {
+            String problem = registers(mov, mov.getResult());
+            return problem == null && mov.getSource() == null ? "missing value in '" + mov + "'" : problem;
+        }
+        if (instruction instanceof OutInstruction out) return registers(out, out.getSource());
+        if (instruction instanceof JnzInstruction jnz) {
+            String problem = registers(jnz, jnz.getSource());
+            return problem == null ? target(jnz.getNextInstructionLabel(), labels, size) : problem;
+        }
+        return "unknown instruction '" + instruction + "'";
+    }
+
+    private static String registers(Instruction instruction, RegisterName... registers) {
+        for (RegisterName register : registers) {
+            if (!(register instanceof Registers.Register)) {
+                return "invalid register " + register + " in '" + instruction + "'";
+            }
+        }
+        return null;
+    }
+
+    private static String target(String label, Labels labels, int size) {
+        int address;
+        try {
+            address = labels.getAddress(label);
+        } catch (NullPointerException e) {
+            return "label '" + label + "' does not have an associated address";
+        }
+        return address < 0 || address > size ? "label '" + label + "' refers to invalid address " + address : null;
+    }
+}
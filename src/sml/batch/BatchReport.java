@@ -0,0 +1,64 @@
+package sml.batch;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Aggregate figures of a batch: number of programs and failures, throughput and latency percentiles.
+ *
+ * @param programs    the programs run
+ * @param failures    the programs that could not be translated or failed while executing
+ * @param wallNanos   the elapsed time of the whole batch
+ * @param steps       the instructions executed by all the programs
+ * @param p50Nanos    the median latency of a program
+ * @param p90Nanos    the 90th percentile latency
+ * @param p99Nanos    the 99th percentile latency
+ * @param maxNanos    the slowest program
+ * @author alessioerosferri
+ */
+public record BatchReport(int programs, int failures, long wallNanos, long steps,
+                          long p50Nanos, long p90Nanos, long p99Nanos, long maxNanos) {
+
+    /**
+     * Computes the report of a batch.
+     *
+     * @param results   the results of the programs
+     * @param wallNanos the elapsed time of the whole batch
+     * @return the report
+     */
+    static BatchReport of(List<ProgramResult> results, long wallNanos) {
+        long[] latencies = results.stream().mapToLong(ProgramResult::latencyNanos).sorted().toArray();
+        int failures = (int) results.stream().filter(result -> !result.succeeded()).count();
+        long steps = results.stream().mapToLong(ProgramResult::steps).sum();
+        return new BatchReport(results.size(), failures, wallNanos, steps,
+                percentile(latencies, 50), percentile(latencies, 90), percentile(latencies, 99),
+                latencies.length == 0 ? 0 : latencies[latencies.length - 1]);
+    }
+
+    // nearest-rank percentile of sorted values
+    private static long percentile(long[] sorted, int percentile) {
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * @return programs completed per second
+     */
+    public double programsPerSecond() {
+        return wallNanos == 0 ? 0 : programs * 1e9 / wallNanos;
+    }
+
+    /**
+     * @return a human readable summary, one figure per line
+     */
+    @Override
+    public String toString() {
+        return String.join("\n", Arrays.asList(
+                "Programs: " + programs + " (" + failures + " failed)",
+                String.format("Elapsed: %.3f s", wallNanos / 1e9),
+                String.format("Throughput: %.1f programs/s, %d instructions", programsPerSecond(), steps),
+                String.format("Latency: p50 %.3f ms, p90 %.3f ms, p99 %.3f ms, max %.3f ms",
+                        p50Nanos / 1e6, p90Nanos / 1e6, p99Nanos / 1e6, maxNanos / 1e6)));
+    }
+}
@@ -0,0 +1,175 @@
+package sml.batch;
+
+import sml.Machine;
+import sml.Registers;
+import sml.Translator;
+import sml.engine.OutputRecorder;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Serial;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Runs many SML programs in parallel.
+ * <p>
+ * The inputs are files, directories (every regular file below them) or glob patterns such as "programs/**.sml".
+ * The programs are split recursively across a work-stealing {@link ForkJoinPool}, so idle workers take over the
+ * remaining programs of busy ones; every program is translated and executed on its own {@link Machine}. The values
+ * written by the programs are recorded instead of printed.
+ *
+ * @author alessioerosferri
+ */
+public final class BatchRunner {
+    private final int parallelism;
+    private final long maxSteps;
+
+    /**
+     * Constructor: a runner with the given parallelism and limit of instructions per program.
+     *
+     * @param parallelism the number of worker threads
+     * @param maxSteps    the maximum number of instructions a program may execute before being reported as failed
+     */
+    public BatchRunner(int parallelism, long maxSteps) {
+        if (parallelism < 1 || maxSteps < 1) {
+            throw new IllegalArgumentException("Parallelism and step limit must be positive");
+        }
+        this.parallelism = parallelism;
+        this.maxSteps = maxSteps;
+    }
+
+    /**
+     * Expands files, directories and glob patterns into the list of program files, sorted by path.
+     *
+     * @param inputs the files, directories and glob patterns
+     * @return the program files
+     * @throws IOException if a directory cannot be read
+     */
+    public static List<Path> expand(List<String> inputs) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String input : inputs) {
+            if (isGlob(input)) {
+                Path base = globBase(input);
+                PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + input);
+                try (Stream<Path> walk = Files.walk(base)) {
+                    walk.filter(Files::isRegularFile)
+                            .filter(path -> matcher.matches(path) || matcher.matches(path.normalize()))
+                            .forEach(files::add);
+                }
+            } else if (Files.isDirectory(Path.of(input))) {
+                try (Stream<Path> walk = Files.walk(Path.of(input))) {
+                    walk.filter(Files::isRegularFile).forEach(files::add);
+                }
+            } else {
+                files.add(Path.of(input));
+            }
+        }
+        return files.stream().distinct().sorted().collect(Collectors.toList());
+    }
+
+    private static boolean isGlob(String input) {
+        return input.chars().anyMatch(c -> c == '*' || c == '?' || c == '[' || c == '{');
+    }
+
+    // the directory made of the path elements before the first one containing a wildcard
+    private static Path globBase(String pattern) {
+        Path base = Path.of(pattern).isAbsolute() ? Path.of(pattern).getRoot() : Path.of("");
+        for (Path element : Path.of(pattern)) {
+            if (isGlob(element.toString())) break;
+            base = base.resolve(element);
+        }
+        return base.toString().isEmpty() ? Path.of(".") : base;
+    }
+
+    /**
+     * Runs the programs and writes one line per program to the results file, in the order of the files.
+     *
+     * @param files   the program files
+     * @param results the file receiving the results, see {@link ProgramResult#toString()}
+     * @return the aggregate report
+     * @throws IOException if the results file cannot be written
+     */
+    public BatchReport run(List<Path> files, Path results) throws IOException {
+        ProgramResult[] outcomes = new ProgramResult[files.size()];
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new Split(files, outcomes, 0, files.size()));
+        } finally {
+            pool.shutdown();
+        }
+        long wall = System.nanoTime() - start;
+
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(results, StandardCharsets.UTF_8))) {
+            for (ProgramResult outcome : outcomes)
+                writer.println(outcome);
+        }
+        return BatchReport.of(Arrays.asList(outcomes), wall);
+    }
+
+    /**
+     * Translates and executes a single program.
+     *
+     * @param file the source file of the program
+     * @return the outcome of the program
+     */
+    public ProgramResult runOne(Path file) {
+        long start = System.nanoTime();
+        Machine machine = new Machine(new Registers());
+        OutputRecorder recorder = new OutputRecorder();
+        machine.setOutput(recorder);
+        try {
+            new Translator(file.toString()).readAndTranslate(machine.getLabels(), machine.getProgram());
+            machine.reset();
+            long steps = machine.resume(maxSteps);
+            if (!machine.isHalted()) {
+                return new ProgramResult(file, recorder.toArray(), null, steps, System.nanoTime() - start,
+                        "step limit of " + maxSteps + " exceeded");
+            }
+            return new ProgramResult(file, recorder.toArray(), machine.getRegisters().toString(), steps,
+                    System.nanoTime() - start, null);
+        } catch (IOException | RuntimeException e) {
+            // resume did not return, the machine counted the instructions completed before the failure
+            return new ProgramResult(file, recorder.toArray(), null, machine.snapshot().steps(),
+                    System.nanoTime() - start, e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+    }
+
+    private final class Split extends RecursiveAction {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final List<Path> files;
+        private final ProgramResult[] outcomes;
+        private final int from;
+        private final int to;
+
+        Split(List<Path> files, ProgramResult[] outcomes, int from, int to) {
+            this.files = files;
+            this.outcomes = outcomes;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                if (from < to) outcomes[from] = runOne(files.get(from));
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Split(files, outcomes, from, middle), new Split(files, outcomes, middle, to));
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package sml.batch;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * The outcome of one program run by the {@link BatchRunner}.
+ *
+ * @param file         the source file of the program
+ * @param outputs      the values written by the program, up to the failure if it failed
+ * @param registers    the final registers, as printed by {@link sml.Registers#toString()} (null if it failed)
+ * @param steps        the instructions executed, up to the failure if it failed
+ * @param latencyNanos the time taken to translate and execute the program
+ * @param error        the reason of the failure, null if the program completed
+ * @author alessioerosferri
+ */
+public record ProgramResult(Path file, int[] outputs, String registers, long steps, long latencyNanos, String error) {
+
+    /**
+     * @return true if the program was translated and executed until it halted
+     */
+    public boolean succeeded() {
+        return error == null;
+    }
+
+    /**
+     * @return one tab separated line: file, status, outputs, registers (or error), steps and latency in microseconds
+     */
+    @Override
+    public String toString() {
+        return file + "\t" + (succeeded() ? "OK" : "FAILED")
+                + "\t" + Arrays.toString(outputs)
+                + "\t" + (succeeded() ? registers : error)
+                + "\t" + steps
+                + "\t" + latencyNanos / 1_000;
+    }
+}
@@ -0,0 +1,26 @@
+package sml.compact;
+
+/**
+ * The memory footprint of a program before and after {@link ProgramCompactor#compact}.
+ *
+ * @param before the footprint of the translated program
+ * @param after  the footprint of the compacted program
+ * @author alessioerosferri
+ */
+public record CompactionReport(Footprint before, Footprint after) {
+
+    /**
+     * @return how many times smaller the compacted program is
+     */
+    public double reduction() {
+        return after.bytes() == 0 ? 1.0 : (double) before.bytes() / after.bytes();
+    }
+
+    /**
+     * @return a two line report of the footprints and the reduction factor
+     */
+    @Override
+    public String toString() {
+        return String.format("before: %s%nafter:  %s (%.1fx smaller)", before, after, reduction());
+    }
+}
@@ -0,0 +1,99 @@
+package sml.compact;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.instruction.JnzInstruction;
+import sml.instruction.MovInstruction;
+import sml.instruction.OutInstruction;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Estimated memory footprint of a program: the instructions, the strings and boxed integers they refer to, the list
+ * holding them and the label table.
+ * <p>
+ * Objects are counted by identity, so an instruction or string shared by many addresses is counted once. Sizes follow
+ * the layout of a 64-bit JVM with compressed references: 12 byte object headers, 4 byte references and 8 byte
+ * alignment. Register operands are enum constants and cost nothing besides the reference.
+ *
+ * @param instructions         the number of addresses of the program
+ * @param instructionObjects   the number of distinct instruction objects
+ * @param stringObjects        the number of distinct label and opcode strings
+ * @param bytes                the estimated number of bytes retained by the program
+ * @author alessioerosferri
+ */
+public record Footprint(int instructions, int instructionObjects, int stringObjects, long bytes) {
+    private static final int HEADER = 12;
+    private static final int REFERENCE = 4;
+    private static final int STRING = 24;
+    private static final int ARRAY = 16;
+    private static final int INTEGER = 16;
+    private static final int INT = 4;
+
+    /**
+     * Measures a program.
+     *
+     * @param labels  the labels of the program
+     * @param program the instructions of the program
+     * @return the footprint of the program
+     */
+    public static Footprint of(Labels labels, List<Instruction> program) {
+        Set<Instruction> instructionObjects = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<Object> objects = Collections.newSetFromMap(new IdentityHashMap<>());
+        long bytes = align(ARRAY + (long) REFERENCE * program.size());
+        int strings = 0;
+
+        for (Instruction instruction : program) {
+            if (instruction == null || !instructionObjects.add(instruction)) continue;
+            int fields = instruction instanceof OutInstruction ? 3 : 4;
+            bytes += align(HEADER + (long) REFERENCE * fields);
+            for (String string : new String[]{instruction.getLabel(), instruction.getOpcode(),
+                    instruction instanceof JnzInstruction jnz ? jnz.getNextInstructionLabel() : null}) {
+                if (string != null && objects.add(string)) {
+                    bytes += size(string);
+                    strings++;
+                }
+            }
+            if (instruction instanceof MovInstruction mov && mov.getSource() != null
+                    && mov.getSource() != Integer.valueOf(mov.getSource()) && objects.add(mov.getSource())) {
+                bytes += INTEGER;
+            }
+        }
+
+        // a frozen table: names and addresses indexed by id, and at least twice as many slots packing a hash and an id
+        long[] table = {0};
+        int[] labelStrings = {0};
+        labels.forEach((label, address) -> {
+            if (objects.add(label)) {
+                table[0] += size(label);
+                labelStrings[0]++;
+            }
+        });
+        int slots = Integer.highestOneBit(Math.max(1, 2 * labels.size() - 1)) << 1;
+        bytes += table[0] + align(ARRAY + (long) REFERENCE * labels.size()) + align(ARRAY + (long) INT * labels.size())
+                + align(ARRAY + (long) Long.BYTES * slots);
+
+        return new Footprint(program.size(), instructionObjects.size(), strings + labelStrings[0], bytes);
+    }
+
+    // Latin-1 strings, as SML sources are: the String object and its byte array
+    private static long size(String string) {
+        return STRING + align(ARRAY + string.length());
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     * @return a string of the form "instructions=..., instruction objects=..., strings=..., bytes=..."
+     */
+    @Override
+    public String toString() {
+        return "instructions=" + instructions + ", instruction objects=" + instructionObjects
+                + ", strings=" + stringObjects + ", bytes=" + bytes;
+    }
+}
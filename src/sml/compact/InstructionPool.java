@@ -0,0 +1,66 @@
+package sml.compact;
+
+import sml.Instruction;
+import sml.instruction.JnzInstruction;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hash-consing of label-free instructions and interning of label strings.
+ * <p>
+ * Instructions are immutable, so two label-free instructions with the same opcode and operands (for example the
+ * hundreds of thousands of "sub EAX ECX" of a generated program) can be the same object. The pool returns the
+ * canonical instance of each distinct instruction, and the canonical instance of each label string, so that a label
+ * used by many jnz and by the label table is stored once. The pool is thread safe and can be shared by many programs.
+ *
+ * @author alessioerosferri
+ */
+public final class InstructionPool {
+    private final Map<Instruction, Instruction> instructions = new ConcurrentHashMap<>();
+    private final Map<String, String> strings = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the canonical instance of an instruction, without its label.
+     *
+     * @param instruction the instruction
+     * @return the shared label-free instruction equal to the given one
+     */
+    public Instruction intern(Instruction instruction) {
+        Instruction unlabelled = instruction.getLabel() == null ? instruction : instruction.withLabel(null);
+        if (unlabelled instanceof JnzInstruction jnz) {
+            String target = intern(jnz.getNextInstructionLabel());
+            if (target != jnz.getNextInstructionLabel()) {
+                unlabelled = new JnzInstruction(null, jnz.getSource(), target);
+            }
+        }
+        Instruction canonical = instructions.putIfAbsent(unlabelled, unlabelled);
+        return canonical == null ? unlabelled : canonical;
+    }
+
+    /**
+     * Returns the canonical instance of a string.
+     *
+     * @param string the string (can be null)
+     * @return the shared string equal to the given one
+     */
+    public String intern(String string) {
+        if (string == null) return null;
+        String canonical = strings.putIfAbsent(string, string);
+        return canonical == null ? string : canonical;
+    }
+
+    /**
+     * @return the number of distinct instructions in the pool
+     */
+    public int instructionCount() {
+        return instructions.size();
+    }
+
+    /**
+     * @return the number of distinct strings in the pool
+     */
+    public int stringCount() {
+        return strings.size();
+    }
+}
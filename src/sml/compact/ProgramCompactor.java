@@ -0,0 +1,74 @@
+package sml.compact;
+
+import sml.Instruction;
+import sml.Labels;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts a translated program to its compact in-memory form.
+ * <p>
+ * Labels only matter for jumps, and jumps are resolved through the {@link Labels} table, so the labels are removed from
+ * the instructions and kept in the table only. Every instruction is then replaced by its shared instance from an
+ * {@link InstructionPool}, and every label string (in the table and in the jnz) by its interned instance. Opcodes need
+ * no interning: each instruction class passes the same OP_CODE constant to every instance.
+ * <p>
+ * The program behaves exactly as before; {@link sml.Machine#toString()} still shows the labels, taken from the table.
+ *
+ * @author alessioerosferri
+ */
+public final class ProgramCompactor {
+    private final InstructionPool pool;
+
+    /**
+     * Constructor: a compactor with its own pool.
+     */
+    public ProgramCompactor() {
+        this(new InstructionPool());
+    }
+
+    /**
+     * Constructor: a compactor sharing the given pool, so that instructions are also shared between programs.
+     *
+     * @param pool the pool of instructions and strings
+     */
+    public ProgramCompactor(InstructionPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Compacts a program in place.
+     *
+     * @param labels  the labels of the program, rebuilt with interned strings
+     * @param program the instructions of the program, replaced by their shared label-free instances
+     * @return the footprint of the program before and after compaction
+     */
+    public CompactionReport compact(Labels labels, List<Instruction> program) {
+        Footprint before = Footprint.of(labels, program);
+        for (int address = 0; address < program.size(); address++) {
+            Instruction instruction = program.get(address);
+            if (instruction != null) {
+                program.set(address, pool.intern(instruction));
+            }
+        }
+        if (program instanceof ArrayList<Instruction> list) {
+            list.trimToSize();
+        }
+
+        Map<String, Integer> interned = new LinkedHashMap<>();
+        labels.forEach((label, address) -> interned.put(pool.intern(label), address));
+        labels.reset();
+        interned.forEach(labels::addLabel);
+        return new CompactionReport(before, Footprint.of(labels, program));
+    }
+
+    /**
+     * @return the pool used by this compactor
+     */
+    public InstructionPool getPool() {
+        return pool;
+    }
+}
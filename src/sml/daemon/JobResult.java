@@ -0,0 +1,37 @@
+package sml.daemon;
+
+import java.util.Arrays;
+
+/**
+ * The outcome of a job run by the daemon.
+ *
+ * @param programId the id of the program, to run it again without sending its source
+ * @param registers the final register values, indexed by the ordinal of the register
+ * @param outputs   the values written by the program
+ * @param steps     the instructions executed
+ * @author alessioerosferri
+ */
+public record JobResult(String programId, int[] registers, int[] outputs, long steps) {
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof JobResult that)) return false;
+        return programId.equals(that.programId) && steps == that.steps
+                && Arrays.equals(registers, that.registers) && Arrays.equals(outputs, that.outputs);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * programId.hashCode() + Arrays.hashCode(registers)) + Arrays.hashCode(outputs);
+    }
+
+    /**
+     * @return a string of the form "[program = id, registers = [...], outputs = [...], steps = n]"
+     */
+    @Override
+    public String toString() {
+        return "[program = " + programId + ", registers = " + Arrays.toString(registers)
+                + ", outputs = " + Arrays.toString(outputs) + ", steps = " + steps + "]";
+    }
+}
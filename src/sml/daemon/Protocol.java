@@ -0,0 +1,91 @@
+package sml.daemon;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The wire format between {@link SmlClient} and {@link SmlDaemon}. A connection carries any number of jobs, one after
+ * the other; all numbers are big-endian.
+ * <pre>
+ * request:  kind (byte: SOURCE or PROGRAM)
+ *           source (text) if SOURCE, program id (text) if PROGRAM
+ *           step quota (long, 0 for the quota of the daemon)
+ *           initial registers (int count, 0 or one per register, then the ints)
+ * response: status (byte: OK or ERROR)
+ *           if OK:    program id (text), steps (long), registers (int count, ints), outputs (int count, ints)
+ *           if ERROR: message (text)
+ * text:     int length, then that many bytes of UTF-8
+ * </pre>
+ *
+ * @author alessioerosferri
+ */
+final class Protocol {
+    static final byte SOURCE = 1;
+    static final byte PROGRAM = 2;
+    static final byte OK = 0;
+    static final byte ERROR = 1;
+
+    // limits of what a client accepts from the daemon; the buffers grow as the data arrives, in steps of CHUNK
+    // bytes, so a length alone never allocates more than that
+    static final int MAX_TEXT = 1 << 30;
+    static final int MAX_INTS = 1 << 28;
+    private static final int CHUNK = 1 << 16;
+
+    private Protocol() {
+    }
+
+    static void writeText(DataOutputStream out, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readText(DataInputStream in, int max) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > max) {
+            throw new IOException("Invalid text length " + length);
+        }
+        byte[] bytes = new byte[Math.min(length, CHUNK)];
+        in.readFully(bytes);
+        while (bytes.length < length) {
+            int read = bytes.length;
+            bytes = Arrays.copyOf(bytes, (int) Math.min(length, 2L * read));
+            in.readFully(bytes, read, bytes.length - read);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values)
+            out.writeInt(value);
+    }
+
+    static int[] readInts(DataInputStream in, int max) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > max) {
+            throw new IOException("Invalid array length " + length);
+        }
+        int[] values = new int[Math.min(length, CHUNK / Integer.BYTES)];
+        for (int i = 0; i < length; i++) {
+            if (i == values.length) values = Arrays.copyOf(values, (int) Math.min(length, 2L * i));
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    /**
+     * @return the next byte, or -1 if the peer closed the connection cleanly between two messages
+     */
+    static int readKind(DataInputStream in) throws IOException {
+        try {
+            return in.readUnsignedByte();
+        } catch (EOFException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package sml.daemon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+
+/**
+ * Thin client of a {@link SmlDaemon}: one connection, on which any number of jobs can be run one after the other.
+ * A client is not thread safe; threads running jobs concurrently each use their own client.
+ *
+ * @author alessioerosferri
+ */
+public final class SmlClient implements AutoCloseable {
+    private final SocketChannel channel;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    /**
+     * Constructor: connects to the daemon.
+     *
+     * @param socket the path of the socket of the daemon
+     * @throws IOException if the daemon cannot be reached
+     */
+    public SmlClient(Path socket) throws IOException {
+        channel = SocketChannel.open(UnixDomainSocketAddress.of(socket));
+        in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+    }
+
+    /**
+     * Translates and runs a program.
+     *
+     * @param source           the source code of the program
+     * @param maxSteps         the step quota of the job, 0 for the quota of the daemon (a larger quota is reduced to it)
+     * @param initialRegisters the initial value of every register, indexed by ordinal; no values means all zero
+     * @return the outcome of the job, with the id to run the same program again
+     * @throws IOException           if the daemon cannot be reached
+     * @throws IllegalStateException if the program cannot be translated or run, with the message of the daemon
+     */
+    public JobResult run(String source, long maxSteps, int... initialRegisters) throws IOException {
+        return send(Protocol.SOURCE, source, maxSteps, initialRegisters);
+    }
+
+    /**
+     * Runs a program the daemon has already translated.
+     *
+     * @param programId        the id returned by an earlier job
+     * @param maxSteps         the step quota of the job, 0 for the quota of the daemon (a larger quota is reduced to it)
+     * @param initialRegisters the initial value of every register, indexed by ordinal; no values means all zero
+     * @return the outcome of the job
+     * @throws IOException           if the daemon cannot be reached
+     * @throws IllegalStateException if the program is not known by the daemon (anymore) or cannot be run
+     */
+    public JobResult runProgram(String programId, long maxSteps, int... initialRegisters) throws IOException {
+        return send(Protocol.PROGRAM, programId, maxSteps, initialRegisters);
+    }
+
+    private JobResult send(byte kind, String text, long maxSteps, int[] initialRegisters) throws IOException {
+        out.writeByte(kind);
+        Protocol.writeText(out, text);
+        out.writeLong(maxSteps);
+        Protocol.writeInts(out, initialRegisters);
+        out.flush();
+
+        int status = Protocol.readKind(in);
+        if (status == Protocol.OK) {
+            String id = Protocol.readText(in, Protocol.MAX_TEXT);
+            long steps = in.readLong();
+            int[] registers = Protocol.readInts(in, Protocol.MAX_INTS);
+            int[] outputs = Protocol.readInts(in, Protocol.MAX_INTS);
+            return new JobResult(id, registers, outputs, steps);
+        }
+        if (status == Protocol.ERROR) {
+            throw new IllegalStateException(Protocol.readText(in, Protocol.MAX_TEXT));
+        }
+        throw new IOException("The daemon closed the connection");
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,267 @@
+package sml.daemon;
+
+import sml.Program;
+import sml.Registers;
+import sml.engine.RunResult;
+import sml.engine.SmlEngine;
+import sml.metrics.EngineMetrics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A resident SML interpreter serving jobs over a Unix domain socket, so that clients do not pay the JVM and Spring
+ * startup for every program.
+ * <p>
+ * Each job sends the source of a program, or the id of a program the daemon has already translated, together with the
+ * initial registers and a step quota; it gets back the final registers and the outputs (see {@link Protocol}).
+ * Translated programs are kept warm, by id, in a bounded least recently used table. Every connection has a thread of
+ * its own reading its jobs one after the other, so idle clients never hold back the others; the jobs themselves run on
+ * a fixed pool of threads, which bounds how many execute at the same time. No job may execute more instructions than
+ * the quota of the daemon. A request with a longer source than the daemon accepts, or more initial values than there
+ * are registers, closes its connection; requests are read as their bytes arrive, so a length alone reserves no memory.
+ *
+ * @author alessioerosferri
+ */
+public final class SmlDaemon implements AutoCloseable {
+    public static final int DEFAULT_PROGRAMS = 1_024;
+    public static final int DEFAULT_SOURCE_BYTES = 1 << 24;
+
+    private final Path socket;
+    private final long maxSteps;
+    private final int maxPrograms;
+    private final int maxSourceBytes;
+    private final ExecutorService workers;
+    private final ExecutorService connections;
+    private final Map<String, Program> programs;
+    private final AtomicLong jobs = new AtomicLong();
+
+    private ServerSocketChannel server;
+
+    /**
+     * Constructor: a daemon keeping up to {@link #DEFAULT_PROGRAMS} programs.
+     *
+     * @param socket   the path of the socket
+     * @param threads  the number of jobs run at the same time
+     * @param maxSteps the step quota of every job
+     */
+    public SmlDaemon(Path socket, int threads, long maxSteps) {
+        this(socket, threads, maxSteps, DEFAULT_PROGRAMS);
+    }
+
+    /**
+     * Constructor: a daemon accepting sources of up to {@link #DEFAULT_SOURCE_BYTES} bytes.
+     *
+     * @param socket      the path of the socket
+     * @param threads     the number of jobs run at the same time
+     * @param maxSteps    the step quota of every job
+     * @param maxPrograms the number of translated programs kept
+     */
+    public SmlDaemon(Path socket, int threads, long maxSteps, int maxPrograms) {
+        this(socket, threads, maxSteps, maxPrograms, DEFAULT_SOURCE_BYTES);
+    }
+
+    /**
+     * Constructor: a daemon with the given limits.
+     *
+     * @param socket         the path of the socket
+     * @param threads        the number of jobs run at the same time
+     * @param maxSteps       the step quota of every job
+     * @param maxPrograms    the number of translated programs kept
+     * @param maxSourceBytes the size of the largest source, in UTF-8 bytes, a job may send
+     */
+    public SmlDaemon(Path socket, int threads, long maxSteps, int maxPrograms, int maxSourceBytes) {
+        if (threads < 1 || maxSteps < 1 || maxPrograms < 1 || maxSourceBytes < 1) {
+            throw new IllegalArgumentException("Threads, step quota, programs and source size must be positive");
+        }
+        this.socket = socket;
+        this.maxSteps = maxSteps;
+        this.maxPrograms = maxPrograms;
+        this.maxSourceBytes = maxSourceBytes;
+        this.workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "sml-daemon-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.connections = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "sml-daemon-connection");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.programs = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Program> eldest) {
+                return size() > SmlDaemon.this.maxPrograms;
+            }
+        };
+    }
+
+    /**
+     * Binds the socket and starts accepting connections. A socket file left by a daemon that is no longer running is
+     * replaced.
+     *
+     * @throws IOException if the socket cannot be bound, or another daemon is listening on it
+     */
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("Daemon already started");
+        }
+        UnixDomainSocketAddress address = UnixDomainSocketAddress.of(socket);
+        if (Files.exists(socket)) {
+            if (isListening(address)) {
+                throw new IOException("A daemon is already listening on " + socket);
+            }
+            Files.delete(socket);
+        }
+        server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(address);
+        ServerSocketChannel listening = server;
+        Thread acceptor = new Thread(() -> accept(listening), "sml-daemon-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    private static boolean isListening(UnixDomainSocketAddress address) {
+        try {
+            SocketChannel.open(address).close();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void accept(ServerSocketChannel listening) {
+        try {
+            while (true) {
+                SocketChannel connection = listening.accept();
+                try {
+                    connections.execute(() -> serve(connection));
+                } catch (RejectedExecutionException e) {
+                    // accepted while the daemon was closing
+                    connection.close();
+                }
+            }
+        } catch (ClosedChannelException e) {
+            // the daemon has been closed
+        } catch (IOException e) {
+            System.err.println("Daemon stopped accepting connections: " + e.getMessage());
+        }
+    }
+
+    private void serve(SocketChannel connection) {
+        try (connection;
+             var in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(connection)));
+             var out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(connection)))) {
+            while (true) {
+                int kind = Protocol.readKind(in);
+                if (kind == -1) break;
+                String text = Protocol.readText(in, maxSourceBytes);
+                long quota = in.readLong();
+                int[] registers = Protocol.readInts(in, Registers.Register.values().length);
+                // the connection waits for its job, so its responses stay in order
+                workers.submit(() -> {
+                    respond(out, kind, text, quota, registers);
+                    out.flush();
+                    return null;
+                }).get();
+            }
+        } catch (IOException | ExecutionException e) {
+            // the client went away in the middle of a job, nothing to answer
+        } catch (RejectedExecutionException | InterruptedException e) {
+            // the daemon is closing
+        }
+    }
+
+    private void respond(DataOutputStream out, int kind, String text, long quota, int[] registers) throws IOException {
+        jobs.incrementAndGet();
+        try {
+            String id;
+            Program program;
+            if (kind == Protocol.SOURCE) {
+                EngineMetrics.global().translationCacheMiss();
+                program = new SmlEngine().compile(text);
+                id = program.getFingerprint();
+                synchronized (programs) {
+                    programs.putIfAbsent(id, program);
+                }
+            } else if (kind == Protocol.PROGRAM) {
+                id = text;
+                synchronized (programs) {
+                    program = programs.get(id);
+                }
+                if (program == null) {
+                    EngineMetrics.global().translationCacheMiss();
+                    throw new IllegalArgumentException("Unknown program " + id);
+                }
+                EngineMetrics.global().translationCacheHit();
+            } else {
+                throw new IllegalArgumentException("Unknown request " + kind);
+            }
+            long steps = quota <= 0 ? maxSteps : Math.min(quota, maxSteps);
+            RunResult result = new SmlEngine(steps).run(program, registers);
+            out.writeByte(Protocol.OK);
+            Protocol.writeText(out, id);
+            out.writeLong(result.steps());
+            Protocol.writeInts(out, result.registers());
+            Protocol.writeInts(out, result.outputs());
+        } catch (RuntimeException e) {
+            out.writeByte(Protocol.ERROR);
+            Protocol.writeText(out, e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return the number of jobs received since the daemon started
+     */
+    public long getJobCount() {
+        return jobs.get();
+    }
+
+    /**
+     * @return the number of translated programs kept
+     */
+    public int getProgramCount() {
+        synchronized (programs) {
+            return programs.size();
+        }
+    }
+
+    /**
+     * Stops accepting connections, waits for the jobs being run, closes the connections and removes the socket file.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (server == null) return;
+        server.close();
+        workers.shutdown();
+        try {
+            workers.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.shutdownNow();
+        // interrupting a thread blocked reading its connection closes the connection
+        connections.shutdownNow();
+        Files.deleteIfExists(socket);
+        server = null;
+    }
+}
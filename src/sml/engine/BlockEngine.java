@@ -0,0 +1,144 @@
+package sml.engine;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.analysis.BasicBlock;
+import sml.analysis.ControlFlowGraph;
+
+import java.util.List;
+import java.util.function.IntConsumer;
+
+import static sml.engine.CompiledProgram.*;
+
+/**
+ * Executes a program one basic block per dispatch.
+ * <p>
+ * The instructions of a block are straight-line code, so inside a block there is no need to check the program counter
+ * against the end of the program, to test for jumps or to count steps: the straight part of the block runs in a plain
+ * loop over the compiled operations with the registers held in a local array, and only the last instruction of the
+ * block decides where control goes next. The step budget is checked once per block; a block that does not fit in the
+ * remaining budget is finished one instruction at a time by the {@link CompiledProgram}.
+ *
+ * @author alessioerosferri
+ */
+public final class BlockEngine {
+    private final CompiledProgram compiled;
+    private final ControlFlowGraph graph;
+    // for each address, the end of the block containing it
+    private final int[] blockEnd;
+
+    private BlockEngine(CompiledProgram compiled, ControlFlowGraph graph) {
+        this.compiled = compiled;
+        this.graph = graph;
+        this.blockEnd = new int[compiled.size()];
+        for (BasicBlock block : graph.getBlocks()) {
+            for (int address = block.getStart(); address < block.getEnd(); address++)
+                blockEnd[address] = block.getEnd();
+        }
+    }
+
+    /**
+     * Compiles a translated program and splits it into basic blocks.
+     *
+     * @param program the instructions of the program
+     * @param labels  the labels of the program
+     * @return the engine for the program
+     * @throws IllegalArgumentException if the program cannot be compiled, see {@link CompiledProgram#compile(List, Labels)}
+     */
+    public static BlockEngine compile(List<Instruction> program, Labels labels) {
+        return new BlockEngine(CompiledProgram.compile(program, labels), ControlFlowGraph.build(program, labels));
+    }
+
+    /**
+     * @return the control flow graph the engine dispatches on
+     */
+    public ControlFlowGraph getControlFlowGraph() {
+        return graph;
+    }
+
+    /**
+     * Continues the run described by the state, executing at most maxSteps instructions or until the program counter
+     * moves past the last instruction. The state is updated even if an instruction fails.
+     *
+     * @param state    the state of the run
+     * @param maxSteps the maximum number of instructions to execute
+     */
+    public void run(ExecutionState state, long maxSteps) {
+        final int[] operations = compiled.operations;
+        final int[] first = compiled.first;
+        final int[] second = compiled.second;
+        final int[] blockEnd = this.blockEnd;
+        final int[] r = state.registers;
+        final IntConsumer output = state.output;
+        final int size = operations.length;
+
+        int pc = state.programCounter;
+        long steps = 0;
+        long jumps = 0;
+        long taken = 0;
+        int address = pc;
+        try {
+            while (pc < size) {
+                // a run resumed in the middle of a block starts from there
+                int end = blockEnd[pc];
+                if (maxSteps - steps < end - pc) {
+                    break;
+                }
+
+                int last = end - 1;
+                for (address = pc; address < last; address++) {
+                    switch (operations[address]) {
+                        case ADD -> r[first[address]] += r[second[address]];
+                        case SUB -> r[first[address]] -= r[second[address]];
+                        case MUL -> r[first[address]] *= r[second[address]];
+                        case DIV -> r[first[address]] /= r[second[address]];
+                        case MOV -> r[first[address]] = second[address];
+                        case OUT -> output.accept(r[first[address]]);
+                        default -> throw new NullPointerException("Missing instruction at address " + address);
+                    }
+                }
+
+                int next = end;
+                switch (operations[last]) {
+                    case ADD -> r[first[last]] += r[second[last]];
+                    case SUB -> r[first[last]] -= r[second[last]];
+                    case MUL -> r[first[last]] *= r[second[last]];
+                    case DIV -> r[first[last]] /= r[second[last]];
+                    case MOV -> r[first[last]] = second[last];
+                    case OUT -> output.accept(r[first[last]]);
+                    case JNZ -> {
+                        jumps++;
+                        if (r[first[last]] != 0) {
+                            taken++;
+                            next = second[last];
+                        }
+                    }
+                    case JNZ_UNRESOLVED -> {
+                        jumps++;
+                        if (r[first[last]] != 0) {
+                            throw new NullPointerException("Label '" + compiled.unresolved[last] + "' does not have an associated address");
+                        }
+                    }
+                    default -> throw new NullPointerException("Missing instruction at address " + last);
+                }
+                steps += end - pc;
+                pc = next;
+                address = pc;
+            }
+        } catch (RuntimeException e) {
+            // leave the state on the failing instruction, as the other engines do
+            steps += address - pc;
+            pc = address;
+            throw e;
+        } finally {
+            state.programCounter = pc;
+            state.steps += steps;
+            state.jumps += jumps;
+            state.jumpsTaken += taken;
+        }
+
+        if (pc < size && steps < maxSteps) {
+            compiled.run(state, maxSteps - steps);
+        }
+    }
+}
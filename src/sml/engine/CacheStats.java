@@ -0,0 +1,23 @@
+package sml.engine;
+
+/**
+ * Snapshot of the statistics of a {@link ResultCache}.
+ *
+ * @param hits      the runs answered from the cache
+ * @param misses    the runs executed because no result was cached
+ * @param evictions the results removed to stay within the bounds of the cache
+ * @param bypasses  the runs of programs excluded from the cache
+ * @param entries   the results currently cached
+ * @param bytes     the estimated memory used by the cached results
+ * @author alessioerosferri
+ */
+public record CacheStats(long hits, long misses, long evictions, long bypasses, long entries, long bytes) {
+
+    /**
+     * @return the fraction of cacheable runs answered from the cache, 0 if there were none
+     */
+    public double hitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+}
@@ -0,0 +1,247 @@
+package sml.engine;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.RegisterName;
+import sml.Registers;
+import sml.analysis.Verifier;
+import sml.instruction.*;
+
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * The compiled form of an SML program.
+ * <p>
+ * Each instruction is encoded in three parallel int arrays: the operation, the first operand (a register ordinal) and
+ * the second operand (a register ordinal, an immediate value or a resolved jump address). The program then runs in a
+ * tight loop over a primitive register array, with no virtual dispatch, no boxing and no label lookups.
+ * <p>
+ * The observable behaviour is the one of the reference interpreter ({@link sml.Machine}): a jump to a label that does
+ * not exist and a missing instruction fail with a NullPointerException when they are reached, a division by zero
+ * fails with an ArithmeticException, and in every case the program counter is left on the failing instruction.
+ * <p>
+ * A program that passed the {@link Verifier} (see {@link #verify}) cannot contain unresolved jumps or missing
+ * instructions, so it runs in an unchecked loop without those cases.
+ *
+ * @author alessioerosferri
+ */
+public final class CompiledProgram {
+    static final int ADD = 0;
+    static final int SUB = 1;
+    static final int MUL = 2;
+    static final int DIV = 3;
+    static final int MOV = 4;
+    static final int OUT = 5;
+    static final int JNZ = 6;
+    static final int JNZ_UNRESOLVED = 7;
+    static final int MISSING = 8;
+
+    final int[] operations;
+    final int[] first;
+    final int[] second;
+    // the labels that could not be resolved, indexed by the address of the jnz using them
+    final String[] unresolved;
+    // true if the program passed verification and runs unchecked
+    private boolean verified = false;
+
+    private CompiledProgram(int size) {
+        operations = new int[size];
+        first = new int[size];
+        second = new int[size];
+        unresolved = new String[size];
+    }
+
+    /**
+     * Compiles a translated program.
+     *
+     * @param program the instructions of the program
+     * @param labels  the labels of the program, jump targets are resolved once here
+     * @return the compiled program
+     * @throws IllegalArgumentException if the program contains an instruction or a register the compiler does not know
+     */
+    public static CompiledProgram compile(List<Instruction> program, Labels labels) {
+        CompiledProgram compiled = new CompiledProgram(program.size());
+        for (int address = 0; address < program.size(); address++) {
+            compiled.encode(address, program.get(address), labels);
+        }
+        return compiled;
+    }
+
+    /**
+     * Verifies and compiles a program; the compiled program runs without the run-time checks of unverified programs.
+     *
+     * @param program the instructions of the program
+     * @param labels  the labels of the program
+     * @return the compiled program
+     * @throws IllegalArgumentException if the program does not pass verification
+     */
+    public static CompiledProgram verify(List<Instruction> program, Labels labels) {
+        Verifier.verify(program, labels);
+        CompiledProgram compiled = compile(program, labels);
+        compiled.verified = true;
+        return compiled;
+    }
+
+    private void encode(int address, Instruction instruction, Labels labels) {
+        if (instruction == null) {
+            operations[address] = MISSING;
+        } else if (instruction instanceof AddInstruction add) {
+            encode(address, ADD, add.getResult(), registerIndex(add.getSource()));
+        } else if (instruction instanceof SubInstruction sub) {
+            encode(address, SUB, sub.getResult(), registerIndex(sub.getSource()));
+        } else if (instruction instanceof MulInstruction mul) {
+            encode(address, MUL, mul.getResult(), registerIndex(mul.getSource()));
+        } else if (instruction instanceof DivInstruction div) {
+            encode(address, DIV, div.getResult(), registerIndex(div.getSource()));
+        } else if (instruction instanceof MovInstruction mov) {
+            if (mov.getSource() == null) {
+                throw new IllegalArgumentException("Missing value in '" + mov + "'");
+            }
+            encode(address, MOV, mov.getResult(), mov.getSource());
+        } else if (instruction instanceof OutInstruction out) {
+            encode(address, OUT, out.getSource(), 0);
+        } else if (instruction instanceof JnzInstruction jnz) {
+            try {
+                encode(address, JNZ, jnz.getSource(), labels.getAddress(jnz.getNextInstructionLabel()));
+            } catch (NullPointerException e) {
+                // the reference interpreter only fails if the jump is actually taken
+                encode(address, JNZ_UNRESOLVED, jnz.getSource(), 0);
+                unresolved[address] = jnz.getNextInstructionLabel();
+            }
+        } else {
+            throw new IllegalArgumentException("Instruction '" + instruction + "' cannot be compiled");
+        }
+    }
+
+    private void encode(int address, int operation, RegisterName register, int operand) {
+        operations[address] = operation;
+        first[address] = registerIndex(register);
+        second[address] = operand;
+    }
+
+    private static int registerIndex(RegisterName register) {
+        if (register instanceof Registers.Register known) {
+            return known.ordinal();
+        }
+        throw new IllegalArgumentException("Register " + register + " cannot be compiled");
+    }
+
+    /**
+     * @return the number of instructions of the program
+     */
+    public int size() {
+        return operations.length;
+    }
+
+    /**
+     * @return true if the program passed verification and runs unchecked
+     */
+    public boolean isVerified() {
+        return verified;
+    }
+
+    /**
+     * Continues the run described by the state, executing at most maxSteps instructions or until the program counter
+     * moves past the last instruction. The state is updated even if an instruction fails.
+     *
+     * @param state    the state of the run
+     * @param maxSteps the maximum number of instructions to execute
+     */
+    public void run(ExecutionState state, long maxSteps) {
+        if (verified) {
+            runUnchecked(state, maxSteps);
+            return;
+        }
+        final int[] operations = this.operations;
+        final int[] first = this.first;
+        final int[] second = this.second;
+        final int[] r = state.registers;
+        final IntConsumer output = state.output;
+        final int size = operations.length;
+
+        int pc = state.programCounter;
+        long steps = 0;
+        long jumps = 0;
+        long taken = 0;
+        try {
+            while (steps < maxSteps && pc < size) {
+                switch (operations[pc]) {
+                    case ADD -> r[first[pc]] += r[second[pc]];
+                    case SUB -> r[first[pc]] -= r[second[pc]];
+                    case MUL -> r[first[pc]] *= r[second[pc]];
+                    case DIV -> r[first[pc]] /= r[second[pc]];
+                    case MOV -> r[first[pc]] = second[pc];
+                    case OUT -> output.accept(r[first[pc]]);
+                    case JNZ -> {
+                        jumps++;
+                        if (r[first[pc]] != 0) {
+                            taken++;
+                            pc = second[pc];
+                            steps++;
+                            continue;
+                        }
+                    }
+                    case JNZ_UNRESOLVED -> {
+                        jumps++;
+                        if (r[first[pc]] != 0) {
+                            throw new NullPointerException("Label '" + unresolved[pc] + "' does not have an associated address");
+                        }
+                    }
+                    default -> throw new NullPointerException("Missing instruction at address " + pc);
+                }
+                pc++;
+                steps++;
+            }
+        } finally {
+            state.programCounter = pc;
+            state.steps += steps;
+            state.jumps += jumps;
+            state.jumpsTaken += taken;
+        }
+    }
+
+    // Verification guarantees that every operation is one of ADD to JNZ and that every jump target is in [0, size],
+    // so JNZ is the default case and there are no unresolved or missing instruction cases.
+    private void runUnchecked(ExecutionState state, long maxSteps) {
+        final int[] operations = this.operations;
+        final int[] first = this.first;
+        final int[] second = this.second;
+        final int[] r = state.registers;
+        final IntConsumer output = state.output;
+        final int size = operations.length;
+
+        int pc = state.programCounter;
+        long steps = 0;
+        long jumps = 0;
+        long taken = 0;
+        try {
+            while (steps < maxSteps && pc < size) {
+                switch (operations[pc]) {
+                    case ADD -> r[first[pc]] += r[second[pc]];
+                    case SUB -> r[first[pc]] -= r[second[pc]];
+                    case MUL -> r[first[pc]] *= r[second[pc]];
+                    case DIV -> r[first[pc]] /= r[second[pc]];
+                    case MOV -> r[first[pc]] = second[pc];
+                    case OUT -> output.accept(r[first[pc]]);
+                    default -> {
+                        jumps++;
+                        if (r[first[pc]] != 0) {
+                            taken++;
+                            pc = second[pc];
+                            steps++;
+                            continue;
+                        }
+                    }
+                }
+                pc++;
+                steps++;
+            }
+        } finally {
+            state.programCounter = pc;
+            state.steps += steps;
+            state.jumps += jumps;
+            state.jumpsTaken += taken;
+        }
+    }
+}
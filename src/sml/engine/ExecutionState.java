@@ -0,0 +1,87 @@
+package sml.engine;
+
+import java.util.Objects;
+import java.util.function.IntConsumer;
+
+/**
+ * The state of a run executed outside of a {@link sml.Machine}: the register values (indexed by the ordinal of the
+ * register), the program counter, the number of instructions executed so far and the destination of the values
+ * written by out instructions.
+ * <p>
+ * Engines update the state in place, so a run can be suspended and continued by another engine, or copied back into a
+ * machine.
+ *
+ * @author alessioerosferri
+ */
+public final class ExecutionState {
+    final int[] registers;
+    final IntConsumer output;
+    int programCounter;
+    long steps;
+    long jumps;
+    long jumpsTaken;
+
+    /**
+     * Constructor: a state positioned at the given instruction.
+     *
+     * @param registers      the register values, used (and modified) in place
+     * @param programCounter the index of the next instruction to execute
+     * @param output         the consumer receiving the values written by the program
+     */
+    public ExecutionState(int[] registers, int programCounter, IntConsumer output) {
+        this.registers = Objects.requireNonNull(registers);
+        this.programCounter = programCounter;
+        this.output = Objects.requireNonNull(output);
+    }
+
+    /**
+     * @return the register values, indexed by the ordinal of the register
+     */
+    public int[] getRegisters() {
+        return registers;
+    }
+
+    /**
+     * @return the index of the next instruction to execute
+     */
+    public int getProgramCounter() {
+        return programCounter;
+    }
+
+    /**
+     * @return the instructions executed so far on this state
+     */
+    public long getSteps() {
+        return steps;
+    }
+
+    /**
+     * @return the jnz instructions executed so far on this state
+     */
+    public long getJumps() {
+        return jumps;
+    }
+
+    /**
+     * @return the jnz instructions executed so far on this state that jumped
+     */
+    public long getJumpsTaken() {
+        return jumpsTaken;
+    }
+
+    /**
+     * @return the consumer receiving the values written by the program
+     */
+    public IntConsumer getOutput() {
+        return output;
+    }
+
+    /**
+     * Moves the run to another instruction, so that the state can be reused for the next run or slice of a run.
+     *
+     * @param programCounter the index of the next instruction to execute
+     */
+    public void setProgramCounter(int programCounter) {
+        this.programCounter = programCounter;
+    }
+}
@@ -0,0 +1,57 @@
+package sml.engine;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Collects the values written by a program into a growable primitive array, optionally forwarding them to another
+ * consumer as they arrive.
+ *
+ * @author alessioerosferri
+ */
+public final class OutputRecorder implements IntConsumer {
+    private final IntConsumer forward;
+    private int[] values = new int[8];
+    private int size = 0;
+
+    /**
+     * Constructor: a recorder that only keeps the values.
+     */
+    public OutputRecorder() {
+        this(null);
+    }
+
+    /**
+     * Constructor: a recorder that also forwards each value.
+     *
+     * @param forward the consumer the values are forwarded to (can be null)
+     */
+    public OutputRecorder(IntConsumer forward) {
+        this.forward = forward;
+    }
+
+    @Override
+    public void accept(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+        if (forward != null) {
+            forward.accept(value);
+        }
+    }
+
+    /**
+     * @return the number of values recorded
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return a copy of the values recorded, in order
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+}
@@ -0,0 +1,53 @@
+package sml.engine;
+
+import sml.Instruction;
+import sml.Labels;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Computes a stable fingerprint of a translated program: the SHA-256 digest of its instructions and label table.
+ * Two programs with the same fingerprint behave identically for the same initial registers.
+ *
+ * @author alessioerosferri
+ */
+public final class ProgramFingerprint {
+
+    private ProgramFingerprint() {
+    }
+
+    /**
+     * @param program the instructions of the program
+     * @param labels  the labels of the program
+     * @return the hexadecimal SHA-256 digest of the program
+     */
+    public static String of(List<Instruction> program, Labels labels) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+
+        for (Instruction instruction : program) {
+            digest.update(String.valueOf(instruction).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+        }
+
+        // the iteration order of the labels is not specified, sort them to get a stable digest
+        Map<String, Integer> sorted = new TreeMap<>();
+        labels.forEach(sorted::put);
+        sorted.forEach((label, address) -> {
+            digest.update(label.getBytes(StandardCharsets.UTF_8));
+            digest.update((" -> " + address + "\n").getBytes(StandardCharsets.UTF_8));
+        });
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
@@ -0,0 +1,224 @@
+package sml.engine;
+
+import sml.Machine;
+import sml.Registers;
+import sml.metrics.EngineMetrics;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.IntConsumer;
+
+/**
+ * Memoizes the results of SML runs.
+ * <p>
+ * A run only depends on the program and on the registers it starts from: the machine always starts at instruction 0
+ * and out is the only instruction with a side effect. The cache is therefore keyed by the {@link ProgramFingerprint}
+ * of the program and the initial register vector, and stores the final registers together with the values written
+ * by the program. On a hit the machine is put in its final state and the recorded values are replayed to its output
+ * without executing a single instruction.
+ * <p>
+ * The fingerprint hashes the whole program, so it is the caller's to compute once per program and pass to
+ * {@link #execute(String, Machine, int[])}, for example {@link sml.Program#getFingerprint()}, which is kept with the
+ * program; the overloads taking only a machine hash its program at every call, hits included.
+ * <p>
+ * The cache is bounded both in number of entries and in (estimated) bytes, the least recently used entries are
+ * evicted first. Programs that must always run, for example because they are used to measure the machine itself,
+ * can be excluded with {@link #alwaysRun(String)}.
+ *
+ * @author alessioerosferri
+ */
+public final class ResultCache {
+    // rough size of an entry without its arrays: key, result, map node and array headers
+    private static final long ENTRY_OVERHEAD_BYTES = 160;
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final Map<Key, RunResult> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<String> alwaysRun = new HashSet<>();
+
+    private long bytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long bypasses = 0;
+
+    /**
+     * Constructor: creates an empty cache with the given bounds.
+     *
+     * @param maxEntries the maximum number of results kept
+     * @param maxBytes   the maximum estimated memory used by the results kept
+     */
+    public ResultCache(int maxEntries, long maxBytes) {
+        if (maxEntries < 1 || maxBytes < 1) {
+            throw new IllegalArgumentException("Cache bounds must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Executes the program of the machine from cleared registers, see {@link Machine#execute()}. Hashes the program of
+     * the machine at every call.
+     *
+     * @param machine the machine holding the program
+     * @return the result of the run
+     */
+    public RunResult execute(Machine machine) {
+        return execute(machine, new int[Registers.Register.values().length]);
+    }
+
+    /**
+     * Executes the program of the machine starting from the given registers, or replays the result of an earlier run.
+     * Hashes the program of the machine at every call, see {@link #execute(String, Machine, int[])} to avoid it.
+     *
+     * @param machine          the machine holding the program
+     * @param initialRegisters the initial value of each register, indexed by the ordinal of the register
+     * @return the result of the run
+     */
+    public RunResult execute(Machine machine, int[] initialRegisters) {
+        return execute(ProgramFingerprint.of(machine.getProgram(), machine.getLabels()), machine, initialRegisters);
+    }
+
+    /**
+     * Executes the program of the machine starting from the given registers, or replays the result of an earlier run,
+     * for a fingerprint the caller computed once for the program: a hit costs a lookup, not a pass over the program.
+     *
+     * @param fingerprint      the fingerprint of the program of the machine
+     * @param machine          the machine holding the program
+     * @param initialRegisters the initial value of each register, indexed by the ordinal of the register
+     * @return the result of the run
+     */
+    public RunResult execute(String fingerprint, Machine machine, int[] initialRegisters) {
+        Objects.requireNonNull(fingerprint);
+        Key key = new Key(fingerprint, initialRegisters.clone());
+
+        RunResult cached;
+        synchronized (this) {
+            if (alwaysRun.contains(fingerprint)) {
+                bypasses++;
+                cached = null;
+            } else {
+                cached = entries.get(key);
+                if (cached != null) hits++;
+                else misses++;
+            }
+        }
+
+        if (cached != null) {
+            EngineMetrics.global().resultCacheHit();
+            replay(machine, cached);
+            return copy(cached);
+        }
+
+        EngineMetrics.global().resultCacheMiss();
+        RunResult result = run(machine, initialRegisters);
+        if (!isExcluded(fingerprint)) {
+            store(key, copy(result));
+        }
+        return result;
+    }
+
+    // the entries never share their arrays with the callers, who may write into them
+    private static RunResult copy(RunResult result) {
+        return new RunResult(result.registers().clone(), result.outputs().clone(), result.steps());
+    }
+
+    /**
+     * Excludes a program from the cache: it is executed every time and its results are never stored.
+     *
+     * @param fingerprint the fingerprint of the program
+     */
+    public synchronized void alwaysRun(String fingerprint) {
+        alwaysRun.add(Objects.requireNonNull(fingerprint));
+        entries.entrySet().removeIf(entry -> {
+            if (!entry.getKey().fingerprint.equals(fingerprint)) return false;
+            bytes -= sizeOf(entry.getKey(), entry.getValue());
+            return true;
+        });
+    }
+
+    /**
+     * Removes all the cached results, the statistics are kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    /**
+     * @return a snapshot of the statistics of the cache
+     */
+    public synchronized CacheStats getStats() {
+        return new CacheStats(hits, misses, evictions, bypasses, entries.size(), bytes);
+    }
+
+    private synchronized boolean isExcluded(String fingerprint) {
+        return alwaysRun.contains(fingerprint);
+    }
+
+    private synchronized void store(Key key, RunResult result) {
+        long size = sizeOf(key, result);
+        if (size > maxBytes) return;
+
+        RunResult previous = entries.put(key, result);
+        if (previous != null) bytes -= sizeOf(key, previous);
+        bytes += size;
+
+        var iterator = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || bytes > maxBytes) && iterator.hasNext()) {
+            Map.Entry<Key, RunResult> eldest = iterator.next();
+            bytes -= sizeOf(eldest.getKey(), eldest.getValue());
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    private static RunResult run(Machine machine, int[] initialRegisters) {
+        IntConsumer output = machine.getOutput();
+        OutputRecorder recorder = new OutputRecorder(output);
+        machine.reset();
+        machine.getRegisters().load(initialRegisters);
+        machine.setOutput(recorder);
+        try {
+            long steps = machine.resume(Long.MAX_VALUE);
+            return new RunResult(machine.getRegisters().toArray(), recorder.toArray(), steps);
+        } finally {
+            machine.setOutput(output);
+        }
+    }
+
+    private static void replay(Machine machine, RunResult result) {
+        machine.reset();
+        machine.getRegisters().load(result.registers());
+        machine.halt();
+        IntConsumer output = machine.getOutput();
+        for (int value : result.outputs())
+            output.accept(value);
+    }
+
+    private static long sizeOf(Key key, RunResult result) {
+        return ENTRY_OVERHEAD_BYTES
+                + 2L * key.fingerprint.length()
+                + 4L * key.registers.length
+                + 4L * result.registers().length
+                + 4L * result.outputs().length;
+    }
+
+    private record Key(String fingerprint, int[] registers) {
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key that)) return false;
+            return fingerprint.equals(that.fingerprint) && Arrays.equals(registers, that.registers);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * fingerprint.hashCode() + Arrays.hashCode(registers);
+        }
+    }
+}
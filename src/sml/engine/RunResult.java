@@ -0,0 +1,48 @@
+package sml.engine;
+
+import java.util.Arrays;
+
+/**
+ * The observable outcome of a completed SML run: the final value of every register (indexed by the ordinal of the
+ * register), the values written by out instructions in order, and the number of instructions executed.
+ *
+ * @param registers the final register values
+ * @param outputs   the values written by the program
+ * @param steps     the instructions executed
+ * @author alessioerosferri
+ */
+public record RunResult(int[] registers, int[] outputs, long steps) {
+
+    /**
+     * Indicates whether some other object is "equal to" this one, comparing the content of the arrays.
+     *
+     * @param o the object to compare
+     * @return true if this object is the same as the o argument; false otherwise
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RunResult that)) return false;
+        return steps == that.steps
+                && Arrays.equals(registers, that.registers)
+                && Arrays.equals(outputs, that.outputs);
+    }
+
+    /**
+     * @return a hash code value computed from the content of the arrays
+     */
+    @Override
+    public int hashCode() {
+        return 31 * (31 * Arrays.hashCode(registers) + Arrays.hashCode(outputs)) + Long.hashCode(steps);
+    }
+
+    /**
+     * @return a string representation in the form "[registers = [...], outputs = [...], steps = n]"
+     */
+    @Override
+    public String toString() {
+        return "[registers = " + Arrays.toString(registers)
+                + ", outputs = " + Arrays.toString(outputs)
+                + ", steps = " + steps + "]";
+    }
+}
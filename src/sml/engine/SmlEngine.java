@@ -0,0 +1,130 @@
+package sml.engine;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.Machine;
+import sml.Program;
+import sml.Registers;
+import sml.Translator;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Entry point for applications embedding SML: programs are compiled from memory and run with preset registers, and
+ * the results come back as primitive arrays.
+ * <pre>
+ * SmlEngine engine = new SmlEngine();
+ * Program square = engine.compile("mul EAX EAX\nout EAX");
+ * RunResult result = engine.run(square, 7, 0, 0, 0, 0, 0, 0, 0);
+ * result.outputs();   // [49]
+ * result.registers(); // [49, 0, 0, 0, 0, 0, 0, 0]
+ * </pre>
+ * An engine and the programs it compiles can be shared between threads; every run uses its own {@link Machine}.
+ *
+ * @author alessioerosferri
+ */
+public final class SmlEngine {
+    private final long maxSteps;
+
+    /**
+     * Constructor: an engine running programs until they complete.
+     */
+    public SmlEngine() {
+        this(Long.MAX_VALUE);
+    }
+
+    /**
+     * Constructor: an engine stopping programs that execute too many instructions.
+     *
+     * @param maxSteps the maximum number of instructions a run may execute
+     */
+    public SmlEngine(long maxSteps) {
+        if (maxSteps < 1) {
+            throw new IllegalArgumentException("Step limit must be positive");
+        }
+        this.maxSteps = maxSteps;
+    }
+
+    /**
+     * @param source the source code of the program
+     * @return the translated program
+     */
+    public Program compile(String source) {
+        return compile((CharSequence) source);
+    }
+
+    /**
+     * @param source the source code of the program, read without copying it
+     * @return the translated program
+     */
+    public Program compile(CharSequence source) {
+        try {
+            return translate(CharBuffer.wrap(source));
+        } catch (IOException e) {
+            // a CharBuffer never fails to read
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param source the source code of the program, encoded in UTF-8; the position of the buffer is not changed
+     * @return the translated program
+     */
+    public Program compile(ByteBuffer source) {
+        return compile(StandardCharsets.UTF_8.decode(source.duplicate()));
+    }
+
+    /**
+     * @param source the source code of the program, read until its end (not closed)
+     * @return the translated program
+     * @throws IOException if the source cannot be read
+     */
+    public Program compile(Reader source) throws IOException {
+        return translate(source);
+    }
+
+    private Program translate(Readable source) throws IOException {
+        Labels labels = new Labels();
+        List<Instruction> instructions = new ArrayList<>();
+        new Translator().readAndTranslate(source, labels, instructions);
+        return new Program(instructions, labels);
+    }
+
+    /**
+     * Runs a program to completion.
+     *
+     * @param program          the program
+     * @param initialRegisters the initial value of every register, indexed by ordinal; no values means all zero
+     * @return the final registers, the values written by the program and the number of instructions executed
+     * @throws IllegalArgumentException if initial values are given but not one per register
+     * @throws IllegalStateException    if the program executes more instructions than the limit of the engine
+     */
+    public RunResult run(Program program, int... initialRegisters) {
+        Machine machine = program.newMachine();
+        OutputRecorder recorder = new OutputRecorder();
+        machine.setOutput(recorder);
+        machine.reset();
+        if (initialRegisters.length > 0) {
+            machine.getRegisters().load(initialRegisters);
+        }
+        long steps = machine.resume(maxSteps);
+        if (!machine.isHalted()) {
+            throw new IllegalStateException("Step limit of " + maxSteps + " exceeded");
+        }
+        return new RunResult(machine.getRegisters().toArray(), recorder.toArray(), steps);
+    }
+
+    /**
+     * @return the number of registers of the machine, the length of the arrays of register values
+     */
+    public static int registerCount() {
+        return Registers.Register.values().length;
+    }
+}
@@ -33,6 +33,20 @@ public class AddInstruction extends Instruction {
         this.source = source;
     }
 
+    /**
+     * @return the register where the result is stored
+     */
+    public RegisterName getResult() {
+        return result;
+    }
+
+    /**
+     * @return the register holding the second operand
+     */
+    public RegisterName getSource() {
+        return source;
+    }
+
     /**
      * Executes the add instruction on the given machine by adding two values from registers and storing the result
      * in the result register. Returns program counter value which indicates to execute the next instruction
@@ -48,6 +62,15 @@ public class AddInstruction extends Instruction {
         return NORMAL_PROGRAM_COUNTER_UPDATE;
     }
 
+    /**
+     * @param label the label of the copy (can be null)
+     * @return a new add instruction with the same operands and the given label
+     */
+    @Override
+    public AddInstruction withLabel(String label) {
+        return new AddInstruction(label, result, source);
+    }
+
     /**
      * @return a string representation of the add instruction
      */
@@ -33,6 +33,20 @@ public class DivInstruction extends Instruction {
         this.source = source;
     }
 
+    /**
+     * @return the register where the result is stored
+     */
+    public RegisterName getResult() {
+        return result;
+    }
+
+    /**
+     * @return the register holding the second operand
+     */
+    public RegisterName getSource() {
+        return source;
+    }
+
     /**
      * Executes the div instruction on the given machine by dividing two values from registers and storing the result
      * in the result register. Returns program counter value which indicates to execute the next instruction
@@ -48,6 +62,15 @@ public class DivInstruction extends Instruction {
         return NORMAL_PROGRAM_COUNTER_UPDATE;
     }
 
+    /**
+     * @param label the label of the copy (can be null)
+     * @return a new div instruction with the same operands and the given label
+     */
+    @Override
+    public DivInstruction withLabel(String label) {
+        return new DivInstruction(label, result, source);
+    }
+
     /**
      * @return a string representation of the div instruction
      */
@@ -37,6 +37,20 @@ public class JnzInstruction extends Instruction {
         this.source = source;
     }
 
+    /**
+     * @return the register checked against 0
+     */
+    public RegisterName getSource() {
+        return source;
+    }
+
+    /**
+     * @return the label of the instruction to jump to if the content of source is not 0
+     */
+    public String getNextInstructionLabel() {
+        return nextInstructionLabel;
+    }
+
     /**
      * Executes the jnz instruction on the given machine by evaluating content of the source register and if different from 0 it will
      * return the program counter for the instruction with the label passed as nextInstructionLabel, otherwise it will return normal program counter update.
@@ -48,6 +62,7 @@ public class JnzInstruction extends Instruction {
     @Override
     public int execute(Machine m) {
         int value = m.getRegisters().get(source);
+        m.jumped(value != 0);
         if (value != 0) {
             int address = m.getLabels().getAddress(this.nextInstructionLabel);
             return address;
@@ -55,6 +70,15 @@ public class JnzInstruction extends Instruction {
         return NORMAL_PROGRAM_COUNTER_UPDATE;
     }
 
+    /**
+     * @param label the label of the copy (can be null)
+     * @return a new jnz instruction with the same operands and the given label
+     */
+    @Override
+    public JnzInstruction withLabel(String label) {
+        return new JnzInstruction(label, source, nextInstructionLabel);
+    }
+
     /**
      * @return a string representation of the jnz instruction
      */
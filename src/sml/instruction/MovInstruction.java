@@ -33,6 +33,20 @@ public class MovInstruction extends Instruction {
         this.source = source;
     }
 
+    /**
+     * @return the register where the value is stored
+     */
+    public RegisterName getResult() {
+        return result;
+    }
+
+    /**
+     * @return the value to be stored
+     */
+    public Integer getSource() {
+        return source;
+    }
+
     /**
      * Executes the mov instruction on the given machine by storing the given integer to the register.
      * Returns program counter value which indicates to execute the next instruction
@@ -46,6 +60,15 @@ public class MovInstruction extends Instruction {
         return NORMAL_PROGRAM_COUNTER_UPDATE;
     }
 
+    /**
+     * @param label the label of the copy (can be null)
+     * @return a new mov instruction with the same operands and the given label
+     */
+    @Override
+    public MovInstruction withLabel(String label) {
+        return new MovInstruction(label, result, source);
+    }
+
     /**
      * @return a string representation of the mov instruction
      */
@@ -72,6 +95,6 @@ public class MovInstruction extends Instruction {
      */
     @Override
     public int hashCode() {
-        return Objects.hash(source, getLabel());
+        return Objects.hash(result, source, getLabel());
     }
 }
\ No newline at end of file
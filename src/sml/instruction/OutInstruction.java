@@ -31,7 +31,15 @@ public class OutInstruction extends Instruction {
     }
 
     /**
-     * Executes the out instruction on the given machine by writing to console the value from the source register.
+     * @return the register containing the value to be written
+     */
+    public RegisterName getSource() {
+        return source;
+    }
+
+    /**
+     * Executes the out instruction on the given machine by writing the value from the source register to the output of
+     * the machine (the console unless it has been redirected).
      * Returns program counter value which indicates to execute the next instruction
      *
      * @param m the machine on which the instruction will be executed
@@ -40,10 +48,19 @@ public class OutInstruction extends Instruction {
     @Override
     public int execute(Machine m) {
         int value = m.getRegisters().get(source);
-        System.out.println(value);
+        m.output(value);
         return NORMAL_PROGRAM_COUNTER_UPDATE;
     }
 
+    /**
+     * @param label the label of the copy (can be null)
+     * @return a new out instruction with the same operands and the given label
+     */
+    @Override
+    public OutInstruction withLabel(String label) {
+        return new OutInstruction(label, source);
+    }
+
     /**
      * @return a string representation of the out instruction
      */
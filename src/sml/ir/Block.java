@@ -0,0 +1,142 @@
+package sml.ir;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A basic block of the SSA form: phis, then the nodes of the instructions of the block in program order, possibly
+ * ending with a jnz.
+ * <p>
+ * A block has up to two successors: the taken successor of its jnz and the next block, reached by falling through.
+ * Its predecessors are listed once per edge, in the order of the operands of its phis.
+ *
+ * @author alessioerosferri
+ */
+public final class Block {
+    private final int index;
+    private final int start;
+    private final List<Node> phis = new ArrayList<>();
+    private final List<Node> nodes = new ArrayList<>();
+    private final List<Block> predecessors = new ArrayList<>();
+    private Block taken;
+    private Block next;
+
+    Block(int index, int start) {
+        this.index = index;
+        this.start = start;
+    }
+
+    /**
+     * @return the number of the block, unique in its program
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return the address of the first instruction of the block in the source program, -1 for the entry block and the
+     * size of the program for the exit block
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * @return the phis of the block, at most one per register
+     */
+    public List<Node> getPhis() {
+        return Collections.unmodifiableList(phis);
+    }
+
+    /**
+     * @return the other nodes of the block, in program order
+     */
+    public List<Node> getNodes() {
+        return Collections.unmodifiableList(nodes);
+    }
+
+    /**
+     * @return the blocks with an edge to this block, once per edge
+     */
+    public List<Block> getPredecessors() {
+        return Collections.unmodifiableList(predecessors);
+    }
+
+    /**
+     * @return the block the jnz ending this block jumps to, null if there is none
+     */
+    public Block getTaken() {
+        return taken;
+    }
+
+    /**
+     * @return the block reached by falling through, null if this block never falls through
+     */
+    public Block getNext() {
+        return next;
+    }
+
+    /**
+     * @return the taken successor (if any), then the next block (if any)
+     */
+    public List<Block> getSuccessors() {
+        List<Block> successors = new ArrayList<>(2);
+        if (taken != null) successors.add(taken);
+        if (next != null) successors.add(next);
+        return successors;
+    }
+
+    /**
+     * @return the jnz ending the block, null if it falls through
+     */
+    public Node getTerminator() {
+        if (nodes.isEmpty()) return null;
+        Node last = nodes.get(nodes.size() - 1);
+        return last.getOpcode() == Opcode.JNZ ? last : null;
+    }
+
+    List<Node> phis() {
+        return phis;
+    }
+
+    List<Node> nodes() {
+        return nodes;
+    }
+
+    List<Block> predecessors() {
+        return predecessors;
+    }
+
+    void setTaken(Block taken) {
+        this.taken = taken;
+    }
+
+    void setNext(Block next) {
+        this.next = next;
+    }
+
+    /**
+     * @return the name of the block, "b" followed by the index
+     */
+    public String name() {
+        return "b" + index;
+    }
+
+    /**
+     * @return the block header in a readable form, for instance "b2 &lt;- b1 b3 -&gt; b4 b3"
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(name());
+        if (!predecessors.isEmpty()) {
+            text.append(" <-");
+            for (Block predecessor : predecessors) text.append(' ').append(predecessor.name());
+        }
+        if (taken != null || next != null) {
+            text.append(" ->");
+            for (Block successor : getSuccessors()) text.append(' ').append(successor.name());
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,206 @@
+package sml.ir;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sparse conditional constant propagation over the SSA form: finds the values that are the same constant on every
+ * run, considering only the edges a run can take, and
+ * <ul>
+ *     <li>turns add, sub, mul and div with a constant value into a constant (mov), in the same register;</li>
+ *     <li>removes add and sub of a constant 0 and mul and div by a constant 1, their value is their first operand,
+ *     already in their register;</li>
+ *     <li>removes a jnz whose operand is always 0 and drops the fall through edge of a jnz that always jumps;</li>
+ *     <li>removes the blocks no run reaches.</li>
+ * </ul>
+ * A div by a constant 0 is left alone: it stops the program with a division by zero.
+ *
+ * @author alessioerosferri
+ */
+public final class ConstantFolding {
+    private static final byte UNDEFINED = 0;
+    private static final byte CONSTANT = 1;
+    private static final byte VARYING = 2;
+
+    private final IrProgram ir;
+    private final byte[] kind;
+    private final int[] value;
+    private final boolean[] executable;
+    private final boolean[] takenExecutable;
+    private final boolean[] nextExecutable;
+    private boolean changed;
+
+    private ConstantFolding(IrProgram ir) {
+        this.ir = ir;
+        this.kind = new byte[ir.nodeCount()];
+        this.value = new int[ir.nodeCount()];
+        this.executable = new boolean[ir.blockCount()];
+        this.takenExecutable = new boolean[ir.blockCount()];
+        this.nextExecutable = new boolean[ir.blockCount()];
+    }
+
+    /**
+     * Folds the constants of a program, in place.
+     *
+     * @param ir the program
+     * @return the number of nodes folded or removed, jumps folded and blocks removed
+     */
+    public static int run(IrProgram ir) {
+        ConstantFolding folding = new ConstantFolding(ir);
+        folding.propagate();
+        return folding.rewrite();
+    }
+
+    private void propagate() {
+        List<Block> order = ir.reversePostorder();
+        executable[ir.getEntry().getIndex()] = true;
+        do {
+            changed = false;
+            for (Block block : order) {
+                if (!executable[block.getIndex()]) continue;
+                for (Node phi : block.getPhis()) evaluatePhi(block, phi);
+                for (Node node : block.getNodes()) evaluate(node);
+
+                Node jnz = block.getTerminator();
+                boolean taken = false;
+                boolean next = true;
+                if (jnz != null) {
+                    int condition = jnz.getOperand(0).getId();
+                    taken = kind[condition] == VARYING || kind[condition] == CONSTANT && value[condition] != 0;
+                    next = kind[condition] == VARYING || kind[condition] == CONSTANT && value[condition] == 0;
+                }
+                if (taken && !takenExecutable[block.getIndex()]) {
+                    takenExecutable[block.getIndex()] = true;
+                    executable[block.getTaken().getIndex()] = true;
+                    changed = true;
+                }
+                if (next && block.getNext() != null && !nextExecutable[block.getIndex()]) {
+                    nextExecutable[block.getIndex()] = true;
+                    executable[block.getNext().getIndex()] = true;
+                    changed = true;
+                }
+            }
+        } while (changed);
+    }
+
+    private boolean isExecutable(Block from, Block to) {
+        return from.getTaken() == to && takenExecutable[from.getIndex()]
+                || from.getNext() == to && nextExecutable[from.getIndex()];
+    }
+
+    private void evaluatePhi(Block block, Node phi) {
+        byte k = UNDEFINED;
+        int v = 0;
+        for (int i = 0; i < phi.getOperands().size(); i++) {
+            if (!isExecutable(block.getPredecessors().get(i), block)) continue;
+            int operand = phi.getOperand(i).getId();
+            if (kind[operand] == UNDEFINED) continue;
+            if (kind[operand] == VARYING || k == CONSTANT && value[operand] != v) {
+                k = VARYING;
+                break;
+            }
+            k = CONSTANT;
+            v = value[operand];
+        }
+        update(phi, k, v);
+    }
+
+    private void evaluate(Node node) {
+        switch (node.getOpcode()) {
+            case PARAM -> update(node, VARYING, 0);
+            case CONST -> update(node, CONSTANT, node.getConstant());
+            case ADD, SUB, MUL, DIV -> {
+                int a = node.getOperand(0).getId();
+                int b = node.getOperand(1).getId();
+                if (node.getOpcode() == Opcode.MUL && (isConstant(a, 0) || isConstant(b, 0))) {
+                    update(node, CONSTANT, 0);
+                } else if (node.getOpcode() == Opcode.DIV && isConstant(b, 0)) {
+                    update(node, VARYING, 0);
+                } else if (kind[a] == VARYING || kind[b] == VARYING) {
+                    update(node, VARYING, 0);
+                } else if (kind[a] == CONSTANT && kind[b] == CONSTANT) {
+                    update(node, CONSTANT, fold(node.getOpcode(), value[a], value[b]));
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    private static int fold(Opcode opcode, int a, int b) {
+        return switch (opcode) {
+            case ADD -> a + b;
+            case SUB -> a - b;
+            case MUL -> a * b;
+            default -> a / b;
+        };
+    }
+
+    private boolean isConstant(int node, int constant) {
+        return kind[node] == CONSTANT && value[node] == constant;
+    }
+
+    private void update(Node node, byte k, int v) {
+        int id = node.getId();
+        if (kind[id] != k || value[id] != v) {
+            kind[id] = k;
+            value[id] = v;
+            changed = true;
+        }
+    }
+
+    private int rewrite() {
+        int changes = 0;
+        for (Block block : new ArrayList<>(ir.getBlocks())) {
+            if (!executable[block.getIndex()]) continue;
+            for (Node node : new ArrayList<>(block.getNodes())) {
+                if (!node.getOpcode().isArithmetic()) continue;
+                int id = node.getId();
+                Node source = node.getOperand(1);
+                if (kind[id] == CONSTANT) {
+                    node.becomeConstant(value[id]);
+                    changes++;
+                } else if (isIdentity(node.getOpcode(), source)) {
+                    node.replaceAllUsesWith(node.getOperand(0));
+                    ir.removeNode(node);
+                    changes++;
+                }
+            }
+
+            Node jnz = block.getTerminator();
+            if (jnz != null && kind[jnz.getOperand(0).getId()] == CONSTANT) {
+                if (value[jnz.getOperand(0).getId()] == 0) {
+                    ir.removeEdge(block, true);
+                    ir.removeNode(jnz);
+                    changes++;
+                } else if (block.getNext() != null) {
+                    ir.removeEdge(block, false);
+                    changes++;
+                }
+            }
+        }
+        // the edges of every unreachable block go first, one may lead to another unreachable block
+        List<Block> unreachable = new ArrayList<>();
+        for (Block block : ir.getBlocks()) {
+            if (!executable[block.getIndex()] && block != ir.getExit()) unreachable.add(block);
+        }
+        for (Block block : unreachable) {
+            if (block.getTaken() != null) ir.removeEdge(block, true);
+            if (block.getNext() != null) ir.removeEdge(block, false);
+        }
+        for (Block block : unreachable) {
+            ir.removeBlock(block);
+            changes++;
+        }
+        ir.removeTrivialPhis();
+        return changes;
+    }
+
+    private boolean isIdentity(Opcode opcode, Node source) {
+        return switch (opcode) {
+            case ADD, SUB -> isConstant(source.getId(), 0);
+            case MUL, DIV -> isConstant(source.getId(), 1);
+            default -> false;
+        };
+    }
+}
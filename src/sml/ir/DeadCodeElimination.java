@@ -0,0 +1,65 @@
+package sml.ir;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Removes the nodes whose value nobody needs, following the def-use chains back from what a run can observe: the
+ * values written by out, the operands of jnz, the final values of the registers (the phis of the exit block), and
+ * every div, which may stop the program with a division by zero. Params are never removed.
+ *
+ * @author alessioerosferri
+ */
+public final class DeadCodeElimination {
+
+    private DeadCodeElimination() {
+    }
+
+    /**
+     * Removes the dead nodes of a program, in place.
+     *
+     * @param ir the program
+     * @return the number of instructions removed (phis are not instructions)
+     */
+    public static int run(IrProgram ir) {
+        Set<Node> live = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Node> worklist = new ArrayDeque<>();
+        for (Block block : ir.getBlocks()) {
+            for (Node node : block.getNodes()) {
+                Opcode opcode = node.getOpcode();
+                if (opcode == Opcode.OUT || opcode == Opcode.JNZ || opcode == Opcode.DIV || opcode == Opcode.PARAM) {
+                    if (live.add(node)) worklist.push(node);
+                }
+            }
+        }
+        for (Node phi : ir.getExit().getPhis()) {
+            if (live.add(phi)) worklist.push(phi);
+        }
+        while (!worklist.isEmpty()) {
+            for (Node operand : worklist.pop().getOperands()) {
+                if (live.add(operand)) worklist.push(operand);
+            }
+        }
+
+        List<Node> dead = new ArrayList<>();
+        int instructions = 0;
+        for (Block block : ir.getBlocks()) {
+            for (Node phi : block.getPhis()) {
+                if (!live.contains(phi)) dead.add(phi);
+            }
+            for (Node node : block.getNodes()) {
+                if (!live.contains(node)) {
+                    dead.add(node);
+                    instructions++;
+                }
+            }
+        }
+        ir.removeNodes(dead);
+        return instructions;
+    }
+}
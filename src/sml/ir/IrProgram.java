@@ -0,0 +1,488 @@
+package sml.ir;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.Program;
+import sml.RegisterName;
+import sml.Registers;
+import sml.analysis.BasicBlock;
+import sml.analysis.ControlFlowGraph;
+import sml.analysis.Effects;
+import sml.engine.CompiledProgram;
+import sml.instruction.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A translated SML program in static single assignment form: every value is defined once, by a {@link Node}, and
+ * the values of a register flowing into a join point of the control flow are merged by a phi.
+ * <p>
+ * The program is a list of {@link Block}s: an entry block defining the initial value of each register (a param), the
+ * reachable basic blocks of the source program in address order, and an exit block whose phis are the final values
+ * of the registers, observable when the program terminates. Blocks the program cannot reach are left out.
+ * <pre>
+ * IrProgram ir = IrProgram.build(program.getInstructions(), program.getLabels());
+ * ConstantFolding.run(ir);
+ * ValueNumbering.run(ir);
+ * DeadCodeElimination.run(ir);
+ * Program optimized = ir.lower();               // or ir.compile() for the compiled engine
+ * </pre>
+ * SML has eight registers and no copy instruction, so every value stays in the register the source program keeps it
+ * in: the register its instruction writes, the register of a param or of a phi. Lowering relies on the invariant the
+ * source program satisfies, and that every transformation preserves: at every use, the register of a value still holds
+ * it; the first operand of an arithmetic node is in the register of the node (the instructions overwrite it); and on
+ * every edge into a block, each phi finds its operand in its register. Phis then need no code and each remaining node
+ * is lowered to one instruction. {@link #lower()} checks the invariant.
+ *
+ * @author alessioerosferri
+ */
+public final class IrProgram {
+    private static final Registers.Register[] REGISTERS = Registers.Register.values();
+
+    private final int size;
+    private final Map<String, Integer> labels = new LinkedHashMap<>();
+    private final List<Block> blocks = new ArrayList<>();
+    private Block entry;
+    private Block exit;
+    private int nodeCount = 0;
+
+    private IrProgram(int size, Labels labels) {
+        this.size = size;
+        labels.forEach(this.labels::put);
+    }
+
+    /**
+     * Builds the SSA form of a program.
+     *
+     * @param program the instructions of the program
+     * @param labels  the labels of the program
+     * @return the SSA form
+     * @throws IllegalArgumentException if the program contains instructions the analyses do not know (see
+     *                                  {@link Effects#isAnalysable(List)}) or jumps to a label that does not exist
+     */
+    public static IrProgram build(List<Instruction> program, Labels labels) {
+        if (!Effects.isAnalysable(program)) {
+            throw new IllegalArgumentException("The program contains instructions the SSA form does not support");
+        }
+        ControlFlowGraph graph = ControlFlowGraph.build(program, labels);
+        for (int address = 0; address < program.size(); address++) {
+            if (program.get(address) instanceof JnzInstruction jnz && graph.jumpTarget(address) < 0) {
+                throw new IllegalArgumentException("Label '" + jnz.getNextInstructionLabel() + "' does not have an associated address");
+            }
+        }
+
+        IrProgram ir = new IrProgram(program.size(), labels);
+        ir.entry = ir.newBlock(-1);
+        List<BasicBlock> basicBlocks = graph.getBlocks();
+        Block[] blockOf = new Block[basicBlocks.size()];
+        for (int index : graph.reachable().stream().toArray()) {
+            blockOf[index] = ir.newBlock(basicBlocks.get(index).getStart());
+        }
+        ir.exit = ir.newBlock(program.size());
+
+        ir.link(ir.entry, program.isEmpty() ? ir.exit : blockOf[0], false);
+        for (BasicBlock basicBlock : basicBlocks) {
+            Block block = blockOf[basicBlock.getIndex()];
+            if (block == null) continue;
+            int last = basicBlock.getEnd() - 1;
+            if (program.get(last) instanceof JnzInstruction) {
+                int target = graph.jumpTarget(last);
+                ir.link(block, target >= program.size() ? ir.exit : blockOf[graph.blockAt(target).getIndex()], true);
+            }
+            int end = basicBlock.getEnd();
+            ir.link(block, end >= program.size() ? ir.exit : blockOf[graph.blockAt(end).getIndex()], false);
+        }
+
+        // a phi per register at every join point (trivial ones are removed below) and at the exit
+        for (Block block : ir.blocks) {
+            if (block == ir.exit || block.predecessors().size() > 1) {
+                for (Registers.Register register : REGISTERS)
+                    ir.append(block.phis(), block, ir.newNode(Opcode.PHI, register, -1, null, null));
+            }
+        }
+        for (Registers.Register register : REGISTERS)
+            ir.append(ir.entry.nodes(), ir.entry, ir.newNode(Opcode.PARAM, register, -1, null, null));
+
+        // the value of each register at the end of each block; a block with one predecessor comes after it
+        Map<Block, Node[]> out = new IdentityHashMap<>();
+        for (Block block : ir.reversePostorder()) {
+            Node[] state;
+            if (block == ir.entry) {
+                state = block.nodes().toArray(new Node[0]);
+            } else if (!block.phis().isEmpty()) {
+                state = block.phis().toArray(new Node[0]);
+            } else {
+                state = out.get(block.predecessors().get(0)).clone();
+            }
+            if (block != ir.entry && block != ir.exit) {
+                int end = graph.blockAt(block.getStart()).getEnd();
+                for (int address = block.getStart(); address < end; address++)
+                    ir.translate(program.get(address), address, block, state);
+            }
+            out.put(block, state);
+        }
+        for (Block block : ir.blocks) {
+            for (Node phi : block.phis()) {
+                for (Block predecessor : block.predecessors())
+                    phi.addOperand(out.get(predecessor)[phi.getRegister().ordinal()]);
+            }
+        }
+        ir.removeTrivialPhis();
+        return ir;
+    }
+
+    // appends the node of an instruction to the block, reading and updating the value of each register
+    private void translate(Instruction instruction, int address, Block block, Node[] state) {
+        String label = instruction.getLabel();
+        Node node;
+        if (instruction instanceof MovInstruction mov) {
+            node = newNode(Opcode.CONST, (Registers.Register) mov.getResult(), address, label, null);
+            node.becomeConstant(mov.getSource());
+        } else if (instruction instanceof OutInstruction out) {
+            node = newNode(Opcode.OUT, null, address, label, null);
+            node.addOperand(state[ordinal(out.getSource())]);
+        } else if (instruction instanceof JnzInstruction jnz) {
+            node = newNode(Opcode.JNZ, null, address, label, jnz.getNextInstructionLabel());
+            node.addOperand(state[ordinal(jnz.getSource())]);
+        } else {
+            Opcode opcode;
+            RegisterName result;
+            RegisterName source;
+            if (instruction instanceof AddInstruction add) {
+                opcode = Opcode.ADD;
+                result = add.getResult();
+                source = add.getSource();
+            } else if (instruction instanceof SubInstruction sub) {
+                opcode = Opcode.SUB;
+                result = sub.getResult();
+                source = sub.getSource();
+            } else if (instruction instanceof MulInstruction mul) {
+                opcode = Opcode.MUL;
+                result = mul.getResult();
+                source = mul.getSource();
+            } else {
+                DivInstruction div = (DivInstruction) instruction;
+                opcode = Opcode.DIV;
+                result = div.getResult();
+                source = div.getSource();
+            }
+            node = newNode(opcode, (Registers.Register) result, address, label, null);
+            node.addOperand(state[ordinal(result)]);
+            node.addOperand(state[ordinal(source)]);
+        }
+        append(block.nodes(), block, node);
+        if (node.getOpcode().hasValue()) state[node.getRegister().ordinal()] = node;
+    }
+
+    private static int ordinal(RegisterName register) {
+        return ((Registers.Register) register).ordinal();
+    }
+
+    private Block newBlock(int start) {
+        Block block = new Block(blocks.size(), start);
+        blocks.add(block);
+        return block;
+    }
+
+    private Node newNode(Opcode opcode, Registers.Register register, int address, String label, String target) {
+        return new Node(nodeCount++, opcode, register, address, label, target);
+    }
+
+    private void append(List<Node> list, Block block, Node node) {
+        list.add(node);
+        node.setBlock(block);
+    }
+
+    private void link(Block from, Block to, boolean taken) {
+        if (taken) from.setTaken(to);
+        else from.setNext(to);
+        to.predecessors().add(from);
+    }
+
+    /**
+     * @return the blocks: the entry block, the blocks of the program in address order, the exit block
+     */
+    public List<Block> getBlocks() {
+        return Collections.unmodifiableList(blocks);
+    }
+
+    /**
+     * @return the block defining the initial value of each register
+     */
+    public Block getEntry() {
+        return entry;
+    }
+
+    /**
+     * @return the block whose phis are the final values of the registers
+     */
+    public Block getExit() {
+        return exit;
+    }
+
+    /**
+     * @param register a register
+     * @return the value of the register when the program terminates
+     */
+    public Node exitValue(Registers.Register register) {
+        return exit.phis().get(register.ordinal());
+    }
+
+    /**
+     * @return the number of instructions the lowered program has
+     */
+    public int size() {
+        int instructions = 0;
+        for (Block block : blocks) {
+            if (block != entry) instructions += block.nodes().size();
+        }
+        return instructions;
+    }
+
+    int nodeCount() {
+        return nodeCount;
+    }
+
+    // one more than the highest block index, the exit block is created last and never removed
+    int blockCount() {
+        return exit.getIndex() + 1;
+    }
+
+    // blocks in reverse postorder from the entry block, so that each block comes after its predecessors but on back edges
+    List<Block> reversePostorder() {
+        List<Block> postorder = new ArrayList<>();
+        Set<Block> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Iterator<Block>> stack = new ArrayDeque<>();
+        Deque<Block> path = new ArrayDeque<>();
+        visited.add(entry);
+        stack.push(entry.getSuccessors().iterator());
+        path.push(entry);
+        while (!stack.isEmpty()) {
+            Iterator<Block> successors = stack.peek();
+            if (successors.hasNext()) {
+                Block successor = successors.next();
+                if (visited.add(successor)) {
+                    stack.push(successor.getSuccessors().iterator());
+                    path.push(successor);
+                }
+            } else {
+                stack.pop();
+                postorder.add(path.pop());
+            }
+        }
+        Collections.reverse(postorder);
+        return postorder;
+    }
+
+    // removes a node nobody uses
+    void removeNode(Node node) {
+        removeNodes(List.of(node));
+    }
+
+    // removes nodes that are only used by each other
+    void removeNodes(Collection<Node> nodes) {
+        for (Node node : nodes) node.clearOperands();
+        for (Node node : nodes) {
+            if (!node.getUsers().isEmpty()) {
+                throw new IllegalStateException(node.name() + " is still used");
+            }
+            Block block = node.getBlock();
+            if (node.getOpcode() == Opcode.PHI) block.phis().remove(node);
+            else block.nodes().remove(node);
+            node.setBlock(null);
+        }
+    }
+
+    // removes the edge from a block to its taken (or next) successor, with the phi operands it brings
+    void removeEdge(Block from, boolean taken) {
+        Block to = taken ? from.getTaken() : from.getNext();
+        if (taken) from.setTaken(null);
+        else from.setNext(null);
+        int index = to.predecessors().lastIndexOf(from);
+        to.predecessors().remove(index);
+        for (Node phi : to.phis()) phi.removeOperand(index);
+    }
+
+    // removes a block no reachable block depends on
+    void removeBlock(Block block) {
+        if (block.getTaken() != null) removeEdge(block, true);
+        if (block.getNext() != null) removeEdge(block, false);
+        List<Node> nodes = new ArrayList<>(block.phis());
+        nodes.addAll(block.nodes());
+        for (Node node : nodes) node.clearOperands();
+        blocks.remove(block);
+    }
+
+    // replaces the phis whose operands are all the same value (or the phi itself) by that value, the exit excepted
+    void removeTrivialPhis() {
+        boolean changed;
+        do {
+            changed = false;
+            for (Block block : blocks) {
+                if (block == exit) continue;
+                for (Node phi : new ArrayList<>(block.phis())) {
+                    Node same = null;
+                    boolean trivial = true;
+                    for (Node operand : phi.getOperands()) {
+                        if (operand == phi || operand == same) continue;
+                        if (same != null) {
+                            trivial = false;
+                            break;
+                        }
+                        same = operand;
+                    }
+                    if (trivial && same != null) {
+                        phi.replaceAllUsesWith(same);
+                        removeNode(phi);
+                        changed = true;
+                    }
+                }
+            }
+        } while (changed);
+    }
+
+    /**
+     * Lowers the SSA form back to SML instructions: each node but params and phis becomes one instruction, in the
+     * order of the blocks, which is the order of the source program. Labels are kept as the source program has them;
+     * a label of an instruction that has been removed moves to the next instruction that is kept, or the jnz using it
+     * are retargeted to the label that instruction already has. Labels nobody jumps to any more are dropped.
+     *
+     * @return the lowered program
+     * @throws IllegalStateException if a transformation broke the register invariant (see {@link IrProgram})
+     */
+    public Program lower() {
+        checkRegisters();
+        List<Node> lowered = new ArrayList<>();
+        for (Block block : blocks) {
+            if (block != entry) lowered.addAll(block.nodes());
+        }
+        int newSize = lowered.size();
+
+        // the first instruction kept at or after each address of the source program
+        int[] newAddress = new int[size + 1];
+        boolean[] kept = new boolean[size];
+        for (Node node : lowered) kept[node.getAddress()] = true;
+        for (int address = 0, index = 0; address <= size; address++) {
+            while (index < newSize && lowered.get(index).getAddress() < address) index++;
+            newAddress[address] = index;
+        }
+
+        Set<String> jumpedTo = new HashSet<>();
+        for (Node node : lowered) {
+            if (node.getOpcode() == Opcode.JNZ) jumpedTo.add(node.getTarget());
+        }
+        String[] labelAt = new String[newSize];
+        for (int i = 0; i < newSize; i++) labelAt[i] = lowered.get(i).getLabel();
+        Labels newLabels = new Labels();
+        Map<String, String> aliases = new HashMap<>();
+        labels.forEach((label, address) -> {
+            if (address < 0) {
+                newLabels.addLabel(label, address);
+            } else if (address >= size) {
+                newLabels.addLabel(label, newSize + address - size);
+            } else if (kept[address]) {
+                newLabels.addLabel(label, newAddress[address]);
+            } else if (jumpedTo.contains(label)) {
+                int target = newAddress[address];
+                if (target == newSize) {
+                    newLabels.addLabel(label, target);
+                } else if (labelAt[target] == null) {
+                    labelAt[target] = label;
+                    newLabels.addLabel(label, target);
+                } else {
+                    aliases.put(label, labelAt[target]);
+                }
+            }
+        });
+
+        List<Instruction> instructions = new ArrayList<>(newSize);
+        for (int i = 0; i < newSize; i++)
+            instructions.add(instruction(lowered.get(i), labelAt[i], aliases));
+        return new Program(instructions, newLabels);
+    }
+
+    private static Instruction instruction(Node node, String label, Map<String, String> aliases) {
+        Registers.Register register = node.getRegister();
+        return switch (node.getOpcode()) {
+            case CONST -> new MovInstruction(label, register, node.getConstant());
+            case ADD -> new AddInstruction(label, register, node.getOperand(1).getRegister());
+            case SUB -> new SubInstruction(label, register, node.getOperand(1).getRegister());
+            case MUL -> new MulInstruction(label, register, node.getOperand(1).getRegister());
+            case DIV -> new DivInstruction(label, register, node.getOperand(1).getRegister());
+            case OUT -> new OutInstruction(label, node.getOperand(0).getRegister());
+            case JNZ -> new JnzInstruction(label, node.getOperand(0).getRegister(),
+                    aliases.getOrDefault(node.getTarget(), node.getTarget()));
+            default -> throw new IllegalStateException("Cannot lower " + node);
+        };
+    }
+
+    /**
+     * Lowers the SSA form (see {@link #lower()}) to the compiled engine, verified when possible.
+     *
+     * @return the compiled program
+     */
+    public CompiledProgram compile() {
+        Program program = lower();
+        try {
+            return CompiledProgram.verify(program.getInstructions(), program.getLabels());
+        } catch (IllegalArgumentException e) {
+            return CompiledProgram.compile(program.getInstructions(), program.getLabels());
+        }
+    }
+
+    // checks that every value is in its register wherever it is used, see the class comment
+    void checkRegisters() {
+        RegisterStates states = RegisterStates.compute(this);
+        for (Block block : reversePostorder()) {
+            for (Node phi : block.phis()) {
+                for (int i = 0; i < phi.getOperands().size(); i++) {
+                    Node[] out = states.out(block.predecessors().get(i));
+                    if (out[phi.getRegister().ordinal()] != phi.getOperand(i)) {
+                        throw new IllegalStateException(phi.name() + " does not find " + phi.getOperand(i).name()
+                                + " in " + phi.getRegister() + " coming from " + block.predecessors().get(i).name());
+                    }
+                }
+            }
+            Node[] state = states.in(block).clone();
+            for (Node node : block.nodes()) {
+                for (Node operand : node.getOperands()) {
+                    if (state[operand.getRegister().ordinal()] != operand) {
+                        throw new IllegalStateException(node.name() + " does not find " + operand.name() + " in "
+                                + operand.getRegister());
+                    }
+                }
+                if (node.getOpcode().isArithmetic() && node.getOperand(0).getRegister() != node.getRegister()) {
+                    throw new IllegalStateException(node.name() + " does not overwrite its first operand");
+                }
+                if (node.getOpcode().hasValue()) state[node.getRegister().ordinal()] = node;
+            }
+        }
+    }
+
+    /**
+     * @return the blocks and their nodes, one per line
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (Block block : blocks) {
+            if (!text.isEmpty()) text.append('\n');
+            text.append(block);
+            for (Node phi : block.phis()) text.append("\n    ").append(phi);
+            for (Node node : block.nodes()) text.append("\n    ").append(node);
+        }
+        return text.toString();
+    }
+}
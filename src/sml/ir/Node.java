@@ -0,0 +1,177 @@
+package sml.ir;
+
+import sml.Registers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An operation of the SSA form: a value defined exactly once (see {@link Opcode}), or an out or jnz using values.
+ * <p>
+ * Every node knows its operands and its users, the def-use chains: a user appears once for each operand referring to
+ * the node. Every value is kept in a register, the register its instruction writes in the source program (or the
+ * register of a param or phi); the transformations preserve the invariant that makes the lowering possible without
+ * copies, see {@link IrProgram}.
+ *
+ * @author alessioerosferri
+ */
+public final class Node {
+    private final int id;
+    private Opcode opcode;
+    private final List<Node> operands = new ArrayList<>(2);
+    private final List<Node> users = new ArrayList<>(2);
+    private final Registers.Register register;
+    private int constant;
+    private Block block;
+    // the instruction the node comes from, -1 for params and phis
+    private final int address;
+    private final String label;
+    // the label a jnz jumps to
+    private final String target;
+
+    Node(int id, Opcode opcode, Registers.Register register, int address, String label, String target) {
+        this.id = id;
+        this.opcode = opcode;
+        this.register = register;
+        this.address = address;
+        this.label = label;
+        this.target = target;
+    }
+
+    /**
+     * @return the number of the node, unique in its program
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return the operation of the node
+     */
+    public Opcode getOpcode() {
+        return opcode;
+    }
+
+    /**
+     * @return the register holding the value of the node, null for out and jnz
+     */
+    public Registers.Register getRegister() {
+        return register;
+    }
+
+    /**
+     * @return the value of a constant
+     */
+    public int getConstant() {
+        return constant;
+    }
+
+    /**
+     * @return the block containing the node, null once removed
+     */
+    public Block getBlock() {
+        return block;
+    }
+
+    /**
+     * @return the operands of the node: the two operands of an arithmetic node (the first one is overwritten, as in
+     * the source program), one per predecessor for a phi, the value written or tested for out and jnz
+     */
+    public List<Node> getOperands() {
+        return Collections.unmodifiableList(operands);
+    }
+
+    /**
+     * @param index the position of an operand
+     * @return the operand
+     */
+    public Node getOperand(int index) {
+        return operands.get(index);
+    }
+
+    /**
+     * @return the nodes using the value of this node, once per use
+     */
+    public List<Node> getUsers() {
+        return Collections.unmodifiableList(users);
+    }
+
+    /**
+     * @return the address of the instruction the node comes from, -1 for params and phis
+     */
+    public int getAddress() {
+        return address;
+    }
+
+    String getLabel() {
+        return label;
+    }
+
+    String getTarget() {
+        return target;
+    }
+
+    void setBlock(Block block) {
+        this.block = block;
+    }
+
+    void addOperand(Node operand) {
+        operands.add(operand);
+        operand.users.add(this);
+    }
+
+    void setOperand(int index, Node operand) {
+        operands.get(index).users.remove(this);
+        operands.set(index, operand);
+        operand.users.add(this);
+    }
+
+    void removeOperand(int index) {
+        operands.remove(index).users.remove(this);
+    }
+
+    // drops every operand, the node no longer uses anything
+    void clearOperands() {
+        for (Node operand : operands) operand.users.remove(this);
+        operands.clear();
+    }
+
+    // turns the node into a constant, in the same register
+    void becomeConstant(int value) {
+        clearOperands();
+        opcode = Opcode.CONST;
+        constant = value;
+    }
+
+    // every use of this node becomes a use of the replacement
+    void replaceAllUsesWith(Node replacement) {
+        for (Node user : new ArrayList<>(users)) {
+            for (int i = 0; i < user.operands.size(); i++) {
+                if (user.operands.get(i) == this) user.setOperand(i, replacement);
+            }
+        }
+    }
+
+    /**
+     * @return the name of the value, "v" followed by the id
+     */
+    public String name() {
+        return "v" + id;
+    }
+
+    /**
+     * @return the node in a readable form, for instance "v5 = add EAX v3 v4"
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        if (opcode.hasValue()) text.append(name()).append(" = ");
+        text.append(opcode.name().toLowerCase());
+        if (register != null) text.append(' ').append(register);
+        if (opcode == Opcode.CONST) text.append(' ').append(constant);
+        for (Node operand : operands) text.append(' ').append(operand.name());
+        if (opcode == Opcode.JNZ) text.append(' ').append(target);
+        return text.toString();
+    }
+}
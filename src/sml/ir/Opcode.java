@@ -0,0 +1,47 @@
+package sml.ir;
+
+/**
+ * The operations of the {@link Node}s of the SSA form.
+ *
+ * @author alessioerosferri
+ */
+public enum Opcode {
+    /**
+     * The value of a register when the program starts, defined in the entry block.
+     */
+    PARAM,
+    /**
+     * A constant, lowered to mov.
+     */
+    CONST,
+    ADD,
+    SUB,
+    MUL,
+    DIV,
+    /**
+     * The value of a register at a join point: one operand per predecessor of the block, in the same order.
+     */
+    PHI,
+    /**
+     * Writes its operand, has no value.
+     */
+    OUT,
+    /**
+     * Ends a block: jumps to the taken successor if its operand is not zero, has no value.
+     */
+    JNZ;
+
+    /**
+     * @return true if the operation computes a value from two operands
+     */
+    public boolean isArithmetic() {
+        return this == ADD || this == SUB || this == MUL || this == DIV;
+    }
+
+    /**
+     * @return true if the operation defines a value
+     */
+    public boolean hasValue() {
+        return this != OUT && this != JNZ;
+    }
+}
@@ -0,0 +1,75 @@
+package sml.ir;
+
+import sml.Registers;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The value each register holds at the start and at the end of each reachable block of an {@link IrProgram}: the phi
+ * of the register if the block has one, otherwise the value all the predecessors agree on, null if they do not.
+ *
+ * @author alessioerosferri
+ */
+final class RegisterStates {
+    private static final int REGISTERS = Registers.Register.values().length;
+
+    private final Map<Block, Node[]> in = new IdentityHashMap<>();
+    private final Map<Block, Node[]> out = new IdentityHashMap<>();
+
+    private RegisterStates() {
+    }
+
+    static RegisterStates compute(IrProgram ir) {
+        RegisterStates states = new RegisterStates();
+        List<Block> order = ir.reversePostorder();
+        boolean changed;
+        do {
+            changed = false;
+            for (Block block : order) {
+                Node[] state = states.meet(block);
+                states.in.put(block, state.clone());
+                for (Node node : block.getNodes()) {
+                    if (node.getOpcode().hasValue()) state[node.getRegister().ordinal()] = node;
+                }
+                if (!Arrays.equals(state, states.out.put(block, state))) changed = true;
+            }
+        } while (changed);
+        return states;
+    }
+
+    // predecessors not computed yet are ignored, they agree with anything
+    private Node[] meet(Block block) {
+        Node[] state = new Node[REGISTERS];
+        boolean[] seen = new boolean[REGISTERS];
+        boolean[] merged = new boolean[REGISTERS];
+        for (Node phi : block.getPhis()) {
+            state[phi.getRegister().ordinal()] = phi;
+            merged[phi.getRegister().ordinal()] = true;
+        }
+        for (Block predecessor : block.getPredecessors()) {
+            Node[] values = out.get(predecessor);
+            if (values == null) continue;
+            for (int register = 0; register < REGISTERS; register++) {
+                if (merged[register]) continue;
+                if (!seen[register]) {
+                    state[register] = values[register];
+                    seen[register] = true;
+                } else if (state[register] != values[register]) {
+                    state[register] = null;
+                }
+            }
+        }
+        return state;
+    }
+
+    Node[] in(Block block) {
+        return in.get(block);
+    }
+
+    Node[] out(Block block) {
+        return out.get(block);
+    }
+}
@@ -0,0 +1,113 @@
+package sml.ir;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Global value numbering over the SSA form: gives the same number to the values computed by the same operation from
+ * values with the same number (constants by their value, add and mul whatever the order of their operands, a phi
+ * whose operands all have the same number takes that number), then removes every node whose register already holds
+ * a value with the same number on every path reaching it, as in
+ * <pre>
+ * mov EAX 5          mov EAX 5
+ * out EAX      -&gt;    out EAX
+ * mov EAX 5
+ * </pre>
+ * Since a value cannot be copied to another register, only the value already in the register of a node can replace it.
+ * Values along back edges are numbered pessimistically: a loop never makes two values equal.
+ *
+ * @author alessioerosferri
+ */
+public final class ValueNumbering {
+
+    private record Key(Opcode opcode, int constant, int first, int second, int block, List<Integer> operands) {
+    }
+
+    private final IrProgram ir;
+    private final int[] number;
+
+    private ValueNumbering(IrProgram ir) {
+        this.ir = ir;
+        this.number = new int[ir.nodeCount()];
+        for (int id = 0; id < number.length; id++) number[id] = id;
+    }
+
+    /**
+     * Removes the redundant nodes of a program, in place.
+     *
+     * @param ir the program
+     * @return the number of nodes removed
+     */
+    public static int run(IrProgram ir) {
+        ValueNumbering numbering = new ValueNumbering(ir);
+        List<Block> order = ir.reversePostorder();
+        numbering.number(order);
+        return numbering.rewrite(order);
+    }
+
+    private void number(List<Block> order) {
+        Map<Key, Integer> numbers = new HashMap<>();
+        for (Block block : order) {
+            for (Node phi : block.getPhis()) {
+                int same = -1;
+                boolean agree = true;
+                List<Integer> operands = phi.getOperands().stream().map(operand -> number[operand.getId()]).toList();
+                for (int operand : operands) {
+                    if (operand == number[phi.getId()] || operand == same) continue;
+                    if (same >= 0) agree = false;
+                    same = operand;
+                }
+                if (agree && same >= 0) number[phi.getId()] = same;
+                else number[phi.getId()] = numbers.computeIfAbsent(
+                        new Key(Opcode.PHI, 0, 0, 0, block.getIndex(), operands), key -> phi.getId());
+            }
+            for (Node node : block.getNodes()) {
+                Key key = switch (node.getOpcode()) {
+                    case CONST -> new Key(Opcode.CONST, node.getConstant(), 0, 0, 0, List.of());
+                    case ADD, MUL -> {
+                        int a = number[node.getOperand(0).getId()];
+                        int b = number[node.getOperand(1).getId()];
+                        yield new Key(node.getOpcode(), 0, Math.min(a, b), Math.max(a, b), 0, List.of());
+                    }
+                    case SUB, DIV -> new Key(node.getOpcode(), 0, number[node.getOperand(0).getId()],
+                            number[node.getOperand(1).getId()], 0, List.of());
+                    default -> null;
+                };
+                if (key != null) number[node.getId()] = numbers.computeIfAbsent(key, k -> node.getId());
+            }
+        }
+    }
+
+    private int rewrite(List<Block> order) {
+        RegisterStates states = RegisterStates.compute(ir);
+        // the node replacing each removed node, the states refer to the nodes as they were
+        Map<Node, Node> replaced = new IdentityHashMap<>();
+        int removed = 0;
+        for (Block block : order) {
+            Node[] state = states.in(block).clone();
+            for (int register = 0; register < state.length; register++) state[register] = resolve(replaced, state[register]);
+            for (Node node : List.copyOf(block.getNodes())) {
+                if (!node.getOpcode().hasValue()) continue;
+                int register = node.getRegister().ordinal();
+                Node held = state[register];
+                if (node.getOpcode() != Opcode.PARAM && held != null && number[held.getId()] == number[node.getId()]) {
+                    node.replaceAllUsesWith(held);
+                    ir.removeNode(node);
+                    replaced.put(node, held);
+                    removed++;
+                } else {
+                    state[register] = node;
+                }
+            }
+        }
+        ir.removeTrivialPhis();
+        return removed;
+    }
+
+    private static Node resolve(Map<Node, Node> replaced, Node node) {
+        while (node != null && replaced.containsKey(node)) node = replaced.get(node);
+        return node;
+    }
+}
@@ -0,0 +1,311 @@
+package sml.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live metrics of the engine, shared by every machine and translator of the process (see {@link #global()}) and
+ * exposed over JMX once {@link #register() registered}.
+ * <p>
+ * The counters are {@link LongAdder}s, so threads running machines concurrently do not contend on them; besides,
+ * machines count jumps and outputs in plain fields of their own and add them here once per slice of a run, at every
+ * publication of their state, never per instruction. The windowed figures are computed from samples of the counters taken every second by a daemon thread
+ * and kept for {@link #WINDOW_SECONDS} seconds: they compare the newest sample with the oldest one.
+ *
+ * @author alessioerosferri
+ */
+public final class EngineMetrics implements EngineMetricsMXBean {
+    public static final String OBJECT_NAME = "sml:type=EngineMetrics";
+    public static final int WINDOW_SECONDS = 10;
+
+    private static final EngineMetrics GLOBAL = new EngineMetrics(System.nanoTime());
+    private static ScheduledExecutorService sampler;
+
+    // the fields of a sample
+    private static final int TIME = 0;
+    private static final int INSTRUCTIONS = 1;
+    private static final int JUMPS = 2;
+    private static final int JUMPS_TAKEN = 3;
+    private static final int RUNS = 4;
+    private static final int RUN_NANOS = 5;
+
+    private final LongAdder programsTranslated = new LongAdder();
+    private final LongAdder instructions = new LongAdder();
+    private final LongAdder jumps = new LongAdder();
+    private final LongAdder jumpsTaken = new LongAdder();
+    private final LongAdder outputs = new LongAdder();
+    private final LongAdder translationCacheHits = new LongAdder();
+    private final LongAdder translationCacheMisses = new LongAdder();
+    private final LongAdder resultCacheHits = new LongAdder();
+    private final LongAdder resultCacheMisses = new LongAdder();
+    private final LongAdder activeMachines = new LongAdder();
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder runNanos = new LongAdder();
+
+    // one sample per second over the window, plus the sample the window starts from
+    private final long[][] samples = new long[WINDOW_SECONDS + 1][];
+    private int newest = -1;
+    private int count = 0;
+
+    // the window starts from a sample taken at the given time
+    EngineMetrics(long nanos) {
+        sample(nanos);
+    }
+
+    /**
+     * @return the metrics of the process, updated by every machine and translator
+     */
+    public static EngineMetrics global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Registers the global metrics in the platform MBean server as {@link #OBJECT_NAME} and starts sampling them every
+     * second. Does nothing if they are already registered.
+     *
+     * @throws IllegalStateException if the MBean cannot be registered
+     */
+    public static synchronized void register() {
+        if (sampler != null) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(GLOBAL, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register " + OBJECT_NAME, e);
+        }
+        sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sml-metrics-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleAtFixedRate(() -> GLOBAL.sample(System.nanoTime()), 1, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Removes the global metrics from the platform MBean server and stops sampling them. Does nothing if they are not
+     * registered.
+     */
+    public static synchronized void unregister() {
+        if (sampler == null) {
+            return;
+        }
+        sampler.shutdownNow();
+        sampler = null;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot unregister " + OBJECT_NAME, e);
+        }
+    }
+
+    /**
+     * Counts a program translated from source.
+     */
+    public void programTranslated() {
+        programsTranslated.increment();
+    }
+
+    /**
+     * Counts a machine starting to execute instructions, see {@link #machineStopped()}.
+     */
+    public void machineStarted() {
+        activeMachines.increment();
+    }
+
+    /**
+     * Counts a machine no longer executing instructions.
+     */
+    public void machineStopped() {
+        activeMachines.decrement();
+    }
+
+    /**
+     * Adds the work done by a machine since it last reported.
+     *
+     * @param instructions the instructions executed
+     * @param jumps        the jnz instructions executed
+     * @param jumpsTaken   the jnz instructions that jumped
+     * @param outputs      the values written by out instructions
+     */
+    public void executed(long instructions, long jumps, long jumpsTaken, long outputs) {
+        if (instructions != 0) this.instructions.add(instructions);
+        if (jumps != 0) this.jumps.add(jumps);
+        if (jumpsTaken != 0) this.jumpsTaken.add(jumpsTaken);
+        if (outputs != 0) this.outputs.add(outputs);
+    }
+
+    /**
+     * Counts a run that completed.
+     *
+     * @param nanos the time spent executing the run, in nanoseconds
+     */
+    public void runCompleted(long nanos) {
+        runs.increment();
+        runNanos.add(nanos);
+    }
+
+    /**
+     * Counts a job that reused a program translated earlier.
+     */
+    public void translationCacheHit() {
+        translationCacheHits.increment();
+    }
+
+    /**
+     * Counts a job whose program had to be translated, or was no longer kept.
+     */
+    public void translationCacheMiss() {
+        translationCacheMisses.increment();
+    }
+
+    /**
+     * Counts a run answered by a result cache.
+     */
+    public void resultCacheHit() {
+        resultCacheHits.increment();
+    }
+
+    /**
+     * Counts a run a result cache had to execute.
+     */
+    public void resultCacheMiss() {
+        resultCacheMisses.increment();
+    }
+
+    // records the counters at the given time, dropping the oldest sample once the window is full
+    synchronized void sample(long nanos) {
+        newest = (newest + 1) % samples.length;
+        samples[newest] = new long[]{nanos, instructions.sum(), jumps.sum(), jumpsTaken.sum(), runs.sum(),
+                runNanos.sum()};
+        count = Math.min(count + 1, samples.length);
+    }
+
+    // the ratio of the changes of two fields between the oldest and the newest sample, 0 if the denominator is unchanged
+    private synchronized double windowRatio(int numerator, int denominator) {
+        int oldest = (newest - count + 1 + samples.length) % samples.length;
+        return ratio(samples[newest][numerator] - samples[oldest][numerator],
+                samples[newest][denominator] - samples[oldest][denominator]);
+    }
+
+    private static double ratio(long numerator, long denominator) {
+        return denominator == 0 ? 0 : (double) numerator / denominator;
+    }
+
+    @Override
+    public long getProgramsTranslated() {
+        return programsTranslated.sum();
+    }
+
+    @Override
+    public long getInstructionsExecuted() {
+        return instructions.sum();
+    }
+
+    @Override
+    public double getInstructionsPerSecond() {
+        return windowRatio(INSTRUCTIONS, TIME) * 1e9;
+    }
+
+    @Override
+    public long getJumpsExecuted() {
+        return jumps.sum();
+    }
+
+    @Override
+    public long getJumpsTaken() {
+        return jumpsTaken.sum();
+    }
+
+    @Override
+    public double getJumpTakenRatio() {
+        // read in this order, a jump is counted as executed no later than as taken
+        long taken = jumpsTaken.sum();
+        return ratio(taken, jumps.sum());
+    }
+
+    @Override
+    public double getWindowJumpTakenRatio() {
+        return windowRatio(JUMPS_TAKEN, JUMPS);
+    }
+
+    @Override
+    public long getOutputs() {
+        return outputs.sum();
+    }
+
+    @Override
+    public long getTranslationCacheHits() {
+        return translationCacheHits.sum();
+    }
+
+    @Override
+    public long getTranslationCacheMisses() {
+        return translationCacheMisses.sum();
+    }
+
+    @Override
+    public long getResultCacheHits() {
+        return resultCacheHits.sum();
+    }
+
+    @Override
+    public long getResultCacheMisses() {
+        return resultCacheMisses.sum();
+    }
+
+    @Override
+    public long getActiveMachines() {
+        return activeMachines.sum();
+    }
+
+    @Override
+    public long getRunsCompleted() {
+        return runs.sum();
+    }
+
+    @Override
+    public double getRunsPerSecond() {
+        return windowRatio(RUNS, TIME) * 1e9;
+    }
+
+    @Override
+    public double getAverageRunLatencyMillis() {
+        long nanos = runNanos.sum();
+        return ratio(nanos, runs.sum()) / 1e6;
+    }
+
+    @Override
+    public double getWindowAverageRunLatencyMillis() {
+        return windowRatio(RUN_NANOS, RUNS) / 1e6;
+    }
+
+    @Override
+    public int getWindowSeconds() {
+        return WINDOW_SECONDS;
+    }
+
+    @Override
+    public synchronized void reset() {
+        programsTranslated.reset();
+        instructions.reset();
+        jumps.reset();
+        jumpsTaken.reset();
+        outputs.reset();
+        translationCacheHits.reset();
+        translationCacheMisses.reset();
+        resultCacheHits.reset();
+        resultCacheMisses.reset();
+        runs.reset();
+        runNanos.reset();
+        count = 0;
+        sample(System.nanoTime());
+    }
+}
@@ -0,0 +1,107 @@
+package sml.metrics;
+
+/**
+ * Management interface of the {@link EngineMetrics}, registered as "sml:type=EngineMetrics".
+ * <p>
+ * Counters are cumulative since the start of the process (or the last {@link #reset()}); the rates and the windowed
+ * figures cover the last {@link #getWindowSeconds()} seconds.
+ *
+ * @author alessioerosferri
+ */
+public interface EngineMetricsMXBean {
+
+    /**
+     * @return the programs translated from source
+     */
+    long getProgramsTranslated();
+
+    /**
+     * @return the instructions executed by all the machines
+     */
+    long getInstructionsExecuted();
+
+    /**
+     * @return the instructions executed per second over the window
+     */
+    double getInstructionsPerSecond();
+
+    /**
+     * @return the jnz instructions executed
+     */
+    long getJumpsExecuted();
+
+    /**
+     * @return the jnz instructions that jumped
+     */
+    long getJumpsTaken();
+
+    /**
+     * @return the fraction of jnz instructions that jumped, 0 if none was executed
+     */
+    double getJumpTakenRatio();
+
+    /**
+     * @return the fraction of the jnz instructions executed over the window that jumped, 0 if none was executed
+     */
+    double getWindowJumpTakenRatio();
+
+    /**
+     * @return the values written by out instructions
+     */
+    long getOutputs();
+
+    /**
+     * @return the jobs that reused a program translated earlier (the program table of the daemon)
+     */
+    long getTranslationCacheHits();
+
+    /**
+     * @return the jobs that had to translate their program, or referred to a program no longer kept
+     */
+    long getTranslationCacheMisses();
+
+    /**
+     * @return the runs answered by a result cache without executing
+     */
+    long getResultCacheHits();
+
+    /**
+     * @return the runs a result cache had to execute
+     */
+    long getResultCacheMisses();
+
+    /**
+     * @return the machines executing instructions right now
+     */
+    long getActiveMachines();
+
+    /**
+     * @return the runs that completed, the machine halting at the end of its program
+     */
+    long getRunsCompleted();
+
+    /**
+     * @return the runs completed per second over the window
+     */
+    double getRunsPerSecond();
+
+    /**
+     * @return the average time spent executing a completed run, in milliseconds
+     */
+    double getAverageRunLatencyMillis();
+
+    /**
+     * @return the average time spent executing the runs completed over the window, in milliseconds
+     */
+    double getWindowAverageRunLatencyMillis();
+
+    /**
+     * @return the length of the window of the rates and windowed figures
+     */
+    int getWindowSeconds();
+
+    /**
+     * Sets every counter back to 0 (the active machines excepted) and clears the window.
+     */
+    void reset();
+}
@@ -0,0 +1,93 @@
+package sml.optimizer;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.analysis.BasicBlock;
+import sml.analysis.ConstantPropagation;
+import sml.analysis.ControlFlowGraph;
+import sml.analysis.Effects;
+import sml.analysis.Liveness;
+
+import java.util.List;
+
+/**
+ * Removes the instructions that cannot affect the observable behaviour of a program:
+ * <ul>
+ *     <li>instructions in blocks that no run can reach, because every jnz leading to them always (or never) jumps,
+ *     see {@link ConstantPropagation};</li>
+ *     <li>dead stores: mov, add, sub and mul writing a register that is overwritten before anybody reads it,
+ *     see {@link Liveness}.</li>
+ * </ul>
+ * All registers are live when the program terminates and every register read by out or jnz is live, so the final
+ * registers, the values written and the jumps taken are unchanged; only the number of instructions executed shrinks.
+ * A div is never removed since it may stop the program with a division by zero.
+ * <p>
+ * Programs containing instructions the analyses do not know are left untouched.
+ *
+ * @author alessioerosferri
+ */
+public final class DeadCodeEliminator {
+
+    private DeadCodeEliminator() {
+    }
+
+    /**
+     * Optimizes a program in place, the labels are updated to the new addresses.
+     *
+     * @param labels  the labels of the program
+     * @param program the instructions of the program
+     * @return the number of instructions removed
+     */
+    public static int optimize(Labels labels, List<Instruction> program) {
+        if (!Effects.isAnalysable(program)) {
+            return 0;
+        }
+
+        int removedTotal = 0;
+        int removed;
+        do {
+            removed = removeUnreachable(labels, program);
+            removed += removeDeadStores(labels, program);
+            removedTotal += removed;
+        } while (removed > 0);
+        return removedTotal;
+    }
+
+    private static int removeUnreachable(Labels labels, List<Instruction> program) {
+        ControlFlowGraph graph = ControlFlowGraph.build(program, labels);
+        ConstantPropagation constants = ConstantPropagation.analyse(program, graph);
+
+        boolean[] removed = new boolean[program.size()];
+        int count = 0;
+        for (BasicBlock block : graph.getBlocks()) {
+            if (constants.isExecutable(block)) continue;
+            for (int address = block.getStart(); address < block.getEnd(); address++) {
+                removed[address] = true;
+                count++;
+            }
+        }
+        if (count > 0) {
+            ProgramRewriter.remove(labels, program, removed);
+        }
+        return count;
+    }
+
+    private static int removeDeadStores(Labels labels, List<Instruction> program) {
+        Liveness liveness = Liveness.analyse(program, ControlFlowGraph.build(program, labels));
+
+        boolean[] removed = new boolean[program.size()];
+        int count = 0;
+        for (int address = 0; address < program.size(); address++) {
+            Instruction instruction = program.get(address);
+            int defs = Effects.defs(instruction);
+            if (defs != Effects.NONE && !Effects.hasSideEffects(instruction) && (liveness.liveAfter(address) & defs) == 0) {
+                removed[address] = true;
+                count++;
+            }
+        }
+        if (count > 0) {
+            ProgramRewriter.remove(labels, program, removed);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,207 @@
+package sml.optimizer;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.analysis.ControlFlowGraph;
+import sml.analysis.Effects;
+import sml.instruction.AddInstruction;
+import sml.instruction.DivInstruction;
+import sml.instruction.JnzInstruction;
+import sml.instruction.MovInstruction;
+import sml.instruction.MulInstruction;
+import sml.instruction.SubInstruction;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves the instructions that compute the same value on every iteration of a loop out of it, into a preheader run
+ * once before the loop, as in
+ * <pre>
+ * l: mov ECX 1         mov ECX 1
+ * sub EAX ECX    -&gt;    l: sub EAX ECX
+ * jnz EAX l            jnz EAX l
+ * </pre>
+ * A loop is found from a jnz jumping backwards, to the loop header: it covers the instructions from the header to the
+ * jnz and must only be entered by falling through to the header, no jnz from outside may jump into it. Only the block
+ * starting at the header is considered, since it runs at the start of every iteration. An instruction of that block is
+ * moved when:
+ * <ul>
+ *     <li>it is a mov, add, sub or mul before any div of the block: a div may stop the program with a division by
+ *     zero, it is never moved and nothing after it is;</li>
+ *     <li>every instruction of the loop writing its register is moved as well;</li>
+ *     <li>every register it reads is either not written in the loop, or written only by moved instructions, one of
+ *     them before it in the block, so it reads the same value on every iteration;</li>
+ *     <li>the instructions of the block that are not moved only read its register after the last moved instruction
+ *     writing it.</li>
+ * </ul>
+ * The moved instructions keep their order, so every value read is unchanged and the final registers and the values
+ * written are the same; only the number of instructions executed shrinks. The labels of the header move to the first
+ * instruction left in the loop. Loops are processed until none changes, so nested loops hoist outwards.
+ * <p>
+ * Programs containing instructions the analyses do not know are left untouched.
+ *
+ * @author alessioerosferri
+ */
+public final class LoopInvariantCodeMotion {
+
+    private LoopInvariantCodeMotion() {
+    }
+
+    /**
+     * Optimizes a program in place, the labels are updated to the new addresses.
+     *
+     * @param labels  the labels of the program
+     * @param program the instructions of the program
+     * @return the number of instructions moved out of a loop
+     */
+    public static int optimize(Labels labels, List<Instruction> program) {
+        if (!Effects.isAnalysable(program)) {
+            return 0;
+        }
+
+        int hoistedTotal = 0;
+        int hoisted;
+        do {
+            hoisted = hoistFirst(labels, program);
+            hoistedTotal += hoisted;
+        } while (hoisted > 0);
+        return hoistedTotal;
+    }
+
+    // hoists the invariant instructions of the first loop having some, returns how many
+    private static int hoistFirst(Labels labels, List<Instruction> program) {
+        ControlFlowGraph graph = ControlFlowGraph.build(program, labels);
+        for (int last = 0; last < program.size(); last++) {
+            int header = graph.jumpTarget(last);
+            if (header < 0 || header > last || !isSingleEntry(program, graph, header, last)) continue;
+            boolean[] hoisted = invariants(program, header, graph.blockAt(header).getEnd(), last);
+            int count = 0;
+            for (boolean moved : hoisted) count += moved ? 1 : 0;
+            if (count > 0) {
+                hoist(labels, program, header, graph.blockAt(header).getEnd(), hoisted);
+                return count;
+            }
+        }
+        return 0;
+    }
+
+    // true if no jnz outside the loop jumps into it
+    private static boolean isSingleEntry(List<Instruction> program, ControlFlowGraph graph, int header, int last) {
+        for (int address = 0; address < program.size(); address++) {
+            if (address >= header && address <= last) continue;
+            int target = graph.jumpTarget(address);
+            if (target >= header && target <= last) return false;
+        }
+        return true;
+    }
+
+    // for each address of the header block [header, end), true if the instruction can be moved to the preheader
+    private static boolean[] invariants(List<Instruction> program, int header, int end, int last) {
+        boolean[] hoisted = new boolean[end - header];
+        for (int address = header; address < end; address++) {
+            Instruction instruction = program.get(address);
+            if (instruction instanceof DivInstruction) break;
+            hoisted[address - header] = instruction instanceof MovInstruction || instruction instanceof AddInstruction
+                    || instruction instanceof SubInstruction || instruction instanceof MulInstruction;
+        }
+
+        boolean changed;
+        do {
+            changed = false;
+            for (int address = header; address < end; address++) {
+                if (hoisted[address - header] && !isInvariant(program, header, end, last, hoisted, address)) {
+                    hoisted[address - header] = false;
+                    changed = true;
+                }
+            }
+        } while (changed);
+        return hoisted;
+    }
+
+    private static boolean isInvariant(List<Instruction> program, int header, int end, int last, boolean[] hoisted,
+                                       int address) {
+        Instruction instruction = program.get(address);
+        int result = Effects.defs(instruction);
+        int uses = Effects.uses(instruction);
+        int lastWrite = -1;
+        int written = Effects.NONE;
+        int writtenBefore = Effects.NONE;
+        for (int other = header; other <= last; other++) {
+            int defs = Effects.defs(program.get(other));
+            boolean moved = other < end && hoisted[other - header];
+            if (!moved && (defs & (result | uses)) != 0) return false;
+            written |= defs;
+            if (moved && other < address) writtenBefore |= defs;
+            if (moved && (defs & result) != 0) lastWrite = other;
+        }
+        if ((uses & written & ~writtenBefore) != 0) return false;
+        for (int other = header; other < lastWrite; other++) {
+            if (!hoisted[other - header] && (Effects.uses(program.get(other)) & result) != 0) return false;
+        }
+        return true;
+    }
+
+    // moves the hoisted instructions of the header block [header, end) before it, in order
+    private static void hoist(Labels labels, List<Instruction> program, int header, int end, boolean[] hoisted) {
+        List<Instruction> preheader = new ArrayList<>();
+        List<Instruction> rest = new ArrayList<>();
+        int[] newAddress = new int[end - header];
+        int count = 0;
+        for (boolean moved : hoisted) count += moved ? 1 : 0;
+        for (int address = header; address < end; address++) {
+            Instruction instruction = program.get(address);
+            if (hoisted[address - header]) {
+                newAddress[address - header] = -1;
+                preheader.add(withoutLabel(instruction));
+            } else {
+                newAddress[address - header] = header + count + rest.size();
+                rest.add(instruction);
+            }
+        }
+
+        // the labels of the header go to the first instruction left in the loop; the labels inside the block are
+        // not jumped to, they follow their instruction or are dropped with it
+        int head = header + count;
+        String label = program.get(header).getLabel();
+        Instruction first = rest.isEmpty() ? program.get(end) : rest.get(0);
+        String alias = rest.isEmpty() ? first.getLabel() : null;
+        Map<String, Integer> newLabels = new HashMap<>();
+        Map<String, String> aliases = new HashMap<>();
+        labels.forEach((name, address) -> {
+            if (address == header && alias != null) {
+                aliases.put(name, alias);
+            } else if (address == header) {
+                newLabels.put(name, head);
+            } else if (address > header && address < end) {
+                if (newAddress[address - header] > head) newLabels.put(name, newAddress[address - header]);
+            } else {
+                newLabels.put(name, address);
+            }
+        });
+        if (alias == null) {
+            first = first.withLabel(label);
+            if (rest.isEmpty()) program.set(end, first);
+            else rest.set(0, first);
+        }
+
+        List<Instruction> block = program.subList(header, end);
+        block.clear();
+        block.addAll(preheader);
+        block.addAll(rest);
+        if (!aliases.isEmpty()) {
+            for (int address = 0; address < program.size(); address++) {
+                if (program.get(address) instanceof JnzInstruction jnz && aliases.containsKey(jnz.getNextInstructionLabel()))
+                    program.set(address, new JnzInstruction(jnz.getLabel(), jnz.getSource(), aliases.get(jnz.getNextInstructionLabel())));
+            }
+        }
+        labels.reset();
+        newLabels.forEach(labels::addLabel);
+    }
+
+    private static Instruction withoutLabel(Instruction instruction) {
+        return instruction.getLabel() == null ? instruction : instruction.withLabel(null);
+    }
+}
@@ -0,0 +1,172 @@
+package sml.optimizer;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.Registers;
+import sml.analysis.BasicBlock;
+import sml.analysis.ConstantPropagation;
+import sml.analysis.ControlFlowGraph;
+import sml.analysis.Effects;
+import sml.instruction.JnzInstruction;
+import sml.instruction.SubInstruction;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+
+/**
+ * Unrolls small counted loops, so that fewer of the instructions executed are jnz back-edges.
+ * <p>
+ * A loop is unrolled when:
+ * <ul>
+ *     <li>it is a single block ending with a jnz to its own first instruction, of at most {@link #MAX_BODY_SIZE}
+ *     instructions besides the jnz;</li>
+ *     <li>it is only entered by falling through from the block before it;</li>
+ *     <li>the only instruction of the body writing the jnz register C is a {@code sub C K}, and K is not written by
+ *     the body;</li>
+ *     <li>the values of C and K when the loop is entered are constants (see {@link ConstantPropagation}), and C is a
+ *     positive multiple of K, so that the trip count T = C / K is known.</li>
+ * </ul>
+ * With a factor U, the loop is replaced by T % U copies of its body (the remainder path), followed by a loop running
+ * T / U times a body made of U copies of the original one and a single jnz. Every instruction runs in the same order
+ * on the same values as before, so the final registers and the values written are unchanged; only the number of
+ * instructions executed shrinks. A loop whose trip count is smaller than U is unrolled completely.
+ * <p>
+ * Programs containing instructions the analyses do not know are left untouched.
+ *
+ * @author alessioerosferri
+ */
+public final class LoopUnroller {
+    public static final int MAX_BODY_SIZE = 16;
+
+    private LoopUnroller() {
+    }
+
+    /**
+     * Unrolls the counted loops of a program in place, the labels are updated to the new addresses.
+     *
+     * @param labels  the labels of the program
+     * @param program the instructions of the program
+     * @param factor  the number of copies of the body in each unrolled loop
+     * @return the number of loops unrolled
+     * @throws IllegalArgumentException if the factor is smaller than 2
+     */
+    public static int optimize(Labels labels, List<Instruction> program, int factor) {
+        if (factor < 2) {
+            throw new IllegalArgumentException("Unrolling factor must be at least 2");
+        }
+        if (!Effects.isAnalysable(program)) {
+            return 0;
+        }
+
+        int unrolled = 0;
+        while (unrollFirst(labels, program, factor)) {
+            unrolled++;
+        }
+        return unrolled;
+    }
+
+    // unrolls the first loop that can be unrolled, false if there is none
+    private static boolean unrollFirst(Labels labels, List<Instruction> program, int factor) {
+        ControlFlowGraph graph = ControlFlowGraph.build(program, labels);
+        ConstantPropagation constants = ConstantPropagation.analyse(program, graph);
+        for (BasicBlock block : graph.getBlocks()) {
+            int tripCount = tripCount(program, graph, constants, block);
+            if (tripCount > 0) {
+                unroll(labels, program, block, tripCount, factor);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // the number of times the loop of the block runs, 0 if the block is not a loop that can be unrolled
+    private static int tripCount(List<Instruction> program, ControlFlowGraph graph, ConstantPropagation constants,
+                                 BasicBlock block) {
+        int last = block.getEnd() - 1;
+        if (!(program.get(last) instanceof JnzInstruction jnz) || graph.jumpTarget(last) != block.getStart()
+                || block.getStart() == 0 || last - block.getStart() > MAX_BODY_SIZE) {
+            return 0;
+        }
+
+        BasicBlock preheader = graph.blockAt(block.getStart() - 1);
+        for (BasicBlock predecessor : block.getPredecessors()) {
+            if (predecessor != block && predecessor != preheader) return 0;
+        }
+
+        int counter = Effects.mask(jnz.getSource());
+        SubInstruction decrement = null;
+        for (int address = block.getStart(); address < last; address++) {
+            Instruction instruction = program.get(address);
+            if ((Effects.defs(instruction) & counter) == 0) continue;
+            if (decrement != null || !(instruction instanceof SubInstruction sub)
+                    || Effects.mask(sub.getSource()) == counter) {
+                return 0;
+            }
+            decrement = sub;
+        }
+        if (decrement == null) return 0;
+        int step = Effects.mask(decrement.getSource());
+        for (int address = block.getStart(); address < last; address++) {
+            if ((Effects.defs(program.get(address)) & step) != 0) return 0;
+        }
+
+        OptionalInt start = constants.constantOnExit(program, preheader, (Registers.Register) jnz.getSource());
+        OptionalInt by = constants.constantOnExit(program, preheader, (Registers.Register) decrement.getSource());
+        if (start.isEmpty() || by.isEmpty() || by.getAsInt() == 0 || start.getAsInt() % by.getAsInt() != 0) {
+            return 0;
+        }
+        // a negative quotient (or the overflow of MIN_VALUE / -1) is a loop wrapping around, left as it is
+        return Math.max(0, start.getAsInt() / by.getAsInt());
+    }
+
+    private static void unroll(Labels labels, List<Instruction> program, BasicBlock block, int tripCount, int factor) {
+        int start = block.getStart();
+        int last = block.getEnd() - 1;
+        List<Instruction> body = program.subList(start, last);
+        int remainder = tripCount % factor;
+        boolean loops = tripCount / factor > 0;
+
+        List<Instruction> unrolled = new ArrayList<>();
+        for (int i = 0; i < remainder; i++)
+            copy(body, unrolled, false);
+        int head = start + unrolled.size();
+        if (loops) {
+            for (int i = 0; i < factor; i++)
+                copy(body, unrolled, i == 0);
+            unrolled.add(withoutLabel(program.get(last)));
+        }
+
+        // the loop label moves to the unrolled loop, the labels inside the body are not jumped to
+        int shift = unrolled.size() - (block.getEnd() - start);
+        Map<String, Integer> newLabels = new HashMap<>();
+        labels.forEach((label, address) -> {
+            if (address < start) {
+                newLabels.put(label, address);
+            } else if (address >= block.getEnd()) {
+                newLabels.put(label, address + shift);
+            } else if (address == start && loops) {
+                newLabels.put(label, head);
+            }
+        });
+
+        body.clear();
+        program.remove(start);
+        program.addAll(start, unrolled);
+        labels.reset();
+        newLabels.forEach(labels::addLabel);
+    }
+
+    // appends a copy of the body, only the first instruction of the unrolled loop keeps its label
+    private static void copy(List<Instruction> body, List<Instruction> target, boolean loopHead) {
+        target.add(loopHead ? body.get(0) : withoutLabel(body.get(0)));
+        for (int i = 1; i < body.size(); i++)
+            target.add(withoutLabel(body.get(i)));
+    }
+
+    private static Instruction withoutLabel(Instruction instruction) {
+        return instruction.getLabel() == null ? instruction : instruction.withLabel(null);
+    }
+}
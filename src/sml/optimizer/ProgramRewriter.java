@@ -0,0 +1,100 @@
+package sml.optimizer;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.instruction.JnzInstruction;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Removes instructions from a program while keeping its labels consistent.
+ * <p>
+ * Labels of the instructions that are kept are moved to their new address. A label of a removed instruction moves to
+ * the next instruction that is kept: that instruction takes the label if it has none, otherwise the jnz using the
+ * removed label are retargeted to the label it already has. Labels nobody jumps to any more are dropped.
+ *
+ * @author alessioerosferri
+ */
+final class ProgramRewriter {
+
+    private ProgramRewriter() {
+    }
+
+    /**
+     * Removes the given instructions, in place.
+     *
+     * @param labels  the labels of the program, rebuilt in place
+     * @param program the instructions of the program, rebuilt in place
+     * @param removed for each address, true if the instruction has to be removed
+     */
+    static void remove(Labels labels, List<Instruction> program, boolean[] removed) {
+        int size = program.size();
+        int[] newAddress = new int[size + 1];
+        for (int address = 0; address < size; address++)
+            newAddress[address + 1] = newAddress[address] + (removed[address] ? 0 : 1);
+        int newSize = newAddress[size];
+
+        Set<String> jumpedTo = new HashSet<>();
+        for (int address = 0; address < size; address++) {
+            if (!removed[address] && program.get(address) instanceof JnzInstruction jnz)
+                jumpedTo.add(jnz.getNextInstructionLabel());
+        }
+
+        Map<String, Integer> oldLabels = new HashMap<>();
+        labels.forEach(oldLabels::put);
+
+        // the label each kept instruction ends up with, and the labels that become aliases of another one
+        String[] labelAt = new String[newSize];
+        for (int address = 0; address < size; address++) {
+            if (!removed[address] && program.get(address).getLabel() != null)
+                labelAt[newAddress[address]] = program.get(address).getLabel();
+        }
+
+        Map<String, Integer> newLabels = new HashMap<>();
+        Map<String, String> aliases = new HashMap<>();
+        for (Map.Entry<String, Integer> entry : oldLabels.entrySet()) {
+            String label = entry.getKey();
+            int address = entry.getValue();
+            if (address < 0) {
+                newLabels.put(label, address);
+            } else if (address >= size) {
+                newLabels.put(label, newSize + address - size);
+            } else if (!removed[address]) {
+                newLabels.put(label, newAddress[address]);
+            } else if (jumpedTo.contains(label)) {
+                int target = newAddress[address];
+                if (target == newSize) {
+                    newLabels.put(label, target);
+                } else if (labelAt[target] == null) {
+                    labelAt[target] = label;
+                    newLabels.put(label, target);
+                } else {
+                    aliases.put(label, labelAt[target]);
+                }
+            }
+        }
+
+        List<Instruction> rewritten = new ArrayList<>(newSize);
+        for (int address = 0; address < size; address++) {
+            if (removed[address]) continue;
+            Instruction instruction = program.get(address);
+            String label = labelAt[rewritten.size()];
+            if (instruction instanceof JnzInstruction jnz && aliases.containsKey(jnz.getNextInstructionLabel())) {
+                instruction = new JnzInstruction(label, jnz.getSource(), aliases.get(jnz.getNextInstructionLabel()));
+            } else if (label != null && !label.equals(instruction.getLabel())) {
+                instruction = instruction.withLabel(label);
+            }
+            rewritten.add(instruction);
+        }
+
+        program.clear();
+        program.addAll(rewritten);
+        labels.reset();
+        newLabels.forEach(labels::addLabel);
+    }
+}
@@ -0,0 +1,62 @@
+package sml.optimizer;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.Program;
+import sml.analysis.Effects;
+import sml.ir.ConstantFolding;
+import sml.ir.DeadCodeElimination;
+import sml.ir.IrProgram;
+import sml.ir.ValueNumbering;
+
+import java.util.List;
+
+/**
+ * Optimizes a program through its SSA form (see {@link IrProgram}): constant folding, value numbering and dead code
+ * elimination run until none of them changes anything, then the program is lowered back to instructions.
+ * <p>
+ * The final registers, the values written and the divisions by zero are unchanged; the number of instructions
+ * executed never grows. Programs containing instructions the analyses do not know, or jumps to labels that do not
+ * exist, are left untouched.
+ *
+ * @author alessioerosferri
+ */
+public final class SsaOptimizer {
+
+    private SsaOptimizer() {
+    }
+
+    /**
+     * Optimizes a program in place, the labels are updated to the new addresses.
+     *
+     * @param labels  the labels of the program
+     * @param program the instructions of the program
+     * @return the number of instructions removed
+     */
+    public static int optimize(Labels labels, List<Instruction> program) {
+        if (!Effects.isAnalysable(program)) {
+            return 0;
+        }
+        IrProgram ir;
+        try {
+            ir = IrProgram.build(program, labels);
+        } catch (IllegalArgumentException e) {
+            return 0;
+        }
+
+        int changes;
+        do {
+            changes = ConstantFolding.run(ir);
+            changes += ValueNumbering.run(ir);
+            changes += DeadCodeElimination.run(ir);
+        } while (changes > 0);
+
+        Program lowered = ir.lower();
+        int removed = program.size() - lowered.size();
+        program.clear();
+        program.addAll(lowered.getInstructions());
+        labels.reset();
+        lowered.getLabels().forEach(labels::addLabel);
+        return removed;
+    }
+}
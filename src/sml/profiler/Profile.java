@@ -0,0 +1,110 @@
+package sml.profiler;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * The samples taken by a {@link SamplingProfiler} on one machine: how many times each address was found to be the next
+ * instruction of the running program, and the same counts summed over the region of each label (the addresses from
+ * the label up to the next label).
+ * <p>
+ * Counts are statistical: the share of the samples of an address estimates the share of the instructions executed at
+ * that address.
+ *
+ * @author alessioerosferri
+ */
+public final class Profile {
+    /**
+     * The name of the region of the addresses that come before the first label.
+     */
+    public static final String ENTRY = "(entry)";
+
+    private final long[] counts;
+    private final long samples;
+    private final long idleSamples;
+    private final Map<String, Long> regions;
+
+    Profile(long[] counts, long idleSamples, String[] regionOf) {
+        this.counts = counts;
+        this.samples = Arrays.stream(counts).sum();
+        this.idleSamples = idleSamples;
+        Map<String, Long> byRegion = new LinkedHashMap<>();
+        for (int address = 0; address < counts.length; address++) {
+            if (counts[address] > 0) byRegion.merge(regionOf[address], counts[address], Long::sum);
+        }
+        Map<String, Long> sorted = new LinkedHashMap<>();
+        byRegion.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .forEach(entry -> sorted.put(entry.getKey(), entry.getValue()));
+        this.regions = Collections.unmodifiableMap(sorted);
+    }
+
+    /**
+     * @return the samples that found the machine running
+     */
+    public long samples() {
+        return samples;
+    }
+
+    /**
+     * @return the samples that found the machine stopped, halted or not yet started
+     */
+    public long idleSamples() {
+        return idleSamples;
+    }
+
+    /**
+     * @param address the address of an instruction
+     * @return the samples taken at the address
+     */
+    public long count(int address) {
+        return address >= 0 && address < counts.length ? counts[address] : 0;
+    }
+
+    /**
+     * @param address the address of an instruction
+     * @return the share of the samples taken at the address, 0 if there are no samples
+     */
+    public double fraction(int address) {
+        return samples == 0 ? 0 : (double) count(address) / samples;
+    }
+
+    /**
+     * @return the samples of each label region (see {@link #ENTRY}), hottest first; regions without samples are left out
+     */
+    public Map<String, Long> byLabel() {
+        return regions;
+    }
+
+    /**
+     * @param n the maximum number of addresses
+     * @return the addresses with the most samples, hottest first; addresses without samples are left out
+     */
+    public int[] hottest(int n) {
+        return IntStream.range(0, counts.length)
+                .filter(address -> counts[address] > 0)
+                .boxed()
+                .sorted((a, b) -> counts[a] != counts[b] ? Long.compare(counts[b], counts[a]) : Integer.compare(a, b))
+                .limit(n)
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    /**
+     * @return a human readable report: the label regions, then the ten hottest addresses
+     */
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%d samples, %d idle%n", samples, idleSamples));
+        regions.forEach((label, count) -> report.append(String.format("%-16s %10d %6.2f%%%n",
+                label, count, 100.0 * count / samples)));
+        for (int address : hottest(10)) {
+            report.append(String.format("@%-15d %10d %6.2f%%%n", address, counts[address], 100 * fraction(address)));
+        }
+        return report.toString().stripTrailing();
+    }
+}
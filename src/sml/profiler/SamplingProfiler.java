@@ -0,0 +1,200 @@
+package sml.profiler;
+
+import sml.Machine;
+import sml.MachineSnapshot;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A statistical profiler for machines running in production: a background thread periodically reads the program
+ * counter each attached machine publishes for {@link Machine#snapshot()} and counts, per address, how many times it
+ * found the machine there. The running threads do nothing more than they already do for snapshots, so the overhead is
+ * the cost of the sampling thread alone.
+ * <pre>
+ * SamplingProfiler profiler = new SamplingProfiler();
+ * profiler.attach(machine);
+ * profiler.start();
+ * ...                                   // the machine runs, on any thread
+ * System.out.println(profiler.profile(machine));
+ * profiler.close();
+ * </pre>
+ * A machine publishes its program counter at least every {@link Machine#getPublishInterval()} instructions, so each
+ * sample is at most that many instructions behind; this only matters for programs shorter than a few intervals.
+ * Samples that find a machine that has not moved since the previous sample (stopped, halted or not started) are counted
+ * as idle and left out of the counts.
+ *
+ * @author alessioerosferri
+ */
+public final class SamplingProfiler implements AutoCloseable {
+    public static final Duration DEFAULT_INTERVAL = Duration.ofMillis(1);
+
+    private final long intervalNanos;
+    private final List<Target> targets = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService sampler;
+
+    /**
+     * Constructor: a profiler sampling every {@link #DEFAULT_INTERVAL}.
+     */
+    public SamplingProfiler() {
+        this(DEFAULT_INTERVAL);
+    }
+
+    /**
+     * Constructor: a profiler sampling at the given interval.
+     *
+     * @param interval the time between two samples of the attached machines
+     */
+    public SamplingProfiler(Duration interval) {
+        if (interval.isNegative() || interval.isZero()) {
+            throw new IllegalArgumentException("Sampling interval must be positive");
+        }
+        this.intervalNanos = interval.toNanos();
+    }
+
+    /**
+     * Starts sampling the attached machines on a daemon thread. Does nothing if already started.
+     */
+    public synchronized void start() {
+        if (sampler != null) {
+            return;
+        }
+        sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sml-profiler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleAtFixedRate(this::sample, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stops sampling; the samples taken so far are kept.
+     */
+    @Override
+    public synchronized void close() {
+        if (sampler != null) {
+            sampler.shutdownNow();
+            sampler = null;
+        }
+    }
+
+    /**
+     * Starts profiling a machine, from the next sample.
+     *
+     * @param machine the machine
+     */
+    public void attach(Machine machine) {
+        Objects.requireNonNull(machine);
+        synchronized (targets) {
+            if (find(machine) == null) targets.add(new Target(machine));
+        }
+    }
+
+    /**
+     * Stops profiling a machine and discards its samples.
+     *
+     * @param machine the machine
+     */
+    public void detach(Machine machine) {
+        synchronized (targets) {
+            targets.remove(find(machine));
+        }
+    }
+
+    // machines are compared by identity, the equality of Machine compares their content
+    private Target find(Machine machine) {
+        for (Target target : targets) {
+            if (target.machine == machine) return target;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the samples taken so far on a machine. Can be called at any time, while the machine keeps running.
+     *
+     * @param machine an attached machine
+     * @return the profile of the machine
+     * @throws IllegalArgumentException if the machine is not attached
+     */
+    public Profile profile(Machine machine) {
+        Target target = find(machine);
+        if (target == null) {
+            throw new IllegalArgumentException("Machine is not attached to the profiler");
+        }
+        long[] counts;
+        long idle;
+        synchronized (target) {
+            counts = target.counts.clone();
+            idle = target.idle;
+        }
+        return new Profile(counts, idle, regions(machine, counts.length));
+    }
+
+    /**
+     * Discards the samples taken so far on every attached machine.
+     */
+    public void reset() {
+        for (Target target : targets) {
+            synchronized (target) {
+                Arrays.fill(target.counts, 0);
+                target.idle = 0;
+            }
+        }
+    }
+
+    // takes one sample of every attached machine
+    void sample() {
+        for (Target target : targets) target.sample();
+    }
+
+    // the label whose region contains each address: the closest label at or before the address
+    private static String[] regions(Machine machine, int size) {
+        TreeMap<Integer, String> labelAt = new TreeMap<>();
+        machine.getLabels().forEach((label, address) -> labelAt.putIfAbsent(address, label));
+        String[] regionOf = new String[size];
+        for (int address = 0; address < size; address++) {
+            Map.Entry<Integer, String> label = labelAt.floorEntry(address);
+            regionOf[address] = label == null ? Profile.ENTRY : label.getValue();
+        }
+        return regionOf;
+    }
+
+    // the samples of one machine; written by the sampling thread, read by profile
+    private static final class Target {
+        private final Machine machine;
+        private long[] counts = new long[0];
+        private long idle;
+        private long lastSteps = -1;
+        private int lastProgramCounter = -1;
+
+        Target(Machine machine) {
+            this.machine = machine;
+        }
+
+        void sample() {
+            MachineSnapshot snapshot = machine.snapshot();
+            int address = snapshot.programCounter();
+            synchronized (this) {
+                boolean moved = snapshot.steps() != lastSteps || address != lastProgramCounter;
+                lastSteps = snapshot.steps();
+                lastProgramCounter = address;
+                if (!moved || snapshot.halted() || address < 0) {
+                    idle++;
+                    return;
+                }
+                if (address >= counts.length) {
+                    counts = Arrays.copyOf(counts, Math.max(address + 1, 2 * counts.length));
+                }
+                counts[address]++;
+            }
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package sml.recorder;
+
+import sml.ExecutionListener;
+import sml.Instruction;
+import sml.Machine;
+import sml.RegisterName;
+import sml.Registers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A flight recorder for long runs: records every instruction a machine executes, with the value it writes to a
+ * register or to the output, into a ring of fixed size in a memory-mapped file. The oldest records are overwritten, so
+ * the file always holds the last steps of the run (a few million with the default size), and since the records are
+ * in the page cache of the operating system as soon as they are written, they survive the JVM being killed. Read them
+ * back with {@link FlightRecording#read(Path, int)}.
+ * <pre>
+ * try (FlightRecorder recorder = new FlightRecorder(Path.of("run.trace"), FlightRecorder.DEFAULT_SIZE)) {
+ *     machine.addListener(recorder);
+ *     machine.execute();
+ * }
+ * </pre>
+ * The ring is divided in segments of {@link #SEGMENT_SIZE} bytes. Each segment starts with a header holding its
+ * sequence number, the number of the first step it records and the registers at that step, so that it can be decoded
+ * on its own; then come the records, delta encoded as variable length integers:
+ * <ul>
+ *     <li>a step: (zigzag(address - previous address) &lt;&lt; 2) + 1, 1 byte for the addresses next to each other;</li>
+ *     <li>a register write: (register &lt;&lt; 2 | 1) + 1, then zigzag(value - previous value of the register);</li>
+ *     <li>an output: 3, then zigzag(value).</li>
+ * </ul>
+ * A 0 byte ends the records of a segment. The writer does not allocate; it is called on the thread running the
+ * machine, so a recorder records one machine at a time.
+ *
+ * @author alessioerosferri
+ * @see Machine#addListener(ExecutionListener)
+ */
+public final class FlightRecorder implements ExecutionListener, Closeable {
+    public static final long DEFAULT_SIZE = 64L << 20;
+    public static final int SEGMENT_SIZE = 64 << 10;
+
+    static final long MAGIC = 0x534d4c5452414345L; // "SMLTRACE"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int SEGMENT_HEADER_SIZE = 48;
+    static final int STEP = 0;
+    static final int REGISTER = 1;
+    static final int OUTPUT = 2;
+
+    private static final Registers.Register[] REGISTERS = Registers.Register.values();
+    // the largest step: its record, a write to every register, an output and the end of the segment
+    private static final int MAX_STEP_SIZE = 5 + REGISTERS.length * 6 + 6 + 1;
+
+    private final MappedByteBuffer buffer;
+    private final int segmentCount;
+    private final int[] registers = new int[REGISTERS.length];
+    private long sequence = 0;
+    private long step = 0;
+    private int position;
+    private int limit;
+    private int previousAddress;
+
+    /**
+     * Constructor: a recorder writing to the given file, created or overwritten.
+     *
+     * @param file the file of the ring
+     * @param size the size of the file, in bytes, rounded down to whole segments
+     * @throws IOException              if the file cannot be created or mapped
+     * @throws IllegalArgumentException if the size leaves room for less than 2 segments or exceeds 2 GiB
+     */
+    public FlightRecorder(Path file, long size) throws IOException {
+        long segments = (size - HEADER_SIZE) / SEGMENT_SIZE;
+        if (segments < 2 || size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Flight recorder size must be between "
+                    + (HEADER_SIZE + 2L * SEGMENT_SIZE) + " bytes and 2 GiB");
+        }
+        this.segmentCount = (int) segments;
+        int length = HEADER_SIZE + segmentCount * SEGMENT_SIZE;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+        }
+        buffer.putLong(0, MAGIC);
+        buffer.putInt(8, VERSION);
+        buffer.putInt(12, SEGMENT_SIZE);
+        buffer.putInt(16, segmentCount);
+    }
+
+    /**
+     * @return the number of steps recorded so far
+     */
+    public long getSteps() {
+        return step;
+    }
+
+    @Override
+    public void beforeInstruction(Machine machine, int address, Instruction instruction) {
+        if (limit - position < MAX_STEP_SIZE) {
+            startSegment(machine.getRegisters());
+        }
+        putVarint(((zigzag(address - previousAddress) & 0xFFFFFFFFL) << 2) + STEP + 1);
+        previousAddress = address;
+        step++;
+    }
+
+    @Override
+    public void registerWritten(Machine machine, int address, RegisterName register, int oldValue, int newValue) {
+        if (!(register instanceof Registers.Register known)) {
+            return;
+        }
+        int index = known.ordinal();
+        putVarint((index << 2 | REGISTER) + 1);
+        putVarint(zigzag(newValue - registers[index]) & 0xFFFFFFFFL);
+        registers[index] = newValue;
+    }
+
+    @Override
+    public void output(Machine machine, int address, int value) {
+        putVarint(OUTPUT + 1);
+        putVarint(zigzag(value) & 0xFFFFFFFFL);
+    }
+
+    // moves to the next segment of the ring, invalidated while it is cleared so that a crash never mixes old and new
+    private void startSegment(Registers current) {
+        sequence++;
+        int start = HEADER_SIZE + (int) ((sequence - 1) % segmentCount) * SEGMENT_SIZE;
+        buffer.putLong(start, 0);
+        for (int offset = 8; offset < SEGMENT_SIZE; offset += 8)
+            buffer.putLong(start + offset, 0);
+        buffer.putLong(start + 8, step);
+        for (int index = 0; index < REGISTERS.length; index++) {
+            registers[index] = current.get(REGISTERS[index]);
+            buffer.putInt(start + 16 + 4 * index, registers[index]);
+        }
+        buffer.putLong(start, sequence);
+        position = start + SEGMENT_HEADER_SIZE;
+        limit = start + SEGMENT_SIZE;
+        previousAddress = 0;
+    }
+
+    private void putVarint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put(position++, (byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        buffer.put(position++, (byte) value);
+    }
+
+    static int zigzag(int value) {
+        return value << 1 ^ value >> 31;
+    }
+
+    static int unzigzag(int value) {
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    /**
+     * Writes the records to the file (they already survive the JVM; this makes them survive the operating system).
+     */
+    public void force() {
+        buffer.force();
+    }
+
+    /**
+     * Writes the records to the file. The recorder must not be used afterwards.
+     */
+    @Override
+    public void close() {
+        force();
+    }
+}
@@ -0,0 +1,141 @@
+package sml.recorder;
+
+import sml.Registers;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import static sml.recorder.FlightRecorder.*;
+
+/**
+ * Decodes the file written by a {@link FlightRecorder}, even if the process writing it was killed: the segments of
+ * the ring are decoded from the newest one backwards, as long as their sequence numbers follow each other, so a
+ * segment that was being cleared or overwritten is never mixed with the others.
+ *
+ * @author alessioerosferri
+ */
+public final class FlightRecording {
+    private static final Registers.Register[] REGISTERS = Registers.Register.values();
+
+    private FlightRecording() {
+    }
+
+    /**
+     * Decodes the last steps of a recording.
+     *
+     * @param file      the file written by the recorder
+     * @param lastSteps the maximum number of steps to decode
+     * @return the last steps recorded, oldest first
+     * @throws IOException if the file cannot be read or is not a flight recording
+     */
+    public static List<TraceStep> read(Path file, int lastSteps) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is not a flight recording");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        int segmentSize = buffer.getInt(12);
+        int segmentCount = buffer.getInt(16);
+        if (buffer.getLong(0) != MAGIC || buffer.getInt(8) != VERSION || segmentSize < SEGMENT_HEADER_SIZE
+                || segmentCount < 1 || HEADER_SIZE + (long) segmentSize * segmentCount > buffer.capacity()) {
+            throw new IOException(file + " is not a flight recording");
+        }
+
+        long newest = 0;
+        for (int index = 0; index < segmentCount; index++)
+            newest = Math.max(newest, buffer.getLong(HEADER_SIZE + index * segmentSize));
+
+        Deque<List<TraceStep>> segments = new ArrayDeque<>();
+        int decoded = 0;
+        for (long sequence = newest; sequence > 0 && sequence > newest - segmentCount && decoded < lastSteps; sequence--) {
+            int start = HEADER_SIZE + (int) ((sequence - 1) % segmentCount) * segmentSize;
+            if (buffer.getLong(start) != sequence) break;
+            List<TraceStep> steps = decode(buffer, start, start + segmentSize);
+            segments.addFirst(steps);
+            decoded += steps.size();
+        }
+
+        List<TraceStep> steps = new ArrayList<>(decoded);
+        segments.forEach(steps::addAll);
+        return steps.subList(Math.max(0, steps.size() - lastSteps), steps.size());
+    }
+
+    private static List<TraceStep> decode(MappedByteBuffer buffer, int start, int end) {
+        List<TraceStep> steps = new ArrayList<>();
+        long step = buffer.getLong(start + 8);
+        int[] registers = new int[REGISTERS.length];
+        for (int index = 0; index < registers.length; index++)
+            registers[index] = buffer.getInt(start + 16 + 4 * index);
+
+        int[] position = {start + SEGMENT_HEADER_SIZE};
+        int address = 0;
+        boolean pending = false;
+        Registers.Register register = null;
+        int value = 0;
+        boolean output = false;
+        while (position[0] < end && buffer.get(position[0]) != 0) {
+            long head = readVarint(buffer, position, end) - 1;
+            int kind = (int) (head & 3);
+            long payload = head >>> 2;
+            if (kind == STEP) {
+                if (pending) steps.add(new TraceStep(step++, address, register, value, output));
+                address += unzigzag((int) payload);
+                pending = true;
+                register = null;
+                value = 0;
+                output = false;
+            } else if (kind == REGISTER && payload < REGISTERS.length && pending) {
+                int index = (int) payload;
+                registers[index] += unzigzag((int) readVarint(buffer, position, end));
+                register = REGISTERS[index];
+                value = registers[index];
+            } else if (kind == OUTPUT && payload == 0 && pending) {
+                value = unzigzag((int) readVarint(buffer, position, end));
+                output = true;
+            } else {
+                // a record torn by a crash
+                break;
+            }
+        }
+        if (pending) steps.add(new TraceStep(step, address, register, value, output));
+        return steps;
+    }
+
+    private static long readVarint(MappedByteBuffer buffer, int[] position, int end) {
+        long value = 0;
+        for (int shift = 0; position[0] < end && shift < 64; shift += 7) {
+            byte b = buffer.get(position[0]++);
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) break;
+        }
+        return value;
+    }
+
+    /**
+     * Prints the last steps of a recording: FlightRecording file [steps].
+     *
+     * @param args the command line arguments
+     */
+    public static void main(String... args) {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Incorrect arguments - FlightRecording <file> [steps] - required");
+            System.exit(-1);
+        }
+        try {
+            int lastSteps = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+            for (TraceStep step : read(Path.of(args[0]), lastSteps))
+                System.out.println(step);
+        } catch (IOException e) {
+            System.out.println("Error reading the recording from " + args[0] + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package sml.recorder;
+
+import sml.Registers;
+
+/**
+ * A step decoded from a flight recording: the instruction executed and what it wrote.
+ *
+ * @param step     the number of the step, counted from the first step the recorder saw
+ * @param address  the address of the instruction
+ * @param register the register the instruction wrote, null if it wrote none (for an instruction writing several
+ *                 registers, the last one)
+ * @param value    the value written to the register or to the output, 0 if none
+ * @param output   true if the instruction wrote the value to the output
+ * @author alessioerosferri
+ */
+public record TraceStep(long step, int address, Registers.Register register, int value, boolean output) {
+
+    /**
+     * @return the step in the form "step: address", followed by "register = value" or "out value" when it wrote one
+     */
+    @Override
+    public String toString() {
+        if (register != null) return step + ": " + address + " " + register + " = " + value;
+        if (output) return step + ": " + address + " out " + value;
+        return step + ": " + address;
+    }
+}
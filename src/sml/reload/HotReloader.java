@@ -0,0 +1,210 @@
+package sml.reload;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.Program;
+import sml.Translator;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Keeps an SML program up to date with its source file.
+ * <p>
+ * The reloader remembers the source lines and the instruction decoded from each of them. When the file changes, the new
+ * lines are compared with the old ones: the unchanged lines at the start and at the end of the file keep their decoded
+ * instructions, and only the lines in between are translated again. The instructions and label addresses are then
+ * reassembled into a new {@link Program}, which replaces the current one atomically.
+ * <p>
+ * Runs already in flight keep executing the program they were loaded with; machines created after a reload get the
+ * new version. If the edited file cannot be translated (for example because of a duplicate label) the current program
+ * is kept and the error is reported.
+ *
+ * @author alessioerosferri
+ */
+public final class HotReloader implements AutoCloseable {
+    private final Path source;
+    private final Translator translator;
+    private final List<Consumer<Program>> listeners = new CopyOnWriteArrayList<>();
+    private volatile Consumer<Exception> errorHandler = Exception::printStackTrace;
+
+    private volatile Snapshot current;
+    private volatile int lastDecodedLines;
+    private WatchService watchService;
+    private Thread watcher;
+
+    // the state of the last successful load: source lines, the instruction of each line and the resulting program
+    private record Snapshot(List<String> lines, List<Instruction> decoded, Program program, long version) {
+    }
+
+    /**
+     * Constructor: translates the whole file once.
+     *
+     * @param fileName the SML source file
+     * @throws IOException if the file cannot be read
+     */
+    public HotReloader(String fileName) throws IOException {
+        this.source = Path.of(fileName).toAbsolutePath();
+        this.translator = new Translator(fileName);
+
+        List<String> lines = Files.readAllLines(source, StandardCharsets.UTF_8);
+        List<Instruction> decoded = new ArrayList<>(lines.size());
+        for (String line : lines)
+            decoded.add(translator.translate(line));
+        lastDecodedLines = lines.size();
+        current = new Snapshot(lines, decoded, assemble(decoded), 1);
+    }
+
+    /**
+     * @return the latest version of the program
+     */
+    public Program current() {
+        return current.program();
+    }
+
+    /**
+     * @return the version of the current program, starting from 1 and incremented by every successful reload
+     */
+    public long getVersion() {
+        return current.version();
+    }
+
+    /**
+     * @return the number of source lines translated by the last load
+     */
+    public int getLastDecodedLines() {
+        return lastDecodedLines;
+    }
+
+    /**
+     * Registers a listener called with the new program after every successful reload.
+     *
+     * @param listener the listener
+     */
+    public void addListener(Consumer<Program> listener) {
+        listeners.add(Objects.requireNonNull(listener));
+    }
+
+    /**
+     * Replaces the handler of the errors raised by reloads triggered by the file watcher, by default they are printed.
+     *
+     * @param errorHandler the handler
+     */
+    public void setErrorHandler(Consumer<Exception> errorHandler) {
+        this.errorHandler = Objects.requireNonNull(errorHandler);
+    }
+
+    /**
+     * Reads the source file again and re-translates the lines that changed.
+     *
+     * @return true if the file changed and a new program has been published
+     * @throws IOException              if the file cannot be read
+     * @throws IllegalArgumentException if the edited program defines a label twice; the current program is kept
+     */
+    public synchronized boolean reload() throws IOException {
+        Snapshot old = current;
+        List<String> lines = Files.readAllLines(source, StandardCharsets.UTF_8);
+        if (lines.equals(old.lines())) {
+            return false;
+        }
+
+        // the edited region is what is left after removing the common prefix and suffix
+        int prefix = 0;
+        int maxPrefix = Math.min(lines.size(), old.lines().size());
+        while (prefix < maxPrefix && lines.get(prefix).equals(old.lines().get(prefix)))
+            prefix++;
+        int suffix = 0;
+        while (suffix < maxPrefix - prefix
+                && lines.get(lines.size() - 1 - suffix).equals(old.lines().get(old.lines().size() - 1 - suffix)))
+            suffix++;
+
+        List<Instruction> decoded = new ArrayList<>(lines.size());
+        decoded.addAll(old.decoded().subList(0, prefix));
+        for (int i = prefix; i < lines.size() - suffix; i++)
+            decoded.add(translator.translate(lines.get(i)));
+        decoded.addAll(old.decoded().subList(old.decoded().size() - suffix, old.decoded().size()));
+
+        Program program = assemble(decoded);
+        lastDecodedLines = lines.size() - suffix - prefix;
+        current = new Snapshot(lines, decoded, program, old.version() + 1);
+        for (Consumer<Program> listener : listeners)
+            listener.accept(program);
+        return true;
+    }
+
+    private static Program assemble(List<Instruction> decoded) {
+        List<Instruction> instructions = new ArrayList<>(decoded.size());
+        Labels labels = new Labels();
+        for (Instruction instruction : decoded) {
+            if (instruction == null) continue;
+            if (instruction.getLabel() != null)
+                labels.addLabel(instruction.getLabel(), instructions.size());
+            instructions.add(instruction);
+        }
+        return new Program(instructions, labels);
+    }
+
+    /**
+     * Starts a daemon thread reloading the program every time the source file is modified.
+     *
+     * @throws IOException if the directory of the file cannot be watched
+     */
+    public synchronized void watch() throws IOException {
+        if (watcher != null) return;
+        watchService = FileSystems.getDefault().newWatchService();
+        source.getParent().register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        watcher = new Thread(this::watchLoop, "sml-reloader-" + source.getFileName());
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private void watchLoop() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (source.getFileName().equals(event.context())) changed = true;
+                }
+                key.reset();
+                if (changed) {
+                    try {
+                        reload();
+                    } catch (IOException | RuntimeException e) {
+                        errorHandler.accept(e);
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    /**
+     * Stops watching the source file.
+     *
+     * @throws IOException if the watch service cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+            watchService = null;
+            watcher = null;
+        }
+    }
+}
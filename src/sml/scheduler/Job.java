@@ -0,0 +1,156 @@
+package sml.scheduler;
+
+import sml.Machine;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A Job is a single SML run multiplexed by the {@link Scheduler}. It wraps the machine being executed together with its
+ * priority and the bookkeeping the scheduler needs to share the carrier threads fairly.
+ * <p>
+ * A job is owned by at most one carrier thread at a time, the counters are therefore only written by the carrier
+ * currently running the job and published for readers through volatile fields.
+ *
+ * @author alessioerosferri
+ */
+public final class Job {
+    public static final int MIN_PRIORITY = 1;
+    public static final int NORM_PRIORITY = 5;
+    public static final int MAX_PRIORITY = 10;
+
+    private static final long WEIGHT_SCALE = 1024;
+
+    private final long id;
+    private final Machine machine;
+    private final int priority;
+    private final CompletableFuture<Machine> completion = new CompletableFuture<>();
+    private final long submittedAt;
+
+    // virtual runtime: the steps executed so far, scaled down by the priority of the job
+    private long virtualRuntime;
+    private long enqueuedAt;
+
+    private volatile long steps;
+    private volatile long slices;
+    private volatile long waitNanos;
+    private volatile long maxWaitNanos;
+    private volatile long finishedAt;
+
+    Job(long id, Machine machine, int priority, long virtualRuntime) {
+        if (priority < MIN_PRIORITY || priority > MAX_PRIORITY) {
+            throw new IllegalArgumentException("Priority " + priority + " is not between " + MIN_PRIORITY + " and " + MAX_PRIORITY);
+        }
+        this.id = id;
+        this.machine = machine;
+        this.priority = priority;
+        this.virtualRuntime = virtualRuntime;
+        this.submittedAt = System.nanoTime();
+        this.enqueuedAt = submittedAt;
+    }
+
+    /**
+     * Runs a single time slice of the job on the calling carrier thread.
+     *
+     * @param quantum the maximum number of instructions to execute
+     * @return true if the machine halted during this slice
+     */
+    boolean runSlice(long quantum) {
+        long now = System.nanoTime();
+        long waited = now - enqueuedAt;
+        waitNanos += waited;
+        maxWaitNanos = Math.max(maxWaitNanos, waited);
+
+        long executed = machine.resume(quantum);
+        steps += executed;
+        slices++;
+        virtualRuntime += Math.max(1, executed) * WEIGHT_SCALE / priority;
+        return machine.isHalted();
+    }
+
+    void enqueued() {
+        enqueuedAt = System.nanoTime();
+    }
+
+    void complete() {
+        finishedAt = System.nanoTime();
+        completion.complete(machine);
+    }
+
+    void fail(Throwable cause) {
+        finishedAt = System.nanoTime();
+        completion.completeExceptionally(cause);
+    }
+
+    long getVirtualRuntime() {
+        return virtualRuntime;
+    }
+
+    /**
+     * @return the sequence number assigned by the scheduler on submission
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * @return the machine executed by this job
+     */
+    public Machine getMachine() {
+        return machine;
+    }
+
+    /**
+     * @return the priority of the job, between MIN_PRIORITY and MAX_PRIORITY
+     */
+    public int getPriority() {
+        return priority;
+    }
+
+    /**
+     * @return a future completed with the machine once it halts, or exceptionally if an instruction fails
+     */
+    public CompletableFuture<Machine> getCompletion() {
+        return completion;
+    }
+
+    /**
+     * @return the instructions executed so far
+     */
+    public long getSteps() {
+        return steps;
+    }
+
+    /**
+     * @return the number of time slices the job has been given so far
+     */
+    public long getSlices() {
+        return slices;
+    }
+
+    /**
+     * @return the total time spent in the run queue waiting for a carrier thread, in nanoseconds
+     */
+    public long getWaitNanos() {
+        return waitNanos;
+    }
+
+    /**
+     * @return the longest single wait in the run queue, in nanoseconds
+     */
+    public long getMaxWaitNanos() {
+        return maxWaitNanos;
+    }
+
+    /**
+     * @return the time from submission to completion in nanoseconds, or -1 if the job has not finished yet
+     */
+    public long getTurnaroundNanos() {
+        long finished = finishedAt;
+        return finished == 0 ? -1 : finished - submittedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "Job " + id + " [priority = " + priority + ", steps = " + steps + ", slices = " + slices + "]";
+    }
+}
@@ -0,0 +1,239 @@
+package sml.scheduler;
+
+import sml.Machine;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The Scheduler multiplexes many SML runs over a small, fixed pool of carrier threads.
+ * <p>
+ * Each submitted machine becomes a {@link Job}. A carrier takes the job with the lowest virtual runtime from the run
+ * queue, lets it execute at most one quantum of instructions through {@link Machine#resume(long)} and puts it back
+ * in the queue if it has not halted yet. The virtual runtime grows with the steps executed divided by the priority,
+ * so a long running loop keeps yielding to short jobs and higher priority jobs receive proportionally more steps.
+ * <p>
+ * Jobs submitted while others are running start at the smallest virtual runtime in the queue, so they are neither
+ * starved by nor able to starve the jobs already running.
+ * <p>
+ * A job whose run throws, an {@link Error} included, completes exceptionally; its carrier goes on with the other jobs.
+ *
+ * @author alessioerosferri
+ */
+public final class Scheduler {
+    public static final long DEFAULT_QUANTUM = 10_000;
+
+    private final long quantum;
+    private final List<Thread> carriers = new ArrayList<>();
+    private final PriorityQueue<Job> runQueue = new PriorityQueue<>(
+            Comparator.comparingLong(Job::getVirtualRuntime).thenComparingLong(Job::getId));
+    private final Set<Job> active = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong slices = new AtomicLong();
+    private final AtomicLong steps = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    // virtual runtime of the last job taken from the queue, used as the starting point of new jobs
+    private long minVirtualRuntime = 0;
+    private boolean shutdown = false;
+
+    /**
+     * Constructor: starts a scheduler with the given number of carrier threads.
+     *
+     * @param carrierThreads the number of threads executing the jobs
+     * @param quantum        the maximum number of instructions a job executes before yielding its carrier
+     */
+    public Scheduler(int carrierThreads, long quantum) {
+        if (carrierThreads < 1) {
+            throw new IllegalArgumentException("At least one carrier thread is required");
+        }
+        if (quantum < 1) {
+            throw new IllegalArgumentException("Quantum must be positive");
+        }
+        this.quantum = quantum;
+        for (int i = 0; i < carrierThreads; i++) {
+            Thread carrier = new Thread(this::carrierLoop, "sml-carrier-" + i);
+            carrier.setDaemon(true);
+            carriers.add(carrier);
+            carrier.start();
+        }
+    }
+
+    /**
+     * Constructor: starts a scheduler with one carrier thread per available processor and the default quantum.
+     */
+    public Scheduler() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_QUANTUM);
+    }
+
+    /**
+     * Submits a machine with normal priority. The machine is reset and executed from instruction 0.
+     *
+     * @param machine the machine to run, its program and labels must have been stored already
+     * @return the job tracking the run
+     */
+    public Job submit(Machine machine) {
+        return submit(machine, Job.NORM_PRIORITY);
+    }
+
+    /**
+     * Submits a machine with the given priority. The machine is reset and executed from instruction 0.
+     *
+     * @param machine  the machine to run, its program and labels must have been stored already
+     * @param priority the priority of the job, between Job.MIN_PRIORITY and Job.MAX_PRIORITY
+     * @return the job tracking the run
+     * @throws IllegalStateException if the scheduler has been shut down
+     */
+    public Job submit(Machine machine, int priority) {
+        machine.reset();
+        lock.lock();
+        try {
+            if (shutdown) {
+                throw new IllegalStateException("Scheduler has been shut down");
+            }
+            Job job = new Job(submitted.incrementAndGet(), machine, priority, minVirtualRuntime);
+            active.add(job);
+            runQueue.add(job);
+            notEmpty.signal();
+            return job;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops accepting jobs and lets the carrier threads exit once the run queue is empty.
+     */
+    public void shutdown() {
+        lock.lock();
+        try {
+            shutdown = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits for the carrier threads to exit after a shutdown.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit    the unit of the timeout
+     * @return true if all the carriers exited before the timeout
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Thread carrier : carriers) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) return false;
+            TimeUnit.NANOSECONDS.timedJoin(carrier, remaining);
+            if (carrier.isAlive()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the maximum number of instructions a job executes before yielding its carrier
+     */
+    public long getQuantum() {
+        return quantum;
+    }
+
+    /**
+     * @return a snapshot of the counters and fairness metrics of the scheduler
+     */
+    public SchedulerStats getStats() {
+        List<Job> running = new ArrayList<>(active);
+        return new SchedulerStats(submitted.get(), completed.get(), failed.get(), running.size(),
+                slices.get(), steps.get(), waitNanos.get(), maxWaitNanos.get(), fairnessIndex(running));
+    }
+
+    /**
+     * Jain's fairness index over the steps received by the unfinished jobs, weighted by their priority:
+     * 1 when every job received its share, down to 1/n when a single job received everything.
+     */
+    private static double fairnessIndex(List<Job> jobs) {
+        double sum = 0;
+        double sumOfSquares = 0;
+        for (Job job : jobs) {
+            double share = (double) job.getSteps() / job.getPriority();
+            sum += share;
+            sumOfSquares += share * share;
+        }
+        return sumOfSquares == 0 ? 1.0 : (sum * sum) / (jobs.size() * sumOfSquares);
+    }
+
+    private void carrierLoop() {
+        while (true) {
+            Job job;
+            lock.lock();
+            try {
+                while (runQueue.isEmpty() && !shutdown) {
+                    notEmpty.await();
+                }
+                job = runQueue.poll();
+                if (job == null) {
+                    return;
+                }
+                minVirtualRuntime = job.getVirtualRuntime();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+            runSlice(job);
+        }
+    }
+
+    private void runSlice(Job job) {
+        long stepsBefore = job.getSteps();
+        long waitBefore = job.getWaitNanos();
+        boolean halted;
+        try {
+            halted = job.runSlice(quantum);
+        } catch (Throwable e) {
+            // errors too: the carrier is shared with the other jobs and must survive, and the job must complete
+            active.remove(job);
+            failed.incrementAndGet();
+            job.fail(e);
+            return;
+        } finally {
+            slices.incrementAndGet();
+            steps.addAndGet(job.getSteps() - stepsBefore);
+            waitNanos.addAndGet(job.getWaitNanos() - waitBefore);
+            maxWaitNanos.accumulateAndGet(job.getMaxWaitNanos(), Math::max);
+        }
+
+        if (halted) {
+            active.remove(job);
+            completed.incrementAndGet();
+            job.complete();
+            return;
+        }
+
+        lock.lock();
+        try {
+            job.enqueued();
+            runQueue.add(job);
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package sml.scheduler;
+
+/**
+ * Snapshot of the counters kept by a {@link Scheduler}.
+ *
+ * @param submitted      the jobs submitted so far
+ * @param completed      the jobs whose machine halted
+ * @param failed         the jobs terminated by an exception thrown by an instruction
+ * @param active         the jobs still queued or running
+ * @param slices         the time slices handed out to the jobs
+ * @param steps          the instructions executed by all the jobs
+ * @param waitNanos      the total time jobs spent in the run queue
+ * @param maxWaitNanos   the longest single wait of a job in the run queue
+ * @param fairnessIndex  Jain's fairness index of the priority weighted steps of the active jobs (1 is perfectly fair)
+ * @author alessioerosferri
+ */
+public record SchedulerStats(long submitted, long completed, long failed, long active, long slices, long steps,
+                             long waitNanos, long maxWaitNanos, double fairnessIndex) {
+
+    /**
+     * @return the average time a job waited in the run queue for each slice, in nanoseconds
+     */
+    public double averageWaitNanos() {
+        return slices == 0 ? 0 : (double) waitNanos / slices;
+    }
+}
@@ -0,0 +1,115 @@
+package sml.sweep;
+
+import sml.Registers;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.stream.IntStream;
+
+/**
+ * One dimension of a {@link ParameterSweep}: the initial values a register takes, in order.
+ *
+ * @param register the register the values are loaded into
+ * @param values   the initial values of the register
+ * @author alessioerosferri
+ */
+public record Axis(Registers.Register register, int[] values) {
+
+    /**
+     * Constructor: an axis with at least one value.
+     *
+     * @param register the register the values are loaded into
+     * @param values   the initial values of the register (copied)
+     */
+    public Axis {
+        Objects.requireNonNull(register);
+        if (values.length == 0) {
+            throw new IllegalArgumentException("Axis of " + register + " has no values");
+        }
+        values = values.clone();
+    }
+
+    /**
+     * @param register the register
+     * @param from     the first value
+     * @param to       the end of the range, excluded
+     * @return the axis of the values from, from + 1, ..., to - 1
+     */
+    public static Axis range(Registers.Register register, int from, int to) {
+        return range(register, from, to, 1);
+    }
+
+    /**
+     * @param register the register
+     * @param from     the first value
+     * @param to       the end of the range, excluded
+     * @param step     the difference between consecutive values, positive
+     * @return the axis of the values from, from + step, ... below to
+     */
+    public static Axis range(Registers.Register register, int from, int to, int step) {
+        if (step < 1) {
+            throw new IllegalArgumentException("Step must be positive");
+        }
+        return new Axis(register, IntStream.iterate(from, value -> value < to, value -> value + step)
+                .limit(Math.max(0, ((long) to - from + step - 1) / step))
+                .toArray());
+    }
+
+    /**
+     * @param register the register
+     * @param values   the values
+     * @return the axis of the given values
+     */
+    public static Axis of(Registers.Register register, int... values) {
+        return new Axis(register, values);
+    }
+
+    /**
+     * @return the number of values
+     */
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * @return the values of the axis (a copy)
+     */
+    @Override
+    public int[] values() {
+        return values.clone();
+    }
+
+    // the value at the given position, without copying
+    int value(int index) {
+        return values[index];
+    }
+
+    /**
+     * Indicates whether some other object is "equal to" this one, comparing the content of the arrays.
+     *
+     * @param o the object to compare
+     * @return true if this object is the same as the o argument; false otherwise
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Axis that)) return false;
+        return register == that.register && Arrays.equals(values, that.values);
+    }
+
+    /**
+     * @return a hash code value computed from the content of the array
+     */
+    @Override
+    public int hashCode() {
+        return 31 * register.hashCode() + Arrays.hashCode(values);
+    }
+
+    /**
+     * @return a string representation in the form "register [values]"
+     */
+    @Override
+    public String toString() {
+        return register + " " + Arrays.toString(values);
+    }
+}
@@ -0,0 +1,82 @@
+package sml.sweep;
+
+import java.util.Arrays;
+
+/**
+ * Distribution of the final value of a register over the points of a {@link ParameterSweep}: the range [min, max] is
+ * split into bins of equal width, the last one possibly narrower.
+ *
+ * @param min    the lowest value counted in the bins
+ * @param max    the highest value counted in the bins
+ * @param counts the number of points in each bin
+ * @param below  the number of points whose value is lower than min
+ * @param above  the number of points whose value is higher than max
+ * @param failed the number of points where the program failed
+ * @author alessioerosferri
+ */
+public record Histogram(int min, int max, long[] counts, long below, long above, long failed) {
+
+    /**
+     * @return the number of values in each bin (but possibly the last one)
+     */
+    public long binWidth() {
+        return binWidth(min, max, counts.length);
+    }
+
+    static long binWidth(int min, int max, int bins) {
+        return ((long) max - min + bins) / bins;
+    }
+
+    /**
+     * @param bin the index of a bin
+     * @return the lowest value counted in the bin
+     */
+    public int lowerBound(int bin) {
+        return (int) (min + bin * binWidth());
+    }
+
+    /**
+     * @return the number of points counted, including the failed ones
+     */
+    public long total() {
+        return Arrays.stream(counts).sum() + below + above + failed;
+    }
+
+    /**
+     * @return a human readable summary, one bin per line
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int bin = 0; bin < counts.length; bin++) {
+            long upper = Math.min(max, lowerBound(bin) + binWidth() - 1);
+            builder.append(String.format("[%d, %d]: %d%n", lowerBound(bin), upper, counts[bin]));
+        }
+        return builder.append("below: ").append(below)
+                .append(", above: ").append(above)
+                .append(", failed: ").append(failed).toString();
+    }
+
+    /**
+     * Indicates whether some other object is "equal to" this one, comparing the content of the arrays.
+     *
+     * @param o the object to compare
+     * @return true if this object is the same as the o argument; false otherwise
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Histogram that)) return false;
+        return min == that.min && max == that.max && below == that.below && above == that.above
+                && failed == that.failed && Arrays.equals(counts, that.counts);
+    }
+
+    /**
+     * @return a hash code value computed from the content of the array
+     */
+    @Override
+    public int hashCode() {
+        return 31 * (31 * (31 * (31 * (31 * min + max) + Long.hashCode(below)) + Long.hashCode(above))
+                + Long.hashCode(failed)) + Arrays.hashCode(counts);
+    }
+}
@@ -0,0 +1,310 @@
+package sml.sweep;
+
+import sml.Program;
+import sml.Registers;
+import sml.engine.CompiledProgram;
+import sml.engine.ExecutionState;
+import sml.engine.OutputRecorder;
+
+import java.io.Serial;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.IntSummaryStatistics;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs one program over a grid of initial register values.
+ * <p>
+ * The program is compiled once ({@link CompiledProgram}, verified when possible) and every point of the grid, the
+ * cartesian product of the {@link Axis axes}, runs on a primitive register array; the registers that are not on an
+ * axis start from the base registers. The points are split recursively across a work-stealing {@link ForkJoinPool}
+ * (the common pool by default), each task running a contiguous range of points.
+ * <pre>
+ * ParameterSweep sweep = new ParameterSweep(program, Axis.range(EAX, 1, 1_000), Axis.range(EBX, 0, 100));
+ * IntSummaryStatistics ecx = sweep.summary(ECX);         // min, max, average of ECX over 99,900 runs
+ * Histogram histogram = sweep.histogram(ECX, 0, 99, 10);
+ * sweep.forEach(point -&gt; ...);                          // every point, from the worker threads
+ * </pre>
+ * A point fails when the program fails (for instance a division by zero) or exceeds the step limit; reductions skip
+ * the failed points.
+ *
+ * @author alessioerosferri
+ */
+public final class ParameterSweep {
+    private static final int REGISTERS = Registers.Register.values().length;
+    // ranges are split into about this many tasks per worker thread
+    private static final int TASKS_PER_THREAD = 8;
+
+    /**
+     * Receives the final registers of each successful point of a reduction.
+     *
+     * @param <A> the type of the partial result
+     */
+    @FunctionalInterface
+    public interface Accumulator<A> {
+        /**
+         * @param partial   the partial result of the task running the point
+         * @param registers the final registers of the point, indexed by ordinal; the array is reused for the next point
+         */
+        void accept(A partial, int[] registers);
+    }
+
+    private final CompiledProgram program;
+    private final Axis[] axes;
+    private final long size;
+    private final int[] baseRegisters = new int[REGISTERS];
+    private long maxSteps = Long.MAX_VALUE;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    /**
+     * Constructor: a sweep of the program over the given axes.
+     *
+     * @param program the program
+     * @param axes    the axes of the grid, on distinct registers
+     * @throws IllegalArgumentException if there are no axes, two axes on the same register, more than
+     *                                  Long.MAX_VALUE points, or the program cannot be compiled
+     */
+    public ParameterSweep(Program program, Axis... axes) {
+        if (axes.length == 0) {
+            throw new IllegalArgumentException("A sweep needs at least one axis");
+        }
+        Set<Registers.Register> registers = EnumSet.noneOf(Registers.Register.class);
+        long points = 1;
+        for (Axis axis : axes) {
+            if (!registers.add(axis.register())) {
+                throw new IllegalArgumentException("More than one axis on " + axis.register());
+            }
+            try {
+                points = Math.multiplyExact(points, axis.size());
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException("Too many points in the sweep");
+            }
+        }
+        this.program = compile(program);
+        this.axes = axes.clone();
+        this.size = points;
+    }
+
+    private static CompiledProgram compile(Program program) {
+        try {
+            return CompiledProgram.verify(program.getInstructions(), program.getLabels());
+        } catch (IllegalArgumentException e) {
+            // runs with the checks of the reference interpreter, failures surface at the points reaching them
+            return CompiledProgram.compile(program.getInstructions(), program.getLabels());
+        }
+    }
+
+    /**
+     * Sets the initial value of the registers that are not on an axis (all zero by default).
+     *
+     * @param registers one value per register, indexed by ordinal
+     */
+    public void setBaseRegisters(int... registers) {
+        if (registers.length != REGISTERS) {
+            throw new IllegalArgumentException("Expected " + REGISTERS + " register values, got " + registers.length);
+        }
+        System.arraycopy(registers, 0, baseRegisters, 0, REGISTERS);
+    }
+
+    /**
+     * @param maxSteps the maximum number of instructions the program may execute at each point
+     */
+    public void setMaxSteps(long maxSteps) {
+        if (maxSteps < 1) {
+            throw new IllegalArgumentException("Step limit must be positive");
+        }
+        this.maxSteps = maxSteps;
+    }
+
+    /**
+     * @param pool the pool running the points
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = Objects.requireNonNull(pool);
+    }
+
+    /**
+     * @return the number of points of the grid
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @param index the position of a point, from 0 to {@link #size()} - 1
+     * @return the initial value of the register of each axis at the point, in the order of the axes
+     */
+    public int[] parameters(long index) {
+        Objects.checkIndex(index, size);
+        int[] parameters = new int[axes.length];
+        for (int axis = axes.length - 1; axis >= 0; axis--) {
+            int length = axes[axis].size();
+            parameters[axis] = axes[axis].value((int) (index % length));
+            index /= length;
+        }
+        return parameters;
+    }
+
+    /**
+     * Runs every point and passes its outcome to the action. The action is called concurrently from the threads of
+     * the pool, in no particular order.
+     *
+     * @param action the action receiving each point
+     */
+    public void forEach(Consumer<SweepPoint> action) {
+        Objects.requireNonNull(action);
+        pool.invoke(new Task<>(0, size, new Range<Void>() {
+            @Override
+            public Void run(long from, long to) {
+                int[] registers = new int[REGISTERS];
+                for (long index = from; index < to; index++) {
+                    OutputRecorder recorder = new OutputRecorder();
+                    ExecutionState state = new ExecutionState(registers, 0, recorder);
+                    String error = runPoint(index, state);
+                    action.accept(new SweepPoint(index, parameters(index), registers.clone(), recorder.toArray(),
+                            state.getSteps(), error));
+                }
+                return null;
+            }
+
+            @Override
+            public Void combine(Void left, Void right) {
+                return null;
+            }
+        }));
+    }
+
+    /**
+     * Runs every point and reduces the final registers of the successful ones. Each task accumulates its points into
+     * its own partial result, and the partial results are then combined.
+     *
+     * @param supplier    creates an empty partial result
+     * @param accumulator adds the final registers of a point to a partial result
+     * @param combiner    merges two partial results
+     * @param <A>         the type of the result
+     * @return the combined result
+     */
+    public <A> A reduce(Supplier<A> supplier, Accumulator<A> accumulator, BinaryOperator<A> combiner) {
+        Objects.requireNonNull(accumulator);
+        Objects.requireNonNull(combiner);
+        IntConsumer discard = value -> {
+        };
+        return pool.invoke(new Task<>(0, size, new Range<A>() {
+            @Override
+            public A run(long from, long to) {
+                A partial = supplier.get();
+                int[] registers = new int[REGISTERS];
+                for (long index = from; index < to; index++) {
+                    if (runPoint(index, new ExecutionState(registers, 0, discard)) == null)
+                        accumulator.accept(partial, registers);
+                }
+                return partial;
+            }
+
+            @Override
+            public A combine(A left, A right) {
+                return combiner.apply(left, right);
+            }
+        }));
+    }
+
+    /**
+     * @param register a register
+     * @return the count, minimum, maximum and average of the final value of the register over the successful points
+     */
+    public IntSummaryStatistics summary(Registers.Register register) {
+        int ordinal = register.ordinal();
+        return reduce(IntSummaryStatistics::new, (statistics, registers) -> statistics.accept(registers[ordinal]),
+                (left, right) -> {
+                    left.combine(right);
+                    return left;
+                });
+    }
+
+    /**
+     * @param register a register
+     * @param min      the lowest value counted in the bins
+     * @param max      the highest value counted in the bins
+     * @param bins     the number of bins
+     * @return the distribution of the final value of the register over the points
+     */
+    public Histogram histogram(Registers.Register register, int min, int max, int bins) {
+        if (bins < 1 || min > max) {
+            throw new IllegalArgumentException("A histogram needs at least one bin and min <= max");
+        }
+        int ordinal = register.ordinal();
+        long width = Histogram.binWidth(min, max, bins);
+        // counts of the bins, then below and above
+        long[] counts = reduce(() -> new long[bins + 2], (partial, registers) -> {
+            int value = registers[ordinal];
+            if (value < min) partial[bins]++;
+            else if (value > max) partial[bins + 1]++;
+            else partial[(int) (((long) value - min) / width)]++;
+        }, (left, right) -> {
+            Arrays.setAll(left, i -> left[i] + right[i]);
+            return left;
+        });
+        long failed = size - Arrays.stream(counts).sum();
+        return new Histogram(min, max, Arrays.copyOf(counts, bins), counts[bins], counts[bins + 1], failed);
+    }
+
+    // loads the initial registers of the point into the state and runs the program, the error if it did not halt
+    private String runPoint(long index, ExecutionState state) {
+        int[] registers = state.getRegisters();
+        System.arraycopy(baseRegisters, 0, registers, 0, REGISTERS);
+        for (int axis = axes.length - 1; axis >= 0; axis--) {
+            int length = axes[axis].size();
+            registers[axes[axis].register().ordinal()] = axes[axis].value((int) (index % length));
+            index /= length;
+        }
+        try {
+            program.run(state, maxSteps);
+        } catch (RuntimeException e) {
+            return e.getClass().getSimpleName() + ": " + e.getMessage();
+        }
+        return state.getProgramCounter() >= program.size() ? null : "step limit of " + maxSteps + " exceeded";
+    }
+
+    // the work done on a range of points by a task, and how the results of two ranges are merged
+    private interface Range<R> {
+        R run(long from, long to);
+
+        R combine(R left, R right);
+    }
+
+    // a range of points, split in halves until it is small enough to run on one thread
+    private final class Task<R> extends RecursiveTask<R> {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final long from;
+        private final long to;
+        private final Range<R> range;
+
+        Task(long from, long to, Range<R> range) {
+            this.from = from;
+            this.to = to;
+            this.range = range;
+        }
+
+        @Override
+        protected R compute() {
+            long threshold = Math.max(1, size / ((long) pool.getParallelism() * TASKS_PER_THREAD));
+            if (to - from <= threshold) {
+                return range.run(from, to);
+            }
+            long middle = from + (to - from) / 2;
+            Task<R> right = new Task<>(middle, to, range);
+            right.fork();
+            R left = new Task<>(from, middle, range).compute();
+            return range.combine(left, right.join());
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package sml.sweep;
+
+import java.util.Arrays;
+
+/**
+ * The outcome of the program at one point of a {@link ParameterSweep}.
+ *
+ * @param index      the position of the point in the sweep, the last axis varying fastest
+ * @param parameters the initial value of the register of each axis, in the order of the axes
+ * @param registers  the final registers, indexed by ordinal (the registers when the run stopped if it failed)
+ * @param outputs    the values written by the program
+ * @param steps      the instructions executed
+ * @param error      the reason of the failure, null if the program completed
+ * @author alessioerosferri
+ */
+public record SweepPoint(long index, int[] parameters, int[] registers, int[] outputs, long steps, String error) {
+
+    /**
+     * @return true if the program completed within the step limit
+     */
+    public boolean succeeded() {
+        return error == null;
+    }
+
+    /**
+     * @return a string representation in the form "#index [parameters] -> [registers] [outputs] steps" or
+     * "#index [parameters] -> error"
+     */
+    @Override
+    public String toString() {
+        return "#" + index + " " + Arrays.toString(parameters) + " -> "
+                + (succeeded() ? Arrays.toString(registers) + " " + Arrays.toString(outputs) + " " + steps : error);
+    }
+}
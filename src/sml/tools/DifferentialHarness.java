@@ -0,0 +1,294 @@
+package sml.tools;
+
+import sml.ExecutionListener;
+import sml.Instruction;
+import sml.Labels;
+import sml.Machine;
+import sml.Program;
+import sml.Registers;
+import sml.engine.BlockEngine;
+import sml.engine.CompiledProgram;
+import sml.engine.ExecutionState;
+import sml.engine.OutputRecorder;
+import sml.engine.SmlEngine;
+import sml.instruction.JnzInstruction;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+
+/**
+ * Runs programs through every execution engine and compares what they do against the reference interpreter
+ * ({@link Instruction#execute} one instruction at a time): final registers, outputs, step counts and errors (see
+ * {@link Outcome}).
+ * <p>
+ * When the engines disagree, {@link #shrink(Mismatch)} reduces the program to a minimal reproducer: it removes chunks
+ * of instructions (halving the chunk size down to single instructions) as long as the engines still disagree, moving
+ * the labels of removed instructions to the next kept one, and then looks for the smallest step budget that still
+ * shows the disagreement, which points at the first step where the engines diverge.
+ *
+ * @author alessioerosferri
+ */
+public final class DifferentialHarness {
+    public static final String REFERENCE = "interpreter";
+
+    /**
+     * An execution engine under test.
+     */
+    @FunctionalInterface
+    public interface Engine {
+        /**
+         * Runs a program from cleared registers.
+         *
+         * @param program  the program
+         * @param maxSteps the maximum number of instructions to execute
+         * @return the outcome of the run, null if the engine cannot run this program (it is then not compared)
+         */
+        Outcome run(Program program, long maxSteps);
+    }
+
+    private final Map<String, Engine> engines = new LinkedHashMap<>();
+
+    /**
+     * Constructor: a harness comparing the reference interpreter with the tiered machine, the instrumented
+     * interpreter, the verified machine, the compiled program and the block engine.
+     */
+    public DifferentialHarness() {
+        engines.put(REFERENCE, (program, maxSteps) -> {
+            Machine machine = program.newMachine();
+            machine.setTieringThreshold(0);
+            return run(machine, maxSteps);
+        });
+        engines.put("tiered", (program, maxSteps) -> {
+            Machine machine = program.newMachine();
+            machine.setTieringThreshold(1);
+            return run(machine, maxSteps);
+        });
+        engines.put("instrumented", (program, maxSteps) -> {
+            Machine machine = program.newMachine();
+            machine.addListener(new ExecutionListener() {
+            });
+            return run(machine, maxSteps);
+        });
+        engines.put("verified", (program, maxSteps) -> {
+            Machine machine = program.newMachine();
+            try {
+                machine.verify();
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+            return run(machine, maxSteps);
+        });
+        engines.put("compiled", (program, maxSteps) -> {
+            try {
+                return run(CompiledProgram.compile(program.getInstructions(), program.getLabels())::run,
+                        program.size(), maxSteps);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        });
+        engines.put("block", (program, maxSteps) -> {
+            try {
+                return run(BlockEngine.compile(program.getInstructions(), program.getLabels())::run,
+                        program.size(), maxSteps);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Adds an engine to compare with the reference interpreter, or replaces the engine with the same name.
+     *
+     * @param name   the name of the engine
+     * @param engine the engine
+     */
+    public void addEngine(String name, Engine engine) {
+        if (name.equals(REFERENCE)) {
+            throw new IllegalArgumentException("The reference interpreter cannot be replaced");
+        }
+        engines.put(name, Objects.requireNonNull(engine));
+    }
+
+    /**
+     * @return the names of the engines, the reference interpreter first
+     */
+    public List<String> getEngines() {
+        return new ArrayList<>(engines.keySet());
+    }
+
+    /**
+     * Runs a program through every engine.
+     *
+     * @param program  the program
+     * @param maxSteps the maximum number of instructions each engine may execute
+     * @return the engines disagreeing with the reference interpreter, with all the outcomes; empty if they all agree
+     */
+    public Optional<Mismatch> check(Program program, long maxSteps) {
+        Map<String, Outcome> outcomes = new LinkedHashMap<>();
+        engines.forEach((name, engine) -> {
+            Outcome outcome = engine.run(program, maxSteps);
+            if (outcome != null) outcomes.put(name, outcome);
+        });
+        Outcome reference = outcomes.get(REFERENCE);
+        boolean agree = outcomes.values().stream().allMatch(reference::matches);
+        return agree ? Optional.empty() : Optional.of(new Mismatch(program, maxSteps, outcomes));
+    }
+
+    /**
+     * Runs a program through every engine and, if they disagree, shrinks the program to a minimal reproducer.
+     *
+     * @param program  the program
+     * @param maxSteps the maximum number of instructions each engine may execute
+     * @return the minimal mismatch, empty if the engines agree
+     */
+    public Optional<Mismatch> test(Program program, long maxSteps) {
+        return check(program, maxSteps).map(this::shrink);
+    }
+
+    /**
+     * Shrinks a mismatch: the result is a mismatch whose program and step budget cannot be reduced further by removing
+     * a single instruction or by lowering the budget. Every candidate runs through every engine with at most the
+     * original step budget, so removing the instructions that end a loop costs at most that many steps.
+     *
+     * @param mismatch the mismatch found by {@link #check}
+     * @return the reduced mismatch
+     */
+    public Mismatch shrink(Mismatch mismatch) {
+        Program program = mismatch.program();
+        long maxSteps = mismatch.maxSteps();
+
+        int chunk = Math.max(1, program.size() / 2);
+        while (true) {
+            boolean reduced = false;
+            for (int from = 0; from < program.size(); ) {
+                Program candidate = without(program, from, Math.min(program.size(), from + chunk));
+                if (check(candidate, maxSteps).isPresent()) {
+                    program = candidate;
+                    reduced = true;
+                } else {
+                    from += chunk;
+                }
+            }
+            if (!reduced) {
+                if (chunk == 1) break;
+                chunk /= 2;
+            } else {
+                chunk = Math.max(1, Math.min(chunk, program.size() / 2));
+            }
+        }
+
+        long low = 1;
+        long high = maxSteps;
+        while (low < high) {
+            long middle = low + (high - low) / 2;
+            if (check(program, middle).isPresent()) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return check(program, high).orElseThrow();
+    }
+
+    // the program without the instructions in [from, to), labels of removed instructions move to the next kept one;
+    // an instruction carries a single label in the source, so jumps to the other labels of its address are retargeted
+    static Program without(Program program, int from, int to) {
+        int size = program.size();
+        int[] newAddress = new int[size + 1];
+        List<Instruction> kept = new ArrayList<>(size - (to - from));
+        for (int address = 0; address < size; address++) {
+            newAddress[address] = kept.size();
+            if (address < from || address >= to) kept.add(program.getInstructions().get(address));
+        }
+        newAddress[size] = kept.size();
+
+        Labels original = program.getLabels();
+        String[] labelAt = new String[kept.size()];
+        for (int address = 0; address < kept.size(); address++) {
+            String own = kept.get(address).getLabel();
+            if (own != null && original.getId(own) >= 0 && original.getAddress(own) >= 0
+                    && original.getAddress(own) <= size && newAddress[original.getAddress(own)] == address)
+                labelAt[address] = own;
+        }
+        Labels labels = new Labels();
+        Map<String, String> aliases = new HashMap<>();
+        original.forEach((label, address) -> {
+            int moved = address < 0 ? address : address > size ? address - (to - from) : newAddress[address];
+            if (moved >= 0 && moved < labelAt.length) {
+                if (labelAt[moved] == null) {
+                    labelAt[moved] = label;
+                } else if (!labelAt[moved].equals(label)) {
+                    aliases.put(label, labelAt[moved]);
+                    return;
+                }
+            }
+            labels.addLabel(label, moved);
+        });
+        for (int address = 0; address < kept.size(); address++) {
+            Instruction instruction = kept.get(address);
+            if (instruction instanceof JnzInstruction jnz && aliases.containsKey(jnz.getNextInstructionLabel()))
+                instruction = new JnzInstruction(jnz.getLabel(), jnz.getSource(), aliases.get(jnz.getNextInstructionLabel()));
+            if (!Objects.equals(instruction.getLabel(), labelAt[address])) instruction = instruction.withLabel(labelAt[address]);
+            kept.set(address, instruction);
+        }
+        return new Program(kept, labels);
+    }
+
+    private static Outcome run(Machine machine, long maxSteps) {
+        OutputRecorder recorder = new OutputRecorder();
+        machine.setOutput(recorder);
+        machine.reset();
+        try {
+            long steps = machine.resume(maxSteps);
+            return new Outcome(machine.getRegisters().toArray(), recorder.toArray(), steps,
+                    machine.isHalted() ? null : Outcome.STEP_LIMIT);
+        } catch (RuntimeException e) {
+            return new Outcome(machine.getRegisters().toArray(), recorder.toArray(), -1, e.getClass().getName());
+        }
+    }
+
+    private static Outcome run(BiConsumer<ExecutionState, Long> engine, int size, long maxSteps) {
+        OutputRecorder recorder = new OutputRecorder();
+        ExecutionState state = new ExecutionState(new int[Registers.Register.values().length], 0, recorder);
+        try {
+            engine.accept(state, maxSteps);
+            return new Outcome(state.getRegisters(), recorder.toArray(), state.getSteps(),
+                    state.getProgramCounter() >= size ? null : Outcome.STEP_LIMIT);
+        } catch (RuntimeException e) {
+            return new Outcome(state.getRegisters(), recorder.toArray(), -1, e.getClass().getName());
+        }
+    }
+
+    /**
+     * Compares the engines on a program: DifferentialHarness file [max-steps]. Prints "all engines agree" or the
+     * minimal reproducer of the disagreement.
+     *
+     * @param args the command line arguments
+     */
+    public static void main(String... args) {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Incorrect arguments - DifferentialHarness <file> [max-steps] - required");
+            System.exit(-1);
+        }
+        try (Reader reader = Files.newBufferedReader(Path.of(args[0]), StandardCharsets.UTF_8)) {
+            Program program = new SmlEngine().compile(reader);
+            long maxSteps = args.length > 1 ? Long.parseLong(args[1]) : 10_000_000;
+            Optional<Mismatch> mismatch = new DifferentialHarness().test(program, maxSteps);
+            System.out.println(mismatch.map(Mismatch::toString).orElse("all engines agree"));
+            if (mismatch.isPresent()) System.exit(1);
+        } catch (IOException e) {
+            System.out.println("Error reading the program from " + args[0]);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package sml.tools;
+
+import sml.Program;
+
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * A program on which the engines disagree, with what each engine did.
+ *
+ * @param program  the program
+ * @param maxSteps the number of instructions the engines were allowed to execute
+ * @param outcomes the outcome of each engine, by engine name, the reference engine first
+ * @author alessioerosferri
+ */
+public record Mismatch(Program program, long maxSteps, Map<String, Outcome> outcomes) {
+
+    /**
+     * @return the program, the step budget and the outcome of each engine, one per line
+     */
+    @Override
+    public String toString() {
+        return program + "\n--- with at most " + maxSteps + " steps\n" + outcomes.entrySet().stream()
+                .map(entry -> entry.getKey() + ": " + entry.getValue())
+                .collect(Collectors.joining("\n"));
+    }
+}
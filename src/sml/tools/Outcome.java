@@ -0,0 +1,53 @@
+package sml.tools;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * What an engine observably did with a program: the final registers (indexed by ordinal), the values written, the
+ * number of instructions executed and, if the run did not complete, why.
+ * <p>
+ * Two outcomes match when the registers, the outputs and the error are the same; the step counts are compared too
+ * unless the run failed with an exception, whose exact failing step engines are not required to agree on. Errors
+ * are compared by exception class only, as engines word their messages differently.
+ *
+ * @param registers the final register values
+ * @param outputs   the values written by the program
+ * @param steps     the instructions executed, -1 if the run failed with an exception
+ * @param error     the class of the exception that stopped the run, "step limit" if the run did not complete in the
+ *                  allowed steps, null if the run completed
+ * @author alessioerosferri
+ */
+public record Outcome(int[] registers, int[] outputs, long steps, String error) {
+    public static final String STEP_LIMIT = "step limit";
+
+    /**
+     * @param other the outcome of another engine
+     * @return true if the two engines behaved the same
+     */
+    public boolean matches(Outcome other) {
+        return Arrays.equals(registers, other.registers)
+                && Arrays.equals(outputs, other.outputs)
+                && steps == other.steps
+                && Objects.equals(error, other.error);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof Outcome that && matches(that);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(registers) + Arrays.hashCode(outputs);
+    }
+
+    /**
+     * @return a string of the form "registers = [...], outputs = [...], steps = n[, error = ...]"
+     */
+    @Override
+    public String toString() {
+        return "registers = " + Arrays.toString(registers) + ", outputs = " + Arrays.toString(outputs)
+                + ", steps = " + steps + (error == null ? "" : ", error = " + error);
+    }
+}
@@ -0,0 +1,299 @@
+package sml.tools;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Generates random, syntactically valid SML programs for stress and performance tests.
+ * <p>
+ * Every opcode of the language is used, and every generated program terminates without a division by zero:
+ * <ul>
+ *     <li>EAX, EBX and ECX hold the data, EDX is a scratch register that only ever receives non-zero constants: every
+ *     div is preceded by a mov of a non-zero constant into EDX, and EDX is its divisor;</li>
+ *     <li>loops count down ESP, EBP, ESI and EDI (one per nesting level, so at most 4 levels) from a positive
+ *     constant, and nothing but the loop itself writes its counter;</li>
+ *     <li>the other jumps only go forward, within the same loop body.</li>
+ * </ul>
+ * The program is streamed to its destination, so files of any size (up to gigabytes) can be generated in constant
+ * memory. The same seed and settings always produce the same program.
+ *
+ * @author alessioerosferri
+ */
+public final class ProgramGenerator {
+    public static final int MAX_LOOP_DEPTH = 4;
+
+    private static final String[] DATA = {"EAX", "EBX", "ECX"};
+    private static final String SCRATCH = "EDX";
+    private static final String[] COUNTERS = {"ESP", "EBP", "ESI", "EDI"};
+
+    private final long seed;
+    private int maxLoopDepth = 2;
+    private int maxIterations = 5;
+    private int maxLoopBody = 8;
+    private double loopDensity = 0.05;
+    private double branchDensity = 0.05;
+    private double labelDensity = 0.0;
+    private double outputDensity = 0.02;
+
+    // state of the current generation
+    private Random random;
+    private Writer out;
+    private long bytes;
+    private long instructions;
+    private long labels;
+    private String pendingLabel;
+
+    /**
+     * Constructor: a generator with default settings.
+     *
+     * @param seed the seed of the random choices
+     */
+    public ProgramGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @param maxLoopDepth the maximum nesting depth of loops, from 0 (no loops) to {@link #MAX_LOOP_DEPTH}
+     */
+    public void setMaxLoopDepth(int maxLoopDepth) {
+        if (maxLoopDepth < 0 || maxLoopDepth > MAX_LOOP_DEPTH) {
+            throw new IllegalArgumentException("Loop depth must be between 0 and " + MAX_LOOP_DEPTH);
+        }
+        this.maxLoopDepth = maxLoopDepth;
+    }
+
+    /**
+     * @param maxIterations the maximum number of iterations of a loop (each loop runs between 1 and this many times)
+     */
+    public void setMaxIterations(int maxIterations) {
+        if (maxIterations < 1) {
+            throw new IllegalArgumentException("Iterations must be positive");
+        }
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * @param maxLoopBody the maximum number of statements (instructions, branches or inner loops) of a loop body
+     */
+    public void setMaxLoopBody(int maxLoopBody) {
+        if (maxLoopBody < 1) {
+            throw new IllegalArgumentException("Loop body must have at least one statement");
+        }
+        this.maxLoopBody = maxLoopBody;
+    }
+
+    /**
+     * @param loopDensity the probability that a statement is a loop, if the nesting depth allows it
+     */
+    public void setLoopDensity(double loopDensity) {
+        this.loopDensity = probability(loopDensity);
+    }
+
+    /**
+     * @param branchDensity the probability that a statement is a forward jnz
+     */
+    public void setBranchDensity(double branchDensity) {
+        this.branchDensity = probability(branchDensity);
+    }
+
+    /**
+     * @param labelDensity the probability that an instruction carries a label nobody jumps to, on top of the labels
+     *                     of loops and branches
+     */
+    public void setLabelDensity(double labelDensity) {
+        this.labelDensity = probability(labelDensity);
+    }
+
+    /**
+     * @param outputDensity the probability that an instruction is an out
+     */
+    public void setOutputDensity(double outputDensity) {
+        this.outputDensity = probability(outputDensity);
+    }
+
+    private static double probability(double value) {
+        if (!(value >= 0 && value <= 1)) {
+            throw new IllegalArgumentException("Density must be between 0 and 1");
+        }
+        return value;
+    }
+
+    /**
+     * Generates a program of at least the given size into a string.
+     *
+     * @param targetBytes the minimum size of the program, in bytes
+     * @return the source code of the program
+     */
+    public String generate(long targetBytes) {
+        StringWriter writer = new StringWriter();
+        try {
+            generate(writer, targetBytes);
+        } catch (IOException e) {
+            // a StringWriter never fails to write
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Generates a program of at least the given size into a file.
+     *
+     * @param file        the file to write
+     * @param targetBytes the minimum size of the program, in bytes
+     * @return the number of instructions generated
+     * @throws IOException if the file cannot be written
+     */
+    public long generate(Path file, long targetBytes) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            return generate(writer, targetBytes);
+        }
+    }
+
+    /**
+     * Generates a program of at least the given size. Generation stops at the first top-level statement that reaches
+     * the size, so loops are never cut.
+     *
+     * @param writer      the destination of the program (not closed)
+     * @param targetBytes the minimum size of the program, in bytes
+     * @return the number of instructions generated
+     * @throws IOException if the program cannot be written
+     */
+    public long generate(Writer writer, long targetBytes) throws IOException {
+        random = new Random(seed);
+        out = writer;
+        bytes = 0;
+        instructions = 0;
+        labels = 0;
+        pendingLabel = null;
+        try {
+            while (bytes < targetBytes) {
+                statement(0);
+            }
+            out.flush();
+            return instructions;
+        } finally {
+            out = null;
+        }
+    }
+
+    private void statement(int depth) throws IOException {
+        double choice = random.nextDouble();
+        if (depth < maxLoopDepth && choice < loopDensity) {
+            loop(depth);
+        } else if (choice < loopDensity + branchDensity) {
+            branch();
+        } else {
+            instruction();
+        }
+    }
+
+    private void loop(int depth) throws IOException {
+        String counter = COUNTERS[depth];
+        String header = newLabel();
+        emit("mov " + counter + " " + (1 + random.nextInt(maxIterations)));
+        pendingLabel = header;
+        int body = 1 + random.nextInt(maxLoopBody);
+        for (int i = 0; i < body; i++) {
+            statement(depth + 1);
+        }
+        emit("mov " + SCRATCH + " 1");
+        emit("sub " + counter + " " + SCRATCH);
+        emit("jnz " + counter + " " + header);
+    }
+
+    // a forward jump over a few instructions of the same body
+    private void branch() throws IOException {
+        String target = newLabel();
+        emit("jnz " + data() + " " + target);
+        int skipped = 1 + random.nextInt(3);
+        for (int i = 0; i < skipped; i++) {
+            instruction();
+        }
+        pendingLabel = target;
+        instruction();
+    }
+
+    private void instruction() throws IOException {
+        if (pendingLabel == null && random.nextDouble() < labelDensity) {
+            pendingLabel = newLabel();
+        }
+        if (random.nextDouble() < outputDensity) {
+            emit("out " + data());
+            return;
+        }
+        switch (random.nextInt(5)) {
+            case 0 -> emit("add " + data() + " " + data());
+            case 1 -> emit("sub " + data() + " " + data());
+            case 2 -> emit("mul " + data() + " " + data());
+            case 3 -> {
+                emit("mov " + SCRATCH + " " + divisor());
+                emit("div " + data() + " " + SCRATCH);
+            }
+            default -> emit("mov " + data() + " " + (random.nextInt(2001) - 1000));
+        }
+    }
+
+    private String data() {
+        return DATA[random.nextInt(DATA.length)];
+    }
+
+    private int divisor() {
+        int divisor = 1 + random.nextInt(9);
+        return random.nextBoolean() ? divisor : -divisor;
+    }
+
+    private String newLabel() {
+        return "L" + labels++;
+    }
+
+    private void emit(String instruction) throws IOException {
+        String line = pendingLabel == null ? instruction + "\n" : pendingLabel + ": " + instruction + "\n";
+        pendingLabel = null;
+        out.write(line);
+        bytes += line.length();
+        instructions++;
+    }
+
+    /**
+     * Writes a program to a file: ProgramGenerator file size [seed [loop-depth]], where the size is a number of bytes
+     * with an optional k, m or g suffix.
+     *
+     * @param args the command line arguments
+     */
+    public static void main(String... args) {
+        if (args.length < 2 || args.length > 4) {
+            System.err.println("Incorrect arguments - ProgramGenerator <file> <size>[k|m|g] [seed] [loop-depth] - required");
+            System.exit(-1);
+        }
+        try {
+            ProgramGenerator generator = new ProgramGenerator(args.length > 2 ? Long.parseLong(args[2]) : 0);
+            if (args.length > 3) generator.setMaxLoopDepth(Integer.parseInt(args[3]));
+            long count = generator.generate(Path.of(args[0]), parseSize(args[1]));
+            System.out.println("Generated " + count + " instructions in " + args[0]);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(-1);
+        } catch (IOException e) {
+            System.out.println("Error writing the program to " + args[0]);
+        }
+    }
+
+    static long parseSize(String size) {
+        String lower = size.toLowerCase();
+        long unit = switch (lower.isEmpty() ? ' ' : lower.charAt(lower.length() - 1)) {
+            case 'k' -> 1L << 10;
+            case 'm' -> 1L << 20;
+            case 'g' -> 1L << 30;
+            default -> 1;
+        };
+        String digits = unit == 1 ? lower : lower.substring(0, lower.length() - 1);
+        return Long.parseLong(digits) * unit;
+    }
+}
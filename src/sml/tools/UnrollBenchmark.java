@@ -0,0 +1,83 @@
+package sml.tools;
+
+import sml.Instruction;
+import sml.Labels;
+import sml.Machine;
+import sml.Program;
+import sml.Registers;
+import sml.engine.CompiledProgram;
+import sml.engine.ExecutionState;
+import sml.engine.SmlEngine;
+import sml.optimizer.LoopUnroller;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures what {@link LoopUnroller} saves on a counted loop with a short body, the shape of the f3 loop of
+ * factorialOf6.txt: for each unrolling factor, the instructions executed and the best time of a few runs on the
+ * interpreter and on the compiled program.
+ * <p>
+ * UnrollBenchmark [trip-count [runs]], 10,000,000 iterations and 5 runs by default.
+ *
+ * @author alessioerosferri
+ */
+public final class UnrollBenchmark {
+    private static final int[] FACTORS = {1, 2, 4, 8};
+
+    private UnrollBenchmark() {
+    }
+
+    private static String loop(int tripCount) {
+        return """
+                mov EAX %d
+                mov EBX 1
+                mov ECX 1
+                f3: mul EBX EAX
+                sub EAX ECX
+                jnz EAX f3
+                out EBX
+                """.formatted(tripCount);
+    }
+
+    /**
+     * Runs the benchmark and prints one line per unrolling factor.
+     *
+     * @param args the command line arguments
+     */
+    public static void main(String... args) {
+        int tripCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        Program original = new SmlEngine().compile(loop(tripCount));
+
+        System.out.printf("%-7s %14s %16s %16s%n", "factor", "steps", "interpreter ms", "compiled ms");
+        for (int factor : FACTORS) {
+            List<Instruction> instructions = new ArrayList<>(original.getInstructions());
+            Labels labels = original.getLabels();
+            if (factor > 1) LoopUnroller.optimize(labels, instructions, factor);
+            Program program = new Program(instructions, labels);
+
+            long steps = 0;
+            long interpreter = Long.MAX_VALUE;
+            long compiled = Long.MAX_VALUE;
+            for (int run = 0; run < runs; run++) {
+                Machine machine = program.newMachine();
+                machine.setTieringThreshold(0);
+                machine.setOutput(value -> {
+                });
+                machine.reset();
+                long start = System.nanoTime();
+                steps = machine.resume(Long.MAX_VALUE);
+                interpreter = Math.min(interpreter, System.nanoTime() - start);
+
+                CompiledProgram code = CompiledProgram.compile(instructions, labels);
+                ExecutionState state = new ExecutionState(new int[Registers.Register.values().length], 0, value -> {
+                });
+                start = System.nanoTime();
+                code.run(state, Long.MAX_VALUE);
+                compiled = Math.min(compiled, System.nanoTime() - start);
+            }
+            System.out.printf("%-7d %,14d %16.1f %16.1f%n", factor, steps, interpreter / 1e6, compiled / 1e6);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package sml;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.recorder.FlightRecorder;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static sml.Registers.Register.*;
+
+/**
+ * Allocation budgets of the execution hot path and of the translator, measured with the allocation counter of the
+ * current thread. Values and jump targets are kept above 127 so that boxing would not be hidden by the Integer cache.
+ */
+class AllocationTest {
+    // a run allocates a few objects once (output sink, compiled program, ...), never per instruction
+    private static final double BYTES_PER_INSTRUCTION = 0.01;
+    private static final int WARM_UP_RUNS = 5;
+    private static final int PADDING = 200;
+
+    private com.sun.management.ThreadMXBean threads;
+    private Machine machine;
+
+    @BeforeEach
+    void setUp() {
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        machine = new Machine(new Registers());
+        machine.setOutput(value -> {
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        threads = null;
+        machine = null;
+    }
+
+    private long allocatedBytes() {
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    // the loop starts after PADDING instructions and runs every opcode with large values, 7 instructions per iteration
+    private long loadLoop(int iterations) throws IOException {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < PADDING; i++)
+            source.append("mov EDI ").append(1000 + i).append('\n');
+        source.append("""
+                mov EAX %d
+                mov ECX 1
+                mov EDX 3
+                loop: add EBX EAX
+                mul EBX EDX
+                div EBX EDX
+                mov ESI 100000
+                out ESI
+                sub EAX ECX
+                jnz EAX loop
+                """.formatted(iterations));
+        new Translator().readAndTranslate(new StringReader(source.toString()), machine.getLabels(), machine.getProgram());
+        return PADDING + 3 + 7L * iterations;
+    }
+
+    private double bytesPerInstruction(long steps) {
+        for (int i = 0; i < WARM_UP_RUNS; i++)
+            machine.execute();
+        long before = allocatedBytes();
+        machine.execute();
+        long allocated = allocatedBytes() - before;
+        Assertions.assertEquals(steps, machine.snapshot().steps());
+        return (double) allocated / steps;
+    }
+
+    @Test
+    void interpreterLoopDoesNotAllocate() throws IOException {
+        long steps = loadLoop(200_000);
+        machine.setTieringThreshold(0);
+        double bytes = bytesPerInstruction(steps);
+        Assertions.assertTrue(bytes < BYTES_PER_INSTRUCTION, bytes + " bytes per instruction");
+    }
+
+    @Test
+    void compiledLoopDoesNotAllocate() throws IOException {
+        long steps = loadLoop(200_000);
+        double bytes = bytesPerInstruction(steps);
+        Assertions.assertTrue(machine.isPromoted());
+        Assertions.assertTrue(bytes < BYTES_PER_INSTRUCTION, bytes + " bytes per instruction");
+    }
+
+    @Test
+    void recordedLoopDoesNotAllocate() throws IOException {
+        long steps = loadLoop(200_000);
+        Path trace = Files.createTempFile("allocation", ".trace");
+        try (FlightRecorder recorder = new FlightRecorder(trace, 1 << 20)) {
+            machine.addListener(recorder);
+            double bytes = bytesPerInstruction(steps);
+            Assertions.assertTrue(bytes < BYTES_PER_INSTRUCTION, bytes + " bytes per instruction");
+        } finally {
+            Files.deleteIfExists(trace);
+        }
+    }
+
+    @Test
+    void registerAccessDoesNotAllocate() {
+        Registers registers = machine.getRegisters();
+        long sum = 0;
+        for (int round = 0; round <= WARM_UP_RUNS; round++) {
+            long before = allocatedBytes();
+            for (int value = 1_000; value < 1_000_000; value++) {
+                registers.set(EAX, value);
+                sum += registers.get(EAX);
+            }
+            if (round == WARM_UP_RUNS) Assertions.assertEquals(0, allocatedBytes() - before - measurementOverhead());
+        }
+        Assertions.assertTrue(sum > 0);
+    }
+
+    @Test
+    void jumpResolutionDoesNotAllocate() {
+        Labels labels = new Labels();
+        for (int i = 0; i < 10_000; i++)
+            labels.addLabel("l" + i, 1_000 + i);
+        String[] names = {"l0", "l4999", "l9999"};
+        long sum = 0;
+        for (int round = 0; round <= WARM_UP_RUNS; round++) {
+            long before = allocatedBytes();
+            for (int i = 0; i < 1_000_000; i++)
+                sum += labels.getAddress(names[i % names.length]);
+            if (round == WARM_UP_RUNS) Assertions.assertEquals(0, allocatedBytes() - before - measurementOverhead());
+        }
+        Assertions.assertTrue(sum > 0);
+    }
+
+    @Test
+    void translatorScansBlankLinesWithoutAllocating() {
+        Translator translator = new Translator();
+        String blank = " ".repeat(PADDING);
+        for (int round = 0; round <= WARM_UP_RUNS; round++) {
+            long before = allocatedBytes();
+            for (int i = 0; i < 10_000; i++)
+                Assertions.assertNull(translator.translate(blank));
+            if (round == WARM_UP_RUNS) Assertions.assertEquals(0, allocatedBytes() - before - measurementOverhead());
+        }
+    }
+
+    @Test
+    void translatorDoesNotCopyTheRestOfTheLine() throws IOException {
+        // padding between the words only costs the characters of the padded line itself (Latin-1, one byte each)
+        int lines = 2_000;
+        double plain = bytesPerLine(lines, " ");
+        double padded = bytesPerLine(lines, " ".repeat(PADDING));
+        double extra = padded - plain;
+        Assertions.assertTrue(extra < 4 * PADDING + 64, extra + " more bytes per padded line");
+    }
+
+    private double bytesPerLine(int lines, String separator) throws IOException {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < lines; i++)
+            source.append("l").append(i).append(':').append(separator).append("mov").append(separator)
+                    .append("EAX").append(separator).append(1000 + i).append('\n');
+        String text = source.toString();
+        Translator translator = new Translator();
+        long allocated = 0;
+        for (int round = 0; round <= WARM_UP_RUNS; round++) {
+            Labels labels = new Labels();
+            List<Instruction> program = new ArrayList<>(lines);
+            StringReader reader = new StringReader(text);
+            long before = allocatedBytes();
+            translator.readAndTranslate(reader, labels, program);
+            allocated = allocatedBytes() - before;
+            Assertions.assertEquals(lines, program.size());
+        }
+        return (double) allocated / lines;
+    }
+
+    // the bytes allocated by reading the counter itself, if any
+    private long measurementOverhead() {
+        long first = allocatedBytes();
+        long second = allocatedBytes();
+        return second - first;
+    }
+}
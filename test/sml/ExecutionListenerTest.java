@@ -0,0 +1,100 @@
+package sml;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.instruction.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static sml.Registers.Register.*;
+
+class ExecutionListenerTest {
+    private Machine machine;
+    private List<String> events;
+
+    @BeforeEach
+    void setUp() {
+        machine = new Machine(new Registers());
+        machine.setOutput(value -> {
+        });
+        events = new ArrayList<>();
+        machine.getProgram().addAll(List.of(
+                new MovInstruction(null, EAX, 2),
+                new MovInstruction(null, ECX, 1),
+                new SubInstruction("loop", EAX, ECX),
+                new JnzInstruction(null, EAX, "loop"),
+                new OutInstruction(null, EAX)));
+        machine.getLabels().addLabel("loop", 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        machine = null;
+        events = null;
+    }
+
+    private final ExecutionListener tracer = new ExecutionListener() {
+        @Override
+        public void beforeInstruction(Machine machine, int address, Instruction instruction) {
+            events.add("before " + address);
+        }
+
+        @Override
+        public void afterInstruction(Machine machine, int address, Instruction instruction) {
+            events.add("after " + address);
+        }
+
+        @Override
+        public void branch(Machine machine, int address, boolean taken, int next) {
+            events.add((taken ? "taken " : "not taken ") + next);
+        }
+
+        @Override
+        public void registerWritten(Machine machine, int address, RegisterName register, int oldValue, int newValue) {
+            events.add(register + " " + oldValue + " -> " + newValue);
+        }
+
+        @Override
+        public void output(Machine machine, int address, int value) {
+            events.add("out " + value);
+        }
+    };
+
+    @Test
+    void listenerReceivesEveryEvent() {
+        machine.addListener(tracer);
+        machine.execute();
+        Assertions.assertEquals(List.of(
+                "before 0", "EAX 0 -> 2", "after 0",
+                "before 1", "ECX 0 -> 1", "after 1",
+                "before 2", "EAX 2 -> 1", "after 2",
+                "before 3", "taken 2", "after 3",
+                "before 2", "EAX 1 -> 0", "after 2",
+                "before 3", "not taken 4", "after 3",
+                "before 4", "out 0", "after 4"), events);
+    }
+
+    @Test
+    void removedListenerIsNotCalled() {
+        machine.addListener(tracer);
+        machine.removeListener(tracer);
+        machine.execute();
+        Assertions.assertEquals(List.of(), events);
+        Assertions.assertTrue(machine.isHalted());
+    }
+
+    @Test
+    void listenerKeepsOutput() {
+        List<Integer> outputs = new ArrayList<>();
+        machine.setOutput(outputs::add);
+        machine.addListener(new ExecutionListener() {
+        });
+        machine.execute();
+        Assertions.assertEquals(List.of(0), outputs);
+        machine.getOutput().accept(5);
+        Assertions.assertEquals(List.of(0, 5), outputs);
+    }
+}
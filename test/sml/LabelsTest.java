@@ -70,4 +70,51 @@ class LabelsTest {
         labels.reset();
         Assertions.assertEquals("[]", labels.toString());
     }
-}
\ No newline at end of file
+
+    @Test
+    void getIdDense() {
+        labels.addLabel("L", 7);
+        labels.addLabel("K", 3);
+        Assertions.assertEquals(0, labels.getId("L"));
+        Assertions.assertEquals(1, labels.getId("K"));
+        Assertions.assertEquals(-1, labels.getId("M"));
+        Assertions.assertEquals("K", labels.getName(1));
+        Assertions.assertEquals(3, labels.getAddress(1));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> labels.getAddress(2));
+    }
+
+    @Test
+    void manyLabels() {
+        int count = 100_000;
+        for (int i = 0; i < count; i++)
+            labels.addLabel("l" + i, i);
+        labels.freeze();
+        Assertions.assertEquals(count, labels.size());
+        for (int i = 0; i < count; i++)
+            Assertions.assertEquals(i, labels.getAddress("l" + i));
+        Assertions.assertThrows(NullPointerException.class, () -> labels.getAddress("l" + count));
+    }
+
+    @Test
+    void freezeKeepsLabels() {
+        labels.addLabel("L", 1);
+        labels.addLabel("K", 2);
+        labels.freeze();
+        Assertions.assertTrue(labels.isFrozen());
+        Assertions.assertEquals(2, labels.getAddress("K"));
+        Assertions.assertEquals("[K -> 2, L -> 1]", labels.toString());
+        Labels copy = new Labels();
+        copy.addLabel("K", 2);
+        copy.addLabel("L", 1);
+        Assertions.assertEquals(copy, labels);
+        Assertions.assertEquals(copy.hashCode(), labels.hashCode());
+    }
+
+    @Test
+    void frozenLabelsCannotChange() {
+        labels.addLabel("L", 1);
+        labels.freeze();
+        Assertions.assertThrows(IllegalStateException.class, () -> labels.addLabel("K", 2));
+        Assertions.assertThrows(IllegalStateException.class, () -> labels.reset());
+    }
+}
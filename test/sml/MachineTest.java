@@ -0,0 +1,146 @@
+package sml;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.instruction.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static sml.Registers.Register.*;
+
+class MachineTest {
+    private Machine machine;
+    private List<Integer> outputs;
+
+    @BeforeEach
+    void setUp() {
+        machine = new Machine(new Registers());
+        outputs = new ArrayList<>();
+        machine.setOutput(outputs::add);
+    }
+
+    @AfterEach
+    void tearDown() {
+        machine = null;
+        outputs = null;
+    }
+
+    private void countdown(int iterations) {
+        machine.getProgram().addAll(List.of(
+                new MovInstruction(null, EAX, iterations),
+                new MovInstruction(null, ECX, 1),
+                new AddInstruction("loop", EBX, EAX),
+                new SubInstruction(null, EAX, ECX),
+                new OutInstruction(null, EBX),
+                new JnzInstruction(null, EAX, "loop")));
+        machine.getLabels().addLabel("loop", 2);
+    }
+
+    @Test
+    void executeInterpretedBelowThreshold() {
+        countdown(10);
+        machine.execute();
+        Assertions.assertFalse(machine.isPromoted());
+        Assertions.assertEquals(55, machine.getRegisters().get(EBX));
+    }
+
+    @Test
+    void executePromotesHotLoop() {
+        countdown(5000);
+        machine.execute();
+        Assertions.assertTrue(machine.isPromoted());
+        Assertions.assertTrue(machine.isHalted());
+        Assertions.assertEquals(12502500, machine.getRegisters().get(EBX));
+        Assertions.assertEquals(5000, outputs.size());
+        Assertions.assertEquals(12502500, outputs.get(4999));
+    }
+
+    @Test
+    void executeSameResultWithAndWithoutTiering() {
+        countdown(5000);
+        machine.execute();
+        int[] tiered = machine.getRegisters().toArray();
+        List<Integer> tieredOutputs = new ArrayList<>(outputs);
+
+        outputs.clear();
+        machine.setTieringThreshold(0);
+        machine.execute();
+        Assertions.assertFalse(machine.isPromoted());
+        Assertions.assertArrayEquals(tiered, machine.getRegisters().toArray());
+        Assertions.assertEquals(tieredOutputs, outputs);
+    }
+
+    @Test
+    void resumeAcrossTiers() {
+        countdown(5000);
+        machine.setTieringThreshold(10);
+        machine.reset();
+        long steps = 0;
+        while (!machine.isHalted()) {
+            steps += machine.resume(7);
+        }
+        Assertions.assertEquals(2 + 4 * 5000, steps);
+        Assertions.assertEquals(12502500, machine.getRegisters().get(EBX));
+    }
+
+    @Test
+    void resetClearsPromotion() {
+        countdown(5000);
+        machine.execute();
+        machine.reset();
+        Assertions.assertFalse(machine.isPromoted());
+        Assertions.assertEquals(0, machine.getRegisters().get(EBX));
+    }
+
+    @Test
+    void snapshotAfterRun() {
+        countdown(10);
+        machine.execute();
+        MachineSnapshot snapshot = machine.snapshot();
+        Assertions.assertTrue(snapshot.halted());
+        Assertions.assertEquals(6, snapshot.programCounter());
+        Assertions.assertEquals(2 + 4 * 10, snapshot.steps());
+        Assertions.assertArrayEquals(machine.getRegisters().toArray(), snapshot.registers());
+    }
+
+    @Test
+    void snapshotIsConsistentWhileRunning() throws InterruptedException {
+        // EAX and EBX are equal at every instruction boundary except before "add EBX ECX"
+        machine.getProgram().addAll(List.of(
+                new MovInstruction(null, ECX, 1),
+                new MovInstruction(null, EDX, 3_000_000),
+                new AddInstruction("loop", EAX, ECX),
+                new AddInstruction(null, EBX, ECX),
+                new SubInstruction(null, EDX, ECX),
+                new JnzInstruction(null, EDX, "loop")));
+        machine.getLabels().addLabel("loop", 2);
+        machine.setPublishInterval(7);
+        Thread runner = new Thread(machine::execute);
+        runner.start();
+
+        long lastSteps = 0;
+        int observed = 0;
+        MachineSnapshot snapshot;
+        do {
+            snapshot = machine.snapshot();
+            int[] r = snapshot.registers();
+            int expected = snapshot.programCounter() == 3 ? r[1] + 1 : r[1];
+            Assertions.assertEquals(expected, r[0], snapshot.toString());
+            Assertions.assertTrue(snapshot.steps() >= lastSteps);
+            lastSteps = snapshot.steps();
+            observed++;
+        } while (!snapshot.halted() || runner.isAlive());
+        runner.join();
+
+        Assertions.assertTrue(observed > 1);
+        Assertions.assertEquals(3_000_000, machine.snapshot().registers()[0]);
+    }
+
+    @Test
+    void setPublishIntervalRejectsZero() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> machine.setPublishInterval(0));
+    }
+}
@@ -0,0 +1,79 @@
+package sml.analysis;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Instruction;
+import sml.Labels;
+import sml.instruction.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static sml.Registers.Register.*;
+
+class ControlFlowGraphTest {
+    private List<Instruction> program;
+    private Labels labels;
+
+    @BeforeEach
+    void setUp() {
+        program = new ArrayList<>();
+        labels = new Labels();
+    }
+
+    @AfterEach
+    void tearDown() {
+        program = null;
+        labels = null;
+    }
+
+    @Test
+    void buildFactorial() {
+        program.addAll(List.of(
+                new MovInstruction(null, EAX, 6),
+                new MovInstruction(null, EBX, 1),
+                new MovInstruction(null, ECX, 1),
+                new MulInstruction("f3", EBX, EAX),
+                new SubInstruction(null, EAX, ECX),
+                new JnzInstruction(null, EAX, "f3"),
+                new OutInstruction(null, EBX)));
+        labels.addLabel("f3", 3);
+        ControlFlowGraph graph = ControlFlowGraph.build(program, labels);
+        Assertions.assertEquals("B0 [0, 3) -> B1\nB1 [3, 6) -> B1, B2\nB2 [6, 7) -> exit", graph.toString());
+        Assertions.assertEquals(1, graph.blockAt(4).getIndex());
+        Assertions.assertEquals(3, graph.jumpTarget(5));
+        Assertions.assertEquals(-1, graph.jumpTarget(4));
+        Assertions.assertEquals(List.of(graph.getBlocks().get(0), graph.getBlocks().get(1)),
+                graph.getBlocks().get(1).getPredecessors());
+    }
+
+    @Test
+    void buildJnzAlwaysFallsThrough() {
+        program.addAll(List.of(
+                new MovInstruction(null, EAX, 1),
+                new JnzInstruction(null, EAX, "end"),
+                new OutInstruction(null, EAX),
+                new OutInstruction("end", EBX)));
+        labels.addLabel("end", 3);
+        ControlFlowGraph graph = ControlFlowGraph.build(program, labels);
+        Assertions.assertEquals("B0 [0, 2) -> B2, B1\nB1 [2, 3) -> B2\nB2 [3, 4) -> exit", graph.toString());
+        Assertions.assertEquals("{0, 1, 2}", graph.reachable().toString());
+    }
+
+    @Test
+    void buildUnresolvedJumpIsExit() {
+        program.add(new JnzInstruction(null, EAX, "nowhere"));
+        program.add(new OutInstruction(null, EAX));
+        ControlFlowGraph graph = ControlFlowGraph.build(program, labels);
+        Assertions.assertEquals("B0 [0, 1) -> B1, exit\nB1 [1, 2) -> exit", graph.toString());
+    }
+
+    @Test
+    void buildEmptyProgram() {
+        ControlFlowGraph graph = ControlFlowGraph.build(program, labels);
+        Assertions.assertNull(graph.getEntry());
+        Assertions.assertTrue(graph.reachable().isEmpty());
+    }
+}
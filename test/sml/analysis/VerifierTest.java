@@ -0,0 +1,107 @@
+package sml.analysis;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Instruction;
+import sml.Labels;
+import sml.Machine;
+import sml.Registers;
+import sml.instruction.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static sml.Registers.Register.*;
+
+class VerifierTest {
+    private List<Instruction> program;
+    private Labels labels;
+
+    @BeforeEach
+    void setUp() {
+        program = new ArrayList<>();
+        labels = new Labels();
+    }
+
+    @AfterEach
+    void tearDown() {
+        program = null;
+        labels = null;
+    }
+
+    private void factorial() {
+        program.addAll(List.of(
+                new MovInstruction(null, EAX, 6),
+                new MovInstruction(null, EBX, 1),
+                new MovInstruction(null, ECX, 1),
+                new MulInstruction("f3", EBX, EAX),
+                new SubInstruction(null, EAX, ECX),
+                new JnzInstruction(null, EAX, "f3"),
+                new OutInstruction(null, EBX)));
+        labels.addLabel("f3", 3);
+    }
+
+    @Test
+    void checkValidProgram() {
+        factorial();
+        Assertions.assertEquals(List.of(), Verifier.check(program, labels));
+    }
+
+    @Test
+    void checkReportsEveryProblem() {
+        program.add(new JnzInstruction(null, EAX, "nowhere"));
+        program.add(null);
+        program.add(new AddInstruction(null, EAX, null));
+        program.add(new MovInstruction(null, EBX, null));
+        program.add(new JnzInstruction(null, EAX, "far"));
+        labels.addLabel("far", 6);
+        Assertions.assertEquals(List.of(
+                "address 0: label 'nowhere' does not have an associated address",
+                "address 1: missing instruction",
+                "address 2: invalid register null in 'add EAX null'",
+                "address 3: missing value in 'mov EBX null'",
+                "address 4: label 'far' refers to invalid address 6"), Verifier.check(program, labels));
+    }
+
+    @Test
+    void checkAllowsJumpToEnd() {
+        program.add(new JnzInstruction(null, EAX, "end"));
+        labels.addLabel("end", 1);
+        Assertions.assertEquals(List.of(), Verifier.check(program, labels));
+    }
+
+    @Test
+    void verifyThrows() {
+        program.add(null);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Verifier.verify(program, labels));
+    }
+
+    @Test
+    void machineRunsVerifiedProgram() {
+        Machine machine = new Machine(new Registers());
+        List<Integer> outputs = new ArrayList<>();
+        machine.setOutput(outputs::add);
+        program = machine.getProgram();
+        labels = machine.getLabels();
+        factorial();
+        machine.verify();
+        Assertions.assertTrue(machine.isVerified());
+        machine.execute();
+        Assertions.assertEquals(List.of(720), outputs);
+        Assertions.assertEquals(0, machine.getRegisters().get(EAX));
+        machine.execute();
+        Assertions.assertEquals(List.of(720, 720), outputs);
+    }
+
+    @Test
+    void machineStaysUnverified() {
+        Machine machine = new Machine(new Registers());
+        machine.getProgram().add(new JnzInstruction(null, EAX, "nowhere"));
+        Assertions.assertThrows(IllegalArgumentException.class, machine::verify);
+        Assertions.assertFalse(machine.isVerified());
+        machine.execute();
+        Assertions.assertTrue(machine.isHalted());
+    }
+}
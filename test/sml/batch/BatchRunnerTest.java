@@ -0,0 +1,92 @@
+package sml.batch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+class BatchRunnerTest {
+    private Path directory;
+    private BatchRunner runner;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("batch");
+        for (int i = 1; i <= 20; i++) {
+            Files.write(directory.resolve(String.format("p%02d.sml", i)), List.of(
+                    "mov EAX " + (i % 7 + 1), "mov EBX 1", "mov ECX 1",
+                    "f3: mul EBX EAX", "sub EAX ECX", "jnz EAX f3", "out EBX"));
+        }
+        Files.write(directory.resolve("zero.sml"), List.of("mov EAX 1", "div EAX EBX"));
+        Files.write(directory.resolve("notes.txt"), List.of("out EAX"));
+        runner = new BatchRunner(4, 1_000_000);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> walk = Files.walk(directory)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+        runner = null;
+    }
+
+    @Test
+    void expandDirectory() throws IOException {
+        Assertions.assertEquals(22, BatchRunner.expand(List.of(directory.toString())).size());
+    }
+
+    @Test
+    void expandGlob() throws IOException {
+        List<Path> files = BatchRunner.expand(List.of(directory + "/*.sml"));
+        Assertions.assertEquals(21, files.size());
+        Assertions.assertEquals("p01.sml", files.get(0).getFileName().toString());
+    }
+
+    @Test
+    void runWritesResultsAndReport() throws IOException {
+        Path results = directory.resolve("results.out");
+        BatchReport report = runner.run(BatchRunner.expand(List.of(directory + "/*.sml")), results);
+        Assertions.assertEquals(21, report.programs());
+        Assertions.assertEquals(1, report.failures());
+        Assertions.assertTrue(report.p50Nanos() <= report.p99Nanos());
+
+        List<String> lines = Files.readAllLines(results);
+        Assertions.assertEquals(21, lines.size());
+        Assertions.assertTrue(lines.get(0).contains("p01.sml\tOK\t[2]\t[EAX = 0, EBX = 2"));
+        Assertions.assertTrue(lines.get(20).contains("zero.sml\tFAILED"));
+    }
+
+    @Test
+    void runOneStepLimit() throws IOException {
+        Path loop = directory.resolve("loop.sml");
+        Files.write(loop, List.of("mov EAX 1", "l: jnz EAX l"));
+        ProgramResult result = runner.runOne(loop);
+        Assertions.assertFalse(result.succeeded());
+        Assertions.assertEquals(1_000_000, result.steps());
+    }
+
+    @Test
+    void runOneKeepsPartialRunOfFailure() throws IOException {
+        Path zero = directory.resolve("late-zero.sml");
+        Files.write(zero, List.of("mov EAX 3", "out EAX", "mov ECX 1", "l: sub EAX ECX", "jnz EAX l", "out EAX",
+                "div ECX EAX"));
+        ProgramResult result = runner.runOne(zero);
+        Assertions.assertFalse(result.succeeded());
+        Assertions.assertArrayEquals(new int[]{3, 0}, result.outputs());
+        Assertions.assertEquals(10, result.steps());
+
+        // long enough to span several slices and the compiled tier
+        Files.write(zero, List.of("mov EAX 100000", "mov ECX 1", "l: sub EAX ECX", "jnz EAX l", "out EAX",
+                "div ECX EAX"));
+        result = runner.runOne(zero);
+        Assertions.assertArrayEquals(new int[]{0}, result.outputs());
+        Assertions.assertEquals(200_003, result.steps());
+    }
+}
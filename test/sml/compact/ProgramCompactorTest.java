@@ -0,0 +1,114 @@
+package sml.compact;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Instruction;
+import sml.Labels;
+import sml.Machine;
+import sml.Registers;
+import sml.instruction.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static sml.Registers.Register.*;
+
+class ProgramCompactorTest {
+    private Machine machine;
+    private List<Integer> outputs;
+    private ProgramCompactor compactor;
+
+    @BeforeEach
+    void setUp() {
+        machine = new Machine(new Registers());
+        outputs = new ArrayList<>();
+        machine.setOutput(outputs::add);
+        compactor = new ProgramCompactor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        machine = null;
+        outputs = null;
+        compactor = null;
+    }
+
+    // EAX = 1000 * 3, counting down EBX with a repeated body
+    private void repeated() {
+        List<Instruction> program = machine.getProgram();
+        program.add(new MovInstruction(null, EBX, 1000));
+        program.add(new MovInstruction(null, ECX, 1));
+        program.add(new MovInstruction(null, EDX, 1));
+        program.add(new AddInstruction(new String("loop"), EAX, ECX));
+        program.add(new AddInstruction(null, EAX, EDX));
+        program.add(new AddInstruction(null, EAX, ECX));
+        program.add(new SubInstruction(null, EBX, ECX));
+        program.add(new JnzInstruction(null, EBX, new String("loop")));
+        program.add(new OutInstruction(null, EAX));
+        machine.getLabels().addLabel(new String("loop"), 3);
+    }
+
+    @Test
+    void compactSharesIdenticalInstructions() {
+        repeated();
+        compactor.compact(machine.getLabels(), machine.getProgram());
+        List<Instruction> program = machine.getProgram();
+        Assertions.assertSame(program.get(3), program.get(5));
+        Assertions.assertNull(program.get(3).getLabel());
+        Assertions.assertNotSame(program.get(1), program.get(2));
+    }
+
+    @Test
+    void compactSharesAcrossPrograms() {
+        InstructionPool pool = compactor.getPool();
+        List<Instruction> first = new ArrayList<>(List.of(new SubInstruction(null, EAX, ECX)));
+        List<Instruction> second = new ArrayList<>(List.of(new SubInstruction("l", EAX, ECX)));
+        compactor.compact(new Labels(), first);
+        new ProgramCompactor(pool).compact(new Labels(), second);
+        Assertions.assertSame(first.get(0), second.get(0));
+        Assertions.assertEquals(1, pool.instructionCount());
+    }
+
+    @Test
+    void compactInternsLabels() {
+        repeated();
+        compactor.compact(machine.getLabels(), machine.getProgram());
+        String target = ((JnzInstruction) machine.getProgram().get(7)).getNextInstructionLabel();
+        String[] label = new String[1];
+        machine.getLabels().forEach((name, address) -> label[0] = name);
+        Assertions.assertSame(label[0], target);
+    }
+
+    @Test
+    void compactKeepsBehaviour() {
+        repeated();
+        compactor.compact(machine.getLabels(), machine.getProgram());
+        machine.setTieringThreshold(0);
+        machine.execute();
+        Assertions.assertEquals(List.of(3000), outputs);
+        Assertions.assertEquals(3, machine.getLabels().getAddress("loop"));
+    }
+
+    @Test
+    void compactKeepsLabelsInListing() {
+        repeated();
+        String listing = machine.toString();
+        compactor.compact(machine.getLabels(), machine.getProgram());
+        Assertions.assertEquals(listing, machine.toString());
+    }
+
+    @Test
+    void compactReportsSmallerFootprint() {
+        List<Instruction> program = machine.getProgram();
+        for (int i = 0; i < 10_000; i++) {
+            program.add(new SubInstruction(null, EAX, ECX));
+            program.add(new MovInstruction(null, EBX, 1000));
+        }
+        CompactionReport report = compactor.compact(machine.getLabels(), program);
+        Assertions.assertEquals(20_000, report.before().instructionObjects());
+        Assertions.assertEquals(2, report.after().instructionObjects());
+        Assertions.assertTrue(report.reduction() > 5, report.toString());
+    }
+}
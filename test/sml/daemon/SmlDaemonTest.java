@@ -0,0 +1,176 @@
+package sml.daemon;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+class SmlDaemonTest {
+    private static final String FACTORIAL = """
+            mov EBX 1
+            mov ECX 1
+            f3: mul EBX EAX
+            sub EAX ECX
+            jnz EAX f3
+            out EBX
+            """;
+
+    private Path directory;
+    private Path socket;
+    private SmlDaemon daemon;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("daemon");
+        socket = directory.resolve("sml.sock");
+        daemon = new SmlDaemon(socket, 4, 10_000);
+        daemon.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        daemon.close();
+        Files.deleteIfExists(socket);
+        Files.delete(directory);
+    }
+
+    @Test
+    void runSourceThenProgramId() throws IOException {
+        try (SmlClient client = new SmlClient(socket)) {
+            JobResult first = client.run(FACTORIAL, 0, 5, 0, 0, 0, 0, 0, 0, 0);
+            Assertions.assertArrayEquals(new int[]{120}, first.outputs());
+            Assertions.assertArrayEquals(new int[]{0, 120, 1, 0, 0, 0, 0, 0}, first.registers());
+
+            JobResult second = client.runProgram(first.programId(), 0, 6, 0, 0, 0, 0, 0, 0, 0);
+            Assertions.assertArrayEquals(new int[]{720}, second.outputs());
+            Assertions.assertEquals(first.programId(), second.programId());
+        }
+        Assertions.assertEquals(1, daemon.getProgramCount());
+        Assertions.assertEquals(2, daemon.getJobCount());
+    }
+
+    @Test
+    void runReportsErrorsAndKeepsConnection() throws IOException {
+        try (SmlClient client = new SmlClient(socket)) {
+            IllegalStateException error = Assertions.assertThrows(IllegalStateException.class,
+                    () -> client.run("mov EAX 1\ndiv EAX EBX", 0));
+            Assertions.assertTrue(error.getMessage().startsWith("ArithmeticException"));
+            Assertions.assertThrows(IllegalStateException.class, () -> client.runProgram("missing", 0));
+            Assertions.assertArrayEquals(new int[]{3}, client.run("mov EAX 3\nout EAX", 0).outputs());
+        }
+    }
+
+    @Test
+    void runEnforcesStepQuota() throws IOException {
+        try (SmlClient client = new SmlClient(socket)) {
+            String loop = "mov EAX 1\nl: jnz EAX l";
+            Assertions.assertThrows(IllegalStateException.class, () -> client.run(loop, 0));
+            Assertions.assertThrows(IllegalStateException.class, () -> client.run(loop, 1_000_000_000));
+            Assertions.assertThrows(IllegalStateException.class, () -> client.run(FACTORIAL, 5, 6, 0, 0, 0, 0, 0, 0, 0));
+        }
+    }
+
+    @Test
+    void runConcurrentClients() throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<JobResult>> results = new ArrayList<>();
+            for (int i = 1; i <= 16; i++) {
+                int n = i % 8 + 1;
+                results.add(clients.submit(() -> {
+                    try (SmlClient client = new SmlClient(socket)) {
+                        return client.run(FACTORIAL, 0, n, 0, 0, 0, 0, 0, 0, 0);
+                    }
+                }));
+            }
+            for (int i = 1; i <= 16; i++) {
+                int n = i % 8 + 1;
+                int factorial = 1;
+                for (int k = 2; k <= n; k++) factorial *= k;
+                Assertions.assertArrayEquals(new int[]{factorial}, results.get(i - 1).get().outputs());
+            }
+        } finally {
+            clients.shutdown();
+        }
+    }
+
+    @Test
+    void runWhileIdleClientsOutnumberThreads() throws Exception {
+        List<SmlClient> idle = new ArrayList<>();
+        ExecutorService clients = Executors.newSingleThreadExecutor();
+        try {
+            for (int i = 0; i < 8; i++) idle.add(new SmlClient(socket));
+            Future<JobResult> result = clients.submit(() -> {
+                try (SmlClient client = new SmlClient(socket)) {
+                    return client.run(FACTORIAL, 0, 4, 0, 0, 0, 0, 0, 0, 0);
+                }
+            });
+            Assertions.assertArrayEquals(new int[]{24}, result.get(5, TimeUnit.SECONDS).outputs());
+        } finally {
+            clients.shutdownNow();
+            for (SmlClient client : idle) client.close();
+        }
+    }
+
+    // sends a request header and returns what the daemon answers before closing the connection
+    private byte[] sendHeader(int textLength, byte[] text, int registers) throws IOException {
+        try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socket));
+             var out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+             var in = Channels.newInputStream(channel)) {
+            out.writeByte(Protocol.SOURCE);
+            out.writeInt(textLength);
+            out.write(text);
+            out.writeLong(0);
+            out.writeInt(registers);
+            out.flush();
+            try {
+                return in.readAllBytes();
+            } catch (IOException e) {
+                // reset by the daemon closing with the rest of the request unread
+                return new byte[0];
+            }
+        }
+    }
+
+    @Test
+    void runRefusesOversizedRequests() throws IOException {
+        Assertions.assertEquals(0, sendHeader(SmlDaemon.DEFAULT_SOURCE_BYTES + 1, new byte[0], 0).length);
+        byte[] source = "mov EAX 1".getBytes(StandardCharsets.UTF_8);
+        Assertions.assertEquals(0, sendHeader(source.length, source, 1 << 28).length);
+        try (SmlClient client = new SmlClient(socket)) {
+            Assertions.assertArrayEquals(new int[]{6}, client.run(FACTORIAL, 0, 3, 0, 0, 0, 0, 0, 0, 0).outputs());
+        }
+        Assertions.assertEquals(1, daemon.getJobCount());
+    }
+
+    @Test
+    void runLargeSource() throws IOException {
+        String source = "mov EAX 1\nadd EBX EAX\n".repeat(4_000) + "out EBX";
+        try (SmlClient client = new SmlClient(socket)) {
+            JobResult result = client.run(source, 0);
+            Assertions.assertArrayEquals(new int[]{4_000}, result.outputs());
+            Assertions.assertEquals(4_000, result.registers()[1]);
+        }
+    }
+
+    @Test
+    void startRefusesRunningDaemon() {
+        Assertions.assertThrows(IOException.class, () -> new SmlDaemon(socket, 1, 1).start());
+    }
+}
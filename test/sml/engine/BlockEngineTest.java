@@ -0,0 +1,81 @@
+package sml.engine;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Instruction;
+import sml.Labels;
+import sml.Registers;
+import sml.instruction.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static sml.Registers.Register.*;
+
+class BlockEngineTest {
+    private List<Instruction> program;
+    private Labels labels;
+    private List<Integer> outputs;
+    private ExecutionState state;
+
+    @BeforeEach
+    void setUp() {
+        program = new ArrayList<>(List.of(
+                new MovInstruction(null, EAX, 6),
+                new MovInstruction(null, EBX, 1),
+                new MovInstruction(null, ECX, 1),
+                new MulInstruction("f3", EBX, EAX),
+                new SubInstruction(null, EAX, ECX),
+                new JnzInstruction(null, EAX, "f3"),
+                new OutInstruction(null, EBX)));
+        labels = new Labels();
+        labels.addLabel("f3", 3);
+        outputs = new ArrayList<>();
+        state = new ExecutionState(new int[Registers.Register.values().length], 0, outputs::add);
+    }
+
+    @AfterEach
+    void tearDown() {
+        program = null;
+        labels = null;
+        outputs = null;
+        state = null;
+    }
+
+    @Test
+    void runFactorial() {
+        BlockEngine.compile(program, labels).run(state, Long.MAX_VALUE);
+        Assertions.assertEquals(720, state.getRegisters()[EBX.ordinal()]);
+        Assertions.assertEquals(List.of(720), outputs);
+        Assertions.assertEquals(22, state.getSteps());
+        Assertions.assertEquals(7, state.getProgramCounter());
+    }
+
+    @Test
+    void runStopsInsideBlockWhenBudgetEnds() {
+        BlockEngine engine = BlockEngine.compile(program, labels);
+        engine.run(state, 4);
+        Assertions.assertEquals(4, state.getSteps());
+        Assertions.assertEquals(4, state.getProgramCounter());
+        engine.run(state, Long.MAX_VALUE);
+        Assertions.assertEquals(22, state.getSteps());
+        Assertions.assertEquals(720, state.getRegisters()[EBX.ordinal()]);
+    }
+
+    @Test
+    void runFailureLeavesStateOnFailingInstruction() {
+        program.set(4, new DivInstruction(null, EAX, EDX));
+        BlockEngine engine = BlockEngine.compile(program, labels);
+        Assertions.assertThrows(ArithmeticException.class, () -> engine.run(state, Long.MAX_VALUE));
+        Assertions.assertEquals(4, state.getProgramCounter());
+        Assertions.assertEquals(4, state.getSteps());
+        Assertions.assertEquals(6, state.getRegisters()[EBX.ordinal()]);
+    }
+
+    @Test
+    void getControlFlowGraph() {
+        Assertions.assertEquals(3, BlockEngine.compile(program, labels).getControlFlowGraph().getBlocks().size());
+    }
+}
@@ -0,0 +1,100 @@
+package sml.engine;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Instruction;
+import sml.Labels;
+import sml.RegisterName;
+import sml.Registers;
+import sml.instruction.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static sml.Registers.Register.*;
+
+class CompiledProgramTest {
+    private List<Instruction> program;
+    private Labels labels;
+    private List<Integer> outputs;
+    private ExecutionState state;
+
+    @BeforeEach
+    void setUp() {
+        program = new ArrayList<>();
+        labels = new Labels();
+        outputs = new ArrayList<>();
+        state = new ExecutionState(new int[Registers.Register.values().length], 0, outputs::add);
+    }
+
+    @AfterEach
+    void tearDown() {
+        program = null;
+        labels = null;
+        outputs = null;
+        state = null;
+    }
+
+    private void factorial(int n) {
+        program.addAll(List.of(
+                new MovInstruction(null, EAX, n),
+                new MovInstruction(null, EBX, 1),
+                new MovInstruction(null, ECX, 1),
+                new MulInstruction("f3", EBX, EAX),
+                new SubInstruction(null, EAX, ECX),
+                new JnzInstruction(null, EAX, "f3"),
+                new OutInstruction(null, EBX)));
+        labels.addLabel("f3", 3);
+    }
+
+    @Test
+    void runFactorial() {
+        factorial(6);
+        CompiledProgram.compile(program, labels).run(state, Long.MAX_VALUE);
+        Assertions.assertEquals(720, state.getRegisters()[EBX.ordinal()]);
+        Assertions.assertEquals(List.of(720), outputs);
+        Assertions.assertEquals(7, state.getProgramCounter());
+        Assertions.assertEquals(22, state.getSteps());
+    }
+
+    @Test
+    void runSuspendsAfterMaxSteps() {
+        factorial(6);
+        CompiledProgram compiled = CompiledProgram.compile(program, labels);
+        compiled.run(state, 5);
+        Assertions.assertEquals(5, state.getSteps());
+        Assertions.assertEquals(5, state.getProgramCounter());
+        compiled.run(state, Long.MAX_VALUE);
+        Assertions.assertEquals(22, state.getSteps());
+        Assertions.assertEquals(List.of(720), outputs);
+    }
+
+    @Test
+    void runDivisionByZero() {
+        program.add(new MovInstruction(null, EAX, 1));
+        program.add(new DivInstruction(null, EAX, EBX));
+        CompiledProgram compiled = CompiledProgram.compile(program, labels);
+        Assertions.assertThrows(ArithmeticException.class, () -> compiled.run(state, Long.MAX_VALUE));
+        Assertions.assertEquals(1, state.getProgramCounter());
+        Assertions.assertEquals(1, state.getSteps());
+    }
+
+    @Test
+    void runUnresolvedLabelOnlyFailsWhenTaken() {
+        program.add(new JnzInstruction(null, EAX, "doesnotexist"));
+        program.add(new MovInstruction(null, EAX, 1));
+        program.add(new JnzInstruction(null, EAX, "doesnotexist"));
+        CompiledProgram compiled = CompiledProgram.compile(program, labels);
+        Assertions.assertThrows(NullPointerException.class, () -> compiled.run(state, Long.MAX_VALUE));
+        Assertions.assertEquals(2, state.getProgramCounter());
+    }
+
+    @Test
+    void compileUnknownRegister() {
+        RegisterName unknown = () -> "XYZ";
+        program.add(new OutInstruction(null, unknown));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CompiledProgram.compile(program, labels));
+    }
+}
@@ -0,0 +1,129 @@
+package sml.engine;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Machine;
+import sml.Program;
+import sml.Registers;
+import sml.instruction.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static sml.Registers.Register.*;
+
+class ResultCacheTest {
+    private ResultCache cache;
+    private Machine machine;
+    private List<Integer> outputs;
+
+    @BeforeEach
+    void setUp() {
+        cache = new ResultCache(2, 1 << 20);
+        outputs = new ArrayList<>();
+        machine = new Machine(new Registers());
+        machine.setOutput(outputs::add);
+        // EBX = EAX!, written out
+        machine.getProgram().addAll(List.of(
+                new MovInstruction(null, EBX, 1),
+                new MovInstruction(null, ECX, 1),
+                new MulInstruction("f3", EBX, EAX),
+                new SubInstruction(null, EAX, ECX),
+                new JnzInstruction(null, EAX, "f3"),
+                new OutInstruction(null, EBX)));
+        machine.getLabels().addLabel("f3", 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        cache = null;
+        machine = null;
+        outputs = null;
+    }
+
+    private static int[] initial(int eax) {
+        int[] registers = new int[Registers.Register.values().length];
+        registers[EAX.ordinal()] = eax;
+        return registers;
+    }
+
+    @Test
+    void executeMissThenHit() {
+        RunResult first = cache.execute(machine, initial(5));
+        RunResult second = cache.execute(machine, initial(5));
+        Assertions.assertEquals(first, second);
+        Assertions.assertArrayEquals(new int[]{120}, second.outputs());
+        Assertions.assertEquals(List.of(120, 120), outputs);
+        Assertions.assertEquals(120, machine.getRegisters().get(EBX));
+        Assertions.assertTrue(machine.isHalted());
+        Assertions.assertEquals(1, cache.getStats().hits());
+        Assertions.assertEquals(1, cache.getStats().misses());
+    }
+
+    @Test
+    void executeResultsDoNotShareArrays() {
+        RunResult first = cache.execute(machine, initial(5));
+        first.outputs()[0] = -1;
+        first.registers()[EBX.ordinal()] = -1;
+        RunResult second = cache.execute(machine, initial(5));
+        second.outputs()[0] = -2;
+        RunResult third = cache.execute(machine, initial(5));
+        Assertions.assertArrayEquals(new int[]{120}, third.outputs());
+        Assertions.assertEquals(120, third.registers()[EBX.ordinal()]);
+        Assertions.assertEquals(List.of(120, 120, 120), outputs);
+        Assertions.assertEquals(2, cache.getStats().hits());
+    }
+
+    @Test
+    void executeDifferentInitialRegisters() {
+        Assertions.assertArrayEquals(new int[]{6}, cache.execute(machine, initial(3)).outputs());
+        Assertions.assertArrayEquals(new int[]{24}, cache.execute(machine, initial(4)).outputs());
+        Assertions.assertEquals(2, cache.getStats().misses());
+    }
+
+    @Test
+    void executeEvictsLeastRecentlyUsed() {
+        cache.execute(machine, initial(3));
+        cache.execute(machine, initial(4));
+        cache.execute(machine, initial(3));
+        cache.execute(machine, initial(5));
+        Assertions.assertEquals(1, cache.getStats().evictions());
+        cache.execute(machine, initial(3));
+        Assertions.assertEquals(2, cache.getStats().hits());
+        cache.execute(machine, initial(4));
+        Assertions.assertEquals(4, cache.getStats().misses());
+    }
+
+    @Test
+    void executeAlwaysRun() {
+        cache.execute(machine, initial(3));
+        cache.alwaysRun(ProgramFingerprint.of(machine.getProgram(), machine.getLabels()));
+        cache.execute(machine, initial(3));
+        Assertions.assertEquals(0, cache.getStats().hits());
+        Assertions.assertEquals(1, cache.getStats().bypasses());
+        Assertions.assertEquals(0, cache.getStats().entries());
+    }
+
+    @Test
+    void executeWithFingerprintKeptByProgram() {
+        Program program = new Program(machine.getProgram(), machine.getLabels());
+        String fingerprint = program.getFingerprint();
+        Assertions.assertSame(fingerprint, program.getFingerprint());
+        Assertions.assertEquals(ProgramFingerprint.of(machine.getProgram(), machine.getLabels()), fingerprint);
+
+        cache.execute(fingerprint, machine, initial(5));
+        Assertions.assertArrayEquals(new int[]{120}, cache.execute(fingerprint, machine, initial(5)).outputs());
+        cache.execute(machine, initial(5));
+        Assertions.assertEquals(2, cache.getStats().hits());
+        Assertions.assertEquals(1, cache.getStats().misses());
+    }
+
+    @Test
+    void fingerprintDependsOnProgram() {
+        String before = ProgramFingerprint.of(machine.getProgram(), machine.getLabels());
+        machine.getProgram().add(new OutInstruction(null, EAX));
+        Assertions.assertNotEquals(before, ProgramFingerprint.of(machine.getProgram(), machine.getLabels()));
+    }
+}
@@ -0,0 +1,77 @@
+package sml.engine;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Program;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+class SmlEngineTest {
+    private static final String FACTORIAL = """
+            mov EBX 1
+            mov ECX 1
+            f3: mul EBX EAX
+            sub EAX ECX
+            jnz EAX f3
+            out EBX
+            """;
+
+    private SmlEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = new SmlEngine();
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine = null;
+    }
+
+    @Test
+    void compileFromEverySource() throws IOException {
+        Program expected = engine.compile(FACTORIAL);
+        Assertions.assertEquals(6, expected.size());
+        Assertions.assertEquals(2, expected.getAddress("f3"));
+        Assertions.assertEquals(expected, engine.compile(new StringBuilder(FACTORIAL)));
+        Assertions.assertEquals(expected, engine.compile(new StringReader(FACTORIAL)));
+        ByteBuffer bytes = ByteBuffer.wrap(FACTORIAL.getBytes(StandardCharsets.UTF_8));
+        Assertions.assertEquals(expected, engine.compile(bytes));
+        Assertions.assertEquals(0, bytes.position());
+    }
+
+    @Test
+    void runWithInitialRegisters() {
+        Program factorial = engine.compile(FACTORIAL);
+        RunResult result = engine.run(factorial, 5, 0, 0, 0, 0, 0, 0, 0);
+        Assertions.assertArrayEquals(new int[]{120}, result.outputs());
+        Assertions.assertArrayEquals(new int[]{0, 120, 1, 0, 0, 0, 0, 0}, result.registers());
+        Assertions.assertEquals(2 + 5 * 3 + 1, result.steps());
+
+        Assertions.assertArrayEquals(new int[]{720}, engine.run(factorial, 6, 0, 0, 0, 0, 0, 0, 0).outputs());
+    }
+
+    @Test
+    void runWithoutInitialRegisters() {
+        RunResult result = engine.run(engine.compile("mov EAX 3\nout EAX"));
+        Assertions.assertArrayEquals(new int[]{3}, result.outputs());
+        Assertions.assertEquals(SmlEngine.registerCount(), result.registers().length);
+    }
+
+    @Test
+    void runRejectsWrongRegisterCount() {
+        Program program = engine.compile("out EAX");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> engine.run(program, 1, 2));
+    }
+
+    @Test
+    void runStepLimit() {
+        Program loop = new SmlEngine(100).compile("mov EAX 1\nl: jnz EAX l");
+        Assertions.assertThrows(IllegalStateException.class, () -> new SmlEngine(100).run(loop));
+    }
+}
@@ -0,0 +1,125 @@
+package sml.ir;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Program;
+import sml.engine.SmlEngine;
+
+import java.util.List;
+
+import static sml.Registers.Register.*;
+
+class IrProgramTest {
+    private static final String FACTORIAL = """
+            mov EAX 6
+            mov EBX 1
+            mov ECX 1
+            f3: mul EBX EAX
+            sub EAX ECX
+            jnz EAX f3
+            out EBX
+            """;
+
+    private SmlEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = new SmlEngine();
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine = null;
+    }
+
+    private IrProgram build(String source) {
+        Program program = engine.compile(source);
+        return IrProgram.build(program.getInstructions(), program.getLabels());
+    }
+
+    @Test
+    void buildPlacesPhisAtLoopHeader() {
+        IrProgram ir = build(FACTORIAL);
+        Block loop = ir.getBlocks().get(2);
+        Assertions.assertEquals(3, loop.getStart());
+        Assertions.assertEquals(List.of(ir.getBlocks().get(1), loop), loop.getPredecessors());
+        // only EAX and EBX change in the loop, the other phis are trivial
+        Assertions.assertEquals(List.of(EAX, EBX), loop.getPhis().stream().map(Node::getRegister).toList());
+        Node mul = loop.getNodes().get(0);
+        Assertions.assertEquals(Opcode.MUL, mul.getOpcode());
+        Assertions.assertEquals(List.of(loop.getPhis().get(1), loop.getPhis().get(0)), mul.getOperands());
+        Assertions.assertSame(mul, loop.getPhis().get(1).getOperand(1));
+        Assertions.assertTrue(mul.getUsers().contains(loop.getPhis().get(1)));
+    }
+
+    @Test
+    void buildLinksDefsAndUses() {
+        IrProgram ir = build("mov EAX 2\nadd EAX EAX\nout EAX");
+        List<Node> nodes = ir.getBlocks().get(1).getNodes();
+        Assertions.assertEquals(List.of(nodes.get(1), nodes.get(1)), nodes.get(0).getUsers());
+        Assertions.assertEquals(List.of(nodes.get(2), ir.exitValue(EAX)), nodes.get(1).getUsers());
+        Assertions.assertSame(ir.getEntry().getNodes().get(EBX.ordinal()), ir.exitValue(EBX).getOperand(0));
+    }
+
+    @Test
+    void buildRejectsUnresolvedLabel() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> build("mov EAX 1\njnz EAX nowhere"));
+    }
+
+    @Test
+    void lowerRestoresProgram() {
+        Assertions.assertEquals(engine.compile(FACTORIAL), build(FACTORIAL).lower());
+        String branches = "mov EAX 1\njnz EAX a\nmov EBX 2\na: out EBX\nb: sub EAX EAX\njnz EAX b";
+        Assertions.assertEquals(engine.compile(branches), build(branches).lower());
+    }
+
+    @Test
+    void constantFoldingFoldsArithmeticAndJumps() {
+        IrProgram ir = build("mov EAX 2\nmov EBX 3\nadd EAX EBX\njnz EAX end\nmov ECX 1\nend: out EAX");
+        Assertions.assertTrue(ConstantFolding.run(ir) > 0);
+        Assertions.assertEquals("mov EAX 2\nmov EBX 3\nmov EAX 5\njnz EAX end\nend: out EAX", ir.lower().toString());
+    }
+
+    @Test
+    void constantFoldingRemovesIdentities() {
+        IrProgram ir = build("mov EBX 1\nmul EAX EBX\nmov ECX 0\nsub EAX ECX\nout EAX");
+        Assertions.assertEquals(2, ConstantFolding.run(ir));
+        Assertions.assertEquals("mov EBX 1\nmov ECX 0\nout EAX", ir.lower().toString());
+    }
+
+    @Test
+    void valueNumberingRemovesRedundantValues() {
+        IrProgram ir = build("mov EAX 4\nout EAX\nmov EAX 4\nadd EBX ECX\nout EBX\nmov EDX 3\nmul EDX ECX\nmov EDX 3");
+        Assertions.assertEquals(1, ValueNumbering.run(ir));
+        Assertions.assertEquals("mov EAX 4\nout EAX\nadd EBX ECX\nout EBX\nmov EDX 3\nmul EDX ECX\nmov EDX 3",
+                ir.lower().toString());
+    }
+
+    @Test
+    void valueNumberingMergesBranches() {
+        IrProgram ir = build("jnz EAX a\nmov EBX 7\njnz EBX b\na: mov EBX 7\nb: mov EBX 7\nout EBX");
+        Assertions.assertEquals(1, ValueNumbering.run(ir));
+        Assertions.assertFalse(ir.lower().toString().contains("b: mov EBX 7"));
+    }
+
+    @Test
+    void deadCodeEliminationKeepsObservableValues() {
+        IrProgram ir = build("mov EAX 1\nmov EAX 2\nmov EBX 0\ndiv EAX EBX\nmov EBX 5\nmov ECX 2\nout ECX\nmov ECX 3");
+        Assertions.assertEquals(1, DeadCodeElimination.run(ir));
+        Assertions.assertEquals("mov EAX 2\nmov EBX 0\ndiv EAX EBX\nmov EBX 5\nmov ECX 2\nout ECX\nmov ECX 3",
+                ir.lower().toString());
+    }
+
+    @Test
+    void compileRunsOptimizedProgram() {
+        IrProgram ir = build(FACTORIAL);
+        ConstantFolding.run(ir);
+        ValueNumbering.run(ir);
+        DeadCodeElimination.run(ir);
+        Assertions.assertEquals(720, engine.run(engine.compile(FACTORIAL)).outputs()[0]);
+        Assertions.assertNotNull(ir.compile());
+        Assertions.assertEquals(7, ir.size());
+    }
+}
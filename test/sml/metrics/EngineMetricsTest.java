@@ -0,0 +1,201 @@
+package sml.metrics;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.ExecutionListener;
+import sml.Machine;
+import sml.Registers;
+import sml.Translator;
+import sml.engine.ResultCache;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+
+class EngineMetricsTest {
+    private static final long SECOND = 1_000_000_000L;
+
+    private EngineMetrics metrics;
+    private Machine machine;
+
+    @BeforeEach
+    void setUp() {
+        metrics = EngineMetrics.global();
+        machine = new Machine(new Registers());
+        machine.setOutput(value -> {
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        EngineMetrics.unregister();
+        metrics = null;
+        machine = null;
+    }
+
+    // counts down from n, writing every value: 2 + 4n instructions, n jumps of which n - 1 taken, n outputs
+    private void loadCountdown(int n) throws IOException {
+        new Translator().readAndTranslate(new StringReader("""
+                mov EAX %d
+                mov ECX 1
+                l: out EAX
+                sub EAX ECX
+                mov EBX 0
+                jnz EAX l
+                """.formatted(n)), machine.getLabels(), machine.getProgram());
+    }
+
+    private void assertCountdownCounted(int n) {
+        long instructions = metrics.getInstructionsExecuted();
+        long jumps = metrics.getJumpsExecuted();
+        long taken = metrics.getJumpsTaken();
+        long outputs = metrics.getOutputs();
+        long runs = metrics.getRunsCompleted();
+        machine.execute();
+        Assertions.assertEquals(2 + 4L * n, metrics.getInstructionsExecuted() - instructions);
+        Assertions.assertEquals(n, metrics.getJumpsExecuted() - jumps);
+        Assertions.assertEquals(n - 1, metrics.getJumpsTaken() - taken);
+        Assertions.assertEquals(n, metrics.getOutputs() - outputs);
+        Assertions.assertEquals(1, metrics.getRunsCompleted() - runs);
+    }
+
+    @Test
+    void interpreterIsCounted() throws IOException {
+        loadCountdown(5_000);
+        machine.setTieringThreshold(0);
+        assertCountdownCounted(5_000);
+        Assertions.assertFalse(machine.isPromoted());
+    }
+
+    @Test
+    void instrumentedRunIsCounted() throws IOException {
+        loadCountdown(5_000);
+        machine.addListener(new ExecutionListener() {
+        });
+        assertCountdownCounted(5_000);
+        Assertions.assertFalse(machine.isPromoted());
+    }
+
+    @Test
+    void compiledTierIsCounted() throws IOException {
+        loadCountdown(5_000);
+        assertCountdownCounted(5_000);
+        Assertions.assertTrue(machine.isPromoted());
+    }
+
+    @Test
+    void verifiedProgramIsCounted() throws IOException {
+        loadCountdown(5_000);
+        machine.verify();
+        assertCountdownCounted(5_000);
+    }
+
+    @Test
+    void longRunIsCountedWhileItRuns() throws IOException {
+        loadCountdown(100_000);
+        long instructions = metrics.getInstructionsExecuted();
+        long outputs = metrics.getOutputs();
+        long[] seen = new long[2];
+        machine.setOutput(value -> {
+            if (value == 1) {
+                seen[0] = metrics.getInstructionsExecuted() - instructions;
+                seen[1] = metrics.getOutputs() - outputs;
+            }
+        });
+        machine.execute();
+        // the last output comes before the run ends, most of it has been reported already
+        Assertions.assertTrue(seen[0] > 300_000, seen[0] + " instructions reported");
+        Assertions.assertTrue(seen[1] > 90_000, seen[1] + " outputs reported");
+    }
+
+    @Test
+    void runIsCompletedOnceAcrossResumes() throws IOException {
+        loadCountdown(100);
+        long runs = metrics.getRunsCompleted();
+        long active = metrics.getActiveMachines();
+        machine.reset();
+        machine.resume(10);
+        Assertions.assertEquals(runs, metrics.getRunsCompleted());
+        Assertions.assertEquals(active, metrics.getActiveMachines());
+        machine.resume(Long.MAX_VALUE);
+        machine.resume(Long.MAX_VALUE);
+        Assertions.assertEquals(runs + 1, metrics.getRunsCompleted());
+        Assertions.assertTrue(metrics.getAverageRunLatencyMillis() > 0);
+    }
+
+    @Test
+    void translationAndResultCacheAreCounted() throws IOException {
+        long translated = metrics.getProgramsTranslated();
+        loadCountdown(3);
+        Assertions.assertEquals(translated + 1, metrics.getProgramsTranslated());
+
+        long hits = metrics.getResultCacheHits();
+        long misses = metrics.getResultCacheMisses();
+        ResultCache cache = new ResultCache(10, 1 << 20);
+        cache.execute(machine);
+        cache.execute(machine);
+        Assertions.assertEquals(hits + 1, metrics.getResultCacheHits());
+        Assertions.assertEquals(misses + 1, metrics.getResultCacheMisses());
+    }
+
+    @Test
+    void windowComparesNewestAndOldestSample() {
+        EngineMetrics window = new EngineMetrics(0);
+        Assertions.assertEquals(0.0, window.getInstructionsPerSecond());
+        Assertions.assertEquals(0.0, window.getWindowJumpTakenRatio());
+
+        window.executed(3_000, 100, 75, 0);
+        window.runCompleted(4_000_000);
+        window.sample(2 * SECOND);
+        Assertions.assertEquals(1_500, window.getInstructionsPerSecond(), 1e-9);
+        Assertions.assertEquals(0.75, window.getWindowJumpTakenRatio(), 1e-9);
+        Assertions.assertEquals(0.5, window.getRunsPerSecond(), 1e-9);
+        Assertions.assertEquals(4, window.getWindowAverageRunLatencyMillis(), 1e-9);
+
+        // once the window is full, the first samples are dropped
+        window.executed(1_000, 100, 25, 0);
+        window.runCompleted(2_000_000);
+        for (int second = 3; second <= 2 + EngineMetrics.WINDOW_SECONDS; second++)
+            window.sample(second * SECOND);
+        Assertions.assertEquals(100, window.getInstructionsPerSecond(), 1e-9);
+        Assertions.assertEquals(0.25, window.getWindowJumpTakenRatio(), 1e-9);
+        Assertions.assertEquals(2, window.getWindowAverageRunLatencyMillis(), 1e-9);
+        // the cumulative figures are unaffected
+        Assertions.assertEquals(4_000, window.getInstructionsExecuted());
+        Assertions.assertEquals(0.5, window.getJumpTakenRatio(), 1e-9);
+        Assertions.assertEquals(3, window.getAverageRunLatencyMillis(), 1e-9);
+    }
+
+    @Test
+    void resetClearsCountersButActiveMachines() {
+        EngineMetrics local = new EngineMetrics(0);
+        local.machineStarted();
+        local.programTranslated();
+        local.executed(10, 2, 1, 3);
+        local.translationCacheHit();
+        local.reset();
+        Assertions.assertEquals(1, local.getActiveMachines());
+        Assertions.assertEquals(0, local.getProgramsTranslated());
+        Assertions.assertEquals(0, local.getInstructionsExecuted());
+        Assertions.assertEquals(0, local.getOutputs());
+        Assertions.assertEquals(0, local.getTranslationCacheHits());
+        Assertions.assertEquals(0.0, local.getInstructionsPerSecond());
+    }
+
+    @Test
+    void registerPublishesTheMBean() throws Exception {
+        EngineMetrics.register();
+        EngineMetrics.register();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(EngineMetrics.OBJECT_NAME);
+        Assertions.assertTrue(server.isRegistered(name));
+        Assertions.assertEquals(metrics.getProgramsTranslated(), server.getAttribute(name, "ProgramsTranslated"));
+        Assertions.assertEquals(EngineMetrics.WINDOW_SECONDS, server.getAttribute(name, "WindowSeconds"));
+        EngineMetrics.unregister();
+        Assertions.assertFalse(server.isRegistered(name));
+    }
+}
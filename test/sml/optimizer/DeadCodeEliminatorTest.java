@@ -0,0 +1,118 @@
+package sml.optimizer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Machine;
+import sml.Registers;
+import sml.instruction.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static sml.Registers.Register.*;
+
+class DeadCodeEliminatorTest {
+    private Machine machine;
+    private List<Integer> outputs;
+
+    @BeforeEach
+    void setUp() {
+        machine = new Machine(new Registers());
+        outputs = new ArrayList<>();
+        machine.setOutput(outputs::add);
+    }
+
+    @AfterEach
+    void tearDown() {
+        machine = null;
+        outputs = null;
+    }
+
+    private int optimize() {
+        return DeadCodeEliminator.optimize(machine.getLabels(), machine.getProgram());
+    }
+
+    @Test
+    void optimizeDeadStore() {
+        machine.getProgram().addAll(List.of(
+                new MovInstruction(null, EAX, 1),
+                new MovInstruction(null, EAX, 2),
+                new OutInstruction(null, EAX)));
+        Assertions.assertEquals(1, optimize());
+        Assertions.assertEquals("mov EAX 2\nout EAX", machine.toString());
+    }
+
+    @Test
+    void optimizeUnreachableBlock() {
+        machine.getProgram().addAll(List.of(
+                new MovInstruction(null, EAX, 1),
+                new JnzInstruction(null, EAX, "end"),
+                new OutInstruction(null, EAX),
+                new MovInstruction(null, EBX, 3),
+                new OutInstruction("end", EBX)));
+        machine.getLabels().addLabel("end", 4);
+        Assertions.assertEquals(2, optimize());
+        Assertions.assertEquals("mov EAX 1\njnz EAX end\nend: out EBX", machine.toString());
+        Assertions.assertEquals(2, machine.getLabels().getAddress("end"));
+        machine.execute();
+        Assertions.assertEquals(List.of(0), outputs);
+    }
+
+    @Test
+    void optimizeKeepsFactorial() {
+        machine.getProgram().addAll(List.of(
+                new MovInstruction(null, EAX, 6),
+                new MovInstruction(null, EBX, 1),
+                new MovInstruction(null, ECX, 1),
+                new MulInstruction("f3", EBX, EAX),
+                new SubInstruction(null, EAX, ECX),
+                new JnzInstruction(null, EAX, "f3"),
+                new OutInstruction(null, EBX)));
+        machine.getLabels().addLabel("f3", 3);
+        Assertions.assertEquals(0, optimize());
+    }
+
+    @Test
+    void optimizeMovesLabelOfRemovedInstruction() {
+        machine.getProgram().addAll(List.of(
+                new MovInstruction(null, EDX, 1),
+                new MovInstruction(null, ECX, 3),
+                new MovInstruction("l", EAX, 7),
+                new MovInstruction(null, EAX, 2),
+                new AddInstruction(null, EBX, EAX),
+                new SubInstruction(null, ECX, EDX),
+                new JnzInstruction(null, ECX, "l")));
+        machine.getLabels().addLabel("l", 2);
+        Assertions.assertEquals(1, optimize());
+        Assertions.assertEquals("l: mov EAX 2", machine.getProgram().get(2).toString());
+        Assertions.assertEquals(2, machine.getLabels().getAddress("l"));
+        machine.execute();
+        Assertions.assertEquals(6, machine.getRegisters().get(EBX));
+    }
+
+    @Test
+    void optimizeRetargetsJumpsToAlias() {
+        machine.getProgram().addAll(List.of(
+                new MovInstruction(null, EAX, 1),
+                new JnzInstruction(null, EAX, "a"),
+                new MovInstruction("a", EBX, 1),
+                new MovInstruction("b", EBX, 2),
+                new JnzInstruction(null, EAX, "b")));
+        machine.getLabels().addLabel("a", 2);
+        machine.getLabels().addLabel("b", 3);
+        // the loop on b never ends, only the structure is checked
+        Assertions.assertEquals(1, optimize());
+        Assertions.assertEquals("mov EAX 1\njnz EAX b\nb: mov EBX 2\njnz EAX b", machine.toString());
+        Assertions.assertEquals("[b -> 2]", machine.getLabels().toString());
+    }
+
+    @Test
+    void optimizeLeavesUnknownInstructions() {
+        machine.getProgram().add(new MovInstruction(null, EAX, 1));
+        machine.getProgram().add(null);
+        Assertions.assertEquals(0, optimize());
+        Assertions.assertEquals(2, machine.getProgram().size());
+    }
+}
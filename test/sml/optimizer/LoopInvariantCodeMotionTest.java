@@ -0,0 +1,166 @@
+package sml.optimizer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Instruction;
+import sml.Labels;
+import sml.Program;
+import sml.engine.RunResult;
+import sml.engine.SmlEngine;
+import sml.tools.ProgramGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class LoopInvariantCodeMotionTest {
+    private SmlEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = new SmlEngine(1_000_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine = null;
+    }
+
+    private Program optimize(Program program, int expected) {
+        List<Instruction> instructions = new ArrayList<>(program.getInstructions());
+        Labels labels = program.getLabels();
+        Assertions.assertEquals(expected, LoopInvariantCodeMotion.optimize(labels, instructions));
+        return new Program(instructions, labels);
+    }
+
+    @Test
+    void optimizeHoistsConstantSetup() {
+        Program program = engine.compile("""
+                mov EAX 6
+                mov EBX 1
+                f3: mov ECX 1
+                mul EBX EAX
+                sub EAX ECX
+                jnz EAX f3
+                out EBX
+                """);
+        Program optimized = optimize(program, 1);
+        Assertions.assertEquals("mov EAX 6\nmov EBX 1\nmov ECX 1\nf3: mul EBX EAX\nsub EAX ECX\njnz EAX f3\nout EBX",
+                optimized.toString());
+        Assertions.assertEquals(3, optimized.getAddress("f3"));
+        RunResult before = engine.run(program);
+        RunResult after = engine.run(optimized);
+        Assertions.assertArrayEquals(before.registers(), after.registers());
+        Assertions.assertArrayEquals(before.outputs(), after.outputs());
+        Assertions.assertEquals(before.steps() - 5, after.steps());
+    }
+
+    @Test
+    void optimizeHoistsInvariantArithmetic() {
+        Program optimized = optimize(engine.compile("""
+                mov EAX 3
+                mov ESI 4
+                l: mov EDX 5
+                add EDX ESI
+                mul EDX EDX
+                add EBX EDX
+                mov ECX 1
+                sub EAX ECX
+                jnz EAX l
+                """), 4);
+        Assertions.assertEquals("""
+                mov EAX 3
+                mov ESI 4
+                mov EDX 5
+                add EDX ESI
+                mul EDX EDX
+                mov ECX 1
+                l: add EBX EDX
+                sub EAX ECX
+                jnz EAX l""", optimized.toString());
+        Assertions.assertEquals(243, engine.run(optimized).registers()[1]);
+    }
+
+    @Test
+    void optimizeKeepsVaryingValues() {
+        optimize(engine.compile("""
+                mov EAX 3
+                l: out ECX
+                mov ECX 1
+                add EBX ECX
+                mov EBX 2
+                mov EDX 1
+                sub EAX EDX
+                add EDX EDX
+                jnz EAX l
+                """), 0);
+    }
+
+    @Test
+    void optimizeNeverHoistsDivision() {
+        optimize(engine.compile("""
+                mov EAX 3
+                l: mov ECX 1
+                mov EBX 6
+                div EBX EAX
+                mov EDX 1
+                sub EAX EDX
+                add EBX ECX
+                jnz EAX l
+                """), 1);
+        Program optimized = optimize(engine.compile("l: div EBX EAX\nmov ECX 1\nsub EAX ECX\njnz EAX l"), 0);
+        Assertions.assertThrows(ArithmeticException.class, () -> engine.run(optimized));
+    }
+
+    @Test
+    void optimizeSkipsLoopsEnteredByJump() {
+        optimize(engine.compile("""
+                mov EAX 1
+                jnz EAX l
+                mov EAX 3
+                l: mov ECX 1
+                sub EAX ECX
+                jnz EAX l
+                """), 0);
+    }
+
+    @Test
+    void optimizeRetargetsJumpsWhenHeaderEmpties() {
+        Program optimized = optimize(engine.compile("""
+                mov EAX 3
+                a: mov ECX 1
+                b: sub EAX ECX
+                jnz EAX b
+                jnz EAX a
+                """), 1);
+        Assertions.assertEquals("mov EAX 3\nmov ECX 1\nb: sub EAX ECX\njnz EAX b\njnz EAX b", optimized.toString());
+        Assertions.assertEquals("[b -> 2]", optimized.getLabels().toString());
+    }
+
+    @Test
+    void optimizePreservesGeneratedPrograms() {
+        for (long seed = 0; seed < 40; seed++) {
+            ProgramGenerator generator = new ProgramGenerator(seed);
+            generator.setLoopDensity(0.3);
+            generator.setBranchDensity(0.2);
+            Program program = engine.compile(generator.generate(1_000));
+            List<Instruction> instructions = new ArrayList<>(program.getInstructions());
+            Labels labels = program.getLabels();
+            LoopInvariantCodeMotion.optimize(labels, instructions);
+            Program optimized = new Program(instructions, labels);
+            Assertions.assertEquals(program.size(), optimized.size(), "seed " + seed);
+
+            RunResult expected;
+            try {
+                expected = engine.run(program);
+            } catch (ArithmeticException | IllegalStateException e) {
+                continue;
+            }
+            RunResult actual = engine.run(optimized);
+            Assertions.assertArrayEquals(expected.registers(), actual.registers(), "seed " + seed);
+            Assertions.assertArrayEquals(expected.outputs(), actual.outputs(), "seed " + seed);
+            Assertions.assertTrue(actual.steps() <= expected.steps(), "seed " + seed);
+        }
+    }
+}
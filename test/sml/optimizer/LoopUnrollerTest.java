@@ -0,0 +1,167 @@
+package sml.optimizer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Machine;
+import sml.Registers;
+import sml.instruction.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static sml.Registers.Register.*;
+
+class LoopUnrollerTest {
+    private Machine machine;
+    private List<Integer> outputs;
+
+    @BeforeEach
+    void setUp() {
+        machine = new Machine(new Registers());
+        outputs = new ArrayList<>();
+        machine.setOutput(outputs::add);
+    }
+
+    @AfterEach
+    void tearDown() {
+        machine = null;
+        outputs = null;
+    }
+
+    private int optimize(int factor) {
+        return LoopUnroller.optimize(machine.getLabels(), machine.getProgram(), factor);
+    }
+
+    private void loadFactorial(int n) {
+        machine.getProgram().addAll(List.of(
+                new MovInstruction(null, EAX, n),
+                new MovInstruction(null, EBX, 1),
+                new MovInstruction(null, ECX, 1),
+                new MulInstruction("f3", EBX, EAX),
+                new SubInstruction(null, EAX, ECX),
+                new JnzInstruction(null, EAX, "f3"),
+                new OutInstruction(null, EBX)));
+        machine.getLabels().addLabel("f3", 3);
+    }
+
+    @Test
+    void optimizeFactorialWithRemainder() {
+        loadFactorial(6);
+        Assertions.assertEquals(1, optimize(4));
+        Assertions.assertEquals("""
+                mov EAX 6
+                mov EBX 1
+                mov ECX 1
+                mul EBX EAX
+                sub EAX ECX
+                mul EBX EAX
+                sub EAX ECX
+                f3: mul EBX EAX
+                sub EAX ECX
+                mul EBX EAX
+                sub EAX ECX
+                mul EBX EAX
+                sub EAX ECX
+                mul EBX EAX
+                sub EAX ECX
+                jnz EAX f3
+                out EBX""", machine.toString());
+        Assertions.assertEquals(7, machine.getLabels().getAddress("f3"));
+        machine.execute();
+        Assertions.assertEquals(List.of(720), outputs);
+        Assertions.assertEquals(0, machine.getRegisters().get(EAX));
+        Assertions.assertEquals(1, machine.getRegisters().get(ECX));
+    }
+
+    @Test
+    void optimizeExecutesFewerSteps() {
+        loadFactorial(12);
+        Machine original = new Machine(new Registers());
+        original.getProgram().addAll(machine.getProgram());
+        machine.getLabels().forEach(original.getLabels()::addLabel);
+        original.setOutput(value -> {
+        });
+        long originalSteps = original.resume(Long.MAX_VALUE);
+
+        optimize(4);
+        long steps = machine.resume(Long.MAX_VALUE);
+        Assertions.assertEquals(4 + 12 * 3, originalSteps);
+        Assertions.assertEquals(4 + 12 * 2 + 3, steps);
+        Assertions.assertEquals(original.getRegisters(), machine.getRegisters());
+    }
+
+    @Test
+    void optimizeUnrollsShortLoopCompletely() {
+        loadFactorial(3);
+        Assertions.assertEquals(1, optimize(4));
+        Assertions.assertEquals(3 + 3 * 2 + 1, machine.getProgram().size());
+        Assertions.assertEquals(0, machine.getLabels().size());
+        Assertions.assertFalse(machine.getProgram().stream().anyMatch(JnzInstruction.class::isInstance));
+        machine.execute();
+        Assertions.assertEquals(List.of(6), outputs);
+    }
+
+    @Test
+    void optimizeShiftsLabelsAfterLoop() {
+        machine.getProgram().addAll(List.of(
+                new MovInstruction(null, EAX, 4),
+                new MovInstruction(null, ECX, 2),
+                new AddInstruction("l", EBX, EAX),
+                new SubInstruction(null, EAX, ECX),
+                new JnzInstruction(null, EAX, "l"),
+                new JnzInstruction(null, ECX, "end"),
+                new OutInstruction(null, EBX),
+                new OutInstruction("end", EBX)));
+        machine.getLabels().addLabel("l", 2);
+        machine.getLabels().addLabel("end", 7);
+        Assertions.assertEquals(1, optimize(2));
+        Assertions.assertEquals(10, machine.getProgram().size());
+        Assertions.assertEquals(9, machine.getLabels().getAddress("end"));
+        machine.execute();
+        Assertions.assertEquals(List.of(6), outputs);
+    }
+
+    @Test
+    void optimizeLeavesLoopsWithUnknownTripCount() {
+        machine.getProgram().addAll(List.of(
+                new MovInstruction(null, EBX, 1),
+                new MovInstruction(null, ECX, 1),
+                new MulInstruction("f3", EBX, EAX),
+                new SubInstruction(null, EAX, ECX),
+                new JnzInstruction(null, EAX, "f3")));
+        machine.getLabels().addLabel("f3", 2);
+        Assertions.assertEquals(0, optimize(4));
+        Assertions.assertEquals(5, machine.getProgram().size());
+    }
+
+    @Test
+    void optimizeLeavesLoopsNotEndingAtZero() {
+        machine.getProgram().addAll(List.of(
+                new MovInstruction(null, EAX, 7),
+                new MovInstruction(null, ECX, 2),
+                new AddInstruction("l", EBX, EAX),
+                new SubInstruction(null, EAX, ECX),
+                new JnzInstruction(null, EAX, "l")));
+        machine.getLabels().addLabel("l", 2);
+        Assertions.assertEquals(0, optimize(2));
+    }
+
+    @Test
+    void optimizeLeavesLoopsWritingTheCounterTwice() {
+        machine.getProgram().addAll(List.of(
+                new MovInstruction(null, EAX, 6),
+                new MovInstruction(null, ECX, 1),
+                new SubInstruction("l", EAX, ECX),
+                new SubInstruction(null, EAX, ECX),
+                new JnzInstruction(null, EAX, "l")));
+        machine.getLabels().addLabel("l", 2);
+        Assertions.assertEquals(0, optimize(2));
+    }
+
+    @Test
+    void optimizeRejectsSmallFactor() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> optimize(1));
+    }
+}
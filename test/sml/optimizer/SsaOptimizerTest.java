@@ -0,0 +1,151 @@
+package sml.optimizer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Instruction;
+import sml.Labels;
+import sml.Program;
+import sml.engine.RunResult;
+import sml.engine.SmlEngine;
+import sml.tools.ProgramGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+class SsaOptimizerTest {
+    private SmlEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = new SmlEngine(1_000_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine = null;
+    }
+
+    private Program optimize(Program program) {
+        List<Instruction> instructions = new ArrayList<>(program.getInstructions());
+        Labels labels = program.getLabels();
+        SsaOptimizer.optimize(labels, instructions);
+        return new Program(instructions, labels);
+    }
+
+    @Test
+    void optimizeFoldsAndRemoves() {
+        Program program = optimize(engine.compile("""
+                mov EAX 2
+                mov EBX 3
+                mul EAX EBX
+                mov ECX 7
+                mov ECX 6
+                out EAX
+                mov EAX 6
+                out EAX
+                """));
+        Assertions.assertEquals("mov EBX 3\nmov EAX 6\nmov ECX 6\nout EAX\nout EAX", program.toString());
+    }
+
+    @Test
+    void optimizeKeepsFactorial() {
+        String source = """
+                mov EAX 6
+                mov EBX 1
+                mov ECX 1
+                f3: mul EBX EAX
+                sub EAX ECX
+                jnz EAX f3
+                out EBX
+                """;
+        Program program = optimize(engine.compile(source));
+        Assertions.assertEquals(engine.compile(source), program);
+    }
+
+    @Test
+    void optimizeRemovesBranchNeverTaken() {
+        Program program = optimize(engine.compile("""
+                mov EAX 0
+                jnz EAX skip
+                mov EBX 4
+                skip: out EBX
+                """));
+        Assertions.assertEquals("mov EAX 0\nmov EBX 4\nskip: out EBX", program.toString());
+    }
+
+    @Test
+    void optimizeKeepsDivisionByZero() {
+        Program program = optimize(engine.compile("mov EAX 1\nmov EBX 0\ndiv EAX EBX\nmov EAX 3"));
+        Assertions.assertTrue(program.toString().contains("div EAX EBX"));
+        Assertions.assertThrows(ArithmeticException.class, () -> engine.run(program));
+    }
+
+    @Test
+    void optimizeRemovesUnreachableBlocksLeadingToEachOther() {
+        Program program = engine.compile("""
+                l0: div EDX EAX
+                out ECX
+                sub EDX EAX
+                jnz EAX l13
+                sub EAX EDX
+                mov EDX -1
+                jnz EDX l0
+                l7: mov EBX 3
+                jnz EDX l11
+                jnz EAX l7
+                add ECX EBX
+                l11: mov EBX -1
+                add ECX EBX
+                l13: mov ECX 3
+                """);
+        Program optimized = optimize(program);
+        SmlEngine limited = new SmlEngine(10_000);
+        for (int eax : new int[]{1, -2, 5}) {
+            int[] initial = {eax, 0, 0, 7, 0, 0, 0, 0};
+            RunResult expected;
+            try {
+                expected = limited.run(program, initial);
+            } catch (ArithmeticException | IllegalStateException e) {
+                continue;
+            }
+            RunResult actual = limited.run(optimized, initial);
+            Assertions.assertArrayEquals(expected.registers(), actual.registers());
+            Assertions.assertArrayEquals(expected.outputs(), actual.outputs());
+        }
+    }
+
+    @Test
+    void optimizeLeavesUnresolvedJumps() {
+        List<Instruction> instructions = new ArrayList<>(engine.compile("mov EAX 1\njnz EAX nowhere").getInstructions());
+        Assertions.assertEquals(0, SsaOptimizer.optimize(new Labels(), instructions));
+        Assertions.assertEquals(2, instructions.size());
+    }
+
+    @Test
+    void optimizePreservesGeneratedPrograms() {
+        Random random = new Random(42);
+        for (long seed = 0; seed < 40; seed++) {
+            ProgramGenerator generator = new ProgramGenerator(seed);
+            generator.setLoopDensity(0.2);
+            generator.setBranchDensity(0.2);
+            Program program = engine.compile(generator.generate(1_000));
+            Program optimized = optimize(program);
+            Assertions.assertTrue(optimized.size() <= program.size(), "seed " + seed);
+
+            int[] initial = random.ints(SmlEngine.registerCount(), -3, 4).toArray();
+            RunResult expected;
+            try {
+                expected = engine.run(program, initial);
+            } catch (ArithmeticException | IllegalStateException e) {
+                continue;
+            }
+            RunResult actual = engine.run(optimized, initial);
+            Assertions.assertArrayEquals(expected.registers(), actual.registers(), "seed " + seed);
+            Assertions.assertArrayEquals(expected.outputs(), actual.outputs(), "seed " + seed);
+            Assertions.assertTrue(actual.steps() <= expected.steps(), "seed " + seed);
+        }
+    }
+}
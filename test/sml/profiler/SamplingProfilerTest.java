@@ -0,0 +1,126 @@
+package sml.profiler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Machine;
+import sml.Registers;
+import sml.Translator;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.Duration;
+import java.util.List;
+
+class SamplingProfilerTest {
+    private Machine machine;
+    private SamplingProfiler profiler;
+
+    @BeforeEach
+    void setUp() {
+        machine = new Machine(new Registers());
+        machine.setOutput(value -> {
+        });
+        profiler = new SamplingProfiler(Duration.ofMillis(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        profiler.close();
+        machine = null;
+        profiler = null;
+    }
+
+    private void load(String source) throws IOException {
+        new Translator().readAndTranslate(new StringReader(source), machine.getLabels(), machine.getProgram());
+    }
+
+    // a short setup, a hot inner loop of 4 instructions (a length dividing the publish interval), then a tail
+    private void loadNestedLoops(int outer) throws IOException {
+        load("""
+                mov EAX %d
+                mov ECX 1
+                outer: mov EBX 20
+                inner: add EDX ECX
+                mul EDX ECX
+                sub EBX ECX
+                jnz EBX inner
+                tail: sub EAX ECX
+                jnz EAX outer
+                out EDX
+                """.formatted(outer));
+    }
+
+    @Test
+    void samplesWhereTheMachineStopped() throws IOException {
+        loadNestedLoops(10);
+        profiler.attach(machine);
+        machine.reset();
+        // 2 instructions, then the first instruction of the inner loop, then its third one
+        for (long steps : List.of(2L, 1L, 2L, 1L)) {
+            machine.resume(steps);
+            profiler.sample();
+        }
+        profiler.sample();
+        Profile profile = profiler.profile(machine);
+        Assertions.assertEquals(4, profile.samples());
+        Assertions.assertEquals(1, profile.idleSamples());
+        Assertions.assertEquals(1, profile.count(2));
+        Assertions.assertEquals(1, profile.count(3));
+        Assertions.assertEquals(1, profile.count(5));
+        Assertions.assertEquals(1, profile.count(6));
+        Assertions.assertEquals(0.25, profile.fraction(5), 1e-9);
+        Assertions.assertEquals(3, profile.byLabel().get("inner"));
+        Assertions.assertEquals(1, profile.byLabel().get("outer"));
+        Assertions.assertNull(profile.byLabel().get("tail"));
+        Assertions.assertEquals("inner", profile.byLabel().keySet().iterator().next());
+    }
+
+    @Test
+    void haltedAndDetachedMachinesAreNotSampled() throws IOException {
+        load("mov EAX 1");
+        machine.execute();
+        profiler.attach(machine);
+        profiler.attach(machine);
+        profiler.sample();
+        profiler.sample();
+        Profile profile = profiler.profile(machine);
+        Assertions.assertEquals(0, profile.samples());
+        Assertions.assertEquals(2, profile.idleSamples());
+        Assertions.assertEquals(0, profile.hottest(3).length);
+
+        profiler.detach(machine);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> profiler.profile(machine));
+    }
+
+    @Test
+    void profileIsReportedWhileRunning() throws IOException, InterruptedException {
+        loadNestedLoops(2_000_000);
+        machine.setPublishInterval(64);
+        profiler.attach(machine);
+        profiler.start();
+        Thread runner = new Thread(machine::execute);
+        runner.start();
+        Profile profile = profiler.profile(machine);
+        while (runner.isAlive() && profile.samples() < 50) {
+            Thread.sleep(5);
+            profile = profiler.profile(machine);
+        }
+        runner.join();
+        profile = profiler.profile(machine);
+
+        Assertions.assertTrue(profile.samples() >= 50, profile.toString());
+        // the inner loop executes 80 of every 83 instructions
+        Assertions.assertEquals("inner", profile.byLabel().keySet().iterator().next(), profile.toString());
+        Assertions.assertTrue(profile.byLabel().get("inner") > 0.85 * profile.samples(), profile.toString());
+        // each instruction of the inner loop is sampled, even though its length divides the publish interval
+        for (int address = 3; address <= 6; address++)
+            Assertions.assertTrue(profile.count(address) > 0, profile.toString());
+    }
+
+    @Test
+    void constructorRejectsNonPositiveInterval() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new SamplingProfiler(Duration.ZERO));
+    }
+}
@@ -0,0 +1,98 @@
+package sml.recorder;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Machine;
+import sml.engine.SmlEngine;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static sml.Registers.Register.*;
+
+class FlightRecorderTest {
+    private static final long SMALL = FlightRecorder.HEADER_SIZE + 3L * FlightRecorder.SEGMENT_SIZE;
+
+    private Path file;
+    private FlightRecorder recorder;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = Files.createTempFile("flight", ".trace");
+        recorder = new FlightRecorder(file, SMALL);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        recorder.close();
+        Files.deleteIfExists(file);
+        recorder = null;
+    }
+
+    private Machine run(String source) {
+        Machine machine = new SmlEngine().compile(source).newMachine();
+        machine.setOutput(value -> {
+        });
+        machine.addListener(recorder);
+        machine.execute();
+        return machine;
+    }
+
+    @Test
+    void recordsEveryStepWithItsValue() throws IOException {
+        run("mov EAX 6\nmov EBX 1\nmov ECX 1\nf3: mul EBX EAX\nsub EAX ECX\njnz EAX f3\nout EBX");
+        // read without closing the recorder, as after a crash
+        List<TraceStep> steps = FlightRecording.read(file, 1_000);
+        Assertions.assertEquals(recorder.getSteps(), steps.size());
+        Assertions.assertEquals(new TraceStep(0, 0, EAX, 6, false), steps.get(0));
+        Assertions.assertEquals(new TraceStep(3, 3, EBX, 6, false), steps.get(3));
+        Assertions.assertEquals(new TraceStep(5, 5, null, 0, false), steps.get(5));
+        Assertions.assertEquals(new TraceStep(6, 3, EBX, 30, false), steps.get(6));
+        Assertions.assertEquals("21: 6 out 720", steps.get(steps.size() - 1).toString());
+    }
+
+    @Test
+    void keepsLastStepsWhenRingWraps() throws IOException {
+        Machine machine = run("mov EAX 100000\nmov ECX 1\nl: mov EBX -5000\nsub EAX ECX\njnz EAX l");
+        long total = machine.snapshot().steps();
+
+        List<TraceStep> last = FlightRecording.read(file, 1_000);
+        Assertions.assertEquals(1_000, last.size());
+        Assertions.assertEquals(new TraceStep(total - 1, 4, null, 0, false), last.get(999));
+        Assertions.assertEquals(new TraceStep(total - 2, 3, EAX, 0, false), last.get(998));
+        Assertions.assertEquals(new TraceStep(total - 3, 2, EBX, -5000, false), last.get(997));
+
+        List<TraceStep> all = FlightRecording.read(file, Integer.MAX_VALUE);
+        Assertions.assertTrue(all.size() < total && all.size() > 10_000);
+        for (int i = 1; i < all.size(); i++)
+            Assertions.assertEquals(all.get(i - 1).step() + 1, all.get(i).step());
+    }
+
+    @Test
+    void recordsFailingStep() throws IOException {
+        Assertions.assertThrows(ArithmeticException.class, () -> run("mov EAX 1\ndiv EAX EBX"));
+        List<TraceStep> steps = FlightRecording.read(file, 10);
+        Assertions.assertEquals(List.of(new TraceStep(0, 0, EAX, 1, false), new TraceStep(1, 1, null, 0, false)), steps);
+    }
+
+    @Test
+    void readRejectsOtherFiles() throws IOException {
+        Path other = Files.createTempFile("flight", ".sml");
+        try {
+            Files.writeString(other, "mov EAX 1\nmov EBX 2\nmov ECX 3\nout EAX\n");
+            Assertions.assertThrows(IOException.class, () -> FlightRecording.read(other, 10));
+        } finally {
+            Files.deleteIfExists(other);
+        }
+    }
+
+    @Test
+    void constructorRejectsSingleSegment() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new FlightRecorder(file, FlightRecorder.SEGMENT_SIZE));
+    }
+}
@@ -0,0 +1,110 @@
+package sml.reload;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Machine;
+import sml.Program;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static sml.Registers.Register.EBX;
+
+class HotReloaderTest {
+    private Path file;
+    private HotReloader reloader;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = Files.createTempFile("reload", ".sml");
+        write("mov EAX 6", "mov EBX 1", "mov ECX 1", "f3: mul EBX EAX", "sub EAX ECX", "jnz EAX f3", "out EBX");
+        reloader = new HotReloader(file.toString());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        reloader.close();
+        Files.deleteIfExists(file);
+        reloader = null;
+    }
+
+    private void write(String... lines) throws IOException {
+        Files.write(file, List.of(lines));
+    }
+
+    private static int run(Program program) {
+        Machine machine = program.newMachine();
+        machine.setOutput(value -> {
+        });
+        machine.execute();
+        return machine.getRegisters().get(EBX);
+    }
+
+    @Test
+    void currentInitialProgram() {
+        Assertions.assertEquals(7, reloader.current().size());
+        Assertions.assertEquals(3, reloader.current().getAddress("f3"));
+        Assertions.assertEquals(720, run(reloader.current()));
+        Assertions.assertEquals(1, reloader.getVersion());
+    }
+
+    @Test
+    void reloadOnlyDecodesChangedLines() throws IOException {
+        write("mov EAX 5", "mov EBX 1", "mov ECX 1", "f3: mul EBX EAX", "sub EAX ECX", "jnz EAX f3", "out EBX");
+        Assertions.assertTrue(reloader.reload());
+        Assertions.assertEquals(1, reloader.getLastDecodedLines());
+        Assertions.assertEquals(120, run(reloader.current()));
+        Assertions.assertEquals(2, reloader.getVersion());
+    }
+
+    @Test
+    void reloadMovesLabels() throws IOException {
+        write("mov EAX 6", "", "mov EBX 1", "mov EDX 0", "mov ECX 1", "f3: mul EBX EAX", "sub EAX ECX", "jnz EAX f3", "out EBX");
+        Assertions.assertTrue(reloader.reload());
+        Assertions.assertEquals(3, reloader.getLastDecodedLines());
+        Assertions.assertEquals(4, reloader.current().getAddress("f3"));
+        Assertions.assertEquals(720, run(reloader.current()));
+    }
+
+    @Test
+    void reloadKeepsRunsInFlight() throws IOException {
+        Machine inFlight = reloader.current().newMachine();
+        write("mov EAX 3", "mov EBX 1", "mov ECX 1", "f3: mul EBX EAX", "sub EAX ECX", "jnz EAX f3", "out EBX");
+        reloader.reload();
+        inFlight.setOutput(value -> {
+        });
+        inFlight.execute();
+        Assertions.assertEquals(720, inFlight.getRegisters().get(EBX));
+        Assertions.assertEquals(6, run(reloader.current()));
+    }
+
+    @Test
+    void reloadUnchangedFile() throws IOException {
+        Assertions.assertFalse(reloader.reload());
+    }
+
+    @Test
+    void reloadDuplicateLabelKeepsProgram() throws IOException {
+        Program before = reloader.current();
+        write("f3: mov EAX 6", "mov EBX 1", "mov ECX 1", "f3: mul EBX EAX", "sub EAX ECX", "jnz EAX f3", "out EBX");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> reloader.reload());
+        Assertions.assertSame(before, reloader.current());
+    }
+
+    @Test
+    void watchReloadsOnModification() throws IOException, InterruptedException {
+        reloader.watch();
+        write("mov EAX 4", "mov EBX 1", "mov ECX 1", "f3: mul EBX EAX", "sub EAX ECX", "jnz EAX f3", "out EBX");
+        long deadline = System.currentTimeMillis() + 10_000;
+        // the file may be seen half written first, wait for the last version
+        while (reloader.current().size() != 7 || run(reloader.current()) != 24) {
+            if (System.currentTimeMillis() > deadline) break;
+            Thread.sleep(20);
+        }
+        Assertions.assertEquals(24, run(reloader.current()));
+    }
+}
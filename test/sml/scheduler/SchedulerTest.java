@@ -0,0 +1,117 @@
+package sml.scheduler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.ExecutionListener;
+import sml.Instruction;
+import sml.Machine;
+import sml.Registers;
+import sml.instruction.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static sml.Registers.Register.*;
+
+class SchedulerTest {
+    private Scheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new Scheduler(1, 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+        scheduler = null;
+    }
+
+    private static Machine countdown(int iterations) {
+        Machine machine = new Machine(new Registers());
+        machine.getProgram().addAll(List.of(
+                new MovInstruction(null, EAX, iterations),
+                new MovInstruction(null, EBX, 1),
+                new MovInstruction(null, ECX, 1),
+                new MulInstruction("f3", EBX, EAX),
+                new SubInstruction(null, EAX, ECX),
+                new JnzInstruction(null, EAX, "f3")));
+        machine.getLabels().addLabel("f3", 3);
+        return machine;
+    }
+
+    @Test
+    void submitCompletesAllJobs() {
+        List<Job> jobs = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            jobs.add(scheduler.submit(countdown(6)));
+        }
+        for (Job job : jobs) {
+            Machine machine = job.getCompletion().join();
+            Assertions.assertEquals(720, machine.getRegisters().get(EBX));
+            Assertions.assertEquals(21, job.getSteps());
+        }
+        Assertions.assertEquals(50, scheduler.getStats().completed());
+    }
+
+    @Test
+    void submitShortJobIsNotStarvedByLongLoop() {
+        Job longJob = scheduler.submit(countdown(10_000_000));
+        Job shortJob = scheduler.submit(countdown(6));
+        shortJob.getCompletion().join();
+        Assertions.assertFalse(longJob.getCompletion().isDone());
+        Assertions.assertTrue(shortJob.getSlices() <= 1);
+    }
+
+    @Test
+    void submitHigherPriorityReceivesMoreSteps() throws InterruptedException {
+        Job low = scheduler.submit(countdown(10_000_000), Job.MIN_PRIORITY);
+        Job high = scheduler.submit(countdown(10_000_000), Job.MAX_PRIORITY);
+        TimeUnit.MILLISECONDS.sleep(200);
+        Assertions.assertTrue(high.getSteps() > low.getSteps());
+    }
+
+    @Test
+    void submitFailingJobCompletesExceptionally() {
+        Machine machine = new Machine(new Registers());
+        machine.getProgram().add(new DivInstruction(null, EAX, EBX));
+        Job job = scheduler.submit(machine);
+        Assertions.assertThrows(CompletionException.class, () -> job.getCompletion().join());
+        Assertions.assertEquals(1, scheduler.getStats().failed());
+    }
+
+    @Test
+    void submitJobThrowingErrorLeavesCarrierRunning() {
+        Machine machine = countdown(6);
+        machine.addListener(new ExecutionListener() {
+            @Override
+            public void beforeInstruction(Machine running, int address, Instruction instruction) {
+                throw new AssertionError("broken listener");
+            }
+        });
+        Job broken = scheduler.submit(machine);
+        CompletionException error = Assertions.assertThrows(CompletionException.class,
+                () -> broken.getCompletion().orTimeout(5, TimeUnit.SECONDS).join());
+        Assertions.assertTrue(error.getCause() instanceof AssertionError);
+
+        Job next = scheduler.submit(countdown(6));
+        Assertions.assertEquals(720, next.getCompletion().orTimeout(5, TimeUnit.SECONDS).join().getRegisters().get(EBX));
+        Assertions.assertEquals(1, scheduler.getStats().failed());
+        Assertions.assertEquals(1, scheduler.getStats().completed());
+    }
+
+    @Test
+    void submitInvalidPriority() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> scheduler.submit(countdown(1), 0));
+    }
+
+    @Test
+    void submitAfterShutdown() {
+        scheduler.shutdown();
+        Assertions.assertThrows(IllegalStateException.class, () -> scheduler.submit(countdown(1)));
+    }
+}
@@ -0,0 +1,135 @@
+package sml.sweep;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Program;
+import sml.engine.SmlEngine;
+
+import java.util.IntSummaryStatistics;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static sml.Registers.Register.*;
+
+class ParameterSweepTest {
+    private SmlEngine engine;
+    private ForkJoinPool pool;
+
+    @BeforeEach
+    void setUp() {
+        engine = new SmlEngine();
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+        engine = null;
+        pool = null;
+    }
+
+    // EBX = EAX! for EAX >= 1
+    private Program factorial() {
+        return engine.compile("""
+                mov EBX 1
+                mov ECX 1
+                f3: mul EBX EAX
+                sub EAX ECX
+                jnz EAX f3
+                out EBX
+                """);
+    }
+
+    @Test
+    void forEachRunsEveryPoint() {
+        ParameterSweep sweep = new ParameterSweep(factorial(), Axis.range(EAX, 1, 11));
+        sweep.setPool(pool);
+        Map<Long, SweepPoint> points = new ConcurrentHashMap<>();
+        sweep.forEach(point -> points.put(point.index(), point));
+        Assertions.assertEquals(10, points.size());
+        int factorial = 1;
+        for (int n = 1; n <= 10; n++) {
+            factorial *= n;
+            SweepPoint point = points.get((long) n - 1);
+            Assertions.assertTrue(point.succeeded(), point.toString());
+            Assertions.assertArrayEquals(new int[]{n}, point.parameters());
+            Assertions.assertArrayEquals(new int[]{factorial}, point.outputs());
+            Assertions.assertEquals(factorial, point.registers()[EBX.ordinal()]);
+            Assertions.assertEquals(3 + 3L * n, point.steps());
+        }
+    }
+
+    @Test
+    void parametersOfGrid() {
+        ParameterSweep sweep = new ParameterSweep(factorial(), Axis.of(EAX, 5, 6, 7), Axis.range(EDX, 0, 10, 5));
+        Assertions.assertEquals(6, sweep.size());
+        Assertions.assertArrayEquals(new int[]{5, 0}, sweep.parameters(0));
+        Assertions.assertArrayEquals(new int[]{5, 5}, sweep.parameters(1));
+        Assertions.assertArrayEquals(new int[]{7, 5}, sweep.parameters(5));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> sweep.parameters(6));
+    }
+
+    @Test
+    void summaryOfGrid() {
+        Program program = engine.compile("mov ECX 0\nadd ECX EAX\nadd ECX EBX");
+        ParameterSweep sweep = new ParameterSweep(program, Axis.range(EAX, 0, 100), Axis.range(EBX, -50, 50));
+        sweep.setPool(pool);
+        IntSummaryStatistics ecx = sweep.summary(ECX);
+        Assertions.assertEquals(10_000, ecx.getCount());
+        Assertions.assertEquals(-50, ecx.getMin());
+        Assertions.assertEquals(148, ecx.getMax());
+        Assertions.assertEquals(49, ecx.getAverage(), 1e-9);
+    }
+
+    @Test
+    void histogramCountsFailures() {
+        Program program = engine.compile("mov EBX 100\ndiv EBX EAX");
+        ParameterSweep sweep = new ParameterSweep(program, Axis.range(EAX, -10, 11));
+        sweep.setPool(pool);
+        Histogram histogram = sweep.histogram(EBX, 0, 99, 4);
+        Assertions.assertEquals(25, histogram.binWidth());
+        // 100 / 1, 100 / 2 ... 100 / 10 are 100, 50, 33, 25, 20, 16, 14, 12, 11, 10
+        Assertions.assertArrayEquals(new long[]{6, 2, 1, 0}, histogram.counts());
+        Assertions.assertEquals(10, histogram.below());
+        Assertions.assertEquals(1, histogram.above());
+        Assertions.assertEquals(1, histogram.failed());
+        Assertions.assertEquals(21, histogram.total());
+    }
+
+    @Test
+    void stepLimitFailsPoint() {
+        Program program = engine.compile("l: jnz EAX l");
+        ParameterSweep sweep = new ParameterSweep(program, Axis.of(EAX, 0, 1));
+        sweep.setPool(pool);
+        sweep.setMaxSteps(100);
+        Map<Long, SweepPoint> points = new ConcurrentHashMap<>();
+        sweep.forEach(point -> points.put(point.index(), point));
+        Assertions.assertTrue(points.get(0L).succeeded());
+        Assertions.assertEquals("step limit of 100 exceeded", points.get(1L).error());
+        Assertions.assertEquals(1, sweep.summary(EAX).getCount());
+    }
+
+    @Test
+    void baseRegisters() {
+        Program program = engine.compile("add EAX EBX");
+        ParameterSweep sweep = new ParameterSweep(program, Axis.of(EAX, 1, 2));
+        sweep.setPool(pool);
+        sweep.setBaseRegisters(0, 10, 0, 0, 0, 0, 0, 0);
+        IntSummaryStatistics eax = sweep.summary(EAX);
+        Assertions.assertEquals(11, eax.getMin());
+        Assertions.assertEquals(12, eax.getMax());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> sweep.setBaseRegisters(1, 2));
+    }
+
+    @Test
+    void constructorRejectsDuplicateAxes() {
+        Program program = factorial();
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new ParameterSweep(program, Axis.of(EAX, 1), Axis.of(EAX, 2)));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ParameterSweep(program));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Axis.range(EAX, 5, 5));
+    }
+}
@@ -0,0 +1,136 @@
+package sml.tools;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Instruction;
+import sml.Machine;
+import sml.Program;
+import sml.engine.OutputRecorder;
+import sml.engine.SmlEngine;
+import sml.instruction.AddInstruction;
+import sml.instruction.MulInstruction;
+
+import java.util.List;
+import java.util.Optional;
+
+class DifferentialHarnessTest {
+    private DifferentialHarness harness;
+    private SmlEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        harness = new DifferentialHarness();
+        engine = new SmlEngine();
+    }
+
+    @AfterEach
+    void tearDown() {
+        harness = null;
+        engine = null;
+    }
+
+    // an engine that gets mul wrong: it adds instead
+    private static Outcome mulAsAdd(Program program, long maxSteps) {
+        Machine machine = program.newMachine();
+        List<Instruction> instructions = machine.getProgram();
+        for (int address = 0; address < instructions.size(); address++) {
+            if (instructions.get(address) instanceof MulInstruction mul)
+                instructions.set(address, new AddInstruction(mul.getLabel(), mul.getResult(), mul.getSource()));
+        }
+        OutputRecorder recorder = new OutputRecorder();
+        machine.setOutput(recorder);
+        machine.reset();
+        long steps = machine.resume(maxSteps);
+        return new Outcome(machine.getRegisters().toArray(), recorder.toArray(), steps,
+                machine.isHalted() ? null : Outcome.STEP_LIMIT);
+    }
+
+    @Test
+    void checkAgreesOnGeneratedPrograms() {
+        for (long seed = 0; seed < 10; seed++) {
+            ProgramGenerator generator = new ProgramGenerator(seed);
+            generator.setLoopDensity(0.2);
+            generator.setBranchDensity(0.2);
+            Program program = engine.compile(generator.generate(1_000));
+            Assertions.assertEquals(Optional.empty(), harness.check(program, 1_000_000), "seed " + seed);
+        }
+    }
+
+    @Test
+    void checkAgreesOnFailures() {
+        Assertions.assertEquals(Optional.empty(), harness.check(engine.compile("mov EAX 1\ndiv EAX EBX"), 100));
+        Assertions.assertEquals(Optional.empty(), harness.check(engine.compile("mov EAX 1\njnz EAX nowhere"), 100));
+        Assertions.assertEquals(Optional.empty(), harness.check(engine.compile("mov EAX 1\nl: jnz EAX l"), 100));
+    }
+
+    @Test
+    void testShrinksToMinimalReproducer() {
+        harness.addEngine("broken", DifferentialHarnessTest::mulAsAdd);
+        Program program = engine.compile("""
+                mov EAX 6
+                mov EBX 1
+                mov ECX 1
+                f3: mul EBX EAX
+                sub EAX ECX
+                jnz EAX f3
+                out EBX
+                """);
+        Mismatch mismatch = harness.test(program, 1_000).orElseThrow();
+        Program reduced = mismatch.program();
+        Assertions.assertTrue(reduced.size() < program.size(), mismatch.toString());
+        Assertions.assertTrue(reduced.getInstructions().stream().anyMatch(MulInstruction.class::isInstance));
+        for (int address = 0; address < reduced.size(); address++) {
+            Program smaller = DifferentialHarness.without(reduced, address, address + 1);
+            Assertions.assertEquals(Optional.empty(), harness.check(smaller, mismatch.maxSteps()));
+        }
+        Assertions.assertEquals(Optional.empty(), harness.check(reduced, mismatch.maxSteps() - 1));
+        Assertions.assertFalse(mismatch.outcomes().get("broken").matches(mismatch.outcomes().get("interpreter")));
+    }
+
+    @Test
+    void withoutMovesLabels() {
+        Program program = engine.compile("mov EAX 1\nmov EBX 2\nl: out EAX\njnz EBX l");
+        Program shorter = DifferentialHarness.without(program, 1, 3);
+        Assertions.assertEquals(2, shorter.size());
+        Assertions.assertEquals(1, shorter.getAddress("l"));
+    }
+
+    @Test
+    void withoutKeepsSourceOfMovedLabels() {
+        Program shorter = DifferentialHarness.without(engine.compile("mov EAX 0\nL: mov EBX 1\njnz EAX L"), 1, 2);
+        Assertions.assertEquals("mov EAX 0\nL: jnz EAX L", shorter.toString());
+        Assertions.assertEquals(shorter, engine.compile(shorter.toString()));
+
+        Program merged = DifferentialHarness.without(engine.compile("mov EAX 1\na: mov EBX 2\nb: out EAX\njnz EBX a"), 1, 2);
+        Assertions.assertEquals("mov EAX 1\nb: out EAX\njnz EBX b", merged.toString());
+        Assertions.assertEquals(merged, engine.compile(merged.toString()));
+    }
+
+    @Test
+    void testReproducerTranslatesBack() {
+        harness.addEngine("broken", DifferentialHarnessTest::mulAsAdd);
+        Program program = engine.compile("""
+                mov EAX 6
+                mov EBX 1
+                mov ECX 1
+                f3: mov EDX 2
+                mul EBX EAX
+                sub EAX ECX
+                jnz EAX f3
+                out EBX
+                """);
+        Mismatch mismatch = harness.test(program, 1_000).orElseThrow();
+        String source = mismatch.toString().substring(0, mismatch.toString().indexOf("\n--- "));
+        Program translated = engine.compile(source);
+        Assertions.assertEquals(mismatch.program(), translated);
+        Assertions.assertTrue(harness.check(translated, mismatch.maxSteps()).isPresent(), mismatch.toString());
+    }
+
+    @Test
+    void addEngineCannotReplaceReference() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> harness.addEngine(DifferentialHarness.REFERENCE, (program, maxSteps) -> null));
+    }
+}
@@ -0,0 +1,77 @@
+package sml.tools;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sml.Program;
+import sml.analysis.Verifier;
+import sml.engine.RunResult;
+import sml.engine.SmlEngine;
+
+import java.util.List;
+
+class ProgramGeneratorTest {
+    private ProgramGenerator generator;
+    private SmlEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        generator = new ProgramGenerator(42);
+        engine = new SmlEngine(100_000_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        generator = null;
+        engine = null;
+    }
+
+    @Test
+    void generateUsesEveryOpcode() {
+        generator.setBranchDensity(0.2);
+        generator.setLoopDensity(0.1);
+        generator.setOutputDensity(0.1);
+        String source = generator.generate(4_096);
+        for (String opcode : List.of("add", "sub", "mul", "div", "mov", "jnz", "out")) {
+            Assertions.assertTrue(source.contains("\n" + opcode + " ") || source.contains(": " + opcode + " "), opcode);
+        }
+        Assertions.assertTrue(source.length() >= 4_096);
+    }
+
+    @Test
+    void generateIsDeterministic() {
+        Assertions.assertEquals(generator.generate(2_000), generator.generate(2_000));
+        Assertions.assertNotEquals(generator.generate(2_000), new ProgramGenerator(7).generate(2_000));
+    }
+
+    @Test
+    void generatedProgramsVerifyAndTerminate() {
+        for (long seed = 0; seed < 20; seed++) {
+            ProgramGenerator random = new ProgramGenerator(seed);
+            random.setMaxLoopDepth(ProgramGenerator.MAX_LOOP_DEPTH);
+            random.setLoopDensity(0.2);
+            random.setBranchDensity(0.2);
+            random.setLabelDensity(0.3);
+            random.setMaxIterations(4);
+            Program program = engine.compile(random.generate(2_000));
+            Verifier.verify(program.getInstructions(), program.newMachine().getLabels());
+            RunResult result = engine.run(program);
+            Assertions.assertTrue(result.steps() >= program.size() / 2, "seed " + seed);
+        }
+    }
+
+    @Test
+    void generateWithoutLoops() {
+        generator.setMaxLoopDepth(0);
+        generator.setLoopDensity(1);
+        Assertions.assertFalse(generator.generate(10_000).contains("ESP"));
+    }
+
+    @Test
+    void parseSize() {
+        Assertions.assertEquals(512, ProgramGenerator.parseSize("512"));
+        Assertions.assertEquals(2_048, ProgramGenerator.parseSize("2k"));
+        Assertions.assertEquals(3L << 30, ProgramGenerator.parseSize("3G"));
+    }
+}